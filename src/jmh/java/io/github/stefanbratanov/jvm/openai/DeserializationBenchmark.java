@@ -0,0 +1,205 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares binding responses using {@link ObjectMapper#readValue(byte[], Class)} on each call
+ * against using {@link ObjectReader}s which are created once per type, with and without the
+ * Blackbird module.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DeserializationBenchmark {
+
+  private static final String CHAT_COMPLETION =
+      """
+      {
+        "id": "chatcmpl-123",
+        "object": "chat.completion",
+        "created": 1677652288,
+        "model": "gpt-3.5-turbo-0125",
+        "system_fingerprint": "fp_44709d6fcb",
+        "choices": [
+          {
+            "index": 0,
+            "message": {
+              "role": "assistant",
+              "content": "Hello there, how may I assist you today?",
+              "tool_calls": [
+                {
+                  "id": "call_abc123",
+                  "type": "function",
+                  "function": {
+                    "name": "get_current_weather",
+                    "arguments": "{\\"location\\": \\"Boston, MA\\"}"
+                  }
+                }
+              ]
+            },
+            "logprobs": null,
+            "finish_reason": "tool_calls"
+          }
+        ],
+        "usage": {
+          "prompt_tokens": 9,
+          "completion_tokens": 12,
+          "total_tokens": 21
+        }
+      }
+      """;
+
+  private static final String THREAD_RUN =
+      """
+      {
+        "id": "run_abc123",
+        "object": "thread.run",
+        "created_at": 1699063290,
+        "assistant_id": "asst_abc123",
+        "thread_id": "thread_abc123",
+        "status": "requires_action",
+        "required_action": {
+          "type": "submit_tool_outputs",
+          "submit_tool_outputs": {
+            "tool_calls": [
+              {
+                "id": "call_abc123",
+                "type": "function",
+                "function": {
+                  "name": "get_current_weather",
+                  "arguments": "{\\"location\\": \\"Boston, MA\\"}"
+                }
+              }
+            ]
+          }
+        },
+        "started_at": 1699063290,
+        "expires_at": 1699063890,
+        "cancelled_at": null,
+        "failed_at": null,
+        "completed_at": null,
+        "last_error": null,
+        "model": "gpt-4",
+        "instructions": "You are a helpful assistant.",
+        "tools": [
+          {
+            "type": "code_interpreter"
+          },
+          {
+            "type": "function",
+            "function": {
+              "name": "get_current_weather",
+              "description": "Get the current weather in a given location",
+              "parameters": {
+                "type": "object",
+                "properties": {
+                  "location": {
+                    "type": "string"
+                  }
+                },
+                "required": ["location"]
+              }
+            }
+          }
+        ],
+        "file_ids": ["file-abc123", "file-abc456"],
+        "metadata": {
+          "user": "abc123"
+        },
+        "usage": {
+          "prompt_tokens": 123,
+          "completion_tokens": 456,
+          "total_tokens": 579
+        }
+      }
+      """;
+
+  @Param({"chatCompletion", "threadRun", "embeddings"})
+  public String response;
+
+  private final ObjectMapper objectMapper = ObjectMapperSingleton.createObjectMapper(false);
+  private final ObjectMapper blackbirdObjectMapper = ObjectMapperSingleton.createObjectMapper(true);
+
+  private byte[] body;
+  private Class<?> responseClass;
+  private ObjectReader cachedReader;
+  private ObjectReader blackbirdCachedReader;
+
+  @Setup
+  public void setUp() {
+    switch (response) {
+      case "chatCompletion" -> {
+        body = CHAT_COMPLETION.getBytes(StandardCharsets.UTF_8);
+        responseClass = ChatCompletion.class;
+      }
+      case "threadRun" -> {
+        body = THREAD_RUN.getBytes(StandardCharsets.UTF_8);
+        responseClass = ThreadRun.class;
+      }
+      case "embeddings" -> {
+        body = createEmbeddings(10, 1536).getBytes(StandardCharsets.UTF_8);
+        responseClass = Embeddings.class;
+      }
+      default -> throw new IllegalArgumentException("Unknown response: " + response);
+    }
+    cachedReader = objectMapper.readerFor(responseClass);
+    blackbirdCachedReader = blackbirdObjectMapper.readerFor(responseClass);
+  }
+
+  @Benchmark
+  public Object readValue() throws IOException {
+    return objectMapper.readValue(body, responseClass);
+  }
+
+  @Benchmark
+  public Object cachedReader() throws IOException {
+    return cachedReader.readValue(body);
+  }
+
+  @Benchmark
+  public Object blackbirdCachedReader() throws IOException {
+    return blackbirdCachedReader.readValue(body);
+  }
+
+  private static String createEmbeddings(int count, int dimensions) {
+    Random random = new Random(42);
+    String data =
+        IntStream.range(0, count)
+            .mapToObj(
+                index ->
+                    random
+                        .doubles(dimensions, -1, 1)
+                        .mapToObj(Double::toString)
+                        .collect(
+                            Collectors.joining(
+                                ",",
+                                "{\"object\":\"embedding\",\"index\":" + index + ",\"embedding\":[",
+                                "]}")))
+            .collect(Collectors.joining(","));
+    return "{\"object\":\"list\",\"data\":["
+        + data
+        + "],\"model\":\"text-embedding-3-small\","
+        + "\"usage\":{\"prompt_tokens\":8,\"total_tokens\":8}}";
+  }
+}
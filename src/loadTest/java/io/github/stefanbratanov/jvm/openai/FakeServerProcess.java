@@ -0,0 +1,96 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the {@link FakeOpenAIServer} of a {@link LoadTest} in a JVM of its own, so that the
+ * allocations and the garbage collections of the server are not measured as the ones of the
+ * client. The child JVM prints the base url of the server and stops the server once its standard
+ * input is closed, which also happens if the load test dies.
+ */
+class FakeServerProcess implements AutoCloseable {
+
+  private final Process process;
+  private final String baseUrl;
+
+  private FakeServerProcess(Process process, String baseUrl) {
+    this.process = process;
+    this.baseUrl = baseUrl;
+  }
+
+  static FakeServerProcess start(Options options) {
+    List<String> command =
+        List.of(
+            Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+            "-cp",
+            System.getProperty("java.class.path"),
+            FakeServerProcess.class.getName(),
+            "--server-latency=" + options.serverLatency().toMillis(),
+            "--tokens-per-second=" + options.tokensPerSecond());
+    try {
+      Process process =
+          new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+      BufferedReader output =
+          new BufferedReader(
+              new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+      String baseUrl = output.readLine();
+      if (baseUrl == null) {
+        process.destroyForcibly();
+        throw new IllegalStateException(
+            "The fake server exited with code " + process.waitFor() + " before it started");
+      }
+      return new FakeServerProcess(process, baseUrl);
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    } catch (InterruptedException ex) {
+      java.lang.Thread.currentThread().interrupt();
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  static FakeOpenAIServer startServer(Options options) {
+    return FakeOpenAIServer.newBuilder()
+        .latency(
+            FakeOpenAIServer.Latency.logNormal(
+                options.serverLatency(), options.serverLatency().multipliedBy(4)))
+        .tokensPerSecond(options.tokensPerSecond())
+        .start();
+  }
+
+  String baseUrl() {
+    return baseUrl;
+  }
+
+  @Override
+  public void close() {
+    try {
+      process.getOutputStream().close();
+      if (!process.waitFor(10, TimeUnit.SECONDS)) {
+        process.destroyForcibly();
+      }
+    } catch (IOException ex) {
+      process.destroyForcibly();
+    } catch (InterruptedException ex) {
+      process.destroyForcibly();
+      java.lang.Thread.currentThread().interrupt();
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    try (FakeOpenAIServer server = startServer(Options.parse(args))) {
+      System.out.println(server.baseUrl());
+      System.out.flush();
+      // blocks until the load test closes the standard input or exits
+      while (System.in.read() != -1) {
+        // nothing to do
+      }
+    }
+  }
+}
@@ -0,0 +1,118 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * Measures the allocations and the garbage collections of the JVM during a load test. The bytes
+ * which were allocated are the bytes which were freed by the collections plus the growth of the
+ * heap, so that the allocations of all threads are counted, including virtual threads and threads
+ * which have already terminated.
+ */
+class JvmMetrics implements NotificationListener {
+
+  private final List<GarbageCollectorMXBean> garbageCollectors =
+      ManagementFactory.getGarbageCollectorMXBeans();
+
+  private final LongAdder freedBytes = new LongAdder();
+
+  private final long startNanos;
+  private final long startHeapUsed;
+  private final long startCollectionCount;
+  private final long startCollectionTime;
+
+  private JvmMetrics() {
+    garbageCollectors.stream()
+        .filter(NotificationEmitter.class::isInstance)
+        .map(NotificationEmitter.class::cast)
+        .forEach(emitter -> emitter.addNotificationListener(this, null, null));
+    startNanos = System.nanoTime();
+    startHeapUsed = heapUsed();
+    startCollectionCount = collectionCount();
+    startCollectionTime = collectionTime();
+  }
+
+  @Override
+  public void handleNotification(Notification notification, Object handback) {
+    if (!notification
+        .getType()
+        .equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION)) {
+      return;
+    }
+    GarbageCollectionNotificationInfo info =
+        GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+    long usedBefore =
+        info.getGcInfo().getMemoryUsageBeforeGc().values().stream()
+            .mapToLong(MemoryUsage::getUsed)
+            .sum();
+    long usedAfter =
+        info.getGcInfo().getMemoryUsageAfterGc().values().stream()
+            .mapToLong(MemoryUsage::getUsed)
+            .sum();
+    freedBytes.add(Math.max(0, usedBefore - usedAfter));
+  }
+
+  static JvmMetrics start() {
+    return new JvmMetrics();
+  }
+
+  Snapshot stop() {
+    Snapshot snapshot =
+        new Snapshot(
+            System.nanoTime() - startNanos,
+            freedBytes.sum() + heapUsed() - startHeapUsed,
+            collectionCount() - startCollectionCount,
+            collectionTime() - startCollectionTime);
+    garbageCollectors.stream()
+        .filter(NotificationEmitter.class::isInstance)
+        .map(NotificationEmitter.class::cast)
+        .forEach(
+            emitter -> {
+              try {
+                emitter.removeNotificationListener(this);
+              } catch (ListenerNotFoundException ex) {
+                // the listener was not added
+              }
+            });
+    return snapshot;
+  }
+
+  private long heapUsed() {
+    return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+  }
+
+  private long collectionCount() {
+    return garbageCollectors.stream()
+        .mapToLong(GarbageCollectorMXBean::getCollectionCount)
+        .filter(count -> count > 0)
+        .sum();
+  }
+
+  private long collectionTime() {
+    return garbageCollectors.stream()
+        .mapToLong(GarbageCollectorMXBean::getCollectionTime)
+        .filter(time -> time > 0)
+        .sum();
+  }
+
+  record Snapshot(
+      long elapsedNanos, long allocatedBytes, long collectionCount, long collectionTimeMillis) {
+
+    double allocationRateMegabytesPerSecond() {
+      return allocatedBytes / (1024.0 * 1024.0) / (elapsedNanos / 1e9);
+    }
+
+    double collectionTimePercentage() {
+      return collectionTimeMillis * 100.0 / (elapsedNanos / 1e6);
+    }
+  }
+}
@@ -0,0 +1,329 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Drives an {@link OpenAI} instance with a mix of operations, against a {@link FakeOpenAIServer} or
+ * any other server, and reports the throughput, the latencies and the load on the JVM.
+ *
+ * <p>In an open loop, the requests are sent at a fixed rate, regardless of how long the previous
+ * requests took, and the response time of a request is measured from when it was meant to be sent.
+ * In a closed loop, a fixed number of workers send requests back to back, so a slow response
+ * delays the requests after it. The histograms of the closed loop are corrected for coordinated
+ * omission with the median latency as the expected interval between requests.
+ *
+ * <p>The {@link FakeOpenAIServer} runs in a JVM of its own by default, so that the allocation rate
+ * and the collections which are reported are the ones of the client only. With {@code
+ * --server=in-process} they include the ones of the server as well.
+ *
+ * <p>Run with {@code ./gradlew loadTest -PloadTestArgs="--mode=open --rate=500"}. See {@link
+ * Options} for all the options.
+ */
+public class LoadTest {
+
+  private static final double[] PERCENTILES = {50, 90, 99, 99.9, 100};
+
+  private final Options options;
+  private final OpenAI openAI;
+  private final ExecutorService executor;
+  private final Path fileToUpload;
+
+  private final Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+  private final AtomicInteger streamsInFlight = new AtomicInteger();
+  private final AtomicInteger maxStreamsInFlight = new AtomicInteger();
+
+  LoadTest(Options options, String baseUrl) {
+    this.options = options;
+    this.executor =
+        options.virtualThreads()
+            ? newVirtualThreadPerTaskExecutor()
+            : Executors.newFixedThreadPool(options.concurrency());
+    HttpClient.Builder httpClientBuilder =
+        HttpClient.newBuilder()
+            .version(options.http2() ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10));
+    if (options.virtualThreads()) {
+      httpClientBuilder.executor(executor);
+    }
+    this.openAI =
+        OpenAI.newBuilder("sk-load-test")
+            .baseUrl(baseUrl)
+            .httpClient(httpClientBuilder.build())
+            .build();
+    try {
+      this.fileToUpload = Files.createTempFile("load-test", ".jsonl");
+      Files.writeString(fileToUpload, "{\"custom_id\":\"request-1\"}\n".repeat(64));
+      fileToUpload.toFile().deleteOnExit();
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+    options.mix().keySet().forEach(operation -> stats.put(operation, new OperationStats()));
+  }
+
+  public static void main(String[] args) throws InterruptedException {
+    Options options = Options.parse(args);
+    String baseUrl;
+    Runnable stopServer;
+    if (options.baseUrl().isPresent()) {
+      baseUrl = options.baseUrl().get();
+      stopServer = () -> {};
+    } else if (options.inProcessServer()) {
+      FakeOpenAIServer server = FakeServerProcess.startServer(options);
+      baseUrl = server.baseUrl();
+      stopServer = server::close;
+    } else {
+      FakeServerProcess serverProcess = FakeServerProcess.start(options);
+      baseUrl = serverProcess.baseUrl();
+      stopServer = serverProcess::close;
+    }
+    try {
+      System.out.printf("Running %s against %s%n", options, baseUrl);
+      LoadTest loadTest = new LoadTest(options, baseUrl);
+      if (!options.warmup().isZero()) {
+        loadTest.run(options.warmup());
+        loadTest.stats.replaceAll((operation, stats) -> new OperationStats());
+        loadTest.maxStreamsInFlight.set(0);
+      }
+      JvmMetrics jvmMetrics = JvmMetrics.start();
+      loadTest.run(options.duration());
+      loadTest.report(jvmMetrics.stop());
+      loadTest.executor.shutdownNow();
+    } finally {
+      stopServer.run();
+    }
+  }
+
+  void run(Duration duration) throws InterruptedException {
+    if (options.openLoop()) {
+      runOpenLoop(duration);
+    } else {
+      runClosedLoop(duration);
+    }
+  }
+
+  private void runOpenLoop(Duration duration) throws InterruptedException {
+    long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / options.rate());
+    long start = System.nanoTime();
+    long end = start + duration.toNanos();
+    AtomicInteger inFlight = new AtomicInteger();
+    for (long intendedStart = start; intendedStart < end; intendedStart += intervalNanos) {
+      long delay = intendedStart - System.nanoTime();
+      if (delay > 0) {
+        LockSupport.parkNanos(delay);
+      }
+      long scheduledStart = intendedStart;
+      Operation operation = nextOperation();
+      inFlight.incrementAndGet();
+      executor.execute(
+          () -> {
+            try {
+              execute(operation, scheduledStart);
+            } finally {
+              inFlight.decrementAndGet();
+            }
+          });
+    }
+    awaitInFlight(inFlight);
+  }
+
+  private void runClosedLoop(Duration duration) throws InterruptedException {
+    long end = System.nanoTime() + duration.toNanos();
+    AtomicInteger inFlight = new AtomicInteger(options.concurrency());
+    for (int i = 0; i < options.concurrency(); i++) {
+      executor.execute(
+          () -> {
+            try {
+              while (System.nanoTime() < end && !java.lang.Thread.currentThread().isInterrupted()) {
+                execute(nextOperation(), System.nanoTime());
+              }
+            } finally {
+              inFlight.decrementAndGet();
+            }
+          });
+    }
+    awaitInFlight(inFlight);
+  }
+
+  private void awaitInFlight(AtomicInteger inFlight) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(1);
+    while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+      java.lang.Thread.sleep(10);
+    }
+    int remaining = inFlight.get();
+    if (remaining > 0) {
+      System.out.printf(
+          "warning: %d requests are still in flight after waiting for 1 minute and are missing"
+              + " from the results%n",
+          remaining);
+    }
+  }
+
+  private Operation nextOperation() {
+    int totalWeight = options.mix().values().stream().mapToInt(Integer::intValue).sum();
+    int value = ThreadLocalRandom.current().nextInt(totalWeight);
+    for (Map.Entry<Operation, Integer> entry : options.mix().entrySet()) {
+      value -= entry.getValue();
+      if (value < 0) {
+        return entry.getKey();
+      }
+    }
+    throw new IllegalStateException("The weights of the operations changed");
+  }
+
+  private void execute(Operation operation, long intendedStart) {
+    OperationStats operationStats = stats.get(operation);
+    long start = System.nanoTime();
+    try {
+      switch (operation) {
+        case CHAT -> openAI.chatClient().createChatCompletion(chatRequest(false));
+        case STREAM -> stream(operationStats, start);
+        case EMBEDDINGS ->
+            openAI
+                .embeddingsClient()
+                .createEmbeddings(
+                    EmbeddingsRequest.newBuilder()
+                        .input("The food was delicious and the waiter was friendly.")
+                        .model("text-embedding-3-small")
+                        .build());
+        case FILES -> {
+          FilesClient filesClient = openAI.filesClient();
+          File file =
+              filesClient.uploadFile(
+                  UploadFileRequest.newBuilder().file(fileToUpload).purpose("batch").build());
+          filesClient.retrieveFileContent(file.id());
+          filesClient.deleteFile(file.id());
+        }
+      }
+    } catch (RuntimeException ex) {
+      operationStats.recordError();
+      return;
+    }
+    long end = System.nanoTime();
+    operationStats.record(end - intendedStart, end - start);
+  }
+
+  private void stream(OperationStats operationStats, long start) {
+    int streams = streamsInFlight.incrementAndGet();
+    maxStreamsInFlight.accumulateAndGet(streams, Math::max);
+    try {
+      boolean[] firstToken = {true};
+      openAI
+          .chatClient()
+          .streamChatCompletion(chatRequest(true))
+          .forEach(
+              chunk -> {
+                if (firstToken[0]) {
+                  firstToken[0] = false;
+                  operationStats.recordTimeToFirstToken(System.nanoTime() - start);
+                }
+              });
+    } finally {
+      streamsInFlight.decrementAndGet();
+    }
+  }
+
+  private CreateChatCompletionRequest chatRequest(boolean stream) {
+    return CreateChatCompletionRequest.newBuilder()
+        .model("gpt-4o-mini")
+        .message(ChatMessage.userMessage("Explain coordinated omission in a few sentences."))
+        .maxTokens(options.maxTokens())
+        .stream(stream)
+        .build();
+  }
+
+  private void report(JvmMetrics.Snapshot jvmMetrics) {
+    double seconds = jvmMetrics.elapsedNanos() / 1e9;
+    long total = 0;
+    long errors = 0;
+    List<String> lines = new ArrayList<>();
+    lines.add(
+        String.format(
+            "%-11s %9s %9s %7s %10s %10s %10s %10s %10s",
+            "operation", "requests", "req/s", "errors", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms",
+            "max ms"));
+    for (Map.Entry<Operation, OperationStats> entry : stats.entrySet()) {
+      OperationStats operationStats = entry.getValue();
+      Histogram responseTimes = operationStats.responseTimes(options.openLoop());
+      total += responseTimes.getTotalCount();
+      errors += operationStats.errors();
+      String name = entry.getKey().name().toLowerCase(Locale.ROOT);
+      lines.add(row(name, responseTimes, seconds, operationStats.errors()));
+      if (options.openLoop()) {
+        lines.add(row("  service", operationStats.serviceTimes(), seconds, 0));
+      }
+      if (operationStats.timesToFirstToken().getTotalCount() > 0) {
+        lines.add(row("  ttft", operationStats.timesToFirstToken(), seconds, 0));
+      }
+    }
+    lines.forEach(System.out::println);
+    System.out.printf(
+        Locale.ROOT,
+        "throughput: %.1f req/s, errors: %d, max concurrent streams: %d%n",
+        total / seconds,
+        errors,
+        maxStreamsInFlight.get());
+    System.out.printf(
+        Locale.ROOT,
+        "allocation rate: %.1f MB/s, gc: %d collections, %d ms (%.2f%% of the time)%n",
+        jvmMetrics.allocationRateMegabytesPerSecond(),
+        jvmMetrics.collectionCount(),
+        jvmMetrics.collectionTimeMillis(),
+        jvmMetrics.collectionTimePercentage());
+    if (options.baseUrl().isEmpty() && options.inProcessServer()) {
+      System.out.println(
+          "note: the fake server ran in this JVM, so the allocations and the collections include"
+              + " the ones of the server");
+    }
+  }
+
+  private String row(String name, Histogram histogram, double seconds, long errors) {
+    StringBuilder row =
+        new StringBuilder(
+            String.format(
+                Locale.ROOT,
+                "%-11s %9d %9.1f %7d",
+                name,
+                histogram.getTotalCount(),
+                histogram.getTotalCount() / seconds,
+                errors));
+    for (double percentile : PERCENTILES) {
+      row.append(
+          String.format(
+              Locale.ROOT, " %10.2f", histogram.getValueAtPercentile(percentile) / 1000.0));
+    }
+    return row.toString();
+  }
+
+  private static ExecutorService newVirtualThreadPerTaskExecutor() {
+    try {
+      return (ExecutorService)
+          Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException ex) {
+      throw new IllegalStateException("Virtual threads require Java 21 or later", ex);
+    }
+  }
+
+  enum Operation {
+    CHAT,
+    STREAM,
+    EMBEDDINGS,
+    FILES
+  }
+}
@@ -0,0 +1,60 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/** The latencies, in microseconds, and the errors of one operation of a {@link LoadTest} */
+class OperationStats {
+
+  private static final int SIGNIFICANT_DIGITS = 3;
+
+  private final Histogram responseTimes = new ConcurrentHistogram(SIGNIFICANT_DIGITS);
+  private final Histogram serviceTimes = new ConcurrentHistogram(SIGNIFICANT_DIGITS);
+  private final Histogram timesToFirstToken = new ConcurrentHistogram(SIGNIFICANT_DIGITS);
+  private final LongAdder errors = new LongAdder();
+
+  /**
+   * @param responseTimeNanos the time from when the request was meant to be sent until the response
+   * @param serviceTimeNanos the time from when the request was actually sent until the response
+   */
+  void record(long responseTimeNanos, long serviceTimeNanos) {
+    responseTimes.recordValue(TimeUnit.NANOSECONDS.toMicros(responseTimeNanos));
+    serviceTimes.recordValue(TimeUnit.NANOSECONDS.toMicros(serviceTimeNanos));
+  }
+
+  void recordTimeToFirstToken(long nanos) {
+    timesToFirstToken.recordValue(TimeUnit.NANOSECONDS.toMicros(nanos));
+  }
+
+  void recordError() {
+    errors.increment();
+  }
+
+  /**
+   * @param openLoop if the requests were sent at a fixed rate, in which case the response times
+   *     already include the time the requests waited to be sent. Otherwise, the response times are
+   *     corrected for coordinated omission, as the requests which could not be sent while waiting
+   *     for a slow response would be missing.
+   */
+  Histogram responseTimes(boolean openLoop) {
+    if (openLoop || responseTimes.getTotalCount() == 0) {
+      return responseTimes;
+    }
+    return responseTimes.copyCorrectedForCoordinatedOmission(
+        responseTimes.getValueAtPercentile(50));
+  }
+
+  Histogram serviceTimes() {
+    return serviceTimes;
+  }
+
+  Histogram timesToFirstToken() {
+    return timesToFirstToken;
+  }
+
+  long errors() {
+    return errors.sum();
+  }
+}
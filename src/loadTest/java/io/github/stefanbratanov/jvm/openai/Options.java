@@ -0,0 +1,119 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import io.github.stefanbratanov.jvm.openai.LoadTest.Operation;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The options of a {@link LoadTest}, which are passed as {@code --name=value} arguments:
+ *
+ * <ul>
+ *   <li>{@code mode} - {@code open} to send requests at a fixed rate or {@code closed} to send them
+ *       back to back from a fixed number of workers. Defaults to {@code closed}.
+ *   <li>{@code rate} - the requests per second of the open loop. Defaults to 100.
+ *   <li>{@code concurrency} - the workers of the closed loop, or the platform threads which send
+ *       the requests of the open loop. Defaults to 64.
+ *   <li>{@code threads} - {@code platform} or {@code virtual}. With virtual threads, the open loop
+ *       sends every request on its own thread. Defaults to {@code platform}.
+ *   <li>{@code http} - {@code 1.1} or {@code 2}. Defaults to {@code 1.1}.
+ *   <li>{@code mix} - the weights of the operations, for example {@code
+ *       chat:4,stream:4,embeddings:2,files:1}, which is the default.
+ *   <li>{@code duration} and {@code warmup} - ISO-8601 durations or seconds. Default to 30 and 10
+ *       seconds.
+ *   <li>{@code max-tokens} - the max tokens of the chat completions. Defaults to 64.
+ *   <li>{@code base-url} - the server to send the requests to. Defaults to a {@link
+ *       FakeOpenAIServer} which is started for the load test.
+ *   <li>{@code server} - {@code process} to run the fake server in a JVM of its own or {@code
+ *       in-process} to run it in the JVM of the load test, whose allocations and collections then
+ *       include the ones of the server. Defaults to {@code process}.
+ *   <li>{@code server-latency} - the median latency of the fake server, in milliseconds. Defaults
+ *       to 50.
+ *   <li>{@code tokens-per-second} - the pace of the tokens of the fake server. Defaults to 100.
+ * </ul>
+ */
+record Options(
+    boolean openLoop,
+    double rate,
+    int concurrency,
+    boolean virtualThreads,
+    boolean http2,
+    Map<Operation, Integer> mix,
+    Duration duration,
+    Duration warmup,
+    int maxTokens,
+    Optional<String> baseUrl,
+    boolean inProcessServer,
+    Duration serverLatency,
+    double tokensPerSecond) {
+
+  static Options parse(String[] args) {
+    Map<String, String> values = new HashMap<>();
+    for (String arg : args) {
+      if (!arg.startsWith("--") || !arg.contains("=")) {
+        throw new IllegalArgumentException("Expected --name=value but got " + arg);
+      }
+      int separator = arg.indexOf('=');
+      values.put(arg.substring(2, separator), arg.substring(separator + 1));
+    }
+    Options options =
+        new Options(
+            oneOf(remove(values, "mode", "closed"), "open", "closed").equals("open"),
+            Double.parseDouble(remove(values, "rate", "100")),
+            Integer.parseInt(remove(values, "concurrency", "64")),
+            oneOf(remove(values, "threads", "platform"), "platform", "virtual").equals("virtual"),
+            oneOf(remove(values, "http", "1.1"), "1.1", "2").equals("2"),
+            parseMix(remove(values, "mix", "chat:4,stream:4,embeddings:2,files:1")),
+            parseDuration(remove(values, "duration", "30")),
+            parseDuration(remove(values, "warmup", "10")),
+            Integer.parseInt(remove(values, "max-tokens", "64")),
+            Optional.ofNullable(values.remove("base-url")),
+            oneOf(remove(values, "server", "process"), "process", "in-process")
+                .equals("in-process"),
+            Duration.ofMillis(Long.parseLong(remove(values, "server-latency", "50"))),
+            Double.parseDouble(remove(values, "tokens-per-second", "100")));
+    if (!values.isEmpty()) {
+      throw new IllegalArgumentException("Unknown options: " + values.keySet());
+    }
+    if (options.rate() <= 0 || options.concurrency() < 1 || options.mix().isEmpty()) {
+      throw new IllegalArgumentException("rate, concurrency and mix must be positive");
+    }
+    return options;
+  }
+
+  private static String remove(Map<String, String> values, String name, String defaultValue) {
+    String value = values.remove(name);
+    return value != null ? value : defaultValue;
+  }
+
+  private static String oneOf(String value, String... allowed) {
+    for (String candidate : allowed) {
+      if (candidate.equals(value)) {
+        return value;
+      }
+    }
+    throw new IllegalArgumentException(
+        "Expected one of " + String.join(", ", allowed) + " but got " + value);
+  }
+
+  private static Map<Operation, Integer> parseMix(String mix) {
+    Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+    for (String entry : mix.split(",")) {
+      String[] parts = entry.split(":");
+      int weight = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : 1;
+      if (weight > 0) {
+        weights.put(Operation.valueOf(parts[0].trim().toUpperCase(Locale.ROOT)), weight);
+      }
+    }
+    return weights;
+  }
+
+  private static Duration parseDuration(String duration) {
+    return duration.toUpperCase(Locale.ROOT).startsWith("P")
+        ? Duration.parse(duration)
+        : Duration.ofSeconds(Long.parseLong(duration));
+  }
+}
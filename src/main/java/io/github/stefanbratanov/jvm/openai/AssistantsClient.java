@@ -1,5 +1,6 @@
 package io.github.stefanbratanov.jvm.openai;
 
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
@@ -40,7 +41,7 @@ public final class AssistantsClient extends OpenAIAssistantsClient {
             .uri(baseUrl.resolve(Endpoint.ASSISTANTS.getPath()))
             .POST(createBodyPublisher(request))
             .build();
-    HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
     return deserializeResponse(httpResponse.body(), Assistant.class);
   }
 
@@ -55,7 +56,7 @@ public final class AssistantsClient extends OpenAIAssistantsClient {
             .uri(baseUrl.resolve(Endpoint.ASSISTANTS.getPath() + "/" + assistantId + FILES_SEGMENT))
             .POST(HttpRequest.BodyPublishers.ofString("{\"file_id\":\"" + fileId + "\"}"))
             .build();
-    HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
     return deserializeResponse(httpResponse.body(), AssistantFile.class);
   }
 
@@ -72,7 +73,7 @@ public final class AssistantsClient extends OpenAIAssistantsClient {
                     Endpoint.ASSISTANTS.getPath() + createQueryParameters(queryParameters)))
             .GET()
             .build();
-    HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
     return deserializeResponse(httpResponse.body(), PaginatedAssistants.class);
   }
 
@@ -97,7 +98,7 @@ public final class AssistantsClient extends OpenAIAssistantsClient {
                         + createQueryParameters(queryParameters)))
             .GET()
             .build();
-    HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
     return deserializeResponse(httpResponse.body(), PaginatedAssistantFiles.class);
   }
 
@@ -115,7 +116,7 @@ public final class AssistantsClient extends OpenAIAssistantsClient {
             .uri(baseUrl.resolve(Endpoint.ASSISTANTS.getPath() + "/" + assistantId))
             .GET()
             .build();
-    HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
     return deserializeResponse(httpResponse.body(), Assistant.class);
   }
 
@@ -137,7 +138,7 @@ public final class AssistantsClient extends OpenAIAssistantsClient {
                         + fileId))
             .GET()
             .build();
-    HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
     return deserializeResponse(httpResponse.body(), AssistantFile.class);
   }
 
@@ -152,7 +153,7 @@ public final class AssistantsClient extends OpenAIAssistantsClient {
             .uri(baseUrl.resolve(Endpoint.ASSISTANTS.getPath() + "/" + assistantId))
             .POST(createBodyPublisher(request))
             .build();
-    HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
     return deserializeResponse(httpResponse.body(), Assistant.class);
   }
 
@@ -167,7 +168,7 @@ public final class AssistantsClient extends OpenAIAssistantsClient {
             .uri(baseUrl.resolve(Endpoint.ASSISTANTS.getPath() + "/" + assistantId))
             .DELETE()
             .build();
-    HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
     return deserializeResponse(httpResponse.body(), DeletionStatus.class);
   }
 
@@ -189,7 +190,7 @@ public final class AssistantsClient extends OpenAIAssistantsClient {
                         + fileId))
             .DELETE()
             .build();
-    HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
     return deserializeResponse(httpResponse.body(), DeletionStatus.class);
   }
 }
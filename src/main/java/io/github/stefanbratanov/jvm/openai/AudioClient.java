@@ -1,17 +1,26 @@
 package io.github.stefanbratanov.jvm.openai;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.net.http.HttpResponse.BodyHandlers;
+import java.net.http.HttpResponse.BodySubscribers;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 /**
  * Turn audio into text or text into audio.
@@ -20,6 +29,15 @@ import java.util.concurrent.CompletableFuture;
  */
 public final class AudioClient extends OpenAIClient {
 
+  private static final Flow.Subscription EMPTY_SUBSCRIPTION =
+      new Flow.Subscription() {
+        @Override
+        public void request(long n) {}
+
+        @Override
+        public void cancel() {}
+      };
+
   private final URI baseUrl;
 
   AudioClient(
@@ -61,6 +79,64 @@ public final class AudioClient extends OpenAIClient {
         .thenApply(httpResponse -> null);
   }
 
+  /**
+   * Same as {@link #createSpeech(SpeechRequest, Path)} but the audio is written to the given stream
+   * as soon as it is received, so it can be played before the whole audio is generated. The stream
+   * is flushed after each received chunk and is not closed.
+   *
+   * @return metrics of receiving the audio, such as the time to the first byte
+   * @throws OpenAIException in case of API errors
+   */
+  public StreamMetrics createSpeech(SpeechRequest request, OutputStream output) {
+    return createSpeech(request, () -> new ByteChannelBodySubscriber(output));
+  }
+
+  /**
+   * Same as {@link #createSpeech(SpeechRequest, OutputStream)} but the audio is written to the
+   * given channel. The channel is not closed.
+   *
+   * @return metrics of receiving the audio, such as the time to the first byte
+   * @throws OpenAIException in case of API errors
+   */
+  public StreamMetrics createSpeech(SpeechRequest request, WritableByteChannel output) {
+    return createSpeech(request, () -> new ByteChannelBodySubscriber(output));
+  }
+
+  /**
+   * Generates audio from the input text and publishes it to the given subscriber as soon as it is
+   * received. The subscriber controls the flow of the audio by requesting more chunks when it is
+   * ready to process them, and can stop receiving audio by cancelling its subscription, in which
+   * case the returned future completes exceptionally with a {@link
+   * java.util.concurrent.CancellationException}.
+   *
+   * <p>The subscriber is subscribed once and always receives {@code onComplete} or {@code
+   * onError}, unless it cancels its subscription. When the request fails before any audio is
+   * received, for example with an {@link OpenAIException} in case of API errors, the subscriber
+   * receives an empty subscription followed by {@code onError} with the same failure as the
+   * returned future.
+   *
+   * @return metrics of receiving the audio, such as the time to the first byte
+   */
+  public CompletableFuture<StreamMetrics> createSpeechAsync(
+      SpeechRequest request, Flow.Subscriber<? super List<ByteBuffer>> subscriber) {
+    HttpRequest httpRequest = createSpeechPostRequest(request);
+    long startNanos = System.nanoTime();
+    AtomicReference<MeasuringBodySubscriber<Void>> bodySubscriber = new AtomicReference<>();
+    HttpResponse.BodyHandler<Void> bodyHandler =
+        measuringBodyHandler(
+            () -> BodySubscribers.fromSubscriber(subscriber), startNanos, bodySubscriber);
+    return sendHttpRequestAsync(httpRequest, withErrorBody(bodyHandler))
+        .whenComplete(
+            (httpResponse, ex) -> {
+              if (ex != null && bodySubscriber.get() == null) {
+                // the subscriber was never subscribed to a body, so nothing else would signal it
+                subscriber.onSubscribe(EMPTY_SUBSCRIPTION);
+                subscriber.onError(ex instanceof CompletionException ? ex.getCause() : ex);
+              }
+            })
+        .thenApply(httpResponse -> bodySubscriber.get().getMetrics());
+  }
+
   /**
    * Transcribes audio into the input language.
    *
@@ -103,6 +179,64 @@ public final class AudioClient extends OpenAIClient {
     return sendHttpRequestAsync(httpRequest, BodyHandlers.ofString()).thenApply(HttpResponse::body);
   }
 
+  /**
+   * Same as {@link #createTranscriptAsync(TranscriptionRequest)} but the audio is uploaded from
+   * memory instead of {@link TranscriptionRequest#file()}
+   */
+  CompletableFuture<String> createTranscriptAsync(
+      TranscriptionRequest request, String filename, String mimeType, byte[] audio) {
+    HttpRequest httpRequest =
+        createTranscriptPostRequest(
+            request,
+            MultipartBodyPublisher.newBuilder().bytesPart("file", filename, mimeType, audio));
+
+    return sendHttpRequestAsync(httpRequest, BodyHandlers.ofString()).thenApply(HttpResponse::body);
+  }
+
+  /**
+   * Same as {@link #createTranslationAsync(TranslationRequest)} but the audio is uploaded from
+   * memory instead of {@link TranslationRequest#file()}
+   */
+  CompletableFuture<String> createTranslationAsync(
+      TranslationRequest request, String filename, String mimeType, byte[] audio) {
+    HttpRequest httpRequest =
+        createTranslationPostRequest(
+            request,
+            MultipartBodyPublisher.newBuilder().bytesPart("file", filename, mimeType, audio));
+
+    return sendHttpRequestAsync(httpRequest, BodyHandlers.ofString()).thenApply(HttpResponse::body);
+  }
+
+  private StreamMetrics createSpeech(
+      SpeechRequest request, Supplier<HttpResponse.BodySubscriber<Long>> outputBodySubscriber) {
+    HttpRequest httpRequest = createSpeechPostRequest(request);
+    long startNanos = System.nanoTime();
+    AtomicReference<MeasuringBodySubscriber<Long>> bodySubscriber = new AtomicReference<>();
+    sendHttpRequest(
+        httpRequest,
+        withErrorBody(measuringBodyHandler(outputBodySubscriber, startNanos, bodySubscriber)));
+    return bodySubscriber.get().getMetrics();
+  }
+
+  /**
+   * @param bodySubscriber set to the subscriber of the body once the handler is applied. The
+   *     handler can only be applied once, since the audio would otherwise be written to the output
+   *     twice.
+   */
+  private <T> HttpResponse.BodyHandler<T> measuringBodyHandler(
+      Supplier<HttpResponse.BodySubscriber<T>> outputBodySubscriber,
+      long startNanos,
+      AtomicReference<MeasuringBodySubscriber<T>> bodySubscriber) {
+    return responseInfo -> {
+      MeasuringBodySubscriber<T> measuringBodySubscriber =
+          new MeasuringBodySubscriber<>(outputBodySubscriber.get(), startNanos);
+      if (!bodySubscriber.compareAndSet(null, measuringBodySubscriber)) {
+        throw new IllegalStateException("The audio can't be received more than once");
+      }
+      return measuringBodySubscriber;
+    };
+  }
+
   private void createParentDirectories(Path path) {
     try {
       Path parentPath = path.getParent();
@@ -122,10 +256,13 @@ public final class AudioClient extends OpenAIClient {
   }
 
   private HttpRequest createTranscriptPostRequest(TranscriptionRequest request) {
-    MultipartBodyPublisher.Builder multipartBodyPublisherBuilder =
-        MultipartBodyPublisher.newBuilder()
-            .filePart("file", request.file())
-            .textPart("model", request.model());
+    return createTranscriptPostRequest(
+        request, MultipartBodyPublisher.newBuilder().filePart("file", request.file()));
+  }
+
+  private HttpRequest createTranscriptPostRequest(
+      TranscriptionRequest request, MultipartBodyPublisher.Builder multipartBodyPublisherBuilder) {
+    multipartBodyPublisherBuilder.textPart("model", request.model());
     request
         .language()
         .ifPresent(language -> multipartBodyPublisherBuilder.textPart("language", language));
@@ -156,10 +293,13 @@ public final class AudioClient extends OpenAIClient {
   }
 
   private HttpRequest createTranslationPostRequest(TranslationRequest request) {
-    MultipartBodyPublisher.Builder multipartBodyPublisherBuilder =
-        MultipartBodyPublisher.newBuilder()
-            .filePart("file", request.file())
-            .textPart("model", request.model());
+    return createTranslationPostRequest(
+        request, MultipartBodyPublisher.newBuilder().filePart("file", request.file()));
+  }
+
+  private HttpRequest createTranslationPostRequest(
+      TranslationRequest request, MultipartBodyPublisher.Builder multipartBodyPublisherBuilder) {
+    multipartBodyPublisherBuilder.textPart("model", request.model());
     request.prompt().ifPresent(prompt -> multipartBodyPublisherBuilder.textPart("prompt", prompt));
     request
         .responseFormat()
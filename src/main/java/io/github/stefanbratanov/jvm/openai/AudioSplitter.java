@@ -0,0 +1,262 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Splits a WAV file containing PCM audio into segments, which are complete WAV files on their own.
+ * The segments are created using positional reads of the file, so the whole file is never read
+ * into memory. Cuts can be placed at fixed boundaries or at the quietest point before each
+ * boundary, so words are less likely to be cut in half.
+ */
+class AudioSplitter {
+
+  static final int WAV_HEADER_SIZE = 44;
+
+  private static final int PCM_FORMAT = 1;
+  private static final int EXTENSIBLE_FORMAT = 0xFFFE;
+  // the size of the "fmt " chunk of WAVE_FORMAT_EXTENSIBLE, which ends with the sub format
+  private static final int EXTENSIBLE_FMT_SIZE = 40;
+  private static final UUID PCM_SUB_FORMAT =
+      UUID.fromString("00000001-0000-0010-8000-00aa00389b71");
+  // the size of the windows which are compared when looking for silence
+  private static final Duration SILENCE_WINDOW = Duration.ofMillis(50);
+
+  private final FileChannel channel;
+  private final Format format;
+
+  AudioSplitter(FileChannel channel) throws IOException {
+    this.channel = channel;
+    this.format = readFormat();
+  }
+
+  record Format(
+      int channels,
+      int sampleRate,
+      int blockAlign,
+      int bitsPerSample,
+      long dataOffset,
+      long dataSize) {
+
+    long frames() {
+      return dataSize / blockAlign;
+    }
+
+    long toFrames(Duration duration) {
+      return duration.toNanos() * sampleRate / 1_000_000_000L;
+    }
+
+    double toSeconds(long frame) {
+      return (double) frame / sampleRate;
+    }
+  }
+
+  /**
+   * @param startFrame inclusive
+   * @param endFrame exclusive
+   */
+  record Segment(int index, long startFrame, long endFrame) {}
+
+  Format format() {
+    return format;
+  }
+
+  /**
+   * @param segmentFrames the maximum number of frames in a segment, including the overlap
+   * @param overlapFrames the number of frames at the start of each segment, which are also at the
+   *     end of the previous segment
+   * @param silenceSearchFrames if positive, each cut is placed at the quietest point within this
+   *     number of frames before the boundary, otherwise cuts are placed at fixed boundaries
+   */
+  List<Segment> split(long segmentFrames, long overlapFrames, long silenceSearchFrames)
+      throws IOException {
+    if (overlapFrames < 0 || segmentFrames <= 2 * overlapFrames) {
+      throw new IllegalArgumentException(
+          "The segment duration must be more than twice the overlap duration");
+    }
+    long totalFrames = format.frames();
+    List<Segment> segments = new ArrayList<>();
+    long start = 0;
+    while (true) {
+      long segmentStart = Math.max(0, start - overlapFrames);
+      long boundary = segmentStart + segmentFrames;
+      if (boundary >= totalFrames) {
+        segments.add(new Segment(segments.size(), segmentStart, totalFrames));
+        return segments;
+      }
+      long cut =
+          silenceSearchFrames > 0
+              ? findQuietestFrame(
+                  Math.max(start + overlapFrames + 1, boundary - silenceSearchFrames), boundary)
+              : boundary;
+      segments.add(new Segment(segments.size(), segmentStart, cut));
+      start = cut;
+    }
+  }
+
+  /**
+   * @return the segment as a complete WAV file
+   */
+  byte[] readSegment(Segment segment) throws IOException {
+    long dataSize = (segment.endFrame() - segment.startFrame()) * format.blockAlign();
+    ByteBuffer buffer =
+        ByteBuffer.allocate(Math.toIntExact(WAV_HEADER_SIZE + dataSize))
+            .order(ByteOrder.LITTLE_ENDIAN);
+    buffer
+        .put(toBytes("RIFF"))
+        .putInt((int) (WAV_HEADER_SIZE - 8 + dataSize))
+        .put(toBytes("WAVE"))
+        .put(toBytes("fmt "))
+        .putInt(16)
+        .putShort((short) PCM_FORMAT)
+        .putShort((short) format.channels())
+        .putInt(format.sampleRate())
+        .putInt(format.sampleRate() * format.blockAlign())
+        .putShort((short) format.blockAlign())
+        .putShort((short) format.bitsPerSample())
+        .put(toBytes("data"))
+        .putInt((int) dataSize);
+    readFully(buffer, format.dataOffset() + segment.startFrame() * format.blockAlign());
+    return buffer.array();
+  }
+
+  private long findQuietestFrame(long from, long to) throws IOException {
+    long windowFrames = Math.max(1, format.toFrames(SILENCE_WINDOW));
+    ByteBuffer window =
+        ByteBuffer.allocate(Math.toIntExact(windowFrames * format.blockAlign()))
+            .order(ByteOrder.LITTLE_ENDIAN);
+    long quietestFrame = to;
+    double lowestEnergy = Double.MAX_VALUE;
+    for (long frame = from; frame + windowFrames <= to; frame += windowFrames) {
+      window.clear();
+      readFully(window, format.dataOffset() + frame * format.blockAlign());
+      window.flip();
+      double energy = calculateEnergy(window);
+      // prefer later windows, so segments are as long as possible
+      if (energy <= lowestEnergy) {
+        lowestEnergy = energy;
+        quietestFrame = frame + windowFrames / 2;
+      }
+    }
+    return quietestFrame;
+  }
+
+  private double calculateEnergy(ByteBuffer samples) {
+    double sumOfSquares = 0;
+    int count = 0;
+    while (samples.hasRemaining()) {
+      double sample =
+          switch (format.bitsPerSample()) {
+            case 8 -> (samples.get() & 0xFF) - 128;
+            case 16 -> samples.getShort();
+            case 24 ->
+                (samples.get() & 0xFF) | ((samples.get() & 0xFF) << 8) | (samples.get() << 16);
+            default -> samples.getInt();
+          };
+      sumOfSquares += sample * sample;
+      count++;
+    }
+    return count == 0 ? 0 : sumOfSquares / count;
+  }
+
+  private Format readFormat() throws IOException {
+    long fileSize = channel.size();
+    ByteBuffer header = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+    readFully(header, 0);
+    header.flip();
+    String riffId = readId(header);
+    // skip the RIFF size, which is not reliable when the file was written as a stream
+    header.getInt();
+    if (!riffId.equals("RIFF") || !readId(header).equals("WAVE")) {
+      throw new IllegalArgumentException("Only WAV files can be split");
+    }
+    int audioFormat = -1;
+    int channels = 0;
+    int sampleRate = 0;
+    int blockAlign = 0;
+    int bitsPerSample = 0;
+    long position = 12;
+    ByteBuffer chunkHeader = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+    while (position + chunkHeader.capacity() <= fileSize) {
+      chunkHeader.clear();
+      readFully(chunkHeader, position);
+      chunkHeader.flip();
+      String chunkId = readId(chunkHeader);
+      long chunkSize = Integer.toUnsignedLong(chunkHeader.getInt());
+      long chunkDataOffset = position + chunkHeader.capacity();
+      if (chunkId.equals("fmt ")) {
+        ByteBuffer fmt = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(fmt, chunkDataOffset);
+        fmt.flip();
+        audioFormat = Short.toUnsignedInt(fmt.getShort());
+        channels = Short.toUnsignedInt(fmt.getShort());
+        sampleRate = fmt.getInt();
+        // skip the byte rate
+        fmt.getInt();
+        blockAlign = Short.toUnsignedInt(fmt.getShort());
+        bitsPerSample = Short.toUnsignedInt(fmt.getShort());
+        if (audioFormat == EXTENSIBLE_FORMAT && hasPcmSubFormat(chunkDataOffset, chunkSize)) {
+          audioFormat = PCM_FORMAT;
+        }
+      } else if (chunkId.equals("data")) {
+        // extensible formats other than PCM, such as IEEE float, can't be written as PCM
+        if (audioFormat != PCM_FORMAT) {
+          throw new IllegalArgumentException("Only WAV files containing PCM audio can be split");
+        }
+        if (bitsPerSample % 8 != 0 || bitsPerSample > 32 || blockAlign == 0) {
+          throw new IllegalArgumentException(
+              "Unsupported PCM format with " + bitsPerSample + " bits per sample");
+        }
+        // the size may be unknown when the file was written as a stream
+        long dataSize = Math.min(chunkSize, fileSize - chunkDataOffset);
+        return new Format(
+            channels, sampleRate, blockAlign, bitsPerSample, chunkDataOffset, dataSize);
+      }
+      // chunks are padded to an even size
+      position = chunkDataOffset + chunkSize + (chunkSize & 1);
+    }
+    throw new IllegalArgumentException("The WAV file doesn't contain any audio data");
+  }
+
+  private boolean hasPcmSubFormat(long fmtOffset, long fmtSize) throws IOException {
+    if (fmtSize < EXTENSIBLE_FMT_SIZE) {
+      return false;
+    }
+    // the sub format is a GUID, whose first three fields are little-endian
+    ByteBuffer subFormat = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+    readFully(subFormat, fmtOffset + EXTENSIBLE_FMT_SIZE - subFormat.capacity());
+    subFormat.flip();
+    long data1 = Integer.toUnsignedLong(subFormat.getInt());
+    long data2 = Short.toUnsignedLong(subFormat.getShort());
+    long data3 = Short.toUnsignedLong(subFormat.getShort());
+    long data4 = subFormat.order(ByteOrder.BIG_ENDIAN).getLong();
+    return new UUID(data1 << 32 | data2 << 16 | data3, data4).equals(PCM_SUB_FORMAT);
+  }
+
+  private void readFully(ByteBuffer buffer, long position) throws IOException {
+    long offset = position - buffer.position();
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, offset + buffer.position()) < 0) {
+        throw new EOFException("Unexpected end of the WAV file");
+      }
+    }
+  }
+
+  private String readId(ByteBuffer buffer) {
+    byte[] id = new byte[4];
+    buffer.get(id);
+    return new String(id, StandardCharsets.US_ASCII);
+  }
+
+  private byte[] toBytes(String id) {
+    return id.getBytes(StandardCharsets.US_ASCII);
+  }
+}
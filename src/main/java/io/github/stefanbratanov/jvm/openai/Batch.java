@@ -0,0 +1,47 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Represents a batch of requests which are processed asynchronously.
+ *
+ * @param endpoint The OpenAI API endpoint used by the batch.
+ * @param inputFileId The ID of the input file for the batch.
+ * @param completionWindow The time frame within which the batch should be processed.
+ * @param status The current status of the batch.
+ * @param outputFileId The ID of the file containing the outputs of successfully executed requests.
+ * @param errorFileId The ID of the file containing the outputs of requests with errors.
+ */
+public record Batch(
+    String id,
+    String endpoint,
+    Errors errors,
+    String inputFileId,
+    String completionWindow,
+    String status,
+    String outputFileId,
+    String errorFileId,
+    long createdAt,
+    Long inProgressAt,
+    Long expiresAt,
+    Long finalizingAt,
+    Long completedAt,
+    Long failedAt,
+    Long expiredAt,
+    Long cancellingAt,
+    Long cancelledAt,
+    RequestCounts requestCounts,
+    Map<String, String> metadata) {
+
+  public record Errors(List<Error> data) {
+
+    /**
+     * @param line The line number of the input file where the error occurred, if applicable.
+     */
+    public record Error(String code, String message, String param, Integer line) {}
+  }
+
+  /** The request counts for different statuses within the batch. */
+  public record RequestCounts(int total, int completed, int failed) {}
+}
@@ -0,0 +1,318 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Create large batches of API requests for asynchronous processing. The Batch API returns
+ * completions within 24 hours for a 50% discount.
+ *
+ * <p>Based on <a href="https://platform.openai.com/docs/api-reference/batch">Batch</a>
+ */
+public final class BatchClient extends OpenAIClient {
+
+  private static final String BATCH_PURPOSE = "batch";
+  private static final Set<String> TERMINAL_STATUSES =
+      Set.of("failed", "completed", "expired", "cancelled");
+
+  /** Input files up to this size are uploaded in a single request instead of in parts */
+  private static final long MAX_SINGLE_REQUEST_UPLOAD_SIZE = 16 * 1024 * 1024;
+
+  private final URI baseUrl;
+  private final FilesClient filesClient;
+  private final UploadsClient uploadsClient;
+
+  BatchClient(
+      URI baseUrl,
+      String apiKey,
+      Optional<String> organization,
+      HttpClient httpClient,
+      Optional<Duration> requestTimeout) {
+    super(apiKey, organization, httpClient, requestTimeout);
+    this.baseUrl = baseUrl;
+    this.filesClient = new FilesClient(baseUrl, apiKey, organization, httpClient, requestTimeout);
+    this.uploadsClient =
+        new UploadsClient(baseUrl, apiKey, organization, httpClient, requestTimeout);
+  }
+
+  /**
+   * Creates and executes a batch from an uploaded file of requests
+   *
+   * @throws OpenAIException in case of API errors
+   */
+  public Batch createBatch(CreateBatchRequest request) {
+    HttpRequest httpRequest =
+        newHttpRequestBuilder(Constants.CONTENT_TYPE_HEADER, Constants.JSON_MEDIA_TYPE)
+            .uri(baseUrl.resolve(Endpoint.BATCHES.getPath()))
+            .POST(createBodyPublisher(request))
+            .build();
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
+    return deserializeResponse(httpResponse.body(), Batch.class);
+  }
+
+  /**
+   * Retrieves a batch.
+   *
+   * @param batchId The ID of the batch to retrieve.
+   * @throws OpenAIException in case of API errors
+   */
+  public Batch retrieveBatch(String batchId) {
+    HttpRequest httpRequest =
+        newHttpRequestBuilder()
+            .uri(baseUrl.resolve(Endpoint.BATCHES.getPath() + "/" + batchId))
+            .GET()
+            .build();
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
+    return deserializeResponse(httpResponse.body(), Batch.class);
+  }
+
+  /**
+   * Cancels an in-progress batch. The batch will be in status {@code cancelling} for up to 10
+   * minutes, before changing to {@code cancelled}, where it will have partial results (if any)
+   * available in the output file.
+   *
+   * @param batchId The ID of the batch to cancel.
+   * @throws OpenAIException in case of API errors
+   */
+  public Batch cancelBatch(String batchId) {
+    HttpRequest httpRequest =
+        newHttpRequestBuilder()
+            .uri(baseUrl.resolve(Endpoint.BATCHES.getPath() + "/" + batchId + "/cancel"))
+            .POST(HttpRequest.BodyPublishers.noBody())
+            .build();
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
+    return deserializeResponse(httpResponse.body(), Batch.class);
+  }
+
+  /**
+   * List your organization's batches.
+   *
+   * @param after A cursor for use in pagination. {@code after} is an object ID that defines your
+   *     place in the list.
+   * @param limit A limit on the number of objects to be returned.
+   * @throws OpenAIException in case of API errors
+   */
+  public PaginatedBatches listBatches(Optional<String> after, Optional<Integer> limit) {
+    String queryParameters = createQueryParameters(Map.of("after", after, "limit", limit));
+    HttpRequest httpRequest =
+        newHttpRequestBuilder()
+            .uri(baseUrl.resolve(Endpoint.BATCHES.getPath() + queryParameters))
+            .GET()
+            .build();
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
+    return deserializeResponse(httpResponse.body(), PaginatedBatches.class);
+  }
+
+  public record PaginatedBatches(List<Batch> data, boolean hasMore) {
+    /**
+     * @return the id of the last batch or null if there are none
+     */
+    @JsonIgnore
+    public String getLastBatchId() {
+      return data.isEmpty() ? null : data.get(data.size() - 1).id();
+    }
+  }
+
+  /**
+   * Same as {@link #submitBatches(BatchInputWriter, Map)} without metadata
+   *
+   * @throws OpenAIException in case of API errors
+   */
+  public List<Batch> submitBatches(BatchInputWriter<?> input) {
+    return submitBatches(input, Map.of());
+  }
+
+  /**
+   * Uploads each input file of the closed writer and creates a batch from it. Files larger than 16
+   * MB are uploaded in parts, so they are never held in memory.
+   *
+   * @param metadata custom metadata which is attached to every batch
+   * @return the created batches in the order of the input files
+   * @throws IllegalStateException if the writer is not closed
+   * @throws OpenAIException in case of API errors
+   */
+  public List<Batch> submitBatches(BatchInputWriter<?> input, Map<String, String> metadata) {
+    if (!input.isClosed()) {
+      throw new IllegalStateException("The writer must be closed before submitting the batches");
+    }
+    List<Batch> batches = new ArrayList<>();
+    for (Path file : input.files()) {
+      String inputFileId = uploadInputFile(file);
+      CreateBatchRequest.Builder createBatchRequest =
+          CreateBatchRequest.newBuilder().inputFileId(inputFileId).endpoint(input.endpoint());
+      if (!metadata.isEmpty()) {
+        createBatchRequest.metadata(metadata);
+      }
+      batches.add(createBatch(createBatchRequest.build()));
+    }
+    return batches;
+  }
+
+  /**
+   * Polls the batch until it has completed, failed, expired or was cancelled
+   *
+   * @param pollInterval the interval between retrievals of the batch
+   * @return the batch in its final status
+   * @throws OpenAIException in case of API errors
+   */
+  public Batch awaitBatch(String batchId, Duration pollInterval) {
+    Batch batch = retrieveBatch(batchId);
+    while (!TERMINAL_STATUSES.contains(batch.status())) {
+      try {
+        // wakes up early when the request context is cancelled or its deadline passes
+        RequestContext.sleep(pollInterval);
+      } catch (InterruptedException ex) {
+        java.lang.Thread.currentThread().interrupt();
+        throw new RuntimeException("Operation was interrupted", ex);
+      }
+      batch = retrieveBatch(batchId);
+    }
+    return batch;
+  }
+
+  /**
+   * Same as {@link #awaitBatch(String, Duration)} for all the given batches, which are processed
+   * concurrently by the API, so the total wait is bound by the slowest batch.
+   *
+   * @return the batches in their final status in the given order
+   * @throws OpenAIException in case of API errors
+   */
+  public List<Batch> awaitBatches(List<Batch> batches, Duration pollInterval) {
+    return batches.stream().map(batch -> awaitBatch(batch.id(), pollInterval)).toList();
+  }
+
+  /**
+   * Same as {@link #streamBatchResults(Batch, Class)} for the results of all given batches, for
+   * example the batches created from the input files of a single {@link BatchInputWriter}.
+   *
+   * @throws OpenAIException in case of API errors
+   */
+  public <T> Stream<BatchResult<T>> streamBatchResults(List<Batch> batches, Class<T> responseType) {
+    return batches.stream().flatMap(batch -> streamBatchResults(batch, responseType));
+  }
+
+  /**
+   * Retrieves the output and error files of the batch and parses each result lazily while the
+   * returned {@link Stream} is consumed, so the files are never held in memory. The results are not
+   * in the order of the requests and should be matched to the requests using {@link
+   * BatchResult#customId()}. The stream should be closed after use in order to release the
+   * underlying connection.
+   *
+   * @param responseType the type to which the body of the successful responses is deserialized,
+   *     for example {@link ChatCompletion} or {@link Embeddings}
+   * @throws OpenAIException in case of API errors
+   */
+  public <T> Stream<BatchResult<T>> streamBatchResults(Batch batch, Class<T> responseType) {
+    return Stream.of(batch.outputFileId(), batch.errorFileId())
+        .filter(fileId -> fileId != null)
+        .flatMap(fileId -> streamResultsFile(fileId, responseType));
+  }
+
+  private String uploadInputFile(Path file) {
+    UploadFileRequest uploadFileRequest =
+        UploadFileRequest.newBuilder().file(file).purpose(BATCH_PURPOSE).build();
+    long size;
+    try {
+      size = Files.size(file);
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+    if (size <= MAX_SINGLE_REQUEST_UPLOAD_SIZE) {
+      return filesClient.uploadFile(uploadFileRequest).id();
+    }
+    return uploadsClient.uploadFileInParts(uploadFileRequest).file().id();
+  }
+
+  private <T> Stream<BatchResult<T>> streamResultsFile(String fileId, Class<T> responseType) {
+    InputStream content = filesClient.retrieveFileContentAsInputStream(fileId);
+    ObjectReader bodyReader = ObjectMapperSingleton.getReader(responseType);
+    try {
+      MappingIterator<ResultLine> lines =
+          ObjectMapperSingleton.getReader(ResultLine.class).readValues(content);
+      Stream<BatchResult<T>> results =
+          StreamSupport.stream(
+                  Spliterators.spliteratorUnknownSize(
+                      lines, Spliterator.ORDERED | Spliterator.NONNULL),
+                  false)
+              .map(line -> line.toBatchResult(bodyReader));
+      return results.onClose(
+          () -> {
+            try {
+              lines.close();
+            } catch (IOException ex) {
+              throw new UncheckedIOException(ex);
+            }
+          });
+    } catch (IOException ex) {
+      try {
+        content.close();
+      } catch (IOException closeEx) {
+        ex.addSuppressed(closeEx);
+      }
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  /**
+   * A line of an output or error file, where the body of the response is kept as tokens until it
+   * is known whether it is an error
+   */
+  record ResultLine(String id, String customId, Response response, BatchResult.Error error) {
+
+    record Response(int statusCode, String requestId, TokenBuffer body) {}
+
+    <T> BatchResult<T> toBatchResult(ObjectReader bodyReader) {
+      if (response == null) {
+        return new BatchResult<>(id, customId, Optional.empty(), Optional.ofNullable(error));
+      }
+      boolean successful = response.statusCode() >= 200 && response.statusCode() <= 299;
+      T body = null;
+      Optional<BatchResult.Error> responseError = Optional.empty();
+      if (response.body() != null) {
+        try (JsonParser parser = response.body().asParser()) {
+          if (successful) {
+            body = bodyReader.readValue(parser);
+          } else {
+            responseError =
+                Optional.ofNullable(
+                    ObjectMapperSingleton.getReader(ErrorBody.class)
+                        .<ErrorBody>readValue(parser)
+                        .error());
+          }
+        } catch (IOException ex) {
+          throw new UncheckedIOException(ex);
+        }
+      }
+      return new BatchResult<>(
+          id,
+          customId,
+          Optional.of(
+              new BatchResult.Response<>(response.statusCode(), response.requestId(), body)),
+          responseError.or(() -> Optional.ofNullable(error)));
+    }
+  }
+
+  record ErrorBody(BatchResult.Error error) {}
+}
@@ -0,0 +1,173 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Writes the requests of a batch to JSONL input files, one request per line, without holding the
+ * requests in memory. The requests are sharded into several files when they exceed the limits of a
+ * single batch, so that every file can be submitted as its own batch using {@link
+ * BatchClient#submitBatches(BatchInputWriter)}.
+ *
+ * <p>The custom ID of each request is used to match the results to the requests, including the
+ * results of the other files, so it is validated to be unique across all the files of the writer.
+ * Only the custom IDs are kept in memory for that.
+ *
+ * @param <T> the type of the requests, for example {@link CreateChatCompletionRequest}
+ */
+public final class BatchInputWriter<T> implements Closeable {
+
+  /** The maximum number of requests in a single batch */
+  public static final int MAX_REQUESTS_PER_BATCH = 50_000;
+
+  /** The maximum size of the input file of a single batch */
+  public static final long MAX_INPUT_FILE_SIZE = 200L * 1024 * 1024;
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final Path directory;
+  private final String endpoint;
+  private final int maxRequestsPerFile;
+  private final long maxFileSize;
+
+  private final ObjectWriter lineWriter = ObjectMapperSingleton.getWriter(RequestLine.class);
+  private final ByteArrayOutputStream lineBuffer = new ByteArrayOutputStream();
+
+  private final List<Path> files = new ArrayList<>();
+  private final Set<String> customIds = new HashSet<>();
+
+  private OutputStream output;
+  private int fileRequestCount;
+  private long fileSize;
+  private int requestCount = 0;
+  private boolean closed = false;
+
+  BatchInputWriter(Path directory, String endpoint, int maxRequestsPerFile, long maxFileSize) {
+    this.directory = directory;
+    this.endpoint = endpoint;
+    this.maxRequestsPerFile = maxRequestsPerFile;
+    this.maxFileSize = maxFileSize;
+  }
+
+  /**
+   * Creates a writer of chat completion requests, whose results are of type {@link ChatCompletion}
+   *
+   * @param directory the directory in which the input files will be created
+   */
+  public static BatchInputWriter<CreateChatCompletionRequest> forChatCompletions(Path directory) {
+    return new BatchInputWriter<>(
+        directory, "/v1/" + Endpoint.CHAT.getPath(), MAX_REQUESTS_PER_BATCH, MAX_INPUT_FILE_SIZE);
+  }
+
+  /**
+   * Creates a writer of embeddings requests, whose results are of type {@link Embeddings}
+   *
+   * @param directory the directory in which the input files will be created
+   */
+  public static BatchInputWriter<EmbeddingsRequest> forEmbeddings(Path directory) {
+    return new BatchInputWriter<>(
+        directory,
+        "/v1/" + Endpoint.EMBEDDINCS.getPath(),
+        MAX_REQUESTS_PER_BATCH,
+        MAX_INPUT_FILE_SIZE);
+  }
+
+  /**
+   * @param customId a developer-provided ID used to match the result to the request
+   * @throws IllegalArgumentException if the custom ID is already used in any of the files or the
+   *     request is too large for an input file
+   * @throws UncheckedIOException if the request can't be written
+   */
+  public void write(String customId, T request) {
+    if (closed) {
+      throw new IllegalStateException("The writer is closed");
+    }
+    if (customIds.contains(customId)) {
+      throw new IllegalArgumentException("Duplicate custom_id: " + customId);
+    }
+    lineBuffer.reset();
+    try {
+      lineWriter.writeValue(lineBuffer, new RequestLine(customId, "POST", endpoint, request));
+      lineBuffer.write('\n');
+      if (lineBuffer.size() > maxFileSize) {
+        throw new IllegalArgumentException(
+            "The request with custom_id " + customId + " is too large for an input file");
+      }
+      boolean fileIsFull =
+          output == null
+              || fileRequestCount == maxRequestsPerFile
+              || fileSize + lineBuffer.size() > maxFileSize;
+      if (fileIsFull) {
+        nextFile();
+      }
+      lineBuffer.writeTo(output);
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+    customIds.add(customId);
+    fileRequestCount++;
+    fileSize += lineBuffer.size();
+    requestCount++;
+  }
+
+  /**
+   * @return the number of requests written so far
+   */
+  public int requestCount() {
+    return requestCount;
+  }
+
+  /**
+   * @return the input files written so far, each of which is within the limits of a single batch
+   */
+  public List<Path> files() {
+    return List.copyOf(files);
+  }
+
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    if (output != null) {
+      try {
+        output.close();
+      } catch (IOException ex) {
+        throw new UncheckedIOException(ex);
+      }
+    }
+  }
+
+  boolean isClosed() {
+    return closed;
+  }
+
+  String endpoint() {
+    return endpoint;
+  }
+
+  private void nextFile() throws IOException {
+    if (output != null) {
+      output.close();
+    }
+    Path file = directory.resolve("batch-input-" + files.size() + ".jsonl");
+    output = new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE);
+    files.add(file);
+    fileRequestCount = 0;
+    fileSize = 0;
+  }
+
+  record RequestLine(String customId, String method, String url, Object body) {}
+}
@@ -0,0 +1,32 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.util.Optional;
+
+/**
+ * The output of a single request of a batch, which is read from the output or error file of the
+ * batch.
+ *
+ * @param customId The custom ID of the request, which can be used to match the output to the
+ *     request.
+ * @param response The response of the request, if the request was executed.
+ * @param error The error of the request, if the request failed. For a response with an
+ *     unsuccessful status code, this is the error from the body of the response.
+ * @param <T> the type of the response body, for example {@link ChatCompletion}
+ */
+public record BatchResult<T>(
+    String id, String customId, Optional<Response<T>> response, Optional<Error> error) {
+
+  /**
+   * @return true if the request has a response with a successful status code
+   */
+  public boolean isSuccessful() {
+    return response.map(r -> r.statusCode() >= 200 && r.statusCode() <= 299).orElse(false);
+  }
+
+  /**
+   * @param body The body of the response or null if the status code is not successful
+   */
+  public record Response<T>(int statusCode, String requestId, T body) {}
+
+  public record Error(String code, String message) {}
+}
@@ -0,0 +1,84 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * A {@link HttpResponse.BodySubscriber} which writes the received {@link ByteBuffer}s straight into
+ * a {@link WritableByteChannel} and completes with the number of bytes written. The channel is not
+ * closed when the body completes. When writing to an {@link OutputStream}, the stream is flushed
+ * after each received chunk, so the bytes can be consumed as soon as they arrive.
+ */
+class ByteChannelBodySubscriber implements HttpResponse.BodySubscriber<Long> {
+
+  private final CompletableFuture<Long> body = new CompletableFuture<>();
+
+  private final WritableByteChannel channel;
+  private final Flushable flushable;
+
+  private Flow.Subscription subscription;
+  private long bytesWritten = 0;
+
+  ByteChannelBodySubscriber(WritableByteChannel channel) {
+    this(channel, () -> {});
+  }
+
+  ByteChannelBodySubscriber(OutputStream outputStream) {
+    this(Channels.newChannel(outputStream), outputStream);
+  }
+
+  private ByteChannelBodySubscriber(WritableByteChannel channel, Flushable flushable) {
+    this.channel = channel;
+    this.flushable = flushable;
+  }
+
+  @Override
+  public CompletionStage<Long> getBody() {
+    return body;
+  }
+
+  @Override
+  public void onSubscribe(Flow.Subscription subscription) {
+    this.subscription = subscription;
+    subscription.request(1);
+  }
+
+  @Override
+  public void onNext(List<ByteBuffer> items) {
+    if (body.isDone()) {
+      return;
+    }
+    try {
+      for (ByteBuffer item : items) {
+        while (item.hasRemaining()) {
+          bytesWritten += channel.write(item);
+        }
+      }
+      flushable.flush();
+      subscription.request(1);
+    } catch (IOException ex) {
+      // complete before cancelling, so the failure is not reported as a cancellation
+      body.completeExceptionally(ex);
+      subscription.cancel();
+    }
+  }
+
+  @Override
+  public void onError(Throwable throwable) {
+    body.completeExceptionally(throwable);
+  }
+
+  @Override
+  public void onComplete() {
+    body.complete(bytesWritten);
+  }
+}
@@ -0,0 +1,52 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A {@link CompletableFuture} whose cancellation is propagated upstream, for example to abort the
+ * HTTP exchange from which it was derived. The dependent stages created with {@code thenApply},
+ * {@code thenCompose} and the like are also {@link CancellableFuture}s, so cancelling the future
+ * returned to the caller at the end of a chain aborts the exchange at its start, which is not the
+ * case for a plain {@link CompletableFuture}.
+ */
+class CancellableFuture<T> extends CompletableFuture<T> {
+
+  private final Runnable onCancel;
+
+  CancellableFuture(Runnable onCancel) {
+    this.onCancel = onCancel;
+  }
+
+  /**
+   * @return a future which completes with the result of the upstream future and cancels it when
+   *     cancelled
+   */
+  static <T> CancellableFuture<T> of(CompletableFuture<T> upstream) {
+    CancellableFuture<T> future = new CancellableFuture<>(() -> upstream.cancel(true));
+    upstream.whenComplete(
+        (result, ex) -> {
+          if (ex == null) {
+            future.complete(result);
+          } else {
+            future.completeExceptionally(ex);
+          }
+        });
+    return future;
+  }
+
+  @Override
+  public <U> CompletableFuture<U> newIncompleteFuture() {
+    return new CancellableFuture<>(onCancel);
+  }
+
+  /**
+   * Also cancels upstream when this future has already completed exceptionally, for example when
+   * it timed out, which has no effect when the upstream has completed as well.
+   */
+  @Override
+  public boolean cancel(boolean mayInterruptIfRunning) {
+    boolean cancelled = super.cancel(mayInterruptIfRunning);
+    onCancel.run();
+    return cancelled;
+  }
+}
@@ -0,0 +1,313 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A recording of the exchanges with the API, which can be set using {@link
+ * OpenAI.Builder#cassette(Cassette)}.
+ *
+ * <p>A cassette created with {@link #record(Path)} records the status, the headers and the body of
+ * every response, along with the times at which the headers and every chunk of the body arrived,
+ * so that the pacing of streams is kept. The recording is written to the file when the cassette is
+ * saved or closed. Neither the request headers, which include the API key, nor the cookies are
+ * recorded.
+ *
+ * <p>A cassette created with {@link #replay(Path, double)} answers the requests with the recorded
+ * responses, without sending them. The requests are matched by their method, path and query, and
+ * the responses to the same request are replayed in the order in which they were recorded, starting
+ * over when they run out. This allows benchmarking the client with realistic payloads and without
+ * network access or API keys.
+ */
+public final class Cassette implements AutoCloseable {
+
+  // "OAIC" followed by the version of the format
+  private static final int MAGIC = 0x4F414943;
+  private static final int VERSION = 1;
+
+  private static final Duration MAX_SAVE_WAIT = Duration.ofSeconds(10);
+
+  private final Path path;
+  private final boolean recording;
+  private final double replaySpeed;
+
+  private final Map<String, List<Exchange>> exchangesByRequest = new HashMap<>();
+
+  // the exchanges which were recorded, in the order in which the requests were sent
+  // guarded by "this"
+  private final NavigableMap<Long, Exchange> recordedExchanges = new TreeMap<>();
+  // guarded by "this"
+  private final Set<Long> pendingSequences = new HashSet<>();
+  // guarded by "this"
+  private long nextSequence = 0;
+  // guarded by "this"
+  private final Map<String, Integer> replayPositions = new HashMap<>();
+
+  private Cassette(Path path, boolean recording, double replaySpeed, List<Exchange> exchanges) {
+    this.path = path;
+    this.recording = recording;
+    this.replaySpeed = replaySpeed;
+    exchanges.forEach(
+        exchange ->
+            exchangesByRequest
+                .computeIfAbsent(exchange.request(), request -> new ArrayList<>())
+                .add(exchange));
+  }
+
+  /**
+   * @param path the file which the exchanges are written to when the cassette is saved
+   * @return a cassette which records the exchanges
+   */
+  public static Cassette record(Path path) {
+    return new Cassette(path, true, 1, List.of());
+  }
+
+  /**
+   * @param path a file which was written by a recording cassette
+   * @return a cassette which replays the exchanges at their original speed
+   */
+  public static Cassette replay(Path path) {
+    return replay(path, 1);
+  }
+
+  /**
+   * @param path a file which was written by a recording cassette
+   * @param speed how many times faster than the original the exchanges are replayed. Use {@link
+   *     Double#POSITIVE_INFINITY} to replay them without any delays.
+   * @return a cassette which replays the exchanges
+   */
+  public static Cassette replay(Path path, double speed) {
+    if (!(speed > 0)) {
+      throw new IllegalArgumentException("speed must be positive");
+    }
+    try {
+      return new Cassette(path, false, speed, read(path));
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  public Path path() {
+    return path;
+  }
+
+  public boolean isRecording() {
+    return recording;
+  }
+
+  public double replaySpeed() {
+    return replaySpeed;
+  }
+
+  /**
+   * @return the number of exchanges which were recorded
+   */
+  public synchronized int size() {
+    return recording
+        ? recordedExchanges.size()
+        : exchangesByRequest.values().stream().mapToInt(List::size).sum();
+  }
+
+  /**
+   * Writes the exchanges which were recorded so far to the file of the cassette. The responses
+   * which are still being received, such as streams whose last event was already read, are waited
+   * for, up to 10 seconds.
+   */
+  public void save() {
+    if (!recording) {
+      throw new IllegalStateException("Only a recording cassette can be saved");
+    }
+    List<Exchange> exchangesToSave;
+    synchronized (this) {
+      long deadline = System.nanoTime() + MAX_SAVE_WAIT.toNanos();
+      long remainingNanos = MAX_SAVE_WAIT.toNanos();
+      while (!pendingSequences.isEmpty() && remainingNanos > 0) {
+        try {
+          TimeUnit.NANOSECONDS.timedWait(this, remainingNanos);
+        } catch (InterruptedException ex) {
+          java.lang.Thread.currentThread().interrupt();
+          break;
+        }
+        remainingNanos = deadline - System.nanoTime();
+      }
+      exchangesToSave = List.copyOf(recordedExchanges.values());
+    }
+    try {
+      Path parent = path.toAbsolutePath().getParent();
+      Files.createDirectories(parent);
+      Path tempFile = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+      try {
+        write(tempFile, exchangesToSave);
+        Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING);
+      } finally {
+        Files.deleteIfExists(tempFile);
+      }
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  /** Saves the exchanges if the cassette is recording. */
+  @Override
+  public void close() {
+    if (recording) {
+      save();
+    }
+  }
+
+  /**
+   * @return the sequence number of a request which is about to be sent
+   */
+  synchronized long nextSequence() {
+    pendingSequences.add(nextSequence);
+    return nextSequence++;
+  }
+
+  synchronized void add(long sequence, Exchange exchange) {
+    if (pendingSequences.remove(sequence)) {
+      recordedExchanges.put(sequence, exchange);
+      notifyAll();
+    }
+  }
+
+  /** Called instead of {@link #add(long, Exchange)} if the response failed or was cancelled */
+  synchronized void discard(long sequence) {
+    if (pendingSequences.remove(sequence)) {
+      notifyAll();
+    }
+  }
+
+  /**
+   * @return the next recorded exchange for the request or an empty optional if the request wasn't
+   *     recorded
+   */
+  synchronized Optional<Exchange> next(HttpRequest request) {
+    String key = key(request);
+    List<Exchange> recorded = exchangesByRequest.get(key);
+    if (recorded == null) {
+      return Optional.empty();
+    }
+    int position = replayPositions.getOrDefault(key, 0);
+    replayPositions.put(key, (position + 1) % recorded.size());
+    return Optional.of(recorded.get(position));
+  }
+
+  static String key(HttpRequest request) {
+    URI uri = request.uri();
+    String target = uri.getRawPath();
+    if (uri.getRawQuery() != null) {
+      target += "?" + uri.getRawQuery();
+    }
+    return request.method() + " " + target;
+  }
+
+  private static List<Exchange> read(Path path) throws IOException {
+    try (DataInputStream in =
+        new DataInputStream(
+            new BufferedInputStream(new GZIPInputStream(Files.newInputStream(path))))) {
+      if (in.readInt() != MAGIC) {
+        throw new IOException(path + " is not a cassette");
+      }
+      int version = in.readInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported version of the cassette format: " + version);
+      }
+      int count = in.readInt();
+      List<Exchange> exchanges = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        String request = in.readUTF();
+        int statusCode = in.readInt();
+        long headersNanos = in.readLong();
+        int headerCount = in.readInt();
+        Map<String, List<String>> headers = new LinkedHashMap<>();
+        for (int j = 0; j < headerCount; j++) {
+          String name = in.readUTF();
+          int valueCount = in.readInt();
+          List<String> values = new ArrayList<>(valueCount);
+          for (int k = 0; k < valueCount; k++) {
+            values.add(in.readUTF());
+          }
+          headers.put(name, values);
+        }
+        int chunkCount = in.readInt();
+        List<Chunk> chunks = new ArrayList<>(chunkCount);
+        for (int j = 0; j < chunkCount; j++) {
+          long offsetNanos = in.readLong();
+          byte[] data = new byte[in.readInt()];
+          in.readFully(data);
+          chunks.add(new Chunk(offsetNanos, data));
+        }
+        exchanges.add(new Exchange(request, statusCode, headers, headersNanos, chunks));
+      }
+      return exchanges;
+    }
+  }
+
+  private static void write(Path path, List<Exchange> exchanges) throws IOException {
+    try (DataOutputStream out =
+        new DataOutputStream(
+            new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(path))))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(exchanges.size());
+      for (Exchange exchange : exchanges) {
+        out.writeUTF(exchange.request());
+        out.writeInt(exchange.statusCode());
+        out.writeLong(exchange.headersNanos());
+        out.writeInt(exchange.headers().size());
+        for (Map.Entry<String, List<String>> header : exchange.headers().entrySet()) {
+          out.writeUTF(header.getKey());
+          out.writeInt(header.getValue().size());
+          for (String value : header.getValue()) {
+            out.writeUTF(value);
+          }
+        }
+        out.writeInt(exchange.chunks().size());
+        for (Chunk chunk : exchange.chunks()) {
+          out.writeLong(chunk.offsetNanos());
+          out.writeInt(chunk.data().length);
+          out.write(chunk.data());
+        }
+      }
+    }
+  }
+
+  /**
+   * @param request the method, path and query of the request
+   * @param headersNanos the time from sending the request until the headers of the response arrived
+   */
+  record Exchange(
+      String request,
+      int statusCode,
+      Map<String, List<String>> headers,
+      long headersNanos,
+      List<Chunk> chunks) {}
+
+  /**
+   * @param offsetNanos the time from sending the request until the chunk arrived
+   */
+  record Chunk(long offsetNanos, byte[] data) {}
+}
@@ -1,10 +1,12 @@
 package io.github.stefanbratanov.jvm.openai;
 
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.stream.Stream;
@@ -37,7 +39,7 @@ public final class ChatClient extends OpenAIClient {
    */
   public ChatCompletion createChatCompletion(CreateChatCompletionRequest request) {
     HttpRequest httpRequest = createPostRequest(request);
-    HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
     return deserializeResponse(httpResponse.body(), ChatCompletion.class);
   }
 
@@ -74,7 +76,9 @@ public final class ChatClient extends OpenAIClient {
       CreateChatCompletionRequest request, StreamChatCompletionSubscriber subscriber) {
     validateStreamRequest(request);
     HttpRequest httpRequest = createPostRequest(request);
-    CompletableFuture.supplyAsync(() -> getStreamedResponses(httpRequest))
+    Optional<RequestContext> context = RequestContext.current();
+    CompletableFuture.supplyAsync(
+            () -> withContext(context, () -> getStreamedResponses(httpRequest)))
         .thenAccept(streamedResponses -> streamedResponses.forEach(subscriber::onChunk))
         .whenComplete(
             (result, ex) -> {
@@ -85,19 +89,69 @@ public final class ChatClient extends OpenAIClient {
             });
   }
 
+  /**
+   * Same as {@link #createChatCompletion(CreateChatCompletionRequest)} but uses a template, so only
+   * the given messages are serialized on each call.
+   *
+   * @param template the template containing the static messages, tools and parameters
+   * @param messages the messages to append to the static messages of the template
+   * @throws OpenAIException in case of API errors
+   */
+  public ChatCompletion createChatCompletion(
+      ChatCompletionRequestTemplate template, List<ChatMessage> messages) {
+    HttpRequest httpRequest = createPostRequest(template.createBodyPublisher(messages));
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
+    return deserializeResponse(httpResponse.body(), ChatCompletion.class);
+  }
+
+  /**
+   * Same as {@link #createChatCompletion(ChatCompletionRequestTemplate, List)} but returns a
+   * response in a {@link CompletableFuture}
+   */
+  public CompletableFuture<ChatCompletion> createChatCompletionAsync(
+      ChatCompletionRequestTemplate template, List<ChatMessage> messages) {
+    HttpRequest httpRequest = createPostRequest(template.createBodyPublisher(messages));
+    return sendHttpRequestAsync(httpRequest)
+        .thenApply(httpResponse -> deserializeResponse(httpResponse.body(), ChatCompletion.class));
+  }
+
+  /**
+   * Same as {@link #streamChatCompletion(CreateChatCompletionRequest)} but uses a template, so only
+   * the given messages are serialized on each call.
+   *
+   * @param template the template should be created from a request configured with {@link
+   *     CreateChatCompletionRequest.Builder#stream(boolean)} set to true
+   * @param messages the messages to append to the static messages of the template
+   * @throws OpenAIException in case of API errors
+   */
+  public Stream<ChatCompletionChunk> streamChatCompletion(
+      ChatCompletionRequestTemplate template, List<ChatMessage> messages) {
+    validateStreamRequest(template.isStream());
+    HttpRequest httpRequest = createPostRequest(template.createBodyPublisher(messages));
+    return getStreamedResponses(httpRequest);
+  }
+
   private HttpRequest createPostRequest(CreateChatCompletionRequest request) {
+    return createPostRequest(createBodyPublisher(request));
+  }
+
+  private HttpRequest createPostRequest(HttpRequest.BodyPublisher bodyPublisher) {
     return newHttpRequestBuilder(
             Constants.CONTENT_TYPE_HEADER,
             Constants.JSON_MEDIA_TYPE,
             Constants.ACCEPT_HEADER,
             Constants.JSON_MEDIA_TYPE)
         .uri(endpoint)
-        .POST(createBodyPublisher(request))
+        .POST(bodyPublisher)
         .build();
   }
 
   private void validateStreamRequest(CreateChatCompletionRequest request) {
-    if (!request.stream().orElse(false)) {
+    validateStreamRequest(request.stream().orElse(false));
+  }
+
+  private void validateStreamRequest(boolean stream) {
+    if (!stream) {
       throw new IllegalArgumentException("stream must be set to true when requesting a stream");
     }
   }
@@ -0,0 +1,102 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.UncheckedIOException;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A reusable template for chat completion requests which share the same leading messages (for
+ * example a large system prompt), tools and parameters. The static part of the request is
+ * serialized once when the template is created, so only the messages passed on each call need to
+ * be serialized.
+ *
+ * <p>Use with {@link ChatClient#createChatCompletion(ChatCompletionRequestTemplate, List)}
+ */
+public final class ChatCompletionRequestTemplate {
+
+  private static final ByteBuffer MESSAGES_SEPARATOR =
+      ByteBuffer.wrap(",".getBytes(StandardCharsets.UTF_8));
+
+  private final ObjectWriter messagesWriter;
+  private final boolean stream;
+  private final boolean hasStaticMessages;
+  private final ByteBuffer prefix;
+  private final ByteBuffer suffix;
+
+  private ChatCompletionRequestTemplate(CreateChatCompletionRequest request) {
+    ObjectMapper objectMapper = ObjectMapperSingleton.getInstance();
+    messagesWriter = objectMapper.writer();
+    stream = request.stream().orElse(false);
+    hasStaticMessages = !request.messages().isEmpty();
+    try {
+      byte[] staticMessages = messagesWriter.writeValueAsBytes(request.messages());
+      // {"messages":[<static messages>
+      prefix =
+          concat(
+              "{\"messages\":".getBytes(StandardCharsets.UTF_8),
+              staticMessages,
+              0,
+              staticMessages.length - 1);
+      ObjectNode requestNode = objectMapper.valueToTree(request);
+      requestNode.remove("messages");
+      byte[] otherFields = objectMapper.writeValueAsBytes(requestNode);
+      // ],<other fields>} or ]} if there are no other fields
+      suffix =
+          otherFields.length == 2
+              ? ByteBuffer.wrap("]}".getBytes(StandardCharsets.UTF_8))
+              : concat(
+                  "],".getBytes(StandardCharsets.UTF_8), otherFields, 1, otherFields.length - 1);
+    } catch (JsonProcessingException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  /**
+   * @param request the request containing the static messages, the tools and all the other
+   *     parameters which will be used on each call
+   */
+  public static ChatCompletionRequestTemplate of(CreateChatCompletionRequest request) {
+    return new ChatCompletionRequestTemplate(request);
+  }
+
+  boolean isStream() {
+    return stream;
+  }
+
+  /**
+   * Creates the body of a request consisting of the static messages of the template followed by
+   * the given messages. Only the given messages are serialized.
+   */
+  HttpRequest.BodyPublisher createBodyPublisher(List<ChatMessage> messages) {
+    List<ByteBuffer> segments = new ArrayList<>(4);
+    segments.add(prefix);
+    if (!messages.isEmpty()) {
+      try {
+        byte[] dynamicMessages = messagesWriter.writeValueAsBytes(messages);
+        if (hasStaticMessages) {
+          segments.add(MESSAGES_SEPARATOR);
+        }
+        // skip the enclosing brackets of the array
+        segments.add(ByteBuffer.wrap(dynamicMessages, 1, dynamicMessages.length - 2));
+      } catch (JsonProcessingException ex) {
+        throw new UncheckedIOException(ex);
+      }
+    }
+    segments.add(suffix);
+    return new SegmentedBodyPublisher(segments);
+  }
+
+  private static ByteBuffer concat(byte[] first, byte[] second, int offset, int length) {
+    byte[] result = new byte[first.length + length];
+    System.arraycopy(first, 0, result, 0, first.length);
+    System.arraycopy(second, offset, result, first.length, length);
+    return ByteBuffer.wrap(result);
+  }
+}
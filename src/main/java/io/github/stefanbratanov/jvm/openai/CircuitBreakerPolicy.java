@@ -0,0 +1,189 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * A policy for the circuit breakers, which can be set using {@link
+ * OpenAI.Builder#circuitBreakerPolicy(CircuitBreakerPolicy)}. Every endpoint, for example chat
+ * completions or image generations, has its own circuit breaker, so that a failing endpoint doesn't
+ * affect the others.
+ *
+ * <p>A circuit breaker is closed while the rate of failed or slow calls over the most recent calls
+ * is below the thresholds. Failed calls are the ones which fail with an {@link
+ * java.io.IOException} or a response with status 5xx. Once a threshold is reached, the circuit
+ * opens and requests to the endpoint fail fast with a {@link RequestRejectedException}. After the
+ * open duration, the circuit is half-open and lets a few trial calls through, which either close
+ * the circuit or open it again.
+ */
+public final class CircuitBreakerPolicy {
+
+  private final double failureRateThreshold;
+  private final double slowCallRateThreshold;
+  private final Optional<Duration> slowCallDuration;
+  private final int slidingWindowSize;
+  private final int minimumNumberOfCalls;
+  private final Duration openDuration;
+  private final int permittedCallsInHalfOpenState;
+
+  private CircuitBreakerPolicy(
+      double failureRateThreshold,
+      double slowCallRateThreshold,
+      Optional<Duration> slowCallDuration,
+      int slidingWindowSize,
+      int minimumNumberOfCalls,
+      Duration openDuration,
+      int permittedCallsInHalfOpenState) {
+    this.failureRateThreshold = failureRateThreshold;
+    this.slowCallRateThreshold = slowCallRateThreshold;
+    this.slowCallDuration = slowCallDuration;
+    this.slidingWindowSize = slidingWindowSize;
+    this.minimumNumberOfCalls = minimumNumberOfCalls;
+    this.openDuration = openDuration;
+    this.permittedCallsInHalfOpenState = permittedCallsInHalfOpenState;
+  }
+
+  public double failureRateThreshold() {
+    return failureRateThreshold;
+  }
+
+  public double slowCallRateThreshold() {
+    return slowCallRateThreshold;
+  }
+
+  public Optional<Duration> slowCallDuration() {
+    return slowCallDuration;
+  }
+
+  public int slidingWindowSize() {
+    return slidingWindowSize;
+  }
+
+  public int minimumNumberOfCalls() {
+    return minimumNumberOfCalls;
+  }
+
+  public Duration openDuration() {
+    return openDuration;
+  }
+
+  public int permittedCallsInHalfOpenState() {
+    return permittedCallsInHalfOpenState;
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  public static class Builder {
+
+    private static final double DEFAULT_FAILURE_RATE_THRESHOLD = 0.5;
+    private static final double DEFAULT_SLOW_CALL_RATE_THRESHOLD = 1;
+    private static final int DEFAULT_SLIDING_WINDOW_SIZE = 20;
+    private static final int DEFAULT_MINIMUM_NUMBER_OF_CALLS = 10;
+    private static final Duration DEFAULT_OPEN_DURATION = Duration.ofSeconds(30);
+    private static final int DEFAULT_PERMITTED_CALLS_IN_HALF_OPEN_STATE = 3;
+
+    private double failureRateThreshold = DEFAULT_FAILURE_RATE_THRESHOLD;
+    private double slowCallRateThreshold = DEFAULT_SLOW_CALL_RATE_THRESHOLD;
+    private Optional<Duration> slowCallDuration = Optional.empty();
+    private int slidingWindowSize = DEFAULT_SLIDING_WINDOW_SIZE;
+    private int minimumNumberOfCalls = DEFAULT_MINIMUM_NUMBER_OF_CALLS;
+    private Duration openDuration = DEFAULT_OPEN_DURATION;
+    private int permittedCallsInHalfOpenState = DEFAULT_PERMITTED_CALLS_IN_HALF_OPEN_STATE;
+
+    /**
+     * @param failureRateThreshold the rate of failed calls, between 0 (exclusive) and 1
+     *     (inclusive), at which the circuit opens. Defaults to 0.5.
+     */
+    public Builder failureRateThreshold(double failureRateThreshold) {
+      this.failureRateThreshold = validateRate(failureRateThreshold, "failureRateThreshold");
+      return this;
+    }
+
+    /**
+     * @param slowCallRateThreshold the rate of slow calls, between 0 (exclusive) and 1
+     *     (inclusive), at which the circuit opens. Defaults to 1, so the circuit only opens when
+     *     all calls are slow.
+     */
+    public Builder slowCallRateThreshold(double slowCallRateThreshold) {
+      this.slowCallRateThreshold = validateRate(slowCallRateThreshold, "slowCallRateThreshold");
+      return this;
+    }
+
+    /**
+     * @param slowCallDuration a duration after which a call is counted as slow. If none is set,
+     *     calls are never slow.
+     */
+    public Builder slowCallDuration(Duration slowCallDuration) {
+      this.slowCallDuration = Optional.of(slowCallDuration);
+      return this;
+    }
+
+    /**
+     * @param slidingWindowSize the number of most recent calls from which the rates are computed.
+     *     Defaults to 20.
+     */
+    public Builder slidingWindowSize(int slidingWindowSize) {
+      if (slidingWindowSize < 1) {
+        throw new IllegalArgumentException("slidingWindowSize must be at least 1");
+      }
+      this.slidingWindowSize = slidingWindowSize;
+      return this;
+    }
+
+    /**
+     * @param minimumNumberOfCalls the number of calls required before the rates are evaluated.
+     *     Defaults to 10.
+     */
+    public Builder minimumNumberOfCalls(int minimumNumberOfCalls) {
+      if (minimumNumberOfCalls < 1) {
+        throw new IllegalArgumentException("minimumNumberOfCalls must be at least 1");
+      }
+      this.minimumNumberOfCalls = minimumNumberOfCalls;
+      return this;
+    }
+
+    /**
+     * @param openDuration how long the circuit stays open before letting trial calls through.
+     *     Defaults to 30 seconds.
+     */
+    public Builder openDuration(Duration openDuration) {
+      this.openDuration = openDuration;
+      return this;
+    }
+
+    /**
+     * @param permittedCallsInHalfOpenState the number of trial calls let through when the circuit
+     *     is half-open. Defaults to 3.
+     */
+    public Builder permittedCallsInHalfOpenState(int permittedCallsInHalfOpenState) {
+      if (permittedCallsInHalfOpenState < 1) {
+        throw new IllegalArgumentException("permittedCallsInHalfOpenState must be at least 1");
+      }
+      this.permittedCallsInHalfOpenState = permittedCallsInHalfOpenState;
+      return this;
+    }
+
+    public CircuitBreakerPolicy build() {
+      if (minimumNumberOfCalls > slidingWindowSize) {
+        throw new IllegalStateException("minimumNumberOfCalls must not exceed slidingWindowSize");
+      }
+      return new CircuitBreakerPolicy(
+          failureRateThreshold,
+          slowCallRateThreshold,
+          slowCallDuration,
+          slidingWindowSize,
+          minimumNumberOfCalls,
+          openDuration,
+          permittedCallsInHalfOpenState);
+    }
+
+    private double validateRate(double rate, String name) {
+      if (rate <= 0 || rate > 1) {
+        throw new IllegalArgumentException(name + " must be greater than 0 and at most 1");
+      }
+      return rate;
+    }
+  }
+}
@@ -0,0 +1,153 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * A compact alternative to {@link Moderation.Result}, meant for storing many results. The flagged
+ * categories are kept as bits of a single {@code int} and the scores as a {@code double[]}, both
+ * indexed by the ordinal of {@link ModerationCategory}. A score which was missing in the response
+ * is {@link Double#NaN}.
+ *
+ * <p>It is deserialized straight from the JSON of a moderation result, without creating the
+ * intermediate {@link Moderation.Result.Categories} and {@link Moderation.Result.CategoryScores}.
+ */
+public final class CompactModerationResult {
+
+  static final int CATEGORY_COUNT = ModerationCategory.values().length;
+
+  private final boolean flagged;
+  private final int categoryFlags;
+  private final double[] scores;
+
+  CompactModerationResult(boolean flagged, int categoryFlags, double[] scores) {
+    this.flagged = flagged;
+    this.categoryFlags = categoryFlags;
+    this.scores = scores;
+  }
+
+  public static CompactModerationResult from(Moderation.Result result) {
+    Moderation.Result.Categories categories = result.categories();
+    boolean[] flags = {
+      categories.hate(),
+      categories.hateThreatening(),
+      categories.harassment(),
+      categories.harassmentThreatening(),
+      categories.selfHarm(),
+      categories.selfHarmIntent(),
+      categories.selfHarmInstructions(),
+      categories.sexual(),
+      categories.sexualMinors(),
+      categories.violence(),
+      categories.violenceGraphic()
+    };
+    Moderation.Result.CategoryScores categoryScores = result.categoryScores();
+    Double[] boxedScores = {
+      categoryScores.hate(),
+      categoryScores.hateThreatening(),
+      categoryScores.harassment(),
+      categoryScores.harassmentThreatening(),
+      categoryScores.selfHarm(),
+      categoryScores.selfHarmIntent(),
+      categoryScores.selfHarmInstructions(),
+      categoryScores.sexual(),
+      categoryScores.sexualMinors(),
+      categoryScores.violence(),
+      categoryScores.violenceGraphic()
+    };
+    int categoryFlags = 0;
+    double[] scores = new double[CATEGORY_COUNT];
+    for (int i = 0; i < CATEGORY_COUNT; i++) {
+      if (flags[i]) {
+        categoryFlags |= 1 << i;
+      }
+      scores[i] = boxedScores[i] == null ? Double.NaN : boxedScores[i];
+    }
+    return new CompactModerationResult(result.flagged(), categoryFlags, scores);
+  }
+
+  /**
+   * @return true if any of the categories is flagged
+   */
+  public boolean flagged() {
+    return flagged;
+  }
+
+  public boolean isFlagged(ModerationCategory category) {
+    return (categoryFlags & (1 << category.ordinal())) != 0;
+  }
+
+  /**
+   * @return the flagged categories as bits, where the bit at the ordinal of a {@link
+   *     ModerationCategory} is set if the category is flagged
+   */
+  public int categoryFlags() {
+    return categoryFlags;
+  }
+
+  public Set<ModerationCategory> flaggedCategories() {
+    Set<ModerationCategory> flaggedCategories = EnumSet.noneOf(ModerationCategory.class);
+    for (int flags = categoryFlags; flags != 0; flags &= flags - 1) {
+      flaggedCategories.add(ModerationCategory.fromIndex(Integer.numberOfTrailingZeros(flags)));
+    }
+    return flaggedCategories;
+  }
+
+  public double score(ModerationCategory category) {
+    return scores[category.ordinal()];
+  }
+
+  /**
+   * @return a copy of the scores indexed by the ordinal of {@link ModerationCategory}
+   */
+  public double[] scores() {
+    return scores.clone();
+  }
+
+  /**
+   * @return the category with the highest score
+   */
+  public ModerationCategory maxScoreCategory() {
+    int maxIndex = 0;
+    for (int i = 1; i < CATEGORY_COUNT; i++) {
+      if (scores[i] > scores[maxIndex] || Double.isNaN(scores[maxIndex])) {
+        maxIndex = i;
+      }
+    }
+    return ModerationCategory.fromIndex(maxIndex);
+  }
+
+  double scoreAt(int index) {
+    return scores[index];
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof CompactModerationResult other)) {
+      return false;
+    }
+    return flagged == other.flagged
+        && categoryFlags == other.categoryFlags
+        && Arrays.equals(scores, other.scores);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * (31 * Boolean.hashCode(flagged) + categoryFlags) + Arrays.hashCode(scores);
+  }
+
+  @Override
+  public String toString() {
+    return "CompactModerationResult[flagged="
+        + flagged
+        + ", flaggedCategories="
+        + flaggedCategories()
+        + ", scores="
+        + Arrays.toString(scores)
+        + "]";
+  }
+}
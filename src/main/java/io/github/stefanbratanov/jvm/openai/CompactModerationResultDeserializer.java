@@ -0,0 +1,81 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads a moderation result token by token straight into a {@link CompactModerationResult}. The
+ * category names are looked up in a map which is built once, and categories which are not known
+ * to {@link ModerationCategory} are skipped.
+ */
+class CompactModerationResultDeserializer extends StdDeserializer<CompactModerationResult> {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final Map<String, Integer> CATEGORY_INDICES = new HashMap<>();
+
+  static {
+    for (ModerationCategory category : ModerationCategory.values()) {
+      CATEGORY_INDICES.put(category.getName(), category.ordinal());
+    }
+  }
+
+  CompactModerationResultDeserializer() {
+    super(CompactModerationResult.class);
+  }
+
+  @Override
+  public CompactModerationResult deserialize(JsonParser parser, DeserializationContext context)
+      throws IOException {
+    if (!parser.isExpectedStartObjectToken()) {
+      return (CompactModerationResult) context.handleUnexpectedToken(handledType(), parser);
+    }
+    boolean flagged = false;
+    int categoryFlags = 0;
+    double[] scores = new double[CompactModerationResult.CATEGORY_COUNT];
+    Arrays.fill(scores, Double.NaN);
+    String fieldName;
+    while ((fieldName = parser.nextFieldName()) != null) {
+      JsonToken value = parser.nextToken();
+      switch (fieldName) {
+        case "flagged" -> flagged = value == JsonToken.VALUE_TRUE;
+        case "categories" -> {
+          if (value == JsonToken.START_OBJECT) {
+            String category;
+            while ((category = parser.nextFieldName()) != null) {
+              Integer index = CATEGORY_INDICES.get(category);
+              if (parser.nextToken() == JsonToken.VALUE_TRUE && index != null) {
+                categoryFlags |= 1 << index;
+              }
+              parser.skipChildren();
+            }
+          } else {
+            parser.skipChildren();
+          }
+        }
+        case "category_scores" -> {
+          if (value == JsonToken.START_OBJECT) {
+            String category;
+            while ((category = parser.nextFieldName()) != null) {
+              Integer index = CATEGORY_INDICES.get(category);
+              if (parser.nextToken().isNumeric() && index != null) {
+                scores[index] = parser.getDoubleValue();
+              }
+              parser.skipChildren();
+            }
+          } else {
+            parser.skipChildren();
+          }
+        }
+        default -> parser.skipChildren();
+      }
+    }
+    return new CompactModerationResult(flagged, categoryFlags, scores);
+  }
+}
@@ -0,0 +1,48 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+public record CompleteUploadRequest(List<String> partIds, Optional<String> md5) {
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  public static class Builder {
+
+    private final List<String> partIds = new ArrayList<>();
+
+    private Optional<String> md5 = Optional.empty();
+
+    /**
+     * @param partId Part ID to append to the ordered list of Part IDs.
+     */
+    public Builder partId(String partId) {
+      partIds.add(partId);
+      return this;
+    }
+
+    /**
+     * @param partIds Part IDs to append to the ordered list of Part IDs.
+     */
+    public Builder partIds(List<String> partIds) {
+      this.partIds.addAll(partIds);
+      return this;
+    }
+
+    /**
+     * @param md5 The optional md5 checksum for the file contents to verify if the bytes uploaded
+     *     matches what you expect.
+     */
+    public Builder md5(String md5) {
+      this.md5 = Optional.of(md5);
+      return this;
+    }
+
+    public CompleteUploadRequest build() {
+      return new CompleteUploadRequest(List.copyOf(partIds), md5);
+    }
+  }
+}
@@ -0,0 +1,229 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+import javax.net.ssl.SSLSession;
+
+/**
+ * Negotiates the encoding of the responses according to a {@link CompressionPolicy} and decodes
+ * them before they reach the body handlers, so the rest of the library only sees decoded bodies.
+ * The headers of a decoded response have no {@code Content-Encoding} and {@code Content-Length},
+ * which describe the encoded body. A body with several encodings is decoded in the reverse order
+ * of the encodings, while a body with an encoding which the policy doesn't support is passed on
+ * as it is, along with its headers. Also compresses the large JSON request bodies if the policy
+ * says so.
+ */
+class CompressingHttpClient extends DelegatingHttpClient {
+
+  private static final String ACCEPT_ENCODING_HEADER = "Accept-Encoding";
+  private static final String CONTENT_ENCODING_HEADER = "Content-Encoding";
+  private static final String CONTENT_LENGTH_HEADER = "Content-Length";
+  private static final String IDENTITY_ENCODING = "identity";
+
+  private static final long MAX_COMPRESSED_BODY_SIZE = 64 * 1024 * 1024;
+
+  private final CompressionPolicy compressionPolicy;
+  private final String acceptEncoding;
+
+  CompressingHttpClient(HttpClient delegate, CompressionPolicy compressionPolicy) {
+    super(delegate);
+    this.compressionPolicy = compressionPolicy;
+    this.acceptEncoding =
+        compressionPolicy.codecs().stream()
+            .map(ContentCodec::encoding)
+            .collect(Collectors.joining(", "));
+  }
+
+  @Override
+  public <T> HttpResponse<T> send(
+      HttpRequest request, HttpResponse.BodyHandler<T> responseBodyHandler)
+      throws IOException, InterruptedException {
+    return decoded(super.send(encodeRequest(request), decoding(responseBodyHandler)));
+  }
+
+  @Override
+  public <T> CompletableFuture<HttpResponse<T>> sendAsync(
+      HttpRequest request, HttpResponse.BodyHandler<T> responseBodyHandler) {
+    // cancelling the returned future still aborts the exchange
+    return CancellableFuture.of(
+            super.sendAsync(encodeRequest(request), decoding(responseBodyHandler)))
+        .thenApply(this::decoded);
+  }
+
+  private HttpRequest encodeRequest(HttpRequest request) {
+    // a request which negotiates the encoding itself is left as it is
+    if (request.headers().firstValue(ACCEPT_ENCODING_HEADER).isPresent()) {
+      return request;
+    }
+    HttpRequest.Builder requestBuilder =
+        HttpRequest.newBuilder(request, (name, value) -> true)
+            .header(ACCEPT_ENCODING_HEADER, acceptEncoding);
+    compress(request)
+        .ifPresent(
+            compressedBody ->
+                requestBuilder
+                    .header(CONTENT_ENCODING_HEADER, "gzip")
+                    .method(
+                        request.method(), HttpRequest.BodyPublishers.ofByteArray(compressedBody)));
+    return requestBuilder.build();
+  }
+
+  private Optional<byte[]> compress(HttpRequest request) {
+    Optional<Long> threshold = compressionPolicy.requestCompressionThreshold();
+    boolean isJson =
+        request
+            .headers()
+            .firstValue(Constants.CONTENT_TYPE_HEADER)
+            .filter(contentType -> contentType.startsWith(Constants.JSON_MEDIA_TYPE))
+            .isPresent();
+    if (threshold.isEmpty()
+        || !isJson
+        || request.headers().firstValue(CONTENT_ENCODING_HEADER).isPresent()
+        || request.bodyPublisher().map(HttpRequest.BodyPublisher::contentLength).orElse(0L)
+            < Math.max(threshold.get(), 1)) {
+      return Optional.empty();
+    }
+    return request
+        .bodyPublisher()
+        .flatMap(bodyPublisher -> InMemoryBody.read(bodyPublisher, MAX_COMPRESSED_BODY_SIZE))
+        .map(
+            body -> {
+              ByteArrayOutputStream compressedBody = new ByteArrayOutputStream(body.length / 4);
+              try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(compressedBody)) {
+                gzipOutputStream.write(body);
+              } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+              }
+              return compressedBody.toByteArray();
+            });
+  }
+
+  private <T> HttpResponse.BodyHandler<T> decoding(HttpResponse.BodyHandler<T> bodyHandler) {
+    return responseInfo -> {
+      Optional<List<ContentCodec>> codecs = getCodecs(responseInfo.headers());
+      if (codecs.isEmpty()) {
+        return bodyHandler.apply(responseInfo);
+      }
+      HttpResponse.BodySubscriber<T> bodySubscriber =
+          bodyHandler.apply(new DecodedResponseInfo(responseInfo));
+      // the last encoding which was applied is the first one to decode
+      for (ContentCodec codec : codecs.get()) {
+        bodySubscriber = new DecodingBodySubscriber<>(codec.newDecoder(), bodySubscriber);
+      }
+      return bodySubscriber;
+    };
+  }
+
+  private <T> HttpResponse<T> decoded(HttpResponse<T> httpResponse) {
+    if (getCodecs(httpResponse.headers()).isEmpty()) {
+      return httpResponse;
+    }
+    return new DecodedResponse<>(httpResponse);
+  }
+
+  /**
+   * @return the codecs of the encodings of the body in the order in which they were applied, or an
+   *     empty optional if the body is not encoded or one of its encodings is not supported
+   */
+  private Optional<List<ContentCodec>> getCodecs(HttpHeaders headers) {
+    List<ContentCodec> codecs = new ArrayList<>();
+    for (String value : headers.allValues(CONTENT_ENCODING_HEADER)) {
+      for (String encoding : value.split(",")) {
+        if (encoding.isBlank() || encoding.trim().equalsIgnoreCase(IDENTITY_ENCODING)) {
+          continue;
+        }
+        Optional<ContentCodec> codec =
+            compressionPolicy.codecs().stream()
+                .filter(candidate -> candidate.encoding().equalsIgnoreCase(encoding.trim()))
+                .findFirst();
+        if (codec.isEmpty()) {
+          return Optional.empty();
+        }
+        codecs.add(codec.get());
+      }
+    }
+    return codecs.isEmpty() ? Optional.empty() : Optional.of(codecs);
+  }
+
+  private static HttpHeaders decodedHeaders(HttpHeaders headers) {
+    return HttpHeaders.of(
+        headers.map(),
+        (name, value) ->
+            !name.equalsIgnoreCase(CONTENT_ENCODING_HEADER)
+                && !name.equalsIgnoreCase(CONTENT_LENGTH_HEADER));
+  }
+
+  private record DecodedResponseInfo(HttpResponse.ResponseInfo responseInfo)
+      implements HttpResponse.ResponseInfo {
+
+    @Override
+    public int statusCode() {
+      return responseInfo.statusCode();
+    }
+
+    @Override
+    public HttpHeaders headers() {
+      return decodedHeaders(responseInfo.headers());
+    }
+
+    @Override
+    public HttpClient.Version version() {
+      return responseInfo.version();
+    }
+  }
+
+  private record DecodedResponse<T>(HttpResponse<T> httpResponse) implements HttpResponse<T> {
+
+    @Override
+    public int statusCode() {
+      return httpResponse.statusCode();
+    }
+
+    @Override
+    public HttpRequest request() {
+      return httpResponse.request();
+    }
+
+    @Override
+    public Optional<HttpResponse<T>> previousResponse() {
+      return httpResponse.previousResponse();
+    }
+
+    @Override
+    public HttpHeaders headers() {
+      return decodedHeaders(httpResponse.headers());
+    }
+
+    @Override
+    public T body() {
+      return httpResponse.body();
+    }
+
+    @Override
+    public Optional<SSLSession> sslSession() {
+      return httpResponse.sslSession();
+    }
+
+    @Override
+    public URI uri() {
+      return httpResponse.uri();
+    }
+
+    @Override
+    public HttpClient.Version version() {
+      return httpResponse.version();
+    }
+  }
+}
@@ -0,0 +1,75 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A policy for compressing the bodies of the requests and the responses, which can be set using
+ * {@link OpenAI.Builder#compressionPolicy(CompressionPolicy)}.
+ *
+ * <p>The encodings of the codecs are sent in the {@code Accept-Encoding} header of every request,
+ * and a response which is encoded with one of them is decoded as it streams in. Large JSON
+ * responses, such as lists of embeddings, are then several times smaller on the wire. A response
+ * with any other encoding is returned as is.
+ *
+ * <p>JSON request bodies can also be gzip compressed, but only when the server accepts them, which
+ * is not the case for the OpenAI API at the time of writing.
+ */
+public final class CompressionPolicy {
+
+  private final List<ContentCodec> codecs;
+  private final Optional<Long> requestCompressionThreshold;
+
+  private CompressionPolicy(List<ContentCodec> codecs, Optional<Long> requestCompressionThreshold) {
+    this.codecs = codecs;
+    this.requestCompressionThreshold = requestCompressionThreshold;
+  }
+
+  public List<ContentCodec> codecs() {
+    return codecs;
+  }
+
+  public Optional<Long> requestCompressionThreshold() {
+    return requestCompressionThreshold;
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  public static class Builder {
+
+    private final List<ContentCodec> codecs = new ArrayList<>();
+
+    private Optional<Long> requestCompressionThreshold = Optional.empty();
+
+    /**
+     * @param codec a codec which the responses can be encoded with. The codecs are preferred in
+     *     the order in which they are added. If none is added, {@link ContentCodec#gzip()} is
+     *     used.
+     */
+    public Builder codec(ContentCodec codec) {
+      codecs.add(codec);
+      return this;
+    }
+
+    /**
+     * @param requestCompressionThreshold the size in bytes from which JSON request bodies are gzip
+     *     compressed. If none is set, request bodies are not compressed.
+     */
+    public Builder requestCompressionThreshold(long requestCompressionThreshold) {
+      if (requestCompressionThreshold < 0) {
+        throw new IllegalArgumentException("requestCompressionThreshold must not be negative");
+      }
+      this.requestCompressionThreshold = Optional.of(requestCompressionThreshold);
+      return this;
+    }
+
+    public CompressionPolicy build() {
+      return new CompressionPolicy(
+          codecs.isEmpty() ? List.of(ContentCodec.gzip()) : List.copyOf(codecs),
+          requestCompressionThreshold);
+    }
+  }
+}
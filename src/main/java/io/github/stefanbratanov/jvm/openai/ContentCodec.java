@@ -0,0 +1,66 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Decodes the response bodies which have a {@code Content-Encoding}. {@link #gzip()} and {@link
+ * #deflate()} are built in, while other encodings, such as {@code br} or {@code zstd}, can be
+ * backed by any compression library.
+ */
+public interface ContentCodec {
+
+  /**
+   * @return the name of the encoding, which is used in the {@code Accept-Encoding} and {@code
+   *     Content-Encoding} headers, for example "gzip"
+   */
+  String encoding();
+
+  /**
+   * @return a decoder for a single response body
+   */
+  Decoder newDecoder();
+
+  /**
+   * Decodes a body chunk by chunk as it arrives, so that the body is never buffered as a whole.
+   * Every chunk is passed in order on a single thread at a time.
+   */
+  interface Decoder {
+
+    /**
+     * @param input the next chunk of the encoded body
+     * @param output the list to which all the decoded bytes which can be produced from the input
+     *     received so far are added
+     * @throws IOException if the body is malformed
+     */
+    void decode(ByteBuffer input, List<ByteBuffer> output) throws IOException;
+
+    /**
+     * Called once the whole body was received
+     *
+     * @throws IOException if the body is truncated
+     */
+    void finish() throws IOException;
+
+    /**
+     * Called instead of {@link #finish()} when the body failed, couldn't be decoded or was
+     * cancelled, so that the decoder can release its resources, such as native memory
+     */
+    default void release() {}
+  }
+
+  /**
+   * @return a codec for the "gzip" encoding, which supports bodies of multiple gzip members
+   */
+  static ContentCodec gzip() {
+    return InflatingDecoder.GZIP;
+  }
+
+  /**
+   * @return a codec for the "deflate" encoding, which is zlib compressed data
+   */
+  static ContentCodec deflate() {
+    return InflatingDecoder.DEFLATE;
+  }
+}
@@ -0,0 +1,197 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Keeps a rolling window of the messages of a chat conversation within a token budget. Pinned
+ * messages (usually system messages) are always kept at the start of the window. When the budget is
+ * exceeded, the oldest messages are either dropped or replaced by a summary, depending on how the
+ * window has been configured.
+ *
+ * <p>Tokens are counted once per message when it is added, so the cost of a turn doesn't grow with
+ * the length of the conversation. Use {@link #messages()} to get the messages for a {@link
+ * CreateChatCompletionRequest}.
+ *
+ * <p>This class is not thread-safe.
+ */
+public final class ConversationWindow {
+
+  private final int tokenBudget;
+  private final TokenCounter tokenCounter;
+  private final Optional<Function<List<ChatMessage>, ChatMessage>> summarizer;
+
+  private final List<CountedMessage> pinnedMessages = new ArrayList<>();
+  private final Deque<CountedMessage> messages = new ArrayDeque<>();
+
+  private Optional<CountedMessage> summary = Optional.empty();
+  private int tokenCount = 0;
+  private List<ChatMessage> snapshot = List.of();
+
+  private ConversationWindow(
+      int tokenBudget,
+      TokenCounter tokenCounter,
+      Optional<Function<List<ChatMessage>, ChatMessage>> summarizer) {
+    this.tokenBudget = tokenBudget;
+    this.tokenCounter = tokenCounter;
+    this.summarizer = summarizer;
+  }
+
+  /**
+   * Pins a message at the start of the window. Pinned messages are never dropped or summarized.
+   *
+   * @param message usually a {@link ChatMessage.SystemMessage}
+   */
+  public ConversationWindow pin(ChatMessage message) {
+    CountedMessage countedMessage = count(message);
+    pinnedMessages.add(countedMessage);
+    tokenCount += countedMessage.tokens();
+    trim();
+    return this;
+  }
+
+  /**
+   * Appends a message to the conversation. If the token budget is exceeded, the oldest messages are
+   * dropped or summarized. The message which is added is always kept, unless it is a {@link
+   * ChatMessage.ToolMessage} whose assistant message had to be dropped or summarized.
+   */
+  public ConversationWindow add(ChatMessage message) {
+    CountedMessage countedMessage = count(message);
+    messages.addLast(countedMessage);
+    tokenCount += countedMessage.tokens();
+    trim();
+    return this;
+  }
+
+  /**
+   * @return the pinned messages, followed by the summary of the dropped messages (if summarizing
+   *     is configured) and the most recent messages of the conversation
+   */
+  public List<ChatMessage> messages() {
+    if (snapshot == null) {
+      List<ChatMessage> windowMessages =
+          new ArrayList<>(pinnedMessages.size() + messages.size() + 1);
+      pinnedMessages.forEach(pinnedMessage -> windowMessages.add(pinnedMessage.message()));
+      summary.ifPresent(summaryMessage -> windowMessages.add(summaryMessage.message()));
+      messages.forEach(message -> windowMessages.add(message.message()));
+      snapshot = List.copyOf(windowMessages);
+    }
+    return snapshot;
+  }
+
+  /**
+   * @return the number of tokens of all the messages in the window
+   */
+  public int tokenCount() {
+    return tokenCount;
+  }
+
+  /**
+   * @return the maximum number of tokens the window can hold
+   */
+  public int tokenBudget() {
+    return tokenBudget;
+  }
+
+  private CountedMessage count(ChatMessage message) {
+    snapshot = null;
+    return new CountedMessage(message, tokenCounter.countTokens(message));
+  }
+
+  private void trim() {
+    while (tokenCount > tokenBudget && messages.size() > 1) {
+      List<ChatMessage> evictedMessages = new ArrayList<>();
+      while (tokenCount > tokenBudget && messages.size() > 1) {
+        evict(evictedMessages);
+        // tool messages can't be sent without the assistant message which requested them, even
+        // when they are the last messages left
+        while (!messages.isEmpty()
+            && messages.peekFirst().message() instanceof ChatMessage.ToolMessage) {
+          evict(evictedMessages);
+        }
+      }
+      summarizer.ifPresent(
+          summarize -> {
+            List<ChatMessage> messagesToSummarize = new ArrayList<>(evictedMessages.size() + 1);
+            summary.ifPresent(
+                previousSummary -> {
+                  messagesToSummarize.add(previousSummary.message());
+                  tokenCount -= previousSummary.tokens();
+                });
+            messagesToSummarize.addAll(evictedMessages);
+            CountedMessage newSummary = count(summarize.apply(messagesToSummarize));
+            summary = Optional.of(newSummary);
+            tokenCount += newSummary.tokens();
+          });
+    }
+  }
+
+  private void evict(List<ChatMessage> evictedMessages) {
+    CountedMessage evictedMessage = messages.removeFirst();
+    tokenCount -= evictedMessage.tokens();
+    evictedMessages.add(evictedMessage.message());
+    snapshot = null;
+  }
+
+  private record CountedMessage(ChatMessage message, int tokens) {}
+
+  /**
+   * @param tokenBudget the maximum number of tokens of the messages in the window
+   */
+  public static Builder newBuilder(int tokenBudget) {
+    return new Builder(tokenBudget);
+  }
+
+  public static class Builder {
+
+    private final int tokenBudget;
+
+    private TokenCounter tokenCounter = TokenCounter.approximate();
+    private Optional<Function<List<ChatMessage>, ChatMessage>> summarizer = Optional.empty();
+
+    public Builder(int tokenBudget) {
+      if (tokenBudget <= 0) {
+        throw new IllegalArgumentException("tokenBudget must be positive");
+      }
+      this.tokenBudget = tokenBudget;
+    }
+
+    /**
+     * @param tokenCounter the {@link TokenCounter} used to count the tokens of each message. If
+     *     none is set, {@link TokenCounter#approximate()} will be used.
+     */
+    public Builder tokenCounter(TokenCounter tokenCounter) {
+      this.tokenCounter = tokenCounter;
+      return this;
+    }
+
+    /**
+     * The oldest messages will be dropped when the token budget is exceeded. This is the default.
+     */
+    public Builder dropOldest() {
+      summarizer = Optional.empty();
+      return this;
+    }
+
+    /**
+     * The oldest messages will be replaced by a summary when the token budget is exceeded.
+     *
+     * @param summarizer a function which receives the previous summary (if any) followed by the
+     *     messages leaving the window and returns a message summarizing them. It could for example
+     *     call {@link ChatClient#createChatCompletion(CreateChatCompletionRequest)} and return the
+     *     result as a {@link ChatMessage.SystemMessage}.
+     */
+    public Builder summarizeOldest(Function<List<ChatMessage>, ChatMessage> summarizer) {
+      this.summarizer = Optional.of(summarizer);
+      return this;
+    }
+
+    public ConversationWindow build() {
+      return new ConversationWindow(tokenBudget, tokenCounter, summarizer);
+    }
+  }
+}
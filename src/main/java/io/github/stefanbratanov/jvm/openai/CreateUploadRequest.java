@@ -0,0 +1,53 @@
+package io.github.stefanbratanov.jvm.openai;
+
+public record CreateUploadRequest(String filename, String purpose, long bytes, String mimeType) {
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  public static class Builder {
+
+    private String filename;
+    private String purpose;
+    private long bytes;
+    private String mimeType;
+
+    /**
+     * @param filename The name of the file to upload.
+     */
+    public Builder filename(String filename) {
+      this.filename = filename;
+      return this;
+    }
+
+    /**
+     * @param purpose The intended purpose of the uploaded file.
+     */
+    public Builder purpose(String purpose) {
+      this.purpose = purpose;
+      return this;
+    }
+
+    /**
+     * @param bytes The number of bytes in the file you are uploading.
+     */
+    public Builder bytes(long bytes) {
+      this.bytes = bytes;
+      return this;
+    }
+
+    /**
+     * @param mimeType The MIME type of the file. This must fall within the supported MIME types for
+     *     your file purpose.
+     */
+    public Builder mimeType(String mimeType) {
+      this.mimeType = mimeType;
+      return this;
+    }
+
+    public CreateUploadRequest build() {
+      return new CreateUploadRequest(filename, purpose, bytes, mimeType);
+    }
+  }
+}
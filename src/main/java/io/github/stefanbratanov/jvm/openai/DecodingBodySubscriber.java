@@ -0,0 +1,128 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * A {@link HttpResponse.BodySubscriber} which decodes an encoded body with a {@link
+ * ContentCodec.Decoder} and passes the decoded bytes to another subscriber. Every chunk is decoded
+ * as soon as it arrives, so a streamed body, such as server-sent events, is still streamed.
+ *
+ * <p>Every received item is passed on as one item, so the demand of the delegate is passed through
+ * unchanged. When an item doesn't decode to any bytes yet, another item is requested instead.
+ *
+ * <p>The decoder is released when the body fails, can't be decoded or is cancelled by the delegate.
+ */
+class DecodingBodySubscriber<T> implements HttpResponse.BodySubscriber<T> {
+
+  private final ContentCodec.Decoder decoder;
+  private final HttpResponse.BodySubscriber<T> delegate;
+
+  private Flow.Subscription subscription;
+  private volatile boolean failed = false;
+  // guarded by "this"
+  private boolean released = false;
+
+  DecodingBodySubscriber(ContentCodec.Decoder decoder, HttpResponse.BodySubscriber<T> delegate) {
+    this.decoder = decoder;
+    this.delegate = delegate;
+  }
+
+  @Override
+  public CompletionStage<T> getBody() {
+    return delegate.getBody();
+  }
+
+  @Override
+  public void onSubscribe(Flow.Subscription subscription) {
+    this.subscription = subscription;
+    delegate.onSubscribe(
+        new Flow.Subscription() {
+          @Override
+          public void request(long n) {
+            subscription.request(n);
+          }
+
+          @Override
+          public void cancel() {
+            subscription.cancel();
+            release();
+          }
+        });
+  }
+
+  @Override
+  public void onNext(List<ByteBuffer> items) {
+    if (failed) {
+      return;
+    }
+    List<ByteBuffer> decoded = new ArrayList<>();
+    try {
+      // the delegate may cancel the body from another thread, which releases the decoder
+      synchronized (this) {
+        if (released) {
+          return;
+        }
+        for (ByteBuffer item : items) {
+          decoder.decode(item, decoded);
+        }
+      }
+    } catch (IOException ex) {
+      fail(ex);
+      return;
+    }
+    if (decoded.isEmpty()) {
+      subscription.request(1);
+    } else {
+      delegate.onNext(decoded);
+    }
+  }
+
+  @Override
+  public void onError(Throwable throwable) {
+    if (!failed) {
+      failed = true;
+      release();
+      delegate.onError(throwable);
+    }
+  }
+
+  @Override
+  public void onComplete() {
+    if (failed) {
+      return;
+    }
+    try {
+      synchronized (this) {
+        if (released) {
+          return;
+        }
+        released = true;
+        decoder.finish();
+      }
+    } catch (IOException ex) {
+      fail(ex);
+      return;
+    }
+    delegate.onComplete();
+  }
+
+  private void fail(IOException ex) {
+    failed = true;
+    subscription.cancel();
+    release();
+    delegate.onError(ex);
+  }
+
+  private synchronized void release() {
+    if (!released) {
+      released = true;
+      decoder.release();
+    }
+  }
+}
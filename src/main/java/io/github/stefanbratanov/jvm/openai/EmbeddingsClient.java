@@ -1,5 +1,6 @@
 package io.github.stefanbratanov.jvm.openai;
 
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
@@ -38,7 +39,7 @@ public final class EmbeddingsClient extends OpenAIClient {
             .uri(endpoint)
             .POST(createBodyPublisher(request))
             .build();
-    HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
     return deserializeResponse(httpResponse.body(), Embeddings.class);
   }
 }
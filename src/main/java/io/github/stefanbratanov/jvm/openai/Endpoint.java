@@ -1,5 +1,7 @@
 package io.github.stefanbratanov.jvm.openai;
 
+import java.util.Optional;
+
 enum Endpoint {
   CHAT("chat/completions"),
   MODELS("models"),
@@ -12,7 +14,9 @@ enum Endpoint {
   MODERATIONS("moderations"),
   EMBEDDINCS("embeddings"),
   FILES("files"),
+  UPLOADS("uploads"),
   FINE_TUNING("fine_tuning/jobs"),
+  BATCHES("batches"),
   // Beta
   THREADS("threads"),
   ASSISTANTS("assistants");
@@ -26,4 +30,21 @@ enum Endpoint {
   String getPath() {
     return path;
   }
+
+  /**
+   * @param path a path relative to the base url, for example "files/file-abc123/content"
+   * @return the endpoint to which the path belongs
+   */
+  static Optional<Endpoint> fromPath(String path) {
+    int queryIndex = path.indexOf('?');
+    if (queryIndex >= 0) {
+      path = path.substring(0, queryIndex);
+    }
+    for (Endpoint endpoint : values()) {
+      if (path.equals(endpoint.path) || path.startsWith(endpoint.path + "/")) {
+        return Optional.of(endpoint);
+      }
+    }
+    return Optional.empty();
+  }
 }
@@ -1,12 +1,31 @@
 package io.github.stefanbratanov.jvm.openai;
 
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.net.http.HttpResponse.BodySubscribers;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 /**
  * Files are used to upload documents that can be used with features like Assistants and
@@ -16,6 +35,12 @@ import java.util.Optional;
  */
 public final class FilesClient extends OpenAIClient {
 
+  private static final String RANGE_HEADER = "Range";
+  private static final int PARTIAL_CONTENT_STATUS_CODE = 206;
+
+  private static final OpenOption[] OVERWRITE = {CREATE, WRITE, TRUNCATE_EXISTING};
+  private static final OpenOption[] APPEND = {CREATE, WRITE, StandardOpenOption.APPEND};
+
   private final URI baseUrl;
 
   FilesClient(
@@ -48,7 +73,7 @@ public final class FilesClient extends OpenAIClient {
             .POST(multipartBodyPublisher)
             .build();
 
-    HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
 
     return deserializeResponse(httpResponse.body(), File.class);
   }
@@ -61,10 +86,25 @@ public final class FilesClient extends OpenAIClient {
   public List<File> listFiles() {
     HttpRequest httpRequest =
         newHttpRequestBuilder().uri(baseUrl.resolve(Endpoint.FILES.getPath())).GET().build();
-    HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
     return deserializeDataInResponseAsList(httpResponse.body(), File.class);
   }
 
+  /**
+   * Same as {@link #listFiles()} but the files are parsed lazily while the returned {@link Stream}
+   * is consumed, so the whole list is never held in memory. The stream should be closed after use
+   * in order to release the underlying connection.
+   *
+   * @throws OpenAIException in case of API errors
+   */
+  public Stream<File> streamFiles() {
+    HttpRequest httpRequest =
+        newHttpRequestBuilder().uri(baseUrl.resolve(Endpoint.FILES.getPath())).GET().build();
+    HttpResponse<InputStream> httpResponse =
+        sendHttpRequest(httpRequest, BodyHandlers.ofInputStream());
+    return deserializeDataInResponseAsStream(httpResponse.body(), File.class);
+  }
+
   /**
    * Returns information about a specific file
    *
@@ -76,7 +116,7 @@ public final class FilesClient extends OpenAIClient {
             .uri(baseUrl.resolve(Endpoint.FILES.getPath() + "/" + fileId))
             .GET()
             .build();
-    HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
     return deserializeResponse(httpResponse.body(), File.class);
   }
 
@@ -91,7 +131,7 @@ public final class FilesClient extends OpenAIClient {
             .uri(baseUrl.resolve(Endpoint.FILES.getPath() + "/" + fileId))
             .DELETE()
             .build();
-    HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
     return deserializeResponse(httpResponse.body(), DeletionStatus.class);
   }
 
@@ -101,11 +141,130 @@ public final class FilesClient extends OpenAIClient {
    * @throws OpenAIException in case of API errors
    */
   public byte[] retrieveFileContent(String fileId) {
-    HttpRequest httpRequest =
-        newHttpRequestBuilder()
-            .uri(baseUrl.resolve(Endpoint.FILES.getPath() + "/" + fileId + "/content"))
-            .GET()
-            .build();
-    return sendHttpRequest(httpRequest).body();
+    HttpRequest httpRequest = newFileContentHttpRequestBuilder(fileId).build();
+    return sendHttpRequest(httpRequest, withErrorBody(BodyHandlers.ofByteArray())).body();
+  }
+
+  /**
+   * Same as {@link #retrieveFileContent(String)} but the contents are streamed to the given file,
+   * so they are never held in memory. If the file exists, it will be overwritten.
+   *
+   * @return the path to the file
+   * @throws OpenAIException in case of API errors
+   */
+  public Path retrieveFileContent(String fileId, Path output) {
+    HttpRequest httpRequest = newFileContentHttpRequestBuilder(fileId).build();
+    return sendHttpRequest(httpRequest, withErrorBody(BodyHandlers.ofFile(output, OVERWRITE)))
+        .body();
+  }
+
+  /**
+   * Same as {@link #retrieveFileContent(String, Path)} but returns a response in a {@link
+   * CompletableFuture}
+   */
+  public CompletableFuture<Path> retrieveFileContentAsync(String fileId, Path output) {
+    HttpRequest httpRequest = newFileContentHttpRequestBuilder(fileId).build();
+    return sendHttpRequestAsync(httpRequest, withErrorBody(BodyHandlers.ofFile(output, OVERWRITE)))
+        .thenApply(HttpResponse::body);
+  }
+
+  /**
+   * Same as {@link #retrieveFileContent(String, Path)} but if the file already contains the first
+   * part of the contents, for example from an interrupted download, only the remaining bytes are
+   * requested and appended to it. If the server doesn't support range requests, the file will be
+   * overwritten with the full contents.
+   *
+   * @return the path to the file
+   * @throws OpenAIException in case of API errors
+   */
+  public Path resumeFileContentRetrieval(String fileId, Path output) {
+    long size = retrieveFile(fileId).bytes();
+    long downloadedSize;
+    try {
+      downloadedSize = Files.exists(output) ? Files.size(output) : 0;
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+    if (downloadedSize == size) {
+      return output;
+    }
+    HttpRequest.Builder httpRequestBuilder = newFileContentHttpRequestBuilder(fileId);
+    if (downloadedSize > 0 && downloadedSize < size) {
+      httpRequestBuilder.header(RANGE_HEADER, "bytes=" + downloadedSize + "-");
+    }
+    HttpResponse.BodyHandler<Path> bodyHandler =
+        responseInfo ->
+            responseInfo.statusCode() == PARTIAL_CONTENT_STATUS_CODE
+                ? BodySubscribers.ofFile(output, APPEND)
+                : BodySubscribers.ofFile(output, OVERWRITE);
+    return sendHttpRequest(httpRequestBuilder.build(), withErrorBody(bodyHandler)).body();
+  }
+
+  /**
+   * Same as {@link #retrieveFileContent(String)} but the contents are written to the given channel
+   * as they are received. The channel is not closed.
+   *
+   * @return the number of bytes written
+   * @throws OpenAIException in case of API errors
+   */
+  public long retrieveFileContent(String fileId, WritableByteChannel output) {
+    HttpRequest httpRequest = newFileContentHttpRequestBuilder(fileId).build();
+    return sendHttpRequest(
+            httpRequest, withErrorBody(responseInfo -> new ByteChannelBodySubscriber(output)))
+        .body();
+  }
+
+  /**
+   * Same as {@link #retrieveFileContent(String, WritableByteChannel)} but returns a response in a
+   * {@link CompletableFuture}
+   */
+  public CompletableFuture<Long> retrieveFileContentAsync(
+      String fileId, WritableByteChannel output) {
+    HttpRequest httpRequest = newFileContentHttpRequestBuilder(fileId).build();
+    return sendHttpRequestAsync(
+            httpRequest, withErrorBody(responseInfo -> new ByteChannelBodySubscriber(output)))
+        .thenApply(HttpResponse::body);
+  }
+
+  /**
+   * Same as {@link #retrieveFileContent(String)} but the contents can be read as they are received.
+   * The stream should be closed after use in order to release the underlying connection.
+   *
+   * @throws OpenAIException in case of API errors
+   */
+  public InputStream retrieveFileContentAsInputStream(String fileId) {
+    HttpRequest httpRequest = newFileContentHttpRequestBuilder(fileId).build();
+    return sendHttpRequest(httpRequest, withErrorBody(BodyHandlers.ofInputStream())).body();
+  }
+
+  /**
+   * Retrieves the contents of a JSONL file, such as a fine-tuning training file, and parses each
+   * line lazily while the returned {@link Stream} is consumed. Blank lines are skipped. Use {@code
+   * JsonNode.class} as the line type to get untyped JSON trees. The stream should be closed after
+   * use in order to release the underlying connection.
+   *
+   * @param lineType the type to which each line will be deserialized
+   * @throws OpenAIException in case of API errors
+   */
+  public <T> Stream<T> retrieveFileContentAsJsonLines(String fileId, Class<T> lineType) {
+    HttpRequest httpRequest = newFileContentHttpRequestBuilder(fileId).build();
+    ObjectReader lineReader = ObjectMapperSingleton.getReader(lineType);
+    return sendHttpRequest(httpRequest, withErrorBody(BodyHandlers.ofLines()))
+        .body()
+        .filter(line -> !line.isBlank())
+        .map(
+            line -> {
+              try {
+                return lineReader.readValue(line);
+              } catch (JsonProcessingException ex) {
+                throw new UncheckedIOException(ex);
+              }
+            });
+  }
+
+  private HttpRequest.Builder newFileContentHttpRequestBuilder(String fileId) {
+    return newHttpRequestBuilder()
+        .uri(baseUrl.resolve(Endpoint.FILES.getPath() + "/" + fileId + "/content"))
+        .GET();
   }
 }
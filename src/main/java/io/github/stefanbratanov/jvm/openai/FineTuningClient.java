@@ -1,6 +1,7 @@
 package io.github.stefanbratanov.jvm.openai;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
@@ -9,6 +10,8 @@ import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
 
 /**
  * Manage fine-tuning jobs to tailor a model to your specific training data.
@@ -17,6 +20,8 @@ import java.util.Optional;
  */
 public final class FineTuningClient extends OpenAIClient {
 
+  private static final int EVENTS_PAGE_SIZE = 50;
+
   private final URI baseUrl;
 
   FineTuningClient(
@@ -44,7 +49,7 @@ public final class FineTuningClient extends OpenAIClient {
             .uri(baseUrl.resolve(Endpoint.FINE_TUNING.getPath()))
             .POST(createBodyPublisher(request))
             .build();
-    HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
     return deserializeResponse(httpResponse.body(), FineTuningJob.class);
   }
 
@@ -63,14 +68,17 @@ public final class FineTuningClient extends OpenAIClient {
             .uri(baseUrl.resolve(Endpoint.FINE_TUNING.getPath() + queryParameters))
             .GET()
             .build();
-    HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
     return deserializeResponse(httpResponse.body(), PaginatedFineTuningJobs.class);
   }
 
   public record PaginatedFineTuningJobs(List<FineTuningJob> data, boolean hasMore) {
+    /**
+     * @return the id of the last job or null if there are none
+     */
     @JsonIgnore
     public String getLastJobId() {
-      return data.get(data.size() - 1).id();
+      return data.isEmpty() ? null : data.get(data.size() - 1).id();
     }
   }
 
@@ -84,26 +92,33 @@ public final class FineTuningClient extends OpenAIClient {
    */
   public PaginatedFineTuningEvents listFineTuningJobEvents(
       String fineTuningJobId, Optional<Integer> limit, Optional<String> after) {
-    String queryParameters = createQueryParameters(Map.of("limit", limit, "after", after));
     HttpRequest httpRequest =
-        newHttpRequestBuilder()
-            .uri(
-                baseUrl.resolve(
-                    Endpoint.FINE_TUNING.getPath()
-                        + "/"
-                        + fineTuningJobId
-                        + "/events"
-                        + queryParameters))
-            .GET()
-            .build();
-    HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
+        createListFineTuningJobEventsGetRequest(fineTuningJobId, limit, after);
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
     return deserializeResponse(httpResponse.body(), PaginatedFineTuningEvents.class);
   }
 
+  /**
+   * Same as {@link #listFineTuningJobEvents(String, Optional, Optional)} but returns a response in
+   * a {@link CompletableFuture}
+   */
+  public CompletableFuture<PaginatedFineTuningEvents> listFineTuningJobEventsAsync(
+      String fineTuningJobId, Optional<Integer> limit, Optional<String> after) {
+    HttpRequest httpRequest =
+        createListFineTuningJobEventsGetRequest(fineTuningJobId, limit, after);
+    return sendHttpRequestAsync(httpRequest)
+        .thenApply(
+            httpResponse ->
+                deserializeResponse(httpResponse.body(), PaginatedFineTuningEvents.class));
+  }
+
   public record PaginatedFineTuningEvents(List<FineTuningJobEvent> data, boolean hasMore) {
+    /**
+     * @return the id of the last event or null if there are none
+     */
     @JsonIgnore
     public String getLastEventId() {
-      return data.get(data.size() - 1).id();
+      return data.isEmpty() ? null : data.get(data.size() - 1).id();
     }
   }
 
@@ -114,15 +129,62 @@ public final class FineTuningClient extends OpenAIClient {
    * @throws OpenAIException in case of API errors
    */
   public FineTuningJob retrieveFineTuningJob(String fineTuningJobId) {
-    HttpRequest httpRequest =
-        newHttpRequestBuilder()
-            .uri(baseUrl.resolve(Endpoint.FINE_TUNING.getPath() + "/" + fineTuningJobId))
-            .GET()
-            .build();
-    HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
+    HttpRequest httpRequest = createRetrieveFineTuningJobGetRequest(fineTuningJobId);
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
     return deserializeResponse(httpResponse.body(), FineTuningJob.class);
   }
 
+  /**
+   * Same as {@link #retrieveFineTuningJob(String)} but returns a response in a {@link
+   * CompletableFuture}
+   */
+  public CompletableFuture<FineTuningJob> retrieveFineTuningJobAsync(String fineTuningJobId) {
+    HttpRequest httpRequest = createRetrieveFineTuningJobGetRequest(fineTuningJobId);
+    return sendHttpRequestAsync(httpRequest)
+        .thenApply(httpResponse -> deserializeResponse(httpResponse.body(), FineTuningJob.class));
+  }
+
+  /**
+   * Watch the events of a fine-tuning job as they are created, polling for new events every 2
+   * seconds while the job is active and backing off to polling every minute while it is idle. The
+   * publisher completes once the job has succeeded, failed or was cancelled and all of its events
+   * are published.
+   *
+   * @param fineTuningJobId The ID of the fine-tuning job to watch.
+   */
+  public Flow.Publisher<FineTuningJobEvent> watchFineTuningJob(String fineTuningJobId) {
+    return watchFineTuningJob(
+        fineTuningJobId,
+        FineTuningJobWatcher.DEFAULT_MIN_POLL_INTERVAL,
+        FineTuningJobWatcher.DEFAULT_MAX_POLL_INTERVAL);
+  }
+
+  /**
+   * Watch the events of a fine-tuning job as they are created. Every subscriber receives all events
+   * of the job, oldest first, and API errors other than rate limits and server errors are signalled
+   * as {@link OpenAIException}. The polls honor the {@link RequestContext} attached to the current
+   * thread, if any, so the watch fails once the context is cancelled or its deadline passes.
+   *
+   * @param fineTuningJobId The ID of the fine-tuning job to watch.
+   * @param minPollInterval The interval between polls while new events are found.
+   * @param maxPollInterval The interval between polls which is reached by doubling the interval
+   *     after every poll without new events.
+   */
+  public Flow.Publisher<FineTuningJobEvent> watchFineTuningJob(
+      String fineTuningJobId, Duration minPollInterval, Duration maxPollInterval) {
+    Optional<RequestContext> context = RequestContext.current();
+    return new FineTuningJobWatcher(
+        after ->
+            withContext(
+                context,
+                () ->
+                    listFineTuningJobEventsAsync(
+                        fineTuningJobId, Optional.of(EVENTS_PAGE_SIZE), after)),
+        () -> withContext(context, () -> retrieveFineTuningJobAsync(fineTuningJobId)),
+        minPollInterval,
+        maxPollInterval);
+  }
+
   /**
    * Immediately cancel a fine-tune job.
    *
@@ -136,7 +198,29 @@ public final class FineTuningClient extends OpenAIClient {
                 baseUrl.resolve(Endpoint.FINE_TUNING.getPath() + "/" + fineTuningJobId + "/cancel"))
             .POST(HttpRequest.BodyPublishers.noBody())
             .build();
-    HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
     return deserializeResponse(httpResponse.body(), FineTuningJob.class);
   }
+
+  private HttpRequest createListFineTuningJobEventsGetRequest(
+      String fineTuningJobId, Optional<Integer> limit, Optional<String> after) {
+    String queryParameters = createQueryParameters(Map.of("limit", limit, "after", after));
+    return newHttpRequestBuilder()
+        .uri(
+            baseUrl.resolve(
+                Endpoint.FINE_TUNING.getPath()
+                    + "/"
+                    + fineTuningJobId
+                    + "/events"
+                    + queryParameters))
+        .GET()
+        .build();
+  }
+
+  private HttpRequest createRetrieveFineTuningJobGetRequest(String fineTuningJobId) {
+    return newHttpRequestBuilder()
+        .uri(baseUrl.resolve(Endpoint.FINE_TUNING.getPath() + "/" + fineTuningJobId))
+        .GET()
+        .build();
+  }
 }
@@ -0,0 +1,410 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.github.stefanbratanov.jvm.openai.ChatMessage.AssistantMessage;
+import io.github.stefanbratanov.jvm.openai.ChatMessage.SystemMessage;
+import io.github.stefanbratanov.jvm.openai.ChatMessage.ToolMessage;
+import io.github.stefanbratanov.jvm.openai.ChatMessage.UserMessage;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes a JSONL dataset of chat examples for fine-tuning, which can be uploaded with {@link
+ * FilesClient#uploadFile(UploadFileRequest)} with the purpose {@code fine-tune}. Each example is
+ * validated before it is written, so a malformed example is rejected with an {@link
+ * IllegalArgumentException} instead of failing the fine-tuning job after the upload, and the file
+ * always contains only valid examples.
+ *
+ * <p>The tokens of each example are counted while the dataset is written, optionally in parallel,
+ * so the {@link Statistics} of the dataset, such as the length histogram and the number of billed
+ * tokens, are available as soon as the writer is closed. Only the statistics are kept in memory,
+ * so datasets of any size can be written.
+ */
+public final class FineTuningDatasetWriter implements Closeable {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+  // examples waiting for their tokens to be counted per counting thread
+  private static final int PENDING_EXAMPLES_PER_THREAD = 16;
+
+  private final TokenCounter tokenCounter;
+  private final int maxTokensPerExample;
+
+  private final JsonGenerator generator;
+  private final ObjectWriter messageWriter;
+  private final ExecutorService tokenCountingExecutor;
+  private final Semaphore pendingExamples;
+
+  // guarded by "this"
+  private final StatisticsAccumulator statistics;
+  private RuntimeException tokenCountingFailure;
+
+  private long examples = 0;
+  private boolean closed = false;
+
+  private FineTuningDatasetWriter(
+      Path file, TokenCounter tokenCounter, int maxTokensPerExample, int parallelism) {
+    this.tokenCounter = tokenCounter;
+    this.maxTokensPerExample = maxTokensPerExample;
+    this.statistics = new StatisticsAccumulator(maxTokensPerExample);
+    ObjectMapper objectMapper = ObjectMapperSingleton.getInstance();
+    // flushing after each message would defeat the buffering
+    this.messageWriter =
+        objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    try {
+      FileChannel channel =
+          FileChannel.open(
+              file,
+              StandardOpenOption.CREATE,
+              StandardOpenOption.WRITE,
+              StandardOpenOption.TRUNCATE_EXISTING);
+      this.generator =
+          objectMapper
+              .getFactory()
+              .createGenerator(
+                  new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE));
+      // the examples are separated by new lines instead
+      this.generator.setRootValueSeparator(null);
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+    if (parallelism > 1) {
+      this.tokenCountingExecutor =
+          Executors.newFixedThreadPool(
+              parallelism,
+              runnable -> {
+                java.lang.Thread thread = new java.lang.Thread(runnable, "token-counter");
+                thread.setDaemon(true);
+                return thread;
+              });
+      this.pendingExamples = new Semaphore(parallelism * PENDING_EXAMPLES_PER_THREAD);
+    } else {
+      this.tokenCountingExecutor = null;
+      this.pendingExamples = null;
+    }
+  }
+
+  /**
+   * @param file the file where to write the dataset, which is overwritten if it exists
+   */
+  public static Builder newBuilder(Path file) {
+    return new Builder(file);
+  }
+
+  /**
+   * The statistics of the written examples
+   *
+   * @param examples the number of examples
+   * @param totalTokens the number of tokens of all examples
+   * @param minTokens the number of tokens of the shortest example
+   * @param maxTokens the number of tokens of the longest example
+   * @param billedTokens the number of tokens billed per epoch, where the examples longer than the
+   *     maximum number of tokens per example are truncated
+   * @param examplesOverTokenLimit the number of examples longer than the maximum number of tokens
+   *     per example
+   * @param tokenHistogram the number of examples by length, where the bucket at index {@code i}
+   *     counts the examples with at least {@code 2^i} and less than {@code 2^(i+1)} tokens, and the
+   *     bucket at index 0 also counts the examples without tokens
+   */
+  public record Statistics(
+      long examples,
+      long totalTokens,
+      int minTokens,
+      int maxTokens,
+      long billedTokens,
+      long examplesOverTokenLimit,
+      long[] tokenHistogram) {
+
+    public double meanTokens() {
+      return examples == 0 ? 0 : (double) totalTokens / examples;
+    }
+
+    /**
+     * @param pricePerMillionTokens the price of training on a million tokens for the base model
+     * @param epochs the number of epochs of the fine-tuning job
+     * @return the estimated cost of a fine-tuning job trained on the dataset
+     */
+    public double estimateTrainingCost(double pricePerMillionTokens, int epochs) {
+      return billedTokens * epochs * pricePerMillionTokens / 1_000_000;
+    }
+  }
+
+  /**
+   * Validates an example and appends it to the dataset. An example is valid if all of these hold:
+   *
+   * <ul>
+   *   <li>it has at least one message and ends with an assistant message
+   *   <li>a system message is only used as the first message
+   *   <li>user and system messages have content
+   *   <li>assistant messages have content or tool calls
+   *   <li>each tool message responds to a tool call of the preceding assistant message
+   * </ul>
+   *
+   * @param messages the messages of the example
+   * @throws IllegalArgumentException if the example is not valid, in which case it is not written
+   */
+  public void write(List<ChatMessage> messages) {
+    if (closed) {
+      throw new IllegalStateException("The writer is closed");
+    }
+    validate(messages);
+    try {
+      generator.writeStartObject();
+      generator.writeFieldName("messages");
+      generator.writeStartArray();
+      for (ChatMessage message : messages) {
+        messageWriter.writeValue(generator, message);
+      }
+      generator.writeEndArray();
+      generator.writeEndObject();
+      generator.writeRaw('\n');
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+    examples++;
+    countTokens(messages);
+  }
+
+  /**
+   * @return the statistics of the examples written so far. After the writer is closed, the
+   *     statistics include the tokens of all examples.
+   */
+  public synchronized Statistics statistics() {
+    return statistics.toStatistics();
+  }
+
+  /**
+   * Flushes the dataset to the file and waits for the tokens of all examples to be counted
+   *
+   * @throws UncheckedIOException if the dataset can't be written
+   */
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try (generator) {
+      if (tokenCountingExecutor != null) {
+        tokenCountingExecutor.shutdown();
+        tokenCountingExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+      }
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    } catch (InterruptedException ex) {
+      java.lang.Thread.currentThread().interrupt();
+      throw new RuntimeException("Operation was interrupted", ex);
+    }
+    synchronized (this) {
+      if (tokenCountingFailure != null) {
+        throw tokenCountingFailure;
+      }
+    }
+  }
+
+  private void countTokens(List<ChatMessage> messages) {
+    if (tokenCountingExecutor == null) {
+      recordTokens(countExampleTokens(messages));
+      return;
+    }
+    try {
+      // bounds the number of examples held in memory when counting is slower than writing
+      pendingExamples.acquire();
+    } catch (InterruptedException ex) {
+      java.lang.Thread.currentThread().interrupt();
+      throw new RuntimeException("Operation was interrupted", ex);
+    }
+    tokenCountingExecutor.execute(
+        () -> {
+          try {
+            recordTokens(countExampleTokens(messages));
+          } catch (RuntimeException ex) {
+            synchronized (this) {
+              if (tokenCountingFailure == null) {
+                tokenCountingFailure = ex;
+              }
+            }
+          } finally {
+            pendingExamples.release();
+          }
+        });
+  }
+
+  private int countExampleTokens(List<ChatMessage> messages) {
+    int tokens = 0;
+    for (ChatMessage message : messages) {
+      tokens += tokenCounter.countTokens(message);
+    }
+    return tokens;
+  }
+
+  private synchronized void recordTokens(int tokens) {
+    statistics.add(tokens);
+  }
+
+  private void validate(List<ChatMessage> messages) {
+    if (messages.isEmpty()) {
+      throw invalidExample("it has no messages");
+    }
+    Set<String> pendingToolCallIds = new HashSet<>();
+    for (int i = 0; i < messages.size(); i++) {
+      ChatMessage message = messages.get(i);
+      if (message == null) {
+        throw invalidExample("message " + i + " is null");
+      }
+      if (!(message instanceof ToolMessage) && !pendingToolCallIds.isEmpty()) {
+        throw invalidExample(
+            "message " + i + " follows tool calls without responses " + pendingToolCallIds);
+      }
+      if (message instanceof SystemMessage systemMessage) {
+        if (i > 0) {
+          throw invalidExample("message " + i + " is a system message, which must be first");
+        }
+        requireContent(i, systemMessage.content());
+      } else if (message instanceof UserMessage<?> userMessage) {
+        if (userMessage.content() == null
+            || (userMessage.content() instanceof String text && text.isBlank())
+            || (userMessage.content() instanceof List<?> parts && parts.isEmpty())) {
+          throw invalidExample("message " + i + " has no content");
+        }
+      } else if (message instanceof AssistantMessage assistantMessage) {
+        List<ToolCall> toolCalls = assistantMessage.toolCalls().orElse(List.of());
+        if (toolCalls.isEmpty()) {
+          requireContent(i, assistantMessage.content());
+        }
+        for (ToolCall toolCall : toolCalls) {
+          if (toolCall instanceof ToolCall.FunctionToolCall functionToolCall) {
+            pendingToolCallIds.add(functionToolCall.id());
+          }
+        }
+      } else if (message instanceof ToolMessage toolMessage) {
+        if (!pendingToolCallIds.remove(toolMessage.toolCallId())) {
+          throw invalidExample(
+              "message "
+                  + i
+                  + " responds to tool call "
+                  + toolMessage.toolCallId()
+                  + ", which was not made by the preceding assistant message");
+        }
+      }
+    }
+    if (!(messages.get(messages.size() - 1) instanceof AssistantMessage)) {
+      throw invalidExample("the last message is not an assistant message");
+    }
+  }
+
+  private void requireContent(int index, String content) {
+    if (content == null || content.isBlank()) {
+      throw invalidExample("message " + index + " has no content");
+    }
+  }
+
+  private IllegalArgumentException invalidExample(String reason) {
+    return new IllegalArgumentException("Example " + examples + " is invalid: " + reason);
+  }
+
+  private static class StatisticsAccumulator {
+
+    private final int maxTokensPerExample;
+    private final long[] tokenHistogram = new long[Integer.SIZE];
+
+    private long examples = 0;
+    private long totalTokens = 0;
+    private int minTokens = Integer.MAX_VALUE;
+    private int maxTokens = 0;
+    private long billedTokens = 0;
+    private long examplesOverTokenLimit = 0;
+
+    StatisticsAccumulator(int maxTokensPerExample) {
+      this.maxTokensPerExample = maxTokensPerExample;
+    }
+
+    void add(int tokens) {
+      examples++;
+      totalTokens += tokens;
+      minTokens = Math.min(minTokens, tokens);
+      maxTokens = Math.max(maxTokens, tokens);
+      billedTokens += Math.min(tokens, maxTokensPerExample);
+      if (tokens > maxTokensPerExample) {
+        examplesOverTokenLimit++;
+      }
+      tokenHistogram[tokens == 0 ? 0 : 31 - Integer.numberOfLeadingZeros(tokens)]++;
+    }
+
+    Statistics toStatistics() {
+      return new Statistics(
+          examples,
+          totalTokens,
+          examples == 0 ? 0 : minTokens,
+          maxTokens,
+          billedTokens,
+          examplesOverTokenLimit,
+          tokenHistogram.clone());
+    }
+  }
+
+  public static class Builder {
+
+    private static final int DEFAULT_MAX_TOKENS_PER_EXAMPLE = 65_536;
+
+    private final Path file;
+
+    private TokenCounter tokenCounter = TokenCounter.approximate();
+    private int maxTokensPerExample = DEFAULT_MAX_TOKENS_PER_EXAMPLE;
+    private int parallelism = 1;
+
+    private Builder(Path file) {
+      this.file = file;
+    }
+
+    /**
+     * @param tokenCounter the counter of the tokens of each example. Defaults to {@link
+     *     TokenCounter#approximate()}.
+     */
+    public Builder tokenCounter(TokenCounter tokenCounter) {
+      this.tokenCounter = tokenCounter;
+      return this;
+    }
+
+    /**
+     * @param maxTokensPerExample the context length of the base model. Longer examples are
+     *     truncated during training. Defaults to 65536.
+     */
+    public Builder maxTokensPerExample(int maxTokensPerExample) {
+      this.maxTokensPerExample = maxTokensPerExample;
+      return this;
+    }
+
+    /**
+     * @param parallelism the number of threads counting tokens, which is useful when the token
+     *     counter is backed by a slow tokenizer. Defaults to 1, in which case the tokens are
+     *     counted by the writing thread.
+     */
+    public Builder parallelism(int parallelism) {
+      if (parallelism <= 0) {
+        throw new IllegalArgumentException("parallelism must be positive");
+      }
+      this.parallelism = parallelism;
+      return this;
+    }
+
+    public FineTuningDatasetWriter build() {
+      return new FineTuningDatasetWriter(file, tokenCounter, maxTokensPerExample, parallelism);
+    }
+  }
+}
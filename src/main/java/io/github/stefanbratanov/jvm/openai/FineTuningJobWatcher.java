@@ -0,0 +1,273 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import io.github.stefanbratanov.jvm.openai.FineTuningClient.PaginatedFineTuningEvents;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A {@link Flow.Publisher} of the events of a fine-tuning job, which polls for new events and
+ * publishes them in the order in which they were created. Every subscriber starts its own polling
+ * from the first event of the job, once it has requested events.
+ *
+ * <p>The events are listed newest first, so a poll walks the pages of events using the {@code
+ * after} cursor until it reaches an event which was already published. The poll interval is reset
+ * to the minimum interval when a poll finds new events and is doubled up to the maximum interval
+ * when it doesn't. The status of the job is only retrieved after a poll without new events and the
+ * publisher completes once the job has finished and all of its events are published. Polling
+ * pauses while there are events which the subscriber hasn't requested yet.
+ *
+ * <p>The polls of all watched jobs are scheduled on a single shared daemon thread and the requests
+ * are sent asynchronously, so watching many jobs doesn't require a thread per job.
+ */
+class FineTuningJobWatcher implements Flow.Publisher<FineTuningJobEvent> {
+
+  static final Duration DEFAULT_MIN_POLL_INTERVAL = Duration.ofSeconds(2);
+  static final Duration DEFAULT_MAX_POLL_INTERVAL = Duration.ofMinutes(1);
+
+  private static final Set<String> TERMINAL_STATUSES = Set.of("succeeded", "failed", "cancelled");
+
+  private static final ScheduledThreadPoolExecutor SCHEDULER =
+      Schedulers.newDaemonScheduler("fine-tuning-job-watcher");
+
+  private final Function<Optional<String>, CompletableFuture<PaginatedFineTuningEvents>>
+      listEvents;
+  private final Supplier<CompletableFuture<FineTuningJob>> retrieveJob;
+  private final Duration minPollInterval;
+  private final Duration maxPollInterval;
+
+  /**
+   * @param listEvents lists a page of events after the given event id
+   * @param retrieveJob retrieves the watched job
+   */
+  FineTuningJobWatcher(
+      Function<Optional<String>, CompletableFuture<PaginatedFineTuningEvents>> listEvents,
+      Supplier<CompletableFuture<FineTuningJob>> retrieveJob,
+      Duration minPollInterval,
+      Duration maxPollInterval) {
+    if (minPollInterval.isNegative() || minPollInterval.isZero()) {
+      throw new IllegalArgumentException("minPollInterval must be positive");
+    }
+    if (maxPollInterval.compareTo(minPollInterval) < 0) {
+      throw new IllegalArgumentException("maxPollInterval must not be less than minPollInterval");
+    }
+    this.listEvents = listEvents;
+    this.retrieveJob = retrieveJob;
+    this.minPollInterval = minPollInterval;
+    this.maxPollInterval = maxPollInterval;
+  }
+
+  @Override
+  public void subscribe(Flow.Subscriber<? super FineTuningJobEvent> subscriber) {
+    subscriber.onSubscribe(new WatchSubscription(subscriber));
+  }
+
+  private final class WatchSubscription implements Flow.Subscription {
+
+    private final Flow.Subscriber<? super FineTuningJobEvent> subscriber;
+    private final AtomicInteger drainRequests = new AtomicInteger();
+
+    // only accessed by the poll in progress
+    private final Set<String> publishedEventIds = new HashSet<>();
+
+    // guarded by "this"
+    private final Deque<FineTuningJobEvent> pendingEvents = new ArrayDeque<>();
+    private long demand = 0;
+    private Duration pollInterval = minPollInterval;
+    private Duration nextPollDelay = Duration.ZERO;
+    private boolean lastPollHadEvents = false;
+    private boolean polling = false;
+    private boolean jobFinished = false;
+    private Throwable failure;
+    private boolean done = false;
+    private ScheduledFuture<?> scheduledPoll;
+
+    private WatchSubscription(Flow.Subscriber<? super FineTuningJobEvent> subscriber) {
+      this.subscriber = subscriber;
+    }
+
+    @Override
+    public void request(long n) {
+      synchronized (this) {
+        if (n <= 0) {
+          failure = new IllegalArgumentException("non-positive subscription request: " + n);
+        } else {
+          demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+        }
+      }
+      drain();
+    }
+
+    @Override
+    public synchronized void cancel() {
+      done = true;
+      if (scheduledPoll != null) {
+        scheduledPoll.cancel(false);
+      }
+    }
+
+    /** Signals the subscriber from one thread at a time and starts a poll when one is needed */
+    private void drain() {
+      if (drainRequests.getAndIncrement() != 0) {
+        return;
+      }
+      do {
+        while (true) {
+          FineTuningJobEvent event = null;
+          Throwable error = null;
+          boolean complete = false;
+          synchronized (this) {
+            if (done) {
+              break;
+            }
+            if (failure != null) {
+              done = true;
+              error = failure;
+            } else if (!pendingEvents.isEmpty()) {
+              if (demand == 0) {
+                break;
+              }
+              event = pendingEvents.poll();
+              demand--;
+            } else if (jobFinished) {
+              done = true;
+              complete = true;
+            } else {
+              if (!polling) {
+                polling = true;
+                scheduledPoll =
+                    SCHEDULER.schedule(this::poll, nextPollDelay.toNanos(), TimeUnit.NANOSECONDS);
+              }
+              break;
+            }
+          }
+          if (error != null) {
+            subscriber.onError(error);
+          } else if (complete) {
+            subscriber.onComplete();
+          } else {
+            subscriber.onNext(event);
+          }
+        }
+      } while (drainRequests.decrementAndGet() != 0);
+    }
+
+    private void poll() {
+      boolean checkJobStatus;
+      synchronized (this) {
+        if (done) {
+          return;
+        }
+        scheduledPoll = null;
+        checkJobStatus = !lastPollHadEvents;
+      }
+      CompletableFuture<Boolean> jobFinishedFuture;
+      try {
+        jobFinishedFuture =
+            checkJobStatus
+                ? retrieveJob.get().thenApply(job -> TERMINAL_STATUSES.contains(job.status()))
+                : CompletableFuture.completedFuture(false);
+      } catch (RuntimeException ex) {
+        onPollFailed(ex);
+        return;
+      }
+      // the events are listed after the status is retrieved, so a finished job has no more events
+      jobFinishedFuture
+          .thenCompose(
+              finished ->
+                  listNewEvents(Optional.empty(), new LinkedHashMap<>())
+                      .thenAccept(newEvents -> onPollCompleted(finished, newEvents)))
+          .exceptionally(
+              ex -> {
+                onPollFailed(ex instanceof CompletionException ? ex.getCause() : ex);
+                return null;
+              });
+    }
+
+    /**
+     * @return the new events, newest first
+     */
+    private CompletableFuture<List<FineTuningJobEvent>> listNewEvents(
+        Optional<String> after, Map<String, FineTuningJobEvent> newEvents) {
+      return listEvents
+          .apply(after)
+          .thenCompose(
+              events -> {
+                for (FineTuningJobEvent event : events.data()) {
+                  if (publishedEventIds.contains(event.id())) {
+                    return CompletableFuture.completedFuture(List.copyOf(newEvents.values()));
+                  }
+                  newEvents.putIfAbsent(event.id(), event);
+                }
+                if (events.hasMore() && !events.data().isEmpty()) {
+                  return listNewEvents(Optional.of(events.getLastEventId()), newEvents);
+                }
+                return CompletableFuture.completedFuture(List.copyOf(newEvents.values()));
+              });
+    }
+
+    private void onPollCompleted(boolean finished, List<FineTuningJobEvent> newEvents) {
+      List<FineTuningJobEvent> oldestFirst = new ArrayList<>(newEvents);
+      Collections.reverse(oldestFirst);
+      oldestFirst.forEach(event -> publishedEventIds.add(event.id()));
+      synchronized (this) {
+        polling = false;
+        pendingEvents.addAll(oldestFirst);
+        lastPollHadEvents = !oldestFirst.isEmpty();
+        pollInterval = lastPollHadEvents ? minPollInterval : increasePollInterval();
+        nextPollDelay = pollInterval;
+        jobFinished = finished;
+      }
+      drain();
+    }
+
+    private void onPollFailed(Throwable ex) {
+      synchronized (this) {
+        polling = false;
+        if (isRetryable(ex)) {
+          lastPollHadEvents = false;
+          pollInterval = increasePollInterval();
+          nextPollDelay = pollInterval;
+        } else {
+          failure = ex instanceof IOException ioEx ? new UncheckedIOException(ioEx) : ex;
+        }
+      }
+      drain();
+    }
+
+    private Duration increasePollInterval() {
+      Duration doubled = pollInterval.multipliedBy(2);
+      return doubled.compareTo(maxPollInterval) > 0 ? maxPollInterval : doubled;
+    }
+
+    private boolean isRetryable(Throwable ex) {
+      if (RequestContext.isContextFailure(ex)) {
+        return false;
+      }
+      if (ex instanceof OpenAIException openAIException) {
+        int statusCode = openAIException.statusCode();
+        return statusCode == 429 || statusCode >= 500;
+      }
+      return ex instanceof IOException || ex instanceof UncheckedIOException;
+    }
+  }
+}
@@ -0,0 +1,276 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hedges the requests which are safe to repeat according to a {@link HedgingPolicy}. The
+ * synchronous {@link #send(HttpRequest, HttpResponse.BodyHandler)} of a hedged request waits for
+ * the asynchronous exchange, so both kinds of calls are hedged.
+ *
+ * <p>A response with status 429 or 5xx, or a failure, of one request doesn't complete the exchange
+ * while the other request is still in flight.
+ */
+class HedgingHttpClient extends DelegatingHttpClient {
+
+  private static final int MIN_SAMPLES = 20;
+  private static final int MAX_SAMPLES = 1024;
+  private static final int PERCENTILE_UPDATE_INTERVAL = 32;
+  private static final double MAX_BUDGET_TOKENS = 10;
+
+  private static final ScheduledThreadPoolExecutor SCHEDULER =
+      Schedulers.newDaemonScheduler("request-hedging");
+
+  private final HedgingPolicy hedgingPolicy;
+  private final String baseUrl;
+  private final Map<String, LatencyTracker> latencyTrackers =
+      Map.of(
+          Endpoint.EMBEDDINCS.getPath(), new LatencyTracker(),
+          Endpoint.MODERATIONS.getPath(), new LatencyTracker());
+
+  // guarded by "this"
+  private double budgetTokens = 0;
+
+  HedgingHttpClient(HttpClient delegate, HedgingPolicy hedgingPolicy, URI baseUrl) {
+    super(delegate);
+    this.hedgingPolicy = hedgingPolicy;
+    this.baseUrl = baseUrl.toString();
+  }
+
+  @Override
+  public <T> HttpResponse<T> send(
+      HttpRequest request, HttpResponse.BodyHandler<T> responseBodyHandler)
+      throws IOException, InterruptedException {
+    Optional<LatencyTracker> latencyTracker = getLatencyTracker(request);
+    if (latencyTracker.isEmpty()) {
+      return super.send(request, responseBodyHandler);
+    }
+    CompletableFuture<HttpResponse<T>> responseFuture =
+        new HedgedExchange<>(request, responseBodyHandler, latencyTracker.get()).start();
+    try {
+      return responseFuture.get();
+    } catch (InterruptedException ex) {
+      responseFuture.cancel(true);
+      throw ex;
+    } catch (ExecutionException ex) {
+      if (ex.getCause() instanceof IOException ioEx) {
+        throw ioEx;
+      }
+      if (ex.getCause() instanceof RuntimeException runtimeEx) {
+        throw runtimeEx;
+      }
+      throw new IOException(ex.getCause());
+    }
+  }
+
+  @Override
+  public <T> CompletableFuture<HttpResponse<T>> sendAsync(
+      HttpRequest request, HttpResponse.BodyHandler<T> responseBodyHandler) {
+    return getLatencyTracker(request)
+        .map(
+            latencyTracker ->
+                new HedgedExchange<>(request, responseBodyHandler, latencyTracker).start())
+        .orElseGet(() -> super.sendAsync(request, responseBodyHandler));
+  }
+
+  /**
+   * @return the delay after which the request is duplicated if it hasn't completed or -1 if there
+   *     aren't enough tracked latencies yet
+   */
+  private long hedgeDelayNanos(LatencyTracker latencyTracker) {
+    long percentileNanos = latencyTracker.percentileNanos(hedgingPolicy.percentile());
+    if (percentileNanos < 0) {
+      return -1;
+    }
+    return Math.max(percentileNanos, hedgingPolicy.minDelay().toNanos());
+  }
+
+  private Optional<LatencyTracker> getLatencyTracker(HttpRequest request) {
+    String uri = request.uri().toString();
+    if (!request.method().equals("POST") || !uri.startsWith(baseUrl)) {
+      return Optional.empty();
+    }
+    return Optional.ofNullable(latencyTrackers.get(uri.substring(baseUrl.length())));
+  }
+
+  /**
+   * Every request which can be hedged adds a fraction of a token to the budget and every duplicate
+   * request takes a whole token, so that the duplicate requests are at most that fraction of the
+   * requests.
+   */
+  private synchronized void depositBudget() {
+    budgetTokens = Math.min(budgetTokens + hedgingPolicy.budget(), MAX_BUDGET_TOKENS);
+  }
+
+  private synchronized boolean tryWithdrawBudget() {
+    if (budgetTokens < 1) {
+      return false;
+    }
+    budgetTokens--;
+    return true;
+  }
+
+  private static boolean isRetryable(int statusCode) {
+    return statusCode == 429 || statusCode >= 500;
+  }
+
+  private static void discard(HttpResponse<?> httpResponse) {
+    if (httpResponse.body() instanceof AutoCloseable body) {
+      try {
+        body.close();
+      } catch (Exception ex) {
+        // the response is not used, so failing to release it is not an error
+      }
+    }
+  }
+
+  private class HedgedExchange<T> {
+
+    private final HttpRequest request;
+    private final HttpResponse.BodyHandler<T> responseBodyHandler;
+    private final LatencyTracker latencyTracker;
+
+    private final CompletableFuture<HttpResponse<T>> result = new CompletableFuture<>();
+
+    // guarded by "this"
+    private final List<CompletableFuture<HttpResponse<T>>> inFlight = new ArrayList<>();
+    private ScheduledFuture<?> hedgeTimer;
+
+    private HedgedExchange(
+        HttpRequest request,
+        HttpResponse.BodyHandler<T> responseBodyHandler,
+        LatencyTracker latencyTracker) {
+      this.request = request;
+      this.responseBodyHandler = responseBodyHandler;
+      this.latencyTracker = latencyTracker;
+    }
+
+    private CompletableFuture<HttpResponse<T>> start() {
+      depositBudget();
+      sendRequest();
+      long hedgeDelayNanos = hedgeDelayNanos(latencyTracker);
+      if (hedgeDelayNanos >= 0) {
+        synchronized (this) {
+          if (!result.isDone()) {
+            hedgeTimer = SCHEDULER.schedule(this::hedge, hedgeDelayNanos, TimeUnit.NANOSECONDS);
+          }
+        }
+      }
+      // also cancels the requests in flight when the caller cancels the result
+      result.whenComplete((httpResponse, ex) -> cancelRemaining());
+      return result;
+    }
+
+    private void hedge() {
+      if (result.isDone() || !tryWithdrawBudget()) {
+        return;
+      }
+      sendRequest();
+    }
+
+    private void sendRequest() {
+      long startNanos = System.nanoTime();
+      CompletableFuture<HttpResponse<T>> responseFuture =
+          HedgingHttpClient.super.sendAsync(request, responseBodyHandler);
+      synchronized (this) {
+        if (result.isDone()) {
+          // the result completed while hedging, so the requests in flight were already cancelled
+          responseFuture.cancel(true);
+          return;
+        }
+        inFlight.add(responseFuture);
+      }
+      responseFuture.whenComplete(
+          (httpResponse, ex) -> onCompleted(responseFuture, httpResponse, ex, startNanos));
+    }
+
+    private void onCompleted(
+        CompletableFuture<HttpResponse<T>> responseFuture,
+        HttpResponse<T> httpResponse,
+        Throwable ex,
+        long startNanos) {
+      boolean othersInFlight;
+      synchronized (this) {
+        inFlight.remove(responseFuture);
+        othersInFlight = !inFlight.isEmpty();
+      }
+      boolean failed = ex != null || isRetryable(httpResponse.statusCode());
+      if (result.isDone() || (failed && othersInFlight)) {
+        if (httpResponse != null) {
+          discard(httpResponse);
+        }
+        return;
+      }
+      if (ex != null) {
+        result.completeExceptionally(ex);
+        return;
+      }
+      if (!failed) {
+        latencyTracker.record(System.nanoTime() - startNanos);
+      }
+      if (!result.complete(httpResponse)) {
+        discard(httpResponse);
+      }
+    }
+
+    private void cancelRemaining() {
+      List<CompletableFuture<HttpResponse<T>>> remaining;
+      synchronized (this) {
+        if (hedgeTimer != null) {
+          hedgeTimer.cancel(false);
+        }
+        remaining = List.copyOf(inFlight);
+      }
+      remaining.forEach(responseFuture -> responseFuture.cancel(true));
+    }
+  }
+
+  /** Keeps the latencies of the most recent responses of an endpoint */
+  private static class LatencyTracker {
+
+    // guarded by "this"
+    private final long[] samples = new long[MAX_SAMPLES];
+    private int count = 0;
+    private int next = 0;
+    private int samplesSinceUpdate = 0;
+    private long percentileNanos = -1;
+
+    private synchronized void record(long latencyNanos) {
+      samples[next] = latencyNanos;
+      next = (next + 1) % samples.length;
+      count = Math.min(count + 1, samples.length);
+      samplesSinceUpdate++;
+    }
+
+    /**
+     * The percentile is only recomputed after several new samples, so that the samples are not
+     * sorted for every request.
+     */
+    private synchronized long percentileNanos(double percentile) {
+      if (count < MIN_SAMPLES) {
+        return -1;
+      }
+      if (percentileNanos < 0 || samplesSinceUpdate >= PERCENTILE_UPDATE_INTERVAL) {
+        long[] sortedSamples = Arrays.copyOf(samples, count);
+        Arrays.sort(sortedSamples);
+        int index = (int) Math.ceil(percentile / 100 * count) - 1;
+        percentileNanos = sortedSamples[Math.max(index, 0)];
+        samplesSinceUpdate = 0;
+      }
+      return percentileNanos;
+    }
+  }
+}
@@ -0,0 +1,94 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.time.Duration;
+
+/**
+ * A policy for hedging requests, which can be set using {@link
+ * OpenAI.Builder#hedgingPolicy(HedgingPolicy)} to reduce the tail latency of calls which are safe
+ * to repeat. Only the requests which create embeddings or moderations are hedged, because they
+ * don't have side effects.
+ *
+ * <p>The latencies of the responses are tracked per endpoint. When a request hasn't completed
+ * after the configured percentile of the latencies of its endpoint, a duplicate request is sent.
+ * The first response wins and the other request is cancelled. The number of duplicate requests is
+ * bounded by a budget, which is a fraction of the requests that are sent.
+ */
+public final class HedgingPolicy {
+
+  private final double percentile;
+  private final double budget;
+  private final Duration minDelay;
+
+  private HedgingPolicy(double percentile, double budget, Duration minDelay) {
+    this.percentile = percentile;
+    this.budget = budget;
+    this.minDelay = minDelay;
+  }
+
+  public double percentile() {
+    return percentile;
+  }
+
+  public double budget() {
+    return budget;
+  }
+
+  public Duration minDelay() {
+    return minDelay;
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  public static class Builder {
+
+    private static final double DEFAULT_PERCENTILE = 95;
+    private static final double DEFAULT_BUDGET = 0.05;
+    private static final Duration DEFAULT_MIN_DELAY = Duration.ofMillis(10);
+
+    private double percentile = DEFAULT_PERCENTILE;
+    private double budget = DEFAULT_BUDGET;
+    private Duration minDelay = DEFAULT_MIN_DELAY;
+
+    /**
+     * @param percentile the percentile of the latencies of an endpoint after which a duplicate
+     *     request is sent, between 0 (exclusive) and 100 (exclusive). Defaults to 95.
+     */
+    public Builder percentile(double percentile) {
+      if (percentile <= 0 || percentile >= 100) {
+        throw new IllegalArgumentException("percentile must be between 0 and 100");
+      }
+      this.percentile = percentile;
+      return this;
+    }
+
+    /**
+     * @param budget the maximum number of duplicate requests as a fraction of the requests which
+     *     can be hedged, for example 0.05 for at most 5% extra requests. Defaults to 0.05.
+     */
+    public Builder budget(double budget) {
+      if (budget <= 0 || budget > 1) {
+        throw new IllegalArgumentException("budget must be greater than 0 and at most 1");
+      }
+      this.budget = budget;
+      return this;
+    }
+
+    /**
+     * @param minDelay the minimum time to wait before sending a duplicate request, regardless of
+     *     the tracked latencies. Defaults to 10 milliseconds.
+     */
+    public Builder minDelay(Duration minDelay) {
+      if (minDelay.isNegative()) {
+        throw new IllegalArgumentException("minDelay must not be negative");
+      }
+      this.minDelay = minDelay;
+      return this;
+    }
+
+    public HedgingPolicy build() {
+      return new HedgingPolicy(percentile, budget, minDelay);
+    }
+  }
+}
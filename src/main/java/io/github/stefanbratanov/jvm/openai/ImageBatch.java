@@ -0,0 +1,243 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A batch of image generation requests which are sent concurrently, within a limit of requests in
+ * flight and a limit of requests started per minute. The results are made available in the order in
+ * which the requests complete, as soon as they complete. A failed request doesn't affect the other
+ * requests of the batch.
+ *
+ * <p>Create a batch using {@link ImagesClient#createImageBatch(List, int, int)}.
+ */
+public final class ImageBatch {
+
+  private final List<CreateImageRequest> requests;
+  private final Function<CreateImageRequest, CompletableFuture<Images>> createImage;
+  private final int maxConcurrency;
+  private final long minIntervalNanos;
+
+  private final BlockingQueue<Result> results = new LinkedBlockingQueue<>();
+  private final List<CompletableFuture<Images>> inFlightRequests = new ArrayList<>();
+
+  // guarded by "this"
+  private int nextIndex = 0;
+  private long lastStartNanos;
+  private boolean dispatchScheduled = false;
+  private boolean cancelled = false;
+
+  ImageBatch(
+      List<CreateImageRequest> requests,
+      Function<CreateImageRequest, CompletableFuture<Images>> createImage,
+      int maxConcurrency,
+      int maxRequestsPerMinute) {
+    if (maxConcurrency <= 0) {
+      throw new IllegalArgumentException("maxConcurrency must be positive");
+    }
+    if (maxRequestsPerMinute <= 0) {
+      throw new IllegalArgumentException("maxRequestsPerMinute must be positive");
+    }
+    this.requests = List.copyOf(requests);
+    this.createImage = createImage;
+    this.maxConcurrency = maxConcurrency;
+    this.minIntervalNanos = Duration.ofMinutes(1).toNanos() / maxRequestsPerMinute;
+    this.lastStartNanos = System.nanoTime() - minIntervalNanos;
+    dispatch();
+  }
+
+  /**
+   * @param index the index of the request in the batch
+   * @param images the generated images if the request was successful
+   * @param error the failure if the request was not successful, which is a {@link
+   *     CancellationException} if the batch was cancelled before the request completed
+   */
+  public record Result(
+      int index,
+      CreateImageRequest request,
+      Optional<Images> images,
+      Optional<RuntimeException> error) {
+
+    public boolean isSuccessful() {
+      return images.isPresent();
+    }
+  }
+
+  /**
+   * @return the number of requests in the batch
+   */
+  public int size() {
+    return requests.size();
+  }
+
+  /**
+   * Returns the results in the order in which the requests complete. Consuming the stream blocks
+   * until the next request completes. There is exactly one result for each request, so the stream
+   * ends after {@link #size()} results. The stream can only be consumed once.
+   */
+  public Stream<Result> results() {
+    Iterator<Result> iterator =
+        new Iterator<>() {
+          private int returned = 0;
+
+          @Override
+          public boolean hasNext() {
+            return returned < requests.size();
+          }
+
+          @Override
+          public Result next() {
+            if (!hasNext()) {
+              throw new NoSuchElementException();
+            }
+            try {
+              Result result = results.take();
+              returned++;
+              return result;
+            } catch (InterruptedException ex) {
+              java.lang.Thread.currentThread().interrupt();
+              throw new RuntimeException("Operation was interrupted", ex);
+            }
+          }
+        };
+    return StreamSupport.stream(
+        Spliterators.spliterator(
+            iterator, requests.size(), Spliterator.ORDERED | Spliterator.NONNULL),
+        false);
+  }
+
+  /**
+   * Cancels the requests which have not completed yet. The requests which have not been sent yet
+   * are never sent. The exchanges of the requests which are in flight are aborted, but the requests
+   * may still complete on the server. Each cancelled request has a result with a {@link
+   * CancellationException}.
+   */
+  public void cancel() {
+    List<CompletableFuture<Images>> toCancel;
+    synchronized (this) {
+      if (cancelled) {
+        return;
+      }
+      cancelled = true;
+      toCancel = List.copyOf(inFlightRequests);
+      for (int index = nextIndex; index < requests.size(); index++) {
+        results.add(failedResult(index, new CancellationException("The batch was cancelled")));
+      }
+      nextIndex = requests.size();
+    }
+    toCancel.forEach(inFlightRequest -> inFlightRequest.cancel(false));
+  }
+
+  private void dispatch() {
+    List<Runnable> starts = new ArrayList<>();
+    synchronized (this) {
+      dispatchScheduled = false;
+      while (!cancelled
+          && nextIndex < requests.size()
+          && inFlightRequests.size() < maxConcurrency) {
+        long now = System.nanoTime();
+        long delayNanos = lastStartNanos + minIntervalNanos - now;
+        if (delayNanos > 0) {
+          scheduleDispatch(delayNanos);
+          break;
+        }
+        lastStartNanos = now;
+        int index = nextIndex++;
+        AtomicReference<CompletableFuture<Images>> exchange = new AtomicReference<>();
+        // cancelling the request aborts its exchange once it was sent
+        CompletableFuture<Images> inFlightRequest =
+            new CancellableFuture<>(
+                () -> {
+                  CompletableFuture<Images> sentExchange = exchange.get();
+                  if (sentExchange != null) {
+                    sentExchange.cancel(true);
+                  }
+                });
+        inFlightRequests.add(inFlightRequest);
+        starts.add(() -> start(index, inFlightRequest, exchange));
+      }
+    }
+    // the requests are started outside of the lock, as sending a request may complete it inline
+    starts.forEach(Runnable::run);
+  }
+
+  private void scheduleDispatch(long delayNanos) {
+    if (!dispatchScheduled) {
+      dispatchScheduled = true;
+      CompletableFuture.runAsync(
+          this::dispatch, CompletableFuture.delayedExecutor(delayNanos, TimeUnit.NANOSECONDS));
+    }
+  }
+
+  private void start(
+      int index,
+      CompletableFuture<Images> inFlightRequest,
+      AtomicReference<CompletableFuture<Images>> exchange) {
+    inFlightRequest.whenComplete((images, ex) -> complete(index, inFlightRequest, images, ex));
+    synchronized (this) {
+      if (cancelled) {
+        // the request is cancelled by cancel(), as it was in flight when the batch was cancelled
+        return;
+      }
+    }
+    try {
+      CompletableFuture<Images> sentExchange = createImage.apply(requests.get(index));
+      exchange.set(sentExchange);
+      if (inFlightRequest.isDone()) {
+        // cancelled while the request was being sent
+        sentExchange.cancel(true);
+      }
+      sentExchange.whenComplete(
+          (images, ex) -> {
+            if (ex == null) {
+              inFlightRequest.complete(images);
+            } else {
+              inFlightRequest.completeExceptionally(ex);
+            }
+          });
+    } catch (RuntimeException ex) {
+      inFlightRequest.completeExceptionally(ex);
+    }
+  }
+
+  private void complete(
+      int index, CompletableFuture<Images> inFlightRequest, Images images, Throwable ex) {
+    synchronized (this) {
+      inFlightRequests.remove(inFlightRequest);
+    }
+    if (ex == null) {
+      results.add(new Result(index, requests.get(index), Optional.of(images), Optional.empty()));
+    } else {
+      results.add(failedResult(index, unwrap(ex)));
+    }
+    dispatch();
+  }
+
+  private Result failedResult(int index, RuntimeException error) {
+    return new Result(index, requests.get(index), Optional.empty(), Optional.of(error));
+  }
+
+  private RuntimeException unwrap(Throwable ex) {
+    Throwable cause = ex instanceof CompletionException ? ex.getCause() : ex;
+    if (cause instanceof RuntimeException runtimeException) {
+      return runtimeException;
+    }
+    return new CompletionException(cause);
+  }
+}
@@ -1,12 +1,29 @@
 package io.github.stefanbratanov.jvm.openai;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.IntFunction;
 
 /**
  * Given a prompt and/or an input image, the model will generate a new image.
@@ -15,6 +32,11 @@ import java.util.concurrent.CompletableFuture;
  */
 public final class ImagesClient extends OpenAIClient {
 
+  private static final String B64_JSON_RESPONSE_FORMAT = "b64_json";
+  private static final int DEFAULT_BATCH_CONCURRENCY = 4;
+
+  private final ObjectMapper objectMapper = ObjectMapperSingleton.getInstance();
+
   private final URI baseUrl;
 
   ImagesClient(
@@ -35,7 +57,7 @@ public final class ImagesClient extends OpenAIClient {
   public Images createImage(CreateImageRequest request) {
     HttpRequest httpRequest = createImagePostRequest(request);
 
-    HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
     return deserializeResponse(httpResponse.body(), Images.class);
   }
 
@@ -58,7 +80,7 @@ public final class ImagesClient extends OpenAIClient {
   public Images editImage(EditImageRequest request) {
     HttpRequest httpRequest = editImagePostRequest(request);
 
-    HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
     return deserializeResponse(httpResponse.body(), Images.class);
   }
 
@@ -81,7 +103,7 @@ public final class ImagesClient extends OpenAIClient {
   public Images createImageVariation(CreateImageVariationRequest request) {
     HttpRequest httpRequest = createImageVariationPostRequest(request);
 
-    HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
     return deserializeResponse(httpResponse.body(), Images.class);
   }
 
@@ -96,6 +118,202 @@ public final class ImagesClient extends OpenAIClient {
         .thenApply(httpResponse -> deserializeResponse(httpResponse.body(), Images.class));
   }
 
+  /**
+   * Same as {@link #createImageBatch(List, int, int)} with up to 4 requests in flight and no limit
+   * of requests per minute.
+   */
+  public ImageBatch createImageBatch(List<CreateImageRequest> requests) {
+    return createImageBatch(requests, DEFAULT_BATCH_CONCURRENCY, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Creates images for each of the requests concurrently. This is useful when more images are
+   * needed than a single request allows, for example with {@code dall-e-3}, which only supports
+   * {@code n=1}. The requests are sent as soon as the batch is created.
+   *
+   * @param maxConcurrency the maximum number of requests in flight at a time
+   * @param maxRequestsPerMinute the maximum number of requests started per minute, which are
+   *     spread evenly over the minute
+   * @return the batch from which the results can be consumed as they complete
+   */
+  public ImageBatch createImageBatch(
+      List<CreateImageRequest> requests, int maxConcurrency, int maxRequestsPerMinute) {
+    return new ImageBatch(requests, this::createImageAsync, maxConcurrency, maxRequestsPerMinute);
+  }
+
+  /**
+   * Same as {@link #createImage(CreateImageRequest)} but each image is decoded from {@code
+   * b64_json} while the response is parsed and is written to the channel returned by {@code
+   * imageChannels} for the index of the image. The encoded or decoded image is never held in
+   * memory as a whole. The channels are not closed. The returned images contain everything but
+   * {@link Images.Image#b64Json()}.
+   *
+   * @param imageChannels returns the channel for the image at the given index
+   * @throws IllegalArgumentException if the response format of the request is missing or is not
+   *     {@code b64_json}
+   * @throws OpenAIException in case of API errors
+   */
+  public Images createImage(
+      CreateImageRequest request, IntFunction<WritableByteChannel> imageChannels) {
+    validateResponseFormat(request.responseFormat());
+    return decodeImages(createImagePostRequest(request), imageChannels, false);
+  }
+
+  /**
+   * Same as {@link #createImage(CreateImageRequest, IntFunction)} but each image is written to a
+   * file named {@code image-<index>.png} in the given directory. Existing files are overwritten.
+   *
+   * @param outputDirectory the directory where to save the images, which is created if missing
+   * @throws OpenAIException in case of API errors
+   */
+  public Images createImage(CreateImageRequest request, Path outputDirectory) {
+    validateResponseFormat(request.responseFormat());
+    return decodeImages(
+        createImagePostRequest(request), createImageFileChannels(outputDirectory), true);
+  }
+
+  /**
+   * Same as {@link #editImage(EditImageRequest)} but the images are decoded to the given channels
+   * as in {@link #createImage(CreateImageRequest, IntFunction)}
+   *
+   * @throws OpenAIException in case of API errors
+   */
+  public Images editImage(
+      EditImageRequest request, IntFunction<WritableByteChannel> imageChannels) {
+    validateResponseFormat(request.responseFormat());
+    return decodeImages(editImagePostRequest(request), imageChannels, false);
+  }
+
+  /**
+   * Same as {@link #editImage(EditImageRequest)} but the images are decoded to files as in {@link
+   * #createImage(CreateImageRequest, Path)}
+   *
+   * @throws OpenAIException in case of API errors
+   */
+  public Images editImage(EditImageRequest request, Path outputDirectory) {
+    validateResponseFormat(request.responseFormat());
+    return decodeImages(
+        editImagePostRequest(request), createImageFileChannels(outputDirectory), true);
+  }
+
+  /**
+   * Same as {@link #createImageVariation(CreateImageVariationRequest)} but the images are decoded
+   * to the given channels as in {@link #createImage(CreateImageRequest, IntFunction)}
+   *
+   * @throws OpenAIException in case of API errors
+   */
+  public Images createImageVariation(
+      CreateImageVariationRequest request, IntFunction<WritableByteChannel> imageChannels) {
+    validateResponseFormat(request.responseFormat());
+    return decodeImages(createImageVariationPostRequest(request), imageChannels, false);
+  }
+
+  /**
+   * Same as {@link #createImageVariation(CreateImageVariationRequest)} but the images are decoded
+   * to files as in {@link #createImage(CreateImageRequest, Path)}
+   *
+   * @throws OpenAIException in case of API errors
+   */
+  public Images createImageVariation(CreateImageVariationRequest request, Path outputDirectory) {
+    validateResponseFormat(request.responseFormat());
+    return decodeImages(
+        createImageVariationPostRequest(request), createImageFileChannels(outputDirectory), true);
+  }
+
+  /**
+   * Parses the response incrementally, so the base64 decoding of each {@code b64_json} field is
+   * done in small chunks straight from the buffer of the parser into the channel.
+   */
+  private Images decodeImages(
+      HttpRequest httpRequest,
+      IntFunction<WritableByteChannel> imageChannels,
+      boolean closeChannels) {
+    HttpResponse<InputStream> httpResponse =
+        sendHttpRequest(httpRequest, withErrorBody(BodyHandlers.ofInputStream()));
+    try (JsonParser parser = objectMapper.createParser(httpResponse.body())) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new IOException("Expected a JSON object in the response");
+      }
+      long created = 0;
+      List<Images.Image> images = new ArrayList<>();
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String fieldName = parser.currentName();
+        JsonToken value = parser.nextToken();
+        if (fieldName.equals("created")) {
+          created = parser.getLongValue();
+        } else if (fieldName.equals("data") && value == JsonToken.START_ARRAY) {
+          while (parser.nextToken() == JsonToken.START_OBJECT) {
+            images.add(decodeImage(parser, images.size(), imageChannels, closeChannels));
+          }
+        } else {
+          parser.skipChildren();
+        }
+      }
+      return new Images(created, images);
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  private Images.Image decodeImage(
+      JsonParser parser,
+      int index,
+      IntFunction<WritableByteChannel> imageChannels,
+      boolean closeChannels)
+      throws IOException {
+    String url = null;
+    String revisedPrompt = null;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String fieldName = parser.currentName();
+      JsonToken value = parser.nextToken();
+      switch (fieldName) {
+        case "b64_json" -> {
+          if (value == JsonToken.VALUE_STRING) {
+            WritableByteChannel channel = imageChannels.apply(index);
+            try {
+              parser.readBinaryValue(Channels.newOutputStream(channel));
+            } finally {
+              if (closeChannels) {
+                channel.close();
+              }
+            }
+          }
+        }
+        case "url" -> url = parser.getValueAsString();
+        case "revised_prompt" -> revisedPrompt = parser.getValueAsString();
+        default -> parser.skipChildren();
+      }
+    }
+    return new Images.Image(null, url, revisedPrompt);
+  }
+
+  private IntFunction<WritableByteChannel> createImageFileChannels(Path outputDirectory) {
+    try {
+      Files.createDirectories(outputDirectory);
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+    return index -> {
+      try {
+        return FileChannel.open(
+            outputDirectory.resolve("image-" + index + ".png"),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+      } catch (IOException ex) {
+        throw new UncheckedIOException(ex);
+      }
+    };
+  }
+
+  private void validateResponseFormat(Optional<String> responseFormat) {
+    // the API returns urls if the response format is missing
+    if (!responseFormat.filter(B64_JSON_RESPONSE_FORMAT::equals).isPresent()) {
+      throw new IllegalArgumentException(
+          "Images can only be decoded when the response format is " + B64_JSON_RESPONSE_FORMAT);
+    }
+  }
+
   private HttpRequest createImagePostRequest(CreateImageRequest request) {
     return newHttpRequestBuilder(Constants.CONTENT_TYPE_HEADER, Constants.JSON_MEDIA_TYPE)
         .uri(baseUrl.resolve(Endpoint.IMAGE_GENERATION.getPath()))
@@ -0,0 +1,75 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.io.ByteArrayOutputStream;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.util.Optional;
+import java.util.concurrent.Flow;
+
+/**
+ * Reads the bodies of the requests which are sent by this library. They are published
+ * synchronously from memory, so they can be read on the calling thread and published again when
+ * the request is sent.
+ */
+class InMemoryBody {
+
+  private InMemoryBody() {}
+
+  /**
+   * @return the bytes of the body, or empty if its length is unknown or greater than the maximum
+   *     size, or it isn't published synchronously
+   */
+  static Optional<byte[]> read(HttpRequest.BodyPublisher bodyPublisher, long maxSize) {
+    long contentLength = bodyPublisher.contentLength();
+    if (contentLength <= 0 || contentLength > maxSize) {
+      return Optional.empty();
+    }
+    Collector collector = new Collector((int) contentLength);
+    bodyPublisher.subscribe(collector);
+    if (!collector.completed) {
+      collector.cancel();
+      return Optional.empty();
+    }
+    return Optional.of(collector.body.toByteArray());
+  }
+
+  private static class Collector implements Flow.Subscriber<ByteBuffer> {
+
+    private final ByteArrayOutputStream body;
+    private Flow.Subscription subscription;
+    private boolean completed = false;
+
+    private Collector(int size) {
+      this.body = new ByteArrayOutputStream(size);
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+      this.subscription = subscription;
+      subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(ByteBuffer item) {
+      byte[] bytes = new byte[item.remaining()];
+      item.get(bytes);
+      body.write(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      // the body is not read
+    }
+
+    @Override
+    public void onComplete() {
+      completed = true;
+    }
+
+    private void cancel() {
+      if (subscription != null) {
+        subscription.cancel();
+      }
+    }
+  }
+}
@@ -0,0 +1,223 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * A streaming decoder of the "gzip" and "deflate" encodings backed by an {@link Inflater}. Unlike
+ * {@link java.util.zip.GZIPInputStream}, it is fed with the chunks of a body as they arrive, so no
+ * thread blocks while waiting for the next chunk.
+ */
+class InflatingDecoder implements ContentCodec.Decoder {
+
+  static final ContentCodec GZIP = new Codec("gzip", true);
+  static final ContentCodec DEFLATE = new Codec("deflate", false);
+
+  private static final int OUTPUT_BUFFER_SIZE = 16 * 1024;
+  private static final int TRAILER_SIZE = 8;
+
+  private static final int FHCRC = 2;
+  private static final int FEXTRA = 4;
+  private static final int FNAME = 8;
+  private static final int FCOMMENT = 16;
+
+  private enum State {
+    HEADER,
+    DATA,
+    TRAILER,
+    END
+  }
+
+  private final boolean gzip;
+  private final Inflater inflater;
+  private final CRC32 crc = new CRC32();
+  private final byte[] outputBuffer = new byte[OUTPUT_BUFFER_SIZE];
+  // the bytes of a gzip header or trailer which is not complete yet
+  private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+
+  private State state;
+  private boolean received = false;
+
+  InflatingDecoder(boolean gzip) {
+    this.gzip = gzip;
+    this.inflater = new Inflater(gzip);
+    this.state = gzip ? State.HEADER : State.DATA;
+  }
+
+  @Override
+  public void decode(ByteBuffer input, List<ByteBuffer> output) throws IOException {
+    try {
+      decodeInput(input, output);
+    } catch (IOException ex) {
+      // the body can't be decoded any further
+      inflater.end();
+      throw ex;
+    }
+  }
+
+  @Override
+  public void finish() throws IOException {
+    try {
+      if (received && state != State.END) {
+        throw new EOFException("Unexpected end of the " + (gzip ? "gzip" : "deflate") + " body");
+      }
+    } finally {
+      inflater.end();
+    }
+  }
+
+  @Override
+  public void release() {
+    inflater.end();
+  }
+
+  private void decodeInput(ByteBuffer input, List<ByteBuffer> output) throws IOException {
+    received |= input.hasRemaining();
+    while (input.hasRemaining()) {
+      switch (state) {
+        case HEADER -> {
+          pending.write(input.get());
+          if (isCompleteHeader(pending.toByteArray())) {
+            pending.reset();
+            state = State.DATA;
+          }
+        }
+        case DATA -> inflate(input, output);
+        case TRAILER -> {
+          pending.write(input.get());
+          if (pending.size() == TRAILER_SIZE) {
+            verifyTrailer(pending.toByteArray());
+            pending.reset();
+            state = State.END;
+          }
+        }
+        case END -> {
+          if (!gzip) {
+            // trailing bytes after the zlib stream are ignored
+            input.position(input.limit());
+            return;
+          }
+          // another gzip member follows
+          inflater.reset();
+          crc.reset();
+          state = State.HEADER;
+        }
+      }
+    }
+  }
+
+  private void inflate(ByteBuffer input, List<ByteBuffer> output) throws IOException {
+    inflater.setInput(input);
+    try {
+      while (true) {
+        int inflated = inflater.inflate(outputBuffer);
+        if (inflated > 0) {
+          crc.update(outputBuffer, 0, inflated);
+          output.add(ByteBuffer.wrap(Arrays.copyOf(outputBuffer, inflated)));
+        }
+        if (inflater.finished()) {
+          state = gzip ? State.TRAILER : State.END;
+          return;
+        }
+        if (inflater.needsDictionary()) {
+          throw new ZipException("A preset dictionary is not supported");
+        }
+        if (inflated == 0 && inflater.needsInput()) {
+          return;
+        }
+      }
+    } catch (DataFormatException ex) {
+      throw new ZipException(ex.getMessage());
+    }
+  }
+
+  private boolean isCompleteHeader(byte[] header) throws IOException {
+    if (header.length >= 2 && ((header[0] & 0xff) != 0x1f || (header[1] & 0xff) != 0x8b)) {
+      throw new ZipException("Not in gzip format");
+    }
+    if (header.length >= 3 && header[2] != 8) {
+      throw new ZipException("Unsupported compression method");
+    }
+    if (header.length < 10) {
+      return false;
+    }
+    int flags = header[3] & 0xff;
+    int length = 10;
+    if ((flags & FEXTRA) != 0) {
+      if (header.length < length + 2) {
+        return false;
+      }
+      length += 2 + ((header[length] & 0xff) | (header[length + 1] & 0xff) << 8);
+    }
+    if ((flags & FNAME) != 0) {
+      length = skipZeroTerminated(header, length);
+    }
+    if ((flags & FCOMMENT) != 0) {
+      length = skipZeroTerminated(header, length);
+    }
+    if ((flags & FHCRC) != 0 && length >= 0) {
+      length += 2;
+    }
+    return length >= 0 && header.length == length;
+  }
+
+  /**
+   * @return the offset after the zero byte which terminates the field or -1 if it wasn't received
+   */
+  private int skipZeroTerminated(byte[] header, int offset) {
+    if (offset < 0) {
+      return -1;
+    }
+    for (int i = offset; i < header.length; i++) {
+      if (header[i] == 0) {
+        return i + 1;
+      }
+    }
+    return -1;
+  }
+
+  private void verifyTrailer(byte[] trailer) throws IOException {
+    if (readUnsignedInt(trailer, 0) != crc.getValue()) {
+      throw new ZipException("Corrupt gzip body (CRC mismatch)");
+    }
+    if (readUnsignedInt(trailer, 4) != (inflater.getBytesWritten() & 0xffffffffL)) {
+      throw new ZipException("Corrupt gzip body (size mismatch)");
+    }
+  }
+
+  private long readUnsignedInt(byte[] bytes, int offset) {
+    return (bytes[offset] & 0xffL)
+        | (bytes[offset + 1] & 0xffL) << 8
+        | (bytes[offset + 2] & 0xffL) << 16
+        | (bytes[offset + 3] & 0xffL) << 24;
+  }
+
+  private static class Codec implements ContentCodec {
+
+    private final String encoding;
+    private final boolean gzip;
+
+    private Codec(String encoding, boolean gzip) {
+      this.encoding = encoding;
+      this.gzip = gzip;
+    }
+
+    @Override
+    public String encoding() {
+      return encoding;
+    }
+
+    @Override
+    public Decoder newDecoder() {
+      return new InflatingDecoder(gzip);
+    }
+  }
+}
@@ -0,0 +1,285 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Isolates the endpoints from each other with a circuit breaker and a bulkhead per {@link
+ * Endpoint}. A request which is rejected by either of them fails with a {@link
+ * RequestRejectedException} without being sent. Requests to paths which don't belong to a known
+ * endpoint are not isolated.
+ *
+ * <p>A request holds its place in the bulkhead until its response is returned by the delegate, so
+ * the streaming of a response body after that is not counted.
+ */
+class IsolatingHttpClient extends DelegatingHttpClient {
+
+  private final String baseUrl;
+  private final int maxConcurrentRequestsPerEndpoint;
+  private final Map<Endpoint, CircuitBreaker> circuitBreakers = new EnumMap<>(Endpoint.class);
+  private final Map<Endpoint, Semaphore> bulkheads = new EnumMap<>(Endpoint.class);
+
+  IsolatingHttpClient(
+      HttpClient delegate,
+      Optional<CircuitBreakerPolicy> circuitBreakerPolicy,
+      Optional<Integer> maxConcurrentRequestsPerEndpoint,
+      URI baseUrl) {
+    super(delegate);
+    this.baseUrl = baseUrl.toString();
+    this.maxConcurrentRequestsPerEndpoint = maxConcurrentRequestsPerEndpoint.orElse(0);
+    for (Endpoint endpoint : Endpoint.values()) {
+      circuitBreakerPolicy.ifPresent(
+          policy -> circuitBreakers.put(endpoint, new CircuitBreaker(policy)));
+      maxConcurrentRequestsPerEndpoint.ifPresent(
+          maxConcurrentRequests -> bulkheads.put(endpoint, new Semaphore(maxConcurrentRequests)));
+    }
+  }
+
+  @Override
+  public <T> HttpResponse<T> send(
+      HttpRequest request, HttpResponse.BodyHandler<T> responseBodyHandler)
+      throws IOException, InterruptedException {
+    Optional<Endpoint> endpoint = getEndpoint(request);
+    if (endpoint.isEmpty()) {
+      return super.send(request, responseBodyHandler);
+    }
+    Permit permit = acquirePermit(endpoint.get());
+    try {
+      HttpResponse<T> httpResponse = super.send(request, responseBodyHandler);
+      permit.onResponse(httpResponse.statusCode());
+      return httpResponse;
+    } catch (IOException ex) {
+      permit.onFailure();
+      throw ex;
+    } finally {
+      // the outcome is not known when the call is interrupted
+      permit.release();
+    }
+  }
+
+  @Override
+  public <T> CompletableFuture<HttpResponse<T>> sendAsync(
+      HttpRequest request, HttpResponse.BodyHandler<T> responseBodyHandler) {
+    Optional<Endpoint> endpoint = getEndpoint(request);
+    if (endpoint.isEmpty()) {
+      return super.sendAsync(request, responseBodyHandler);
+    }
+    Permit permit;
+    try {
+      permit = acquirePermit(endpoint.get());
+    } catch (RequestRejectedException ex) {
+      return CompletableFuture.failedFuture(ex);
+    }
+    // cancelling the returned future aborts the exchange
+    return CancellableFuture.of(super.sendAsync(request, responseBodyHandler))
+        .whenComplete(
+            (httpResponse, ex) -> {
+              if (ex == null) {
+                permit.onResponse(httpResponse.statusCode());
+              } else if (ex instanceof IOException
+                  || (ex instanceof CompletionException && ex.getCause() instanceof IOException)) {
+                permit.onFailure();
+              }
+              permit.release();
+            });
+  }
+
+  private Optional<Endpoint> getEndpoint(HttpRequest request) {
+    String uri = request.uri().toString();
+    if (!uri.startsWith(baseUrl)) {
+      return Optional.empty();
+    }
+    return Endpoint.fromPath(uri.substring(baseUrl.length()));
+  }
+
+  private Permit acquirePermit(Endpoint endpoint) {
+    Semaphore bulkhead = bulkheads.get(endpoint);
+    if (bulkhead != null && !bulkhead.tryAcquire()) {
+      throw new RequestRejectedException(
+          RequestRejectedException.Reason.BULKHEAD_FULL,
+          endpoint.getPath(),
+          "The maximum of "
+              + maxConcurrentRequestsPerEndpoint
+              + " concurrent requests to "
+              + endpoint.getPath()
+              + " are in flight");
+    }
+    CircuitBreaker circuitBreaker = circuitBreakers.get(endpoint);
+    if (circuitBreaker != null && !circuitBreaker.tryAcquirePermission(System.nanoTime())) {
+      if (bulkhead != null) {
+        bulkhead.release();
+      }
+      throw new RequestRejectedException(
+          RequestRejectedException.Reason.CIRCUIT_OPEN,
+          endpoint.getPath(),
+          "The circuit breaker of " + endpoint.getPath() + " is open");
+    }
+    return new Permit(circuitBreaker, bulkhead);
+  }
+
+  /** The permission of a request to be sent, which is released once its outcome is known */
+  private static class Permit {
+
+    private final CircuitBreaker circuitBreaker;
+    private final Semaphore bulkhead;
+    private final long startNanos = System.nanoTime();
+    private final AtomicBoolean recorded = new AtomicBoolean();
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    private Permit(CircuitBreaker circuitBreaker, Semaphore bulkhead) {
+      this.circuitBreaker = circuitBreaker;
+      this.bulkhead = bulkhead;
+    }
+
+    private void onResponse(int statusCode) {
+      record(statusCode >= 500);
+    }
+
+    private void onFailure() {
+      record(true);
+    }
+
+    private void release() {
+      if (!released.compareAndSet(false, true)) {
+        return;
+      }
+      if (circuitBreaker != null && recorded.compareAndSet(false, true)) {
+        circuitBreaker.onIgnored();
+      }
+      if (bulkhead != null) {
+        bulkhead.release();
+      }
+    }
+
+    private void record(boolean failure) {
+      if (circuitBreaker != null && recorded.compareAndSet(false, true)) {
+        long now = System.nanoTime();
+        circuitBreaker.onResult(failure, now - startNanos, now);
+      }
+    }
+  }
+
+  /**
+   * A circuit breaker whose failure and slow call rates are computed over a sliding window of the
+   * most recent calls
+   */
+  static final class CircuitBreaker {
+
+    enum State {
+      CLOSED,
+      OPEN,
+      HALF_OPEN
+    }
+
+    private static final byte FAILED = 1;
+    private static final byte SLOW = 2;
+
+    private final CircuitBreakerPolicy policy;
+    private final long slowCallNanos;
+
+    // guarded by "this"
+    private final byte[] outcomes;
+    private int count = 0;
+    private int next = 0;
+    private int failedCount = 0;
+    private int slowCount = 0;
+    private State state = State.CLOSED;
+    private long openedAtNanos;
+    private int halfOpenPermits = 0;
+
+    CircuitBreaker(CircuitBreakerPolicy policy) {
+      this.policy = policy;
+      this.slowCallNanos = policy.slowCallDuration().map(Duration::toNanos).orElse(Long.MAX_VALUE);
+      this.outcomes = new byte[policy.slidingWindowSize()];
+    }
+
+    synchronized State state(long now) {
+      if (state == State.OPEN && now - openedAtNanos >= policy.openDuration().toNanos()) {
+        transitionTo(State.HALF_OPEN, now);
+      }
+      return state;
+    }
+
+    synchronized boolean tryAcquirePermission(long now) {
+      return switch (state(now)) {
+        case CLOSED -> true;
+        case OPEN -> false;
+        case HALF_OPEN -> {
+          if (halfOpenPermits == 0) {
+            yield false;
+          }
+          halfOpenPermits--;
+          yield true;
+        }
+      };
+    }
+
+    synchronized void onResult(boolean failed, long latencyNanos, long now) {
+      if (state == State.OPEN) {
+        // a call which was sent before the circuit opened
+        return;
+      }
+      byte outcome = 0;
+      if (failed) {
+        outcome |= FAILED;
+      }
+      if (latencyNanos > slowCallNanos) {
+        outcome |= SLOW;
+      }
+      if (count == outcomes.length) {
+        byte evicted = outcomes[next];
+        failedCount -= evicted & FAILED;
+        slowCount -= (evicted & SLOW) >> 1;
+      } else {
+        count++;
+      }
+      outcomes[next] = outcome;
+      next = (next + 1) % outcomes.length;
+      failedCount += outcome & FAILED;
+      slowCount += (outcome & SLOW) >> 1;
+      if (state == State.HALF_OPEN) {
+        if (count >= policy.permittedCallsInHalfOpenState()) {
+          transitionTo(exceedsThresholds() ? State.OPEN : State.CLOSED, now);
+        }
+      } else if (count >= policy.minimumNumberOfCalls() && exceedsThresholds()) {
+        transitionTo(State.OPEN, now);
+      }
+    }
+
+    /** Gives back the permission of a call whose outcome is unknown, for example when cancelled */
+    synchronized void onIgnored() {
+      if (state == State.HALF_OPEN) {
+        halfOpenPermits = Math.min(halfOpenPermits + 1, policy.permittedCallsInHalfOpenState());
+      }
+    }
+
+    private boolean exceedsThresholds() {
+      return failedCount >= policy.failureRateThreshold() * count
+          || slowCount >= policy.slowCallRateThreshold() * count;
+    }
+
+    private void transitionTo(State newState, long now) {
+      state = newState;
+      count = 0;
+      next = 0;
+      failedCount = 0;
+      slowCount = 0;
+      if (newState == State.OPEN) {
+        openedAtNanos = now;
+      } else if (newState == State.HALF_OPEN) {
+        halfOpenPermits = policy.permittedCallsInHalfOpenState();
+      }
+    }
+  }
+}
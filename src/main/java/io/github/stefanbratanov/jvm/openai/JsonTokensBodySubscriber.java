@@ -0,0 +1,141 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteBufferFeeder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * A {@link HttpResponse.BodySubscriber} which feeds the received {@link ByteBuffer}s straight into
+ * Jackson's non-blocking parser and buffers the parsed tokens. The tokens are stored in small
+ * segments, so no array holding the full body is allocated and binding the tokens doesn't have to
+ * parse the body again.
+ *
+ * <p>If the body is not valid JSON, the body will complete exceptionally when {@code strict} is
+ * set, otherwise it will complete with null. The latter is useful for error responses which may
+ * not be JSON. The same applies when the body is larger than {@code maxBodySize}, in which case the
+ * rest of the body is not received.
+ */
+class JsonTokensBodySubscriber implements HttpResponse.BodySubscriber<TokenBuffer> {
+
+  private final CompletableFuture<TokenBuffer> body = new CompletableFuture<>();
+
+  private final JsonParser parser;
+  private final ByteBufferFeeder feeder;
+  private final TokenBuffer tokenBuffer;
+  private final boolean strict;
+  private final long maxBodySize;
+
+  private Flow.Subscription subscription;
+  private long bodySize = 0;
+
+  JsonTokensBodySubscriber(ObjectMapper objectMapper, boolean strict) {
+    this(objectMapper, strict, Long.MAX_VALUE);
+  }
+
+  JsonTokensBodySubscriber(ObjectMapper objectMapper, boolean strict, long maxBodySize) {
+    try {
+      parser = objectMapper.getFactory().createNonBlockingByteBufferParser();
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+    feeder = (ByteBufferFeeder) parser.getNonBlockingInputFeeder();
+    tokenBuffer = new TokenBuffer(parser);
+    this.strict = strict;
+    this.maxBodySize = maxBodySize;
+  }
+
+  static HttpResponse.BodyHandler<TokenBuffer> handler(ObjectMapper objectMapper) {
+    return responseInfo -> {
+      int statusCode = responseInfo.statusCode();
+      return new JsonTokensBodySubscriber(objectMapper, statusCode >= 200 && statusCode <= 299);
+    };
+  }
+
+  @Override
+  public CompletionStage<TokenBuffer> getBody() {
+    return body;
+  }
+
+  @Override
+  public void onSubscribe(Flow.Subscription subscription) {
+    this.subscription = subscription;
+    subscription.request(1);
+  }
+
+  @Override
+  public void onNext(List<ByteBuffer> items) {
+    if (body.isDone()) {
+      return;
+    }
+    try {
+      for (ByteBuffer item : items) {
+        bodySize += item.remaining();
+        if (bodySize > maxBodySize) {
+          throw new IOException("Body exceeds the maximum size of " + maxBodySize + " bytes");
+        }
+        feeder.feedInput(item);
+        copyAvailableTokens();
+      }
+      subscription.request(1);
+    } catch (IOException ex) {
+      subscription.cancel();
+      fail(ex);
+    }
+  }
+
+  @Override
+  public void onError(Throwable throwable) {
+    closeParser();
+    body.completeExceptionally(throwable);
+  }
+
+  @Override
+  public void onComplete() {
+    if (body.isDone()) {
+      return;
+    }
+    try {
+      feeder.endOfInput();
+      copyAvailableTokens();
+      closeParser();
+      body.complete(tokenBuffer);
+    } catch (IOException ex) {
+      fail(ex);
+    }
+  }
+
+  private void copyAvailableTokens() throws IOException {
+    JsonToken token;
+    while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+      tokenBuffer.copyCurrentEvent(parser);
+    }
+  }
+
+  private void fail(IOException ex) {
+    closeParser();
+    if (strict) {
+      body.completeExceptionally(ex);
+    } else {
+      body.complete(null);
+    }
+  }
+
+  private void closeParser() {
+    try {
+      // releases the parser buffers back to the recycler
+      parser.close();
+    } catch (IOException ex) {
+      // ignored, there is no underlying input to close
+    }
+  }
+}
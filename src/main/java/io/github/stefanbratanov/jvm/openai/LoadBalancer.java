@@ -0,0 +1,417 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.net.URI;
+import java.net.http.HttpHeaders;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Routes the requests of an {@link OpenAI} instance to a pool of backends, each with its own base
+ * url, API key and organization, so that the throughput can scale past the rate limits of a single
+ * key. Create an instance with {@link OpenAI#newBuilder(LoadBalancer)}.
+ *
+ * <p>A backend is chosen for every request using the configured {@link Strategy}. The load of a
+ * backend is its number of outstanding requests divided by its remaining share of the request rate
+ * limit, which is read from the {@code x-ratelimit-*} headers of its responses. A backend which
+ * responded with 429 or exhausted its remaining requests is skipped until the rate limit resets. A
+ * backend which fails several times in a row, with connection errors, server errors or responses
+ * slower than a threshold, is ejected from the pool for a while.
+ *
+ * <p>Requests which fail on a backend are sent to another backend, up to a maximum number of
+ * attempts, when sending them again is safe. Any request is sent again when it couldn't connect to
+ * the backend or was rejected with status 429 or 503, since the backend is then very unlikely to
+ * have processed it. A 500 or 502 doesn't mean that the backend didn't process the request, so
+ * only GET requests, which can be repeated without side effects, are sent again after those and
+ * after any other failure before their response is received. Requests which create resources,
+ * such as files, batches or fine-tuning jobs, are never repeated after those failures, so that
+ * they can't be created twice.
+ */
+public final class LoadBalancer {
+
+  public enum Strategy {
+    /** Chooses the backend with the least load */
+    LEAST_OUTSTANDING_REQUESTS,
+    /** Chooses the backend with less load out of two random backends */
+    POWER_OF_TWO_CHOICES
+  }
+
+  private static final String LIMIT_REQUESTS_HEADER = "x-ratelimit-limit-requests";
+  private static final String REMAINING_REQUESTS_HEADER = "x-ratelimit-remaining-requests";
+  private static final String RESET_REQUESTS_HEADER = "x-ratelimit-reset-requests";
+  private static final String RETRY_AFTER_HEADER = "retry-after";
+
+  private static final Set<Integer> FAILOVER_STATUS_CODES = Set.of(429, 503);
+  private static final Set<Integer> IDEMPOTENT_FAILOVER_STATUS_CODES = Set.of(429, 500, 502, 503);
+  private static final Duration DEFAULT_RATE_LIMIT_RESET = Duration.ofSeconds(1);
+  private static final double MIN_HEADROOM = 0.05;
+  private static final Pattern DURATION_PART_PATTERN =
+      Pattern.compile("(\\d+(?:\\.\\d+)?)(ms|h|m|s)");
+
+  private final List<Backend> backends;
+  private final Strategy strategy;
+  private final int failureThreshold;
+  private final Duration ejectionDuration;
+  private final Optional<Duration> slowResponseThreshold;
+  private final int maxAttempts;
+
+  private LoadBalancer(
+      List<Backend> backends,
+      Strategy strategy,
+      int failureThreshold,
+      Duration ejectionDuration,
+      Optional<Duration> slowResponseThreshold,
+      int maxAttempts) {
+    this.backends = backends;
+    this.strategy = strategy;
+    this.failureThreshold = failureThreshold;
+    this.ejectionDuration = ejectionDuration;
+    this.slowResponseThreshold = slowResponseThreshold;
+    this.maxAttempts = maxAttempts;
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  /**
+   * @return the current status of each backend in the order in which they were added
+   */
+  public List<BackendStatus> backendStatuses() {
+    long now = System.nanoTime();
+    return backends.stream().map(backend -> backend.status(now)).toList();
+  }
+
+  /**
+   * @param ejected whether the backend is ejected from the pool because of failures
+   * @param rateLimited whether the backend is skipped until its rate limit resets
+   */
+  public record BackendStatus(
+      String baseUrl,
+      Optional<String> organization,
+      int outstandingRequests,
+      boolean ejected,
+      boolean rateLimited) {}
+
+  Backend firstBackend() {
+    return backends.get(0);
+  }
+
+  int maxAttempts() {
+    return Math.min(maxAttempts, backends.size());
+  }
+
+  /**
+   * @return the backend with the least load, which is not excluded. If all backends which are not
+   *     excluded are ejected or rate limited, one of them is returned anyway. Null if all backends
+   *     are excluded.
+   */
+  Backend select(Set<Backend> excluded) {
+    long now = System.nanoTime();
+    List<Backend> candidates = new ArrayList<>();
+    List<Backend> unavailable = new ArrayList<>();
+    for (Backend backend : backends) {
+      if (excluded.contains(backend)) {
+        continue;
+      }
+      if (backend.isAvailable(now)) {
+        candidates.add(backend);
+      } else {
+        unavailable.add(backend);
+      }
+    }
+    if (candidates.isEmpty()) {
+      candidates = unavailable;
+    }
+    if (candidates.isEmpty()) {
+      return null;
+    }
+    if (strategy == Strategy.POWER_OF_TWO_CHOICES && candidates.size() > 2) {
+      ThreadLocalRandom random = ThreadLocalRandom.current();
+      int first = random.nextInt(candidates.size());
+      int second = random.nextInt(candidates.size() - 1);
+      if (second >= first) {
+        second++;
+      }
+      candidates = List.of(candidates.get(first), candidates.get(second));
+    }
+    Backend selected = candidates.get(0);
+    double selectedLoad = selected.load();
+    for (int i = 1; i < candidates.size(); i++) {
+      double load = candidates.get(i).load();
+      if (load < selectedLoad) {
+        selected = candidates.get(i);
+        selectedLoad = load;
+      }
+    }
+    return selected;
+  }
+
+  /**
+   * @param idempotent whether the request can be repeated without side effects, such as a GET
+   */
+  boolean shouldFailover(boolean idempotent, int statusCode) {
+    return idempotent
+        ? IDEMPOTENT_FAILOVER_STATUS_CODES.contains(statusCode)
+        : FAILOVER_STATUS_CODES.contains(statusCode);
+  }
+
+  void onResponse(Backend backend, int statusCode, HttpHeaders headers, long latencyNanos) {
+    long now = System.nanoTime();
+    backend.updateRateLimit(headers, statusCode == 429, now);
+    boolean slow =
+        slowResponseThreshold.map(threshold -> latencyNanos > threshold.toNanos()).orElse(false);
+    if (statusCode >= 500 || slow) {
+      backend.onFailure(failureThreshold, ejectionDuration, now);
+    } else {
+      backend.onSuccess();
+    }
+  }
+
+  void onFailure(Backend backend) {
+    backend.onFailure(failureThreshold, ejectionDuration, System.nanoTime());
+  }
+
+  /**
+   * @return a duration in the format of the rate limit headers, for example "1s", "6m0s" or
+   *     "20ms"
+   */
+  static OptionalLong parseDurationNanos(String value) {
+    Matcher matcher = DURATION_PART_PATTERN.matcher(value);
+    double nanos = 0;
+    int end = 0;
+    while (matcher.find() && matcher.start() == end) {
+      double amount = Double.parseDouble(matcher.group(1));
+      nanos +=
+          switch (matcher.group(2)) {
+            case "h" -> amount * 3600e9;
+            case "m" -> amount * 60e9;
+            case "s" -> amount * 1e9;
+            default -> amount * 1e6;
+          };
+      end = matcher.end();
+    }
+    if (end == 0 || end != value.length()) {
+      return OptionalLong.empty();
+    }
+    return OptionalLong.of((long) nanos);
+  }
+
+  static final class Backend {
+
+    private final URI baseUrl;
+    private final String apiKey;
+    private final Optional<String> organization;
+
+    private final AtomicInteger outstandingRequests = new AtomicInteger();
+
+    // guarded by "this"
+    private double headroom = 1;
+    private int consecutiveFailures = 0;
+    private boolean ejected = false;
+    private long ejectedUntilNanos;
+    private boolean rateLimited = false;
+    private long rateLimitedUntilNanos;
+
+    private Backend(URI baseUrl, String apiKey, Optional<String> organization) {
+      this.baseUrl = baseUrl;
+      this.apiKey = apiKey;
+      this.organization = organization;
+    }
+
+    URI baseUrl() {
+      return baseUrl;
+    }
+
+    String apiKey() {
+      return apiKey;
+    }
+
+    Optional<String> organization() {
+      return organization;
+    }
+
+    void requestStarted() {
+      outstandingRequests.incrementAndGet();
+    }
+
+    void requestCompleted() {
+      outstandingRequests.decrementAndGet();
+    }
+
+    private synchronized boolean isAvailable(long now) {
+      if (ejected && now - ejectedUntilNanos >= 0) {
+        ejected = false;
+      }
+      if (rateLimited && now - rateLimitedUntilNanos >= 0) {
+        rateLimited = false;
+        headroom = 1;
+      }
+      return !ejected && !rateLimited;
+    }
+
+    private synchronized double load() {
+      return (outstandingRequests.get() + 1) / Math.max(headroom, MIN_HEADROOM);
+    }
+
+    private synchronized void updateRateLimit(
+        HttpHeaders headers, boolean tooManyRequests, long now) {
+      OptionalLong limit = parseLongHeader(headers, LIMIT_REQUESTS_HEADER);
+      OptionalLong remaining = parseLongHeader(headers, REMAINING_REQUESTS_HEADER);
+      if (limit.isPresent() && remaining.isPresent() && limit.getAsLong() > 0) {
+        headroom = (double) remaining.getAsLong() / limit.getAsLong();
+      }
+      if (!tooManyRequests && (remaining.isEmpty() || remaining.getAsLong() > 0)) {
+        return;
+      }
+      OptionalLong retryAfterSeconds = parseLongHeader(headers, RETRY_AFTER_HEADER);
+      OptionalLong resetNanos =
+          retryAfterSeconds.isPresent()
+              ? OptionalLong.of(Duration.ofSeconds(retryAfterSeconds.getAsLong()).toNanos())
+              : headers
+                  .firstValue(RESET_REQUESTS_HEADER)
+                  .map(LoadBalancer::parseDurationNanos)
+                  .orElse(OptionalLong.empty());
+      rateLimited = true;
+      rateLimitedUntilNanos = now + resetNanos.orElse(DEFAULT_RATE_LIMIT_RESET.toNanos());
+    }
+
+    private synchronized void onSuccess() {
+      consecutiveFailures = 0;
+    }
+
+    private synchronized void onFailure(int failureThreshold, Duration ejectionDuration, long now) {
+      consecutiveFailures++;
+      if (consecutiveFailures >= failureThreshold) {
+        consecutiveFailures = 0;
+        ejected = true;
+        ejectedUntilNanos = now + ejectionDuration.toNanos();
+      }
+    }
+
+    private synchronized BackendStatus status(long now) {
+      // clears the flags which have expired
+      isAvailable(now);
+      return new BackendStatus(
+          baseUrl.toString(), organization, outstandingRequests.get(), ejected, rateLimited);
+    }
+
+    private static OptionalLong parseLongHeader(HttpHeaders headers, String name) {
+      try {
+        return headers.firstValueAsLong(name);
+      } catch (NumberFormatException ex) {
+        return OptionalLong.empty();
+      }
+    }
+  }
+
+  public static class Builder {
+
+    private static final int DEFAULT_FAILURE_THRESHOLD = 3;
+    private static final Duration DEFAULT_EJECTION_DURATION = Duration.ofSeconds(30);
+    private static final int DEFAULT_MAX_ATTEMPTS = 2;
+
+    private final List<Backend> backends = new ArrayList<>();
+
+    private Strategy strategy = Strategy.LEAST_OUTSTANDING_REQUESTS;
+    private int failureThreshold = DEFAULT_FAILURE_THRESHOLD;
+    private Duration ejectionDuration = DEFAULT_EJECTION_DURATION;
+    private Optional<Duration> slowResponseThreshold = Optional.empty();
+    private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+
+    /**
+     * @param baseUrl the url which exposes the OpenAI API
+     * @param apiKey the API key used for authentication with this backend
+     */
+    public Builder backend(String baseUrl, String apiKey) {
+      return backend(baseUrl, apiKey, Optional.empty());
+    }
+
+    /**
+     * @param baseUrl the url which exposes the OpenAI API
+     * @param apiKey the API key used for authentication with this backend
+     * @param organization the organization which will be used for the API requests to this backend
+     */
+    public Builder backend(String baseUrl, String apiKey, String organization) {
+      return backend(baseUrl, apiKey, Optional.of(organization));
+    }
+
+    /**
+     * @param strategy the strategy used to choose a backend for every request. Defaults to {@link
+     *     Strategy#LEAST_OUTSTANDING_REQUESTS}.
+     */
+    public Builder strategy(Strategy strategy) {
+      this.strategy = strategy;
+      return this;
+    }
+
+    /**
+     * @param failureThreshold the number of consecutive failures after which a backend is ejected.
+     *     Defaults to 3.
+     */
+    public Builder failureThreshold(int failureThreshold) {
+      if (failureThreshold < 1) {
+        throw new IllegalArgumentException("failureThreshold must be at least 1");
+      }
+      this.failureThreshold = failureThreshold;
+      return this;
+    }
+
+    /**
+     * @param ejectionDuration how long an ejected backend is not used. Defaults to 30 seconds.
+     */
+    public Builder ejectionDuration(Duration ejectionDuration) {
+      this.ejectionDuration = ejectionDuration;
+      return this;
+    }
+
+    /**
+     * @param slowResponseThreshold a time to receive the response headers after which the response
+     *     is counted as a failure of the backend. If none is set, slow responses are not failures.
+     */
+    public Builder slowResponseThreshold(Duration slowResponseThreshold) {
+      this.slowResponseThreshold = Optional.of(slowResponseThreshold);
+      return this;
+    }
+
+    /**
+     * @param maxAttempts the maximum number of backends to which a request is sent before giving
+     *     up. Defaults to 2.
+     */
+    public Builder maxAttempts(int maxAttempts) {
+      if (maxAttempts < 1) {
+        throw new IllegalArgumentException("maxAttempts must be at least 1");
+      }
+      this.maxAttempts = maxAttempts;
+      return this;
+    }
+
+    public LoadBalancer build() {
+      if (backends.isEmpty()) {
+        throw new IllegalStateException("At least one backend is required");
+      }
+      return new LoadBalancer(
+          List.copyOf(backends),
+          strategy,
+          failureThreshold,
+          ejectionDuration,
+          slowResponseThreshold,
+          maxAttempts);
+    }
+
+    private Builder backend(String baseUrl, String apiKey, Optional<String> organization) {
+      if (!baseUrl.endsWith("/")) {
+        baseUrl += "/";
+      }
+      backends.add(new Backend(URI.create(baseUrl), apiKey, organization));
+      return this;
+    }
+  }
+}
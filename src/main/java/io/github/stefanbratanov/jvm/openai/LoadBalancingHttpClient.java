@@ -0,0 +1,242 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Sends every request to a backend chosen by a {@link LoadBalancer}. The requests are built by the
+ * clients against a single base url and with a single set of authentication headers, which are
+ * replaced with the ones of the chosen backend.
+ */
+class LoadBalancingHttpClient extends DelegatingHttpClient {
+
+  private static final String AUTHORIZATION_HEADER = "Authorization";
+  private static final String ORGANIZATION_HEADER = "OpenAI-Organization";
+
+  private final LoadBalancer loadBalancer;
+  private final String baseUrl;
+
+  LoadBalancingHttpClient(HttpClient delegate, LoadBalancer loadBalancer, URI baseUrl) {
+    super(delegate);
+    this.loadBalancer = loadBalancer;
+    this.baseUrl = baseUrl.toString();
+  }
+
+  @Override
+  public <T> HttpResponse<T> send(
+      HttpRequest request, HttpResponse.BodyHandler<T> responseBodyHandler)
+      throws IOException, InterruptedException {
+    Set<LoadBalancer.Backend> attemptedBackends = new HashSet<>();
+    while (true) {
+      LoadBalancer.Backend backend = loadBalancer.select(attemptedBackends);
+      attemptedBackends.add(backend);
+      boolean lastAttempt = attemptedBackends.size() >= loadBalancer.maxAttempts();
+      FailoverBodyHandler<T> failoverBodyHandler =
+          new FailoverBodyHandler<>(
+              backend, responseBodyHandler, isIdempotent(request), lastAttempt);
+      backend.requestStarted();
+      try {
+        HttpResponse<T> httpResponse = super.send(route(request, backend), failoverBodyHandler);
+        if (!failoverBodyHandler.failedOver) {
+          return httpResponse;
+        }
+      } catch (IOException ex) {
+        loadBalancer.onFailure(backend);
+        if (lastAttempt || !canFailover(request, failoverBodyHandler, ex)) {
+          throw ex;
+        }
+      } finally {
+        backend.requestCompleted();
+      }
+    }
+  }
+
+  @Override
+  public <T> CompletableFuture<HttpResponse<T>> sendAsync(
+      HttpRequest request, HttpResponse.BodyHandler<T> responseBodyHandler) {
+    return new AsyncExchange<>(request, responseBodyHandler).start();
+  }
+
+  @Override
+  public <T> CompletableFuture<HttpResponse<T>> sendAsync(
+      HttpRequest request,
+      HttpResponse.BodyHandler<T> responseBodyHandler,
+      HttpResponse.PushPromiseHandler<T> pushPromiseHandler) {
+    // pushed responses can't be sent to another backend, so there is no failover
+    LoadBalancer.Backend backend = loadBalancer.select(Set.of());
+    backend.requestStarted();
+    return super.sendAsync(
+            route(request, backend),
+            new FailoverBodyHandler<>(backend, responseBodyHandler, isIdempotent(request), true),
+            pushPromiseHandler)
+        .whenComplete(
+            (httpResponse, ex) -> {
+              backend.requestCompleted();
+              if (ex != null) {
+                loadBalancer.onFailure(backend);
+              }
+            });
+  }
+
+  /**
+   * @return true if the original handler hasn't received any part of the response, which would be
+   *     received again from another backend, and the request couldn't connect to the backend or can
+   *     be safely repeated
+   */
+  private boolean canFailover(
+      HttpRequest request, FailoverBodyHandler<?> failoverBodyHandler, IOException ex) {
+    if (failoverBodyHandler.applied) {
+      return false;
+    }
+    return ex instanceof ConnectException
+        || ex instanceof HttpConnectTimeoutException
+        || isIdempotent(request);
+  }
+
+  private boolean isIdempotent(HttpRequest request) {
+    return request.method().equals("GET");
+  }
+
+  private HttpRequest route(HttpRequest request, LoadBalancer.Backend backend) {
+    String uri = request.uri().toString();
+    URI backendUri =
+        uri.startsWith(baseUrl)
+            ? backend.baseUrl().resolve(uri.substring(baseUrl.length()))
+            : request.uri();
+    HttpRequest.Builder httpRequestBuilder =
+        HttpRequest.newBuilder(
+                request,
+                (name, value) ->
+                    !name.equalsIgnoreCase(AUTHORIZATION_HEADER)
+                        && !name.equalsIgnoreCase(ORGANIZATION_HEADER))
+            .uri(backendUri)
+            .header(AUTHORIZATION_HEADER, "Bearer " + backend.apiKey());
+    backend
+        .organization()
+        .ifPresent(organization -> httpRequestBuilder.header(ORGANIZATION_HEADER, organization));
+    return httpRequestBuilder.build();
+  }
+
+  /**
+   * Sends the attempts of an asynchronous request one after the other. Cancelling the returned
+   * future aborts the attempt in flight.
+   */
+  private class AsyncExchange<T> {
+
+    private final HttpRequest request;
+    private final HttpResponse.BodyHandler<T> responseBodyHandler;
+    private final Set<LoadBalancer.Backend> attemptedBackends = new HashSet<>();
+    private final AtomicReference<CompletableFuture<?>> attemptInFlight = new AtomicReference<>();
+    private final CancellableFuture<HttpResponse<T>> result =
+        new CancellableFuture<>(
+            () -> {
+              CompletableFuture<?> attempt = attemptInFlight.get();
+              if (attempt != null) {
+                attempt.cancel(true);
+              }
+            });
+
+    private AsyncExchange(HttpRequest request, HttpResponse.BodyHandler<T> responseBodyHandler) {
+      this.request = request;
+      this.responseBodyHandler = responseBodyHandler;
+    }
+
+    private CompletableFuture<HttpResponse<T>> start() {
+      sendAttempt();
+      return result;
+    }
+
+    private void sendAttempt() {
+      LoadBalancer.Backend backend = loadBalancer.select(attemptedBackends);
+      attemptedBackends.add(backend);
+      boolean lastAttempt = attemptedBackends.size() >= loadBalancer.maxAttempts();
+      FailoverBodyHandler<T> failoverBodyHandler =
+          new FailoverBodyHandler<>(
+              backend, responseBodyHandler, isIdempotent(request), lastAttempt);
+      backend.requestStarted();
+      CompletableFuture<HttpResponse<T>> attempt =
+          LoadBalancingHttpClient.super.sendAsync(route(request, backend), failoverBodyHandler);
+      attemptInFlight.set(attempt);
+      if (result.isDone()) {
+        // cancelled between the attempts
+        attempt.cancel(true);
+      }
+      attempt.whenComplete(
+          (httpResponse, ex) -> {
+            backend.requestCompleted();
+            if (ex == null) {
+              if (failoverBodyHandler.failedOver) {
+                sendAttempt();
+              } else {
+                result.complete(httpResponse);
+              }
+              return;
+            }
+            Throwable cause = ex instanceof CompletionException ? ex.getCause() : ex;
+            if (cause instanceof IOException ioEx) {
+              loadBalancer.onFailure(backend);
+              if (!lastAttempt
+                  && !result.isDone()
+                  && canFailover(request, failoverBodyHandler, ioEx)) {
+                sendAttempt();
+                return;
+              }
+            }
+            result.completeExceptionally(cause);
+          });
+    }
+  }
+
+  /**
+   * Reports the response to the {@link LoadBalancer} as soon as its headers are received. If the
+   * request should be sent to another backend, the body of the response is discarded instead of
+   * being passed to the original handler, which may for example write it to a file. Once the
+   * original handler was applied, the request is never sent to another backend, since the handler
+   * may already have received a part of the body.
+   */
+  private class FailoverBodyHandler<T> implements HttpResponse.BodyHandler<T> {
+
+    private final LoadBalancer.Backend backend;
+    private final HttpResponse.BodyHandler<T> responseBodyHandler;
+    private final boolean idempotent;
+    private final boolean lastAttempt;
+    private final long startNanos = System.nanoTime();
+
+    private volatile boolean failedOver = false;
+    private volatile boolean applied = false;
+
+    private FailoverBodyHandler(
+        LoadBalancer.Backend backend,
+        HttpResponse.BodyHandler<T> responseBodyHandler,
+        boolean idempotent,
+        boolean lastAttempt) {
+      this.backend = backend;
+      this.responseBodyHandler = responseBodyHandler;
+      this.idempotent = idempotent;
+      this.lastAttempt = lastAttempt;
+    }
+
+    @Override
+    public HttpResponse.BodySubscriber<T> apply(HttpResponse.ResponseInfo responseInfo) {
+      int statusCode = responseInfo.statusCode();
+      loadBalancer.onResponse(
+          backend, statusCode, responseInfo.headers(), System.nanoTime() - startNanos);
+      if (!lastAttempt && loadBalancer.shouldFailover(idempotent, statusCode)) {
+        failedOver = true;
+        return HttpResponse.BodySubscribers.replacing(null);
+      }
+      applied = true;
+      return responseBodyHandler.apply(responseInfo);
+    }
+  }
+}
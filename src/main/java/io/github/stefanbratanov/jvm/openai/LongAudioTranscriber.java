@@ -0,0 +1,254 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.BiFunction;
+
+/**
+ * Transcribes or translates audio which is longer than the API allows for a single request. The
+ * audio is split into overlapping segments, which are transcribed concurrently, and the results are
+ * stitched into a single transcript in the requested response format, with the timestamps relative
+ * to the start of the whole audio. This way, the time it takes scales with the available
+ * concurrency rather than the length of the audio.
+ *
+ * <p>Only WAV files containing PCM audio are supported, and only the {@code json}, {@code text}
+ * and {@code verbose_json} response formats. At most {@link Builder#parallelism(int)} segments are
+ * held in memory at a time.
+ */
+public final class LongAudioTranscriber {
+
+  /** The maximum size of a file which can be uploaded in a single request */
+  public static final int MAX_FILE_SIZE = 25 * 1024 * 1024;
+
+  private static final String DEFAULT_RESPONSE_FORMAT = "json";
+  private static final String SEGMENT_MIME_TYPE = "audio/wav";
+
+  private final AudioClient audioClient;
+  private final Duration segmentDuration;
+  private final Duration overlap;
+  private final Duration silenceSearchWindow;
+  private final int parallelism;
+
+  private final TranscriptStitcher transcriptStitcher = new TranscriptStitcher();
+
+  private LongAudioTranscriber(
+      AudioClient audioClient,
+      Duration segmentDuration,
+      Duration overlap,
+      Duration silenceSearchWindow,
+      int parallelism) {
+    this.audioClient = audioClient;
+    this.segmentDuration = segmentDuration;
+    this.overlap = overlap;
+    this.silenceSearchWindow = silenceSearchWindow;
+    this.parallelism = parallelism;
+  }
+
+  public static Builder newBuilder(AudioClient audioClient) {
+    return new Builder(audioClient);
+  }
+
+  /**
+   * Same as {@link AudioClient#createTranscript(TranscriptionRequest)} but for audio of any length
+   *
+   * @throws OpenAIException in case of API errors
+   */
+  public String transcribe(TranscriptionRequest request) {
+    return transcribe(
+        request.file(),
+        request.responseFormat(),
+        (segment, audio) ->
+            audioClient.createTranscriptAsync(
+                request, getSegmentFilename(segment), SEGMENT_MIME_TYPE, audio));
+  }
+
+  /**
+   * Same as {@link AudioClient#createTranslation(TranslationRequest)} but for audio of any length
+   *
+   * @throws OpenAIException in case of API errors
+   */
+  public String translate(TranslationRequest request) {
+    return transcribe(
+        request.file(),
+        request.responseFormat(),
+        (segment, audio) ->
+            audioClient.createTranslationAsync(
+                request, getSegmentFilename(segment), SEGMENT_MIME_TYPE, audio));
+  }
+
+  private String transcribe(
+      Path file,
+      Optional<String> responseFormat,
+      BiFunction<AudioSplitter.Segment, byte[], CompletableFuture<String>> transcribeSegment) {
+    String format = responseFormat.orElse(DEFAULT_RESPONSE_FORMAT);
+    if (!TranscriptStitcher.SUPPORTED_RESPONSE_FORMATS.contains(format)) {
+      throw new IllegalArgumentException(
+          "Response format "
+              + format
+              + " is not supported. Supported formats are "
+              + TranscriptStitcher.SUPPORTED_RESPONSE_FORMATS);
+    }
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      AudioSplitter audioSplitter = new AudioSplitter(channel);
+      AudioSplitter.Format audioFormat = audioSplitter.format();
+      long maxSegmentFrames =
+          (MAX_FILE_SIZE - AudioSplitter.WAV_HEADER_SIZE) / audioFormat.blockAlign();
+      long segmentFrames = Math.min(audioFormat.toFrames(segmentDuration), maxSegmentFrames);
+      List<AudioSplitter.Segment> segments =
+          audioSplitter.split(
+              segmentFrames,
+              audioFormat.toFrames(overlap),
+              audioFormat.toFrames(silenceSearchWindow));
+
+      List<CompletableFuture<String>> transcripts =
+          transcribeSegments(audioSplitter, segments, transcribeSegment);
+      CompletableFuture.allOf(transcripts.toArray(CompletableFuture[]::new)).join();
+
+      double[] offsets = new double[segments.size()];
+      double[] boundaries = new double[segments.size() - 1];
+      for (int i = 0; i < segments.size(); i++) {
+        AudioSplitter.Segment segment = segments.get(i);
+        offsets[i] = audioFormat.toSeconds(segment.startFrame());
+        if (i > 0) {
+          AudioSplitter.Segment previous = segments.get(i - 1);
+          boundaries[i - 1] =
+              audioFormat.toSeconds((segment.startFrame() + previous.endFrame()) / 2);
+        }
+      }
+      return transcriptStitcher.stitch(
+          format,
+          transcripts.stream().map(CompletableFuture::join).toList(),
+          offsets,
+          boundaries,
+          audioFormat.toSeconds(audioFormat.frames()));
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    } catch (CompletionException ex) {
+      if (ex.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      if (ex.getCause() instanceof IOException cause) {
+        throw new UncheckedIOException(cause);
+      }
+      throw ex;
+    }
+  }
+
+  /**
+   * Reads the segments sequentially, while the transcriptions of the segments run concurrently.
+   * Stops reading segments as soon as a transcription fails.
+   */
+  private List<CompletableFuture<String>> transcribeSegments(
+      AudioSplitter audioSplitter,
+      List<AudioSplitter.Segment> segments,
+      BiFunction<AudioSplitter.Segment, byte[], CompletableFuture<String>> transcribeSegment)
+      throws IOException {
+    Semaphore inFlightSegments = new Semaphore(parallelism);
+    List<CompletableFuture<String>> transcripts = new ArrayList<>();
+    try {
+      for (AudioSplitter.Segment segment : segments) {
+        inFlightSegments.acquire();
+        if (transcripts.stream().anyMatch(CompletableFuture::isCompletedExceptionally)) {
+          inFlightSegments.release();
+          break;
+        }
+        byte[] audio = audioSplitter.readSegment(segment);
+        CompletableFuture<String> transcript = transcribeSegment.apply(segment, audio);
+        transcript.whenComplete((result, ex) -> inFlightSegments.release());
+        transcripts.add(transcript);
+      }
+    } catch (InterruptedException ex) {
+      java.lang.Thread.currentThread().interrupt();
+      throw new RuntimeException("Operation was interrupted", ex);
+    }
+    return transcripts;
+  }
+
+  private String getSegmentFilename(AudioSplitter.Segment segment) {
+    return "segment-" + segment.index() + ".wav";
+  }
+
+  public static class Builder {
+
+    private static final Duration DEFAULT_SEGMENT_DURATION = Duration.ofMinutes(10);
+    private static final Duration DEFAULT_OVERLAP = Duration.ofSeconds(2);
+    private static final Duration DEFAULT_SILENCE_SEARCH_WINDOW = Duration.ofSeconds(10);
+    private static final int DEFAULT_PARALLELISM = 4;
+
+    private final AudioClient audioClient;
+
+    private Duration segmentDuration = DEFAULT_SEGMENT_DURATION;
+    private Duration overlap = DEFAULT_OVERLAP;
+    private Duration silenceSearchWindow = DEFAULT_SILENCE_SEARCH_WINDOW;
+    private int parallelism = DEFAULT_PARALLELISM;
+
+    private Builder(AudioClient audioClient) {
+      this.audioClient = audioClient;
+    }
+
+    /**
+     * @param segmentDuration the maximum duration of each segment, including the overlap. Segments
+     *     are made shorter if they would exceed {@link #MAX_FILE_SIZE}. Defaults to 10 minutes.
+     */
+    public Builder segmentDuration(Duration segmentDuration) {
+      this.segmentDuration = segmentDuration;
+      return this;
+    }
+
+    /**
+     * @param overlap the duration of audio which is transcribed by two adjacent segments, so words
+     *     at the cuts are not lost. Defaults to 2 seconds.
+     */
+    public Builder overlap(Duration overlap) {
+      this.overlap = overlap;
+      return this;
+    }
+
+    /**
+     * Place each cut at the quietest point within the given window before the maximum end of the
+     * segment. This is the default with a window of 10 seconds.
+     *
+     * @param searchWindow the window in which to look for silence
+     */
+    public Builder splitAtSilence(Duration searchWindow) {
+      if (searchWindow.isNegative() || searchWindow.isZero()) {
+        throw new IllegalArgumentException("searchWindow must be positive");
+      }
+      this.silenceSearchWindow = searchWindow;
+      return this;
+    }
+
+    /** Place each cut exactly at the maximum end of the segment. */
+    public Builder splitAtFixedBoundaries() {
+      this.silenceSearchWindow = Duration.ZERO;
+      return this;
+    }
+
+    /**
+     * @param parallelism the maximum number of segments which are transcribed at the same time.
+     *     Defaults to 4.
+     */
+    public Builder parallelism(int parallelism) {
+      if (parallelism <= 0) {
+        throw new IllegalArgumentException("parallelism must be positive");
+      }
+      this.parallelism = parallelism;
+      return this;
+    }
+
+    public LongAudioTranscriber build() {
+      return new LongAudioTranscriber(
+          audioClient, segmentDuration, overlap, silenceSearchWindow, parallelism);
+    }
+  }
+}
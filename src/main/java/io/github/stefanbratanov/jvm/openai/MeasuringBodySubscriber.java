@@ -0,0 +1,102 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * A {@link HttpResponse.BodySubscriber} which passes the body through to another subscriber, while
+ * recording {@link StreamMetrics}. Demand is passed through unchanged, so the backpressure of the
+ * delegate is preserved.
+ *
+ * <p>If the delegate cancels its subscription, the body completes exceptionally with a {@link
+ * CancellationException}, because the {@link java.net.http.HttpClient} doesn't complete the
+ * response in this case.
+ */
+class MeasuringBodySubscriber<T> implements HttpResponse.BodySubscriber<T> {
+
+  private final CompletableFuture<T> body = new CompletableFuture<>();
+
+  private final HttpResponse.BodySubscriber<T> delegate;
+  private final long startNanos;
+
+  private volatile long firstByteNanos = -1;
+  private volatile long endNanos = -1;
+  private volatile long bytes = 0;
+
+  MeasuringBodySubscriber(HttpResponse.BodySubscriber<T> delegate, long startNanos) {
+    this.delegate = delegate;
+    this.startNanos = startNanos;
+    delegate
+        .getBody()
+        .whenComplete(
+            (result, ex) -> {
+              if (ex != null) {
+                body.completeExceptionally(ex);
+              } else {
+                body.complete(result);
+              }
+            });
+  }
+
+  @Override
+  public CompletionStage<T> getBody() {
+    return body;
+  }
+
+  @Override
+  public void onSubscribe(Flow.Subscription subscription) {
+    delegate.onSubscribe(
+        new Flow.Subscription() {
+          @Override
+          public void request(long n) {
+            subscription.request(n);
+          }
+
+          @Override
+          public void cancel() {
+            subscription.cancel();
+            body.completeExceptionally(
+                new CancellationException("The subscription to the body was cancelled"));
+          }
+        });
+  }
+
+  @Override
+  public void onNext(List<ByteBuffer> items) {
+    long received = 0;
+    for (ByteBuffer item : items) {
+      received += item.remaining();
+    }
+    if (firstByteNanos < 0 && received > 0) {
+      firstByteNanos = System.nanoTime();
+    }
+    bytes += received;
+    delegate.onNext(items);
+  }
+
+  @Override
+  public void onError(Throwable throwable) {
+    endNanos = System.nanoTime();
+    delegate.onError(throwable);
+  }
+
+  @Override
+  public void onComplete() {
+    endNanos = System.nanoTime();
+    delegate.onComplete();
+  }
+
+  /** Should be called after the body has completed */
+  StreamMetrics getMetrics() {
+    long end = endNanos < 0 ? System.nanoTime() : endNanos;
+    long firstByte = firstByteNanos < 0 ? end : firstByteNanos;
+    return new StreamMetrics(
+        Duration.ofNanos(firstByte - startNanos), Duration.ofNanos(end - startNanos), bytes);
+  }
+}
@@ -1,5 +1,6 @@
 package io.github.stefanbratanov.jvm.openai;
 
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
@@ -41,7 +42,7 @@ public final class MessagesClient extends OpenAIAssistantsClient {
             .uri(baseUrl.resolve(Endpoint.THREADS.getPath() + "/" + threadId + MESSAGES_SEGMENT))
             .POST(createBodyPublisher(request))
             .build();
-    HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
     return deserializeResponse(httpResponse.body(), ThreadMessage.class);
   }
 
@@ -63,7 +64,7 @@ public final class MessagesClient extends OpenAIAssistantsClient {
                         + createQueryParameters(queryParameters)))
             .GET()
             .build();
-    HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
     return deserializeResponse(httpResponse.body(), PaginatedThreadMessages.class);
   }
 
@@ -91,7 +92,7 @@ public final class MessagesClient extends OpenAIAssistantsClient {
                         + createQueryParameters(queryParameters)))
             .GET()
             .build();
-    HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
     return deserializeResponse(httpResponse.body(), PaginatedThreadMessageFiles.class);
   }
 
@@ -116,7 +117,7 @@ public final class MessagesClient extends OpenAIAssistantsClient {
                         + messageId))
             .GET()
             .build();
-    HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
     return deserializeResponse(httpResponse.body(), ThreadMessage.class);
   }
 
@@ -141,7 +142,7 @@ public final class MessagesClient extends OpenAIAssistantsClient {
                         + fileId))
             .GET()
             .build();
-    HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
     return deserializeResponse(httpResponse.body(), ThreadMessageFile.class);
   }
 
@@ -164,7 +165,7 @@ public final class MessagesClient extends OpenAIAssistantsClient {
                         + messageId))
             .POST(createBodyPublisher(request))
             .build();
-    HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
     return deserializeResponse(httpResponse.body(), ThreadMessage.class);
   }
 }
@@ -1,5 +1,6 @@
 package io.github.stefanbratanov.jvm.openai;
 
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
@@ -37,7 +38,7 @@ public final class ModelsClient extends OpenAIClient {
   public List<Model> listModels() {
     HttpRequest httpRequest =
         newHttpRequestBuilder().uri(baseUrl.resolve(Endpoint.MODELS.getPath())).GET().build();
-    HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
     return deserializeDataInResponseAsList(httpResponse.body(), Model.class);
   }
 
@@ -54,7 +55,7 @@ public final class ModelsClient extends OpenAIClient {
             .uri(baseUrl.resolve(Endpoint.MODELS.getPath() + "/" + model))
             .GET()
             .build();
-    HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
     return deserializeResponse(httpResponse.body(), Model.class);
   }
 
@@ -70,7 +71,7 @@ public final class ModelsClient extends OpenAIClient {
             .uri(baseUrl.resolve(Endpoint.MODELS.getPath() + "/" + model))
             .DELETE()
             .build();
-    HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
     return deserializeResponse(httpResponse.body(), DeletionStatus.class);
   }
 }
@@ -0,0 +1,53 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.util.Optional;
+
+/**
+ * The categories of {@link Moderation.Result.Categories} and {@link
+ * Moderation.Result.CategoryScores}. The ordinal of each category is its index in {@link
+ * CompactModerationResult}.
+ */
+public enum ModerationCategory {
+  HATE("hate"),
+  HATE_THREATENING("hate/threatening"),
+  HARASSMENT("harassment"),
+  HARASSMENT_THREATENING("harassment/threatening"),
+  SELF_HARM("self-harm"),
+  SELF_HARM_INTENT("self-harm/intent"),
+  SELF_HARM_INSTRUCTIONS("self-harm/instructions"),
+  SEXUAL("sexual"),
+  SEXUAL_MINORS("sexual/minors"),
+  VIOLENCE("violence"),
+  VIOLENCE_GRAPHIC("violence/graphic");
+
+  private static final ModerationCategory[] VALUES = values();
+
+  private final String name;
+
+  ModerationCategory(String name) {
+    this.name = name;
+  }
+
+  /**
+   * @return the name of the category as it appears in the API
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @return the category with the given API name or empty if the category is unknown
+   */
+  public static Optional<ModerationCategory> fromName(String name) {
+    for (ModerationCategory category : VALUES) {
+      if (category.name.equals(name)) {
+        return Optional.of(category);
+      }
+    }
+    return Optional.empty();
+  }
+
+  static ModerationCategory fromIndex(int index) {
+    return VALUES[index];
+  }
+}
@@ -0,0 +1,293 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A packed columnar file of {@link CompactModerationResult}s, which can be aggregated offline
+ * without parsing any JSON.
+ *
+ * <p>The file starts with a header of three little-endian {@code int}s: a magic number, the
+ * version of the format and the number of categories. It is followed by row groups of up to {@link
+ * #ROW_GROUP_SIZE} results. Each row group starts with the number of rows as an {@code int},
+ * followed by a column with the flags of each row as {@code int}s, where the highest bit is {@link
+ * CompactModerationResult#flagged()} and the other bits are {@link
+ * CompactModerationResult#categoryFlags()}, and then a column of {@code double} scores for each
+ * category in the order of {@link ModerationCategory}.
+ */
+public final class ModerationColumnarFile {
+
+  /** The maximum number of results in a row group */
+  public static final int ROW_GROUP_SIZE = 4096;
+
+  private static final int MAGIC = 0x4D41494F;
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 3 * Integer.BYTES;
+  private static final int FLAGGED_BIT = 1 << 31;
+
+  private ModerationColumnarFile() {}
+
+  /**
+   * Creates a new file, overwriting an existing one
+   *
+   * @throws UncheckedIOException if the file can't be created
+   */
+  public static Writer newWriter(Path file) {
+    try {
+      return new Writer(
+          FileChannel.open(
+              file,
+              StandardOpenOption.CREATE,
+              StandardOpenOption.WRITE,
+              StandardOpenOption.TRUNCATE_EXISTING));
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  /**
+   * @throws UncheckedIOException if the file can't be opened or is not a valid file
+   */
+  public static Reader newReader(Path file) {
+    try {
+      return new Reader(FileChannel.open(file, StandardOpenOption.READ));
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  /**
+   * The results of a row group, where each column is an array indexed by the row
+   *
+   * @param flagged whether each row is flagged
+   * @param categoryFlags the flagged categories of each row as bits
+   * @param scores the score columns indexed by the ordinal of {@link ModerationCategory}
+   */
+  public record RowGroup(boolean[] flagged, int[] categoryFlags, double[][] scores) {
+
+    public int size() {
+      return flagged.length;
+    }
+
+    /**
+     * @return the scores of all rows for the given category
+     */
+    public double[] scores(ModerationCategory category) {
+      return scores[category.ordinal()];
+    }
+
+    public CompactModerationResult get(int row) {
+      double[] rowScores = new double[scores.length];
+      for (int i = 0; i < scores.length; i++) {
+        rowScores[i] = scores[i][row];
+      }
+      return new CompactModerationResult(flagged[row], categoryFlags[row], rowScores);
+    }
+  }
+
+  /** Writes results in row groups. A row group is written as soon as it is full. */
+  public static final class Writer implements Closeable {
+
+    private final FileChannel channel;
+
+    private final int[] flags = new int[ROW_GROUP_SIZE];
+    private final double[][] scores =
+        new double[CompactModerationResult.CATEGORY_COUNT][ROW_GROUP_SIZE];
+    private int rows = 0;
+
+    private Writer(FileChannel channel) throws IOException {
+      this.channel = channel;
+      ByteBuffer header = newBuffer(HEADER_SIZE);
+      header.putInt(MAGIC).putInt(VERSION).putInt(CompactModerationResult.CATEGORY_COUNT).flip();
+      writeFully(header);
+    }
+
+    public void write(CompactModerationResult result) {
+      flags[rows] = result.categoryFlags() | (result.flagged() ? FLAGGED_BIT : 0);
+      for (int i = 0; i < scores.length; i++) {
+        scores[i][rows] = result.scoreAt(i);
+      }
+      rows++;
+      if (rows == ROW_GROUP_SIZE) {
+        flush();
+      }
+    }
+
+    /** Writes the results which are not written yet as a row group */
+    public void flush() {
+      if (rows == 0) {
+        return;
+      }
+      ByteBuffer rowGroup =
+          newBuffer(Integer.BYTES + rows * Integer.BYTES + scores.length * rows * Double.BYTES);
+      rowGroup.putInt(rows);
+      rowGroup.asIntBuffer().put(flags, 0, rows);
+      rowGroup.position(rowGroup.position() + rows * Integer.BYTES);
+      for (double[] column : scores) {
+        rowGroup.asDoubleBuffer().put(column, 0, rows);
+        rowGroup.position(rowGroup.position() + rows * Double.BYTES);
+      }
+      rowGroup.flip();
+      try {
+        writeFully(rowGroup);
+      } catch (IOException ex) {
+        throw new UncheckedIOException(ex);
+      }
+      rows = 0;
+    }
+
+    @Override
+    public void close() {
+      try (channel) {
+        flush();
+      } catch (IOException ex) {
+        throw new UncheckedIOException(ex);
+      }
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    }
+  }
+
+  /** Reads the row groups sequentially */
+  public static final class Reader implements Closeable {
+
+    private final FileChannel channel;
+    private final int categoryCount;
+
+    private Reader(FileChannel channel) throws IOException {
+      this.channel = channel;
+      try {
+        ByteBuffer header = readFully(HEADER_SIZE);
+        if (header == null || header.getInt() != MAGIC) {
+          throw new IOException("Not a moderation columnar file");
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+          throw new IOException("Unsupported version of the file: " + version);
+        }
+        categoryCount = header.getInt();
+        if (categoryCount != CompactModerationResult.CATEGORY_COUNT) {
+          throw new IOException(
+              "The file has "
+                  + categoryCount
+                  + " categories, but "
+                  + CompactModerationResult.CATEGORY_COUNT
+                  + " are supported");
+        }
+      } catch (IOException ex) {
+        channel.close();
+        throw ex;
+      }
+    }
+
+    /**
+     * @return the next row group or null if there are no more row groups
+     */
+    public RowGroup nextRowGroup() {
+      try {
+        ByteBuffer rowCount = readFully(Integer.BYTES);
+        if (rowCount == null) {
+          return null;
+        }
+        int rows = rowCount.getInt();
+        ByteBuffer columns = readFully(rows * Integer.BYTES + categoryCount * rows * Double.BYTES);
+        if (columns == null) {
+          throw new EOFException("Unexpected end of the file");
+        }
+        boolean[] flagged = new boolean[rows];
+        int[] categoryFlags = new int[rows];
+        for (int row = 0; row < rows; row++) {
+          int flags = columns.getInt();
+          flagged[row] = (flags & FLAGGED_BIT) != 0;
+          categoryFlags[row] = flags & ~FLAGGED_BIT;
+        }
+        double[][] scores = new double[categoryCount][rows];
+        for (double[] column : scores) {
+          columns.asDoubleBuffer().get(column);
+          columns.position(columns.position() + rows * Double.BYTES);
+        }
+        return new RowGroup(flagged, categoryFlags, scores);
+      } catch (IOException ex) {
+        throw new UncheckedIOException(ex);
+      }
+    }
+
+    /**
+     * @return the remaining row groups, which are read lazily
+     */
+    public Stream<RowGroup> rowGroups() {
+      Iterator<RowGroup> iterator =
+          new Iterator<>() {
+            private RowGroup next;
+
+            @Override
+            public boolean hasNext() {
+              if (next == null) {
+                next = nextRowGroup();
+              }
+              return next != null;
+            }
+
+            @Override
+            public RowGroup next() {
+              if (!hasNext()) {
+                throw new NoSuchElementException();
+              }
+              RowGroup rowGroup = next;
+              next = null;
+              return rowGroup;
+            }
+          };
+      return StreamSupport.stream(
+          Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL),
+          false);
+    }
+
+    @Override
+    public void close() {
+      try {
+        channel.close();
+      } catch (IOException ex) {
+        throw new UncheckedIOException(ex);
+      }
+    }
+
+    /**
+     * @return the buffer ready to be read or null if the end of the file was reached before
+     *     reading anything
+     */
+    private ByteBuffer readFully(int size) throws IOException {
+      ByteBuffer buffer = newBuffer(size);
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer) < 0) {
+          if (buffer.position() == 0) {
+            return null;
+          }
+          throw new EOFException("Unexpected end of the file");
+        }
+      }
+      return buffer.flip();
+    }
+  }
+
+  private static ByteBuffer newBuffer(int size) {
+    return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+  }
+}
@@ -0,0 +1,261 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Moderates inputs one at a time, while sending them to the API in batches. Inputs which arrive
+ * within a short delay of each other are collected into a single {@link ModerationRequest} and the
+ * {@link Moderation#results()} are mapped back to each input. The verdicts are cached by the hash
+ * of the input for a configurable time, so repeated inputs, including ones which are still being
+ * moderated, don't cause additional requests.
+ *
+ * <p>A gateway is thread-safe and is meant to be shared.
+ */
+public final class ModerationGateway {
+
+  private final Function<ModerationRequest, CompletableFuture<Moderation>> createModeration;
+  private final Optional<String> model;
+  private final int maxBatchSize;
+  private final Duration maxBatchDelay;
+  private final long cacheTtlNanos;
+  private final int maxCacheSize;
+
+  private final Map<String, CacheEntry> cache;
+
+  // guarded by "this"
+  private List<PendingInput> pendingInputs = new ArrayList<>();
+  private long batchNumber = 0;
+
+  private ModerationGateway(
+      Function<ModerationRequest, CompletableFuture<Moderation>> createModeration,
+      Optional<String> model,
+      int maxBatchSize,
+      Duration maxBatchDelay,
+      Duration cacheTtl,
+      int maxCacheSize) {
+    this.createModeration = createModeration;
+    this.model = model;
+    this.maxBatchSize = maxBatchSize;
+    this.maxBatchDelay = maxBatchDelay;
+    this.cacheTtlNanos = cacheTtl.toNanos();
+    this.maxCacheSize = maxCacheSize;
+    // access order, so the least recently used entries are evicted first
+    this.cache =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+            return size() > ModerationGateway.this.maxCacheSize;
+          }
+        };
+  }
+
+  public static Builder newBuilder(ModerationsClient moderationsClient) {
+    return new Builder(moderationsClient::createModerationAsync);
+  }
+
+  private record CacheEntry(CompletableFuture<Moderation.Result> result, long expiresAtNanos) {}
+
+  private record PendingInput(String input, CompletableFuture<Moderation.Result> result) {}
+
+  /**
+   * Classifies if text is potentially harmful.
+   *
+   * @return a future which completes with the result for the input, or completes exceptionally
+   *     with an {@link OpenAIException} in case of API errors
+   */
+  public CompletableFuture<Moderation.Result> moderate(String input) {
+    String key = hash(input);
+    CompletableFuture<Moderation.Result> result;
+    List<PendingInput> batch = null;
+    synchronized (this) {
+      long now = System.nanoTime();
+      CacheEntry cacheEntry = cache.get(key);
+      if (cacheEntry != null && cacheEntry.expiresAtNanos() - now > 0) {
+        return cacheEntry.result().copy();
+      }
+      result = new CompletableFuture<>();
+      cache.put(key, new CacheEntry(result, now + cacheTtlNanos));
+      pendingInputs.add(new PendingInput(input, result));
+      if (pendingInputs.size() >= maxBatchSize) {
+        batch = takePendingInputs();
+      } else if (pendingInputs.size() == 1) {
+        scheduleFlush(batchNumber);
+      }
+    }
+    // failed verdicts are not cached
+    result.whenComplete(
+        (moderationResult, ex) -> {
+          if (ex != null) {
+            evict(key, result);
+          }
+        });
+    if (batch != null) {
+      send(batch);
+    }
+    return result.copy();
+  }
+
+  /**
+   * @return the number of cached verdicts, including the ones which are still being moderated
+   */
+  public synchronized int cacheSize() {
+    return cache.size();
+  }
+
+  private void scheduleFlush(long scheduledBatchNumber) {
+    CompletableFuture.runAsync(
+        () -> flush(scheduledBatchNumber),
+        CompletableFuture.delayedExecutor(maxBatchDelay.toNanos(), TimeUnit.NANOSECONDS));
+  }
+
+  private void flush(long scheduledBatchNumber) {
+    List<PendingInput> batch;
+    synchronized (this) {
+      // the batch may have already been sent because it became full
+      if (scheduledBatchNumber != batchNumber || pendingInputs.isEmpty()) {
+        return;
+      }
+      batch = takePendingInputs();
+    }
+    send(batch);
+  }
+
+  private List<PendingInput> takePendingInputs() {
+    List<PendingInput> batch = pendingInputs;
+    pendingInputs = new ArrayList<>();
+    batchNumber++;
+    return batch;
+  }
+
+  private void send(List<PendingInput> batch) {
+    ModerationRequest.Builder requestBuilder =
+        ModerationRequest.newBuilder().inputs(batch.stream().map(PendingInput::input).toList());
+    model.ifPresent(requestBuilder::model);
+    CompletableFuture<Moderation> moderation;
+    try {
+      moderation = createModeration.apply(requestBuilder.build());
+    } catch (RuntimeException ex) {
+      moderation = CompletableFuture.failedFuture(ex);
+    }
+    moderation.whenComplete(
+        (response, ex) -> {
+          Throwable failure = ex instanceof CompletionException ? ex.getCause() : ex;
+          if (failure == null && response.results().size() != batch.size()) {
+            failure =
+                new IllegalStateException(
+                    "Expected "
+                        + batch.size()
+                        + " moderation results, but received "
+                        + response.results().size());
+          }
+          for (int i = 0; i < batch.size(); i++) {
+            if (failure == null) {
+              batch.get(i).result().complete(response.results().get(i));
+            } else {
+              batch.get(i).result().completeExceptionally(failure);
+            }
+          }
+        });
+  }
+
+  private synchronized void evict(String key, CompletableFuture<Moderation.Result> result) {
+    CacheEntry cacheEntry = cache.get(key);
+    if (cacheEntry != null && cacheEntry.result() == result) {
+      cache.remove(key);
+    }
+  }
+
+  private String hash(String input) {
+    try {
+      MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+      return HexFormat.of().formatHex(sha256.digest(input.getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  public static class Builder {
+
+    private static final int DEFAULT_MAX_BATCH_SIZE = 32;
+    private static final Duration DEFAULT_MAX_BATCH_DELAY = Duration.ofMillis(10);
+    private static final Duration DEFAULT_CACHE_TTL = Duration.ofMinutes(10);
+    private static final int DEFAULT_MAX_CACHE_SIZE = 10_000;
+
+    private final Function<ModerationRequest, CompletableFuture<Moderation>> createModeration;
+
+    private Optional<String> model = Optional.empty();
+    private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+    private Duration maxBatchDelay = DEFAULT_MAX_BATCH_DELAY;
+    private Duration cacheTtl = DEFAULT_CACHE_TTL;
+    private int maxCacheSize = DEFAULT_MAX_CACHE_SIZE;
+
+    Builder(Function<ModerationRequest, CompletableFuture<Moderation>> createModeration) {
+      this.createModeration = createModeration;
+    }
+
+    /**
+     * @param model the moderation model to use, see {@link ModerationRequest.Builder#model(String)}
+     */
+    public Builder model(String model) {
+      this.model = Optional.of(model);
+      return this;
+    }
+
+    /**
+     * @param maxBatchSize the maximum number of inputs sent in a single request. A batch is sent
+     *     as soon as it is full. Defaults to 32.
+     */
+    public Builder maxBatchSize(int maxBatchSize) {
+      if (maxBatchSize <= 0) {
+        throw new IllegalArgumentException("maxBatchSize must be positive");
+      }
+      this.maxBatchSize = maxBatchSize;
+      return this;
+    }
+
+    /**
+     * @param maxBatchDelay the maximum time the first input of a batch waits for other inputs
+     *     before the batch is sent. Defaults to 10 milliseconds.
+     */
+    public Builder maxBatchDelay(Duration maxBatchDelay) {
+      this.maxBatchDelay = maxBatchDelay;
+      return this;
+    }
+
+    /**
+     * @param cacheTtl how long a verdict is cached after the input was first moderated. Defaults
+     *     to 10 minutes.
+     */
+    public Builder cacheTtl(Duration cacheTtl) {
+      this.cacheTtl = cacheTtl;
+      return this;
+    }
+
+    /**
+     * @param maxCacheSize the maximum number of cached verdicts, after which the least recently
+     *     used ones are evicted. Defaults to 10000.
+     */
+    public Builder maxCacheSize(int maxCacheSize) {
+      this.maxCacheSize = maxCacheSize;
+      return this;
+    }
+
+    public ModerationGateway build() {
+      return new ModerationGateway(
+          createModeration, model, maxBatchSize, maxBatchDelay, cacheTtl, maxCacheSize);
+    }
+  }
+}
@@ -1,11 +1,17 @@
 package io.github.stefanbratanov.jvm.openai;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Given some input text, outputs if the model classifies it as potentially harmful across several
@@ -33,12 +39,46 @@ public final class ModerationsClient extends OpenAIClient {
    * @throws OpenAIException in case of API errors
    */
   public Moderation createModeration(ModerationRequest request) {
-    HttpRequest httpRequest =
-        newHttpRequestBuilder(Constants.CONTENT_TYPE_HEADER, Constants.JSON_MEDIA_TYPE)
-            .uri(endpoint)
-            .POST(createBodyPublisher(request))
-            .build();
-    HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
+    HttpRequest httpRequest = createModerationPostRequest(request);
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
     return deserializeResponse(httpResponse.body(), Moderation.class);
   }
+
+  /**
+   * Same as {@link #createModeration(ModerationRequest)} but returns a response in a {@link
+   * CompletableFuture}
+   */
+  public CompletableFuture<Moderation> createModerationAsync(ModerationRequest request) {
+    HttpRequest httpRequest = createModerationPostRequest(request);
+
+    return sendHttpRequestAsync(httpRequest)
+        .thenApply(httpResponse -> deserializeResponse(httpResponse.body(), Moderation.class));
+  }
+
+  /**
+   * Same as {@link #createModeration(ModerationRequest)} but the results are deserialized straight
+   * into {@link CompactModerationResult}s, which take a fraction of the memory when many results
+   * are kept.
+   *
+   * @throws OpenAIException in case of API errors
+   */
+  public List<CompactModerationResult> createCompactModeration(ModerationRequest request) {
+    HttpRequest httpRequest = createModerationPostRequest(request);
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
+    try (JsonParser parser = httpResponse.body().asParser()) {
+      if (!seekField(parser, "results") || !parser.isExpectedStartArrayToken()) {
+        throw new IOException("Expected a results array in the response");
+      }
+      return ObjectMapperSingleton.getListReader(CompactModerationResult.class).readValue(parser);
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  private HttpRequest createModerationPostRequest(ModerationRequest request) {
+    return newHttpRequestBuilder(Constants.CONTENT_TYPE_HEADER, Constants.JSON_MEDIA_TYPE)
+        .uri(endpoint)
+        .POST(createBodyPublisher(request))
+        .build();
+  }
 }
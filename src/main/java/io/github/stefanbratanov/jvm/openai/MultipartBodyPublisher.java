@@ -83,27 +83,31 @@ class MultipartBodyPublisher implements HttpRequest.BodyPublisher {
       try {
         String mimeType = Files.probeContentType(value);
         byte[] fileBytes = Files.readAllBytes(value);
-        multipartBodyParts.add(
-            (separator
-                    + "\""
-                    + key
-                    + "\"; filename=\""
-                    + value.getFileName()
-                    + "\""
-                    + CRLF
-                    + "Content-Type: "
-                    + mimeType
-                    + CRLF
-                    + "Content-Length: "
-                    + fileBytes.length
-                    + CRLF
-                    + CRLF)
-                .getBytes());
-        multipartBodyParts.add(fileBytes);
-        multipartBodyParts.add(CRLF.getBytes());
+        return bytesPart(key, value.getFileName().toString(), mimeType, fileBytes);
       } catch (IOException ex) {
         throw new UncheckedIOException(ex);
       }
+    }
+
+    Builder bytesPart(String key, String filename, String mimeType, byte[] value) {
+      multipartBodyParts.add(
+          (separator
+                  + "\""
+                  + key
+                  + "\"; filename=\""
+                  + filename
+                  + "\""
+                  + CRLF
+                  + "Content-Type: "
+                  + mimeType
+                  + CRLF
+                  + "Content-Length: "
+                  + value.length
+                  + CRLF
+                  + CRLF)
+              .getBytes());
+      multipartBodyParts.add(value);
+      multipartBodyParts.add(CRLF.getBytes());
       return this;
     }
 
@@ -2,27 +2,110 @@ package io.github.stefanbratanov.jvm.openai;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.Module;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.PropertyNamingStrategies;
 import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import java.util.List;
+import java.util.Optional;
 
 class ObjectMapperSingleton {
 
-  private static ObjectMapper instance;
+  private static final String BLACKBIRD_MODULE_CLASS =
+      "com.fasterxml.jackson.module.blackbird.BlackbirdModule";
 
   private ObjectMapperSingleton() {}
 
-  static synchronized ObjectMapper getInstance() {
-    if (instance == null) {
-      instance =
-          JsonMapper.builder()
-              .addModule(new Jdk8Module())
-              .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
-              .serializationInclusion(JsonInclude.Include.NON_ABSENT)
-              .propertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE)
-              .build();
+  static ObjectMapper getInstance() {
+    return Holder.INSTANCE;
+  }
+
+  /**
+   * @return an {@link ObjectReader} for the given type, which has its root deserializer already
+   *     resolved. Readers are created once per type and cached.
+   */
+  static ObjectReader getReader(Class<?> type) {
+    return Holder.READERS.get(type);
+  }
+
+  /**
+   * @return an {@link ObjectReader} for a {@link List} of the given element type
+   */
+  static ObjectReader getListReader(Class<?> elementType) {
+    return Holder.LIST_READERS.get(elementType);
+  }
+
+  /**
+   * @return an {@link ObjectWriter} for the given type, which has its root serializer already
+   *     resolved. Writers are created once per type and cached.
+   */
+  static ObjectWriter getWriter(Class<?> type) {
+    return Holder.WRITERS.get(type);
+  }
+
+  /**
+   * @param registerBlackbird if true, the Blackbird module will be registered when it is on the
+   *     classpath. It generates accessors for the properties at runtime, which speeds up
+   *     databinding compared to using reflection.
+   */
+  static ObjectMapper createObjectMapper(boolean registerBlackbird) {
+    JsonMapper.Builder builder =
+        JsonMapper.builder()
+            .addModule(new Jdk8Module())
+            .addModule(
+                new SimpleModule()
+                    .addDeserializer(
+                        CompactModerationResult.class, new CompactModerationResultDeserializer()))
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .serializationInclusion(JsonInclude.Include.NON_ABSENT)
+            .propertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE);
+    if (registerBlackbird) {
+      getBlackbirdModule().ifPresent(builder::addModule);
     }
-    return instance;
+    return builder.build();
+  }
+
+  private static Optional<Module> getBlackbirdModule() {
+    try {
+      Class<?> moduleClass = Class.forName(BLACKBIRD_MODULE_CLASS);
+      return Optional.of((Module) moduleClass.getConstructor().newInstance());
+    } catch (ReflectiveOperationException | LinkageError ex) {
+      return Optional.empty();
+    }
+  }
+
+  /** Lazily initialized on first use without any locking */
+  private static class Holder {
+
+    private static final ObjectMapper INSTANCE = createObjectMapper(true);
+
+    private static final ClassValue<ObjectReader> READERS =
+        new ClassValue<>() {
+          @Override
+          protected ObjectReader computeValue(Class<?> type) {
+            return INSTANCE.readerFor(type);
+          }
+        };
+
+    private static final ClassValue<ObjectReader> LIST_READERS =
+        new ClassValue<>() {
+          @Override
+          protected ObjectReader computeValue(Class<?> elementType) {
+            return INSTANCE.readerFor(
+                INSTANCE.getTypeFactory().constructCollectionType(List.class, elementType));
+          }
+        };
+
+    private static final ClassValue<ObjectWriter> WRITERS =
+        new ClassValue<>() {
+          @Override
+          protected ObjectWriter computeValue(Class<?> type) {
+            return INSTANCE.writerFor(type);
+          }
+        };
   }
 }
@@ -16,7 +16,9 @@ public final class OpenAI {
   private final ChatClient chatClient;
   private final EmbeddingsClient embeddingsClient;
   private final FineTuningClient fineTuningClient;
+  private final BatchClient batchClient;
   private final FilesClient filesClient;
+  private final UploadsClient uploadsClient;
   private final ImagesClient imagesClient;
   private final ModelsClient modelsClient;
   private final ModerationsClient moderationsClient;
@@ -37,7 +39,9 @@ public final class OpenAI {
         new EmbeddingsClient(baseUrl, apiKey, organization, httpClient, requestTimeout);
     fineTuningClient =
         new FineTuningClient(baseUrl, apiKey, organization, httpClient, requestTimeout);
+    batchClient = new BatchClient(baseUrl, apiKey, organization, httpClient, requestTimeout);
     filesClient = new FilesClient(baseUrl, apiKey, organization, httpClient, requestTimeout);
+    uploadsClient = new UploadsClient(baseUrl, apiKey, organization, httpClient, requestTimeout);
     imagesClient = new ImagesClient(baseUrl, apiKey, organization, httpClient, requestTimeout);
     modelsClient = new ModelsClient(baseUrl, apiKey, organization, httpClient, requestTimeout);
     moderationsClient =
@@ -81,6 +85,14 @@ public final class OpenAI {
     return fineTuningClient;
   }
 
+  /**
+   * @return a client based on <a
+   *     href="https://platform.openai.com/docs/api-reference/batch">Batch</a>
+   */
+  public BatchClient batchClient() {
+    return batchClient;
+  }
+
   /**
    * @return a client based on <a
    *     href="https://platform.openai.com/docs/api-reference/files">Files</a>
@@ -89,6 +101,14 @@ public final class OpenAI {
     return filesClient;
   }
 
+  /**
+   * @return a client based on <a
+   *     href="https://platform.openai.com/docs/api-reference/uploads">Uploads</a>
+   */
+  public UploadsClient uploadsClient() {
+    return uploadsClient;
+  }
+
   /**
    * @return a client based on <a
    *     href="https://platform.openai.com/docs/api-reference/images">Images</a>
@@ -152,6 +172,20 @@ public final class OpenAI {
     return new Builder(apiKey);
   }
 
+  /**
+   * Creates a builder of an instance which routes every request to one of the backends of the
+   * {@link LoadBalancer}. The base url, API key and organization of the chosen backend are used for
+   * the request, so the ones set on the builder are ignored.
+   *
+   * @param loadBalancer the load balancer which chooses a backend for every request
+   */
+  public static Builder newBuilder(LoadBalancer loadBalancer) {
+    LoadBalancer.Backend backend = loadBalancer.firstBackend();
+    Builder builder = new Builder(backend.apiKey()).baseUrl(backend.baseUrl().toString());
+    builder.loadBalancer = Optional.of(loadBalancer);
+    return builder;
+  }
+
   public static class Builder {
 
     private static final String DEFAULT_BASE_URL = "https://api.openai.com/v1/";
@@ -163,6 +197,13 @@ public final class OpenAI {
     private Optional<String> organization = Optional.empty();
     private Optional<HttpClient> httpClient = Optional.empty();
     private Optional<Duration> requestTimeout = Optional.empty();
+    private Optional<LoadBalancer> loadBalancer = Optional.empty();
+    private Optional<HedgingPolicy> hedgingPolicy = Optional.empty();
+    private Optional<CircuitBreakerPolicy> circuitBreakerPolicy = Optional.empty();
+    private Optional<Integer> maxConcurrentRequestsPerEndpoint = Optional.empty();
+    private Optional<RequestScheduler> requestScheduler = Optional.empty();
+    private Optional<CompressionPolicy> compressionPolicy = Optional.empty();
+    private Optional<Cassette> cassette = Optional.empty();
 
     public Builder(String apiKey) {
       this.apiKey = apiKey;
@@ -202,16 +243,99 @@ public final class OpenAI {
       return this;
     }
 
+    /**
+     * @param hedgingPolicy a policy for sending duplicate requests when a request which is safe to
+     *     repeat takes longer than usual. If none is set, requests are not hedged.
+     */
+    public Builder hedgingPolicy(HedgingPolicy hedgingPolicy) {
+      this.hedgingPolicy = Optional.of(hedgingPolicy);
+      return this;
+    }
+
+    /**
+     * @param circuitBreakerPolicy a policy for the circuit breaker of every endpoint, which makes
+     *     the requests to a failing endpoint fail fast with a {@link RequestRejectedException}. If
+     *     none is set, there are no circuit breakers.
+     */
+    public Builder circuitBreakerPolicy(CircuitBreakerPolicy circuitBreakerPolicy) {
+      this.circuitBreakerPolicy = Optional.of(circuitBreakerPolicy);
+      return this;
+    }
+
+    /**
+     * @param maxConcurrentRequestsPerEndpoint the maximum number of requests in flight to every
+     *     endpoint, past which the requests to the endpoint fail fast with a {@link
+     *     RequestRejectedException}. If none is set, there is no limit.
+     */
+    public Builder maxConcurrentRequestsPerEndpoint(int maxConcurrentRequestsPerEndpoint) {
+      if (maxConcurrentRequestsPerEndpoint < 1) {
+        throw new IllegalArgumentException("maxConcurrentRequestsPerEndpoint must be at least 1");
+      }
+      this.maxConcurrentRequestsPerEndpoint = Optional.of(maxConcurrentRequestsPerEndpoint);
+      return this;
+    }
+
+    /**
+     * @param requestScheduler a scheduler which queues the requests past a concurrency limit and
+     *     sends them in the order of their priorities. If none is set, requests are sent
+     *     immediately.
+     */
+    public Builder requestScheduler(RequestScheduler requestScheduler) {
+      this.requestScheduler = Optional.of(requestScheduler);
+      return this;
+    }
+
+    /**
+     * @param compressionPolicy a policy for compressing the bodies of the requests and the
+     *     responses. If none is set, the bodies are not compressed.
+     */
+    public Builder compressionPolicy(CompressionPolicy compressionPolicy) {
+      this.compressionPolicy = Optional.of(compressionPolicy);
+      return this;
+    }
+
+    /**
+     * @param cassette a cassette which records the responses or replays the recorded responses
+     *     without sending the requests. If none is set, requests are sent as usual.
+     */
+    public Builder cassette(Cassette cassette) {
+      this.cassette = Optional.of(cassette);
+      return this;
+    }
+
     public OpenAI build() {
       if (!baseUrl.endsWith("/")) {
         baseUrl += "/";
       }
-      return new OpenAI(
-          URI.create(baseUrl),
-          apiKey,
-          organization,
-          httpClient.orElseGet(HttpClient::newHttpClient),
-          requestTimeout);
+      URI baseUri = URI.create(baseUrl);
+      HttpClient client = httpClient.orElseGet(HttpClient::newHttpClient);
+      if (cassette.isPresent()) {
+        // the responses are recorded as they were on the wire, so they are decoded when replayed
+        client =
+            cassette.get().isRecording()
+                ? new RecordingHttpClient(client, cassette.get())
+                : new ReplayingHttpClient(client, cassette.get());
+      }
+      if (compressionPolicy.isPresent()) {
+        client = new CompressingHttpClient(client, compressionPolicy.get());
+      }
+      if (loadBalancer.isPresent()) {
+        client = new LoadBalancingHttpClient(client, loadBalancer.get(), baseUri);
+      }
+      if (hedgingPolicy.isPresent()) {
+        // the duplicate requests are routed separately, so they can go to another backend
+        client = new HedgingHttpClient(client, hedgingPolicy.get(), baseUri);
+      }
+      if (circuitBreakerPolicy.isPresent() || maxConcurrentRequestsPerEndpoint.isPresent()) {
+        client =
+            new IsolatingHttpClient(
+                client, circuitBreakerPolicy, maxConcurrentRequestsPerEndpoint, baseUri);
+      }
+      if (requestScheduler.isPresent()) {
+        // the requests wait in the queues before they are counted by the bulkheads
+        client = new SchedulingHttpClient(client, requestScheduler.get(), baseUri);
+      }
+      return new OpenAI(baseUri, apiKey, organization, client, requestTimeout);
     }
   }
 }
@@ -1,20 +1,26 @@
 package io.github.stefanbratanov.jvm.openai;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.UncheckedIOException;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Subclasses should be based on one of the endpoints defined at <a
@@ -22,7 +28,11 @@ import java.util.stream.Stream;
  */
 abstract class OpenAIClient {
 
+  private static final long MAX_ERROR_BODY_SIZE = 1024 * 1024;
+
   private final ObjectMapper objectMapper = ObjectMapperSingleton.getInstance();
+  private final HttpResponse.BodyHandler<TokenBuffer> jsonBodyHandler =
+      JsonTokensBodySubscriber.handler(objectMapper);
 
   private final String[] authenticationHeaders;
   private final HttpClient httpClient;
@@ -44,7 +54,10 @@ abstract class OpenAIClient {
     if (headers.length > 0) {
       httpRequestBuilder.headers(headers);
     }
-    requestTimeout.ifPresent(httpRequestBuilder::timeout);
+    RequestContext.current()
+        .map(context -> context.getRequestTimeout(requestTimeout))
+        .orElse(requestTimeout)
+        .ifPresent(httpRequestBuilder::timeout);
     return httpRequestBuilder;
   }
 
@@ -57,18 +70,23 @@ abstract class OpenAIClient {
 
   <T> HttpRequest.BodyPublisher createBodyPublisher(T body) {
     try {
-      return HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body));
+      return HttpRequest.BodyPublishers.ofByteArray(
+          ObjectMapperSingleton.getWriter(body.getClass()).writeValueAsBytes(body));
     } catch (JsonProcessingException ex) {
       throw new UncheckedIOException(ex);
     }
   }
 
-  HttpResponse<byte[]> sendHttpRequest(HttpRequest httpRequest) {
-    return sendHttpRequest(httpRequest, HttpResponse.BodyHandlers.ofByteArray());
+  HttpResponse<TokenBuffer> sendHttpRequest(HttpRequest httpRequest) {
+    return sendHttpRequest(httpRequest, jsonBodyHandler);
   }
 
   <T> HttpResponse<T> sendHttpRequest(
       HttpRequest httpRequest, HttpResponse.BodyHandler<T> responseBodyHandler) {
+    if (RequestContext.current().isPresent()) {
+      // sent asynchronously, so that the exchange can be aborted when the context is cancelled
+      return awaitHttpResponse(sendHttpRequestAsync(httpRequest, responseBodyHandler));
+    }
     try {
       HttpResponse<T> httpResponse = httpClient.send(httpRequest, responseBodyHandler);
       validateHttpResponse(httpResponse);
@@ -81,24 +99,81 @@ abstract class OpenAIClient {
     }
   }
 
-  CompletableFuture<HttpResponse<byte[]>> sendHttpRequestAsync(HttpRequest httpRequest) {
-    return sendHttpRequestAsync(httpRequest, HttpResponse.BodyHandlers.ofByteArray());
+  CompletableFuture<HttpResponse<TokenBuffer>> sendHttpRequestAsync(HttpRequest httpRequest) {
+    return sendHttpRequestAsync(httpRequest, jsonBodyHandler);
   }
 
   <T> CompletableFuture<HttpResponse<T>> sendHttpRequestAsync(
       HttpRequest httpRequest, HttpResponse.BodyHandler<T> responseBodyHandler) {
-    return httpClient
-        .sendAsync(httpRequest, responseBodyHandler)
-        .thenApply(
-            httpResponse -> {
-              validateHttpResponse(httpResponse);
-              return httpResponse;
-            });
+    Optional<RequestContext> context = RequestContext.current();
+    Optional<Exception> contextFailure = context.flatMap(RequestContext::getFailure);
+    if (contextFailure.isPresent()) {
+      return CompletableFuture.failedFuture(contextFailure.get());
+    }
+    // cancelling the future returned to the caller aborts the exchange
+    CompletableFuture<HttpResponse<T>> httpResponseFuture =
+        CancellableFuture.of(httpClient.sendAsync(httpRequest, responseBodyHandler))
+            .thenApply(
+                httpResponse -> {
+                  validateHttpResponse(httpResponse);
+                  return httpResponse;
+                });
+    context.ifPresent(requestContext -> requestContext.track(httpResponseFuture));
+    return httpResponseFuture;
+  }
+
+  /**
+   * Calls the supplier with the given context attached, for calls which are deferred to another
+   * thread, such as polls and retries
+   */
+  <T> T withContext(Optional<RequestContext> context, Supplier<T> supplier) {
+    return context.map(requestContext -> requestContext.call(supplier)).orElseGet(supplier);
+  }
+
+  private <T> HttpResponse<T> awaitHttpResponse(
+      CompletableFuture<HttpResponse<T>> httpResponseFuture) {
+    try {
+      return httpResponseFuture.get();
+    } catch (InterruptedException ex) {
+      httpResponseFuture.cancel(true);
+      java.lang.Thread.currentThread().interrupt();
+      throw new RuntimeException("Operation was interrupted", ex);
+    } catch (ExecutionException ex) {
+      Throwable cause = ex.getCause();
+      if (cause instanceof IOException ioEx) {
+        throw new UncheckedIOException(ioEx);
+      }
+      if (cause instanceof RuntimeException runtimeEx) {
+        throw runtimeEx;
+      }
+      throw new RuntimeException(cause);
+    }
+  }
+
+  /**
+   * Wraps a {@link HttpResponse.BodyHandler} which is not meant for JSON, so that error responses
+   * are not written where the successful body would be (for example a file) and only a bounded
+   * part of them is kept in memory. The body of an error response is replaced with its parsed JSON
+   * tokens, which are consumed by {@link #validateHttpResponse(HttpResponse)} before the response
+   * is returned to the caller.
+   */
+  <T> HttpResponse.BodyHandler<T> withErrorBody(HttpResponse.BodyHandler<T> responseBodyHandler) {
+    return responseInfo -> {
+      if (isSuccessful(responseInfo.statusCode())) {
+        return responseBodyHandler.apply(responseInfo);
+      }
+      @SuppressWarnings("unchecked")
+      HttpResponse.BodySubscriber<T> errorBodySubscriber =
+          (HttpResponse.BodySubscriber<T>)
+              (HttpResponse.BodySubscriber<?>)
+                  new JsonTokensBodySubscriber(objectMapper, false, MAX_ERROR_BODY_SIZE);
+      return errorBodySubscriber;
+    };
   }
 
   void validateHttpResponse(HttpResponse<?> httpResponse) {
     int statusCode = httpResponse.statusCode();
-    if (statusCode < 200 || statusCode > 299) {
+    if (!isSuccessful(statusCode)) {
       getErrorFromHttpResponse(httpResponse)
           .ifPresentOrElse(
               error -> {
@@ -110,25 +185,124 @@ abstract class OpenAIClient {
     }
   }
 
+  boolean isSuccessful(int statusCode) {
+    return statusCode >= 200 && statusCode <= 299;
+  }
+
   <T> T deserializeResponse(byte[] response, Class<T> responseClass) {
     try {
-      return objectMapper.readValue(response, responseClass);
+      return ObjectMapperSingleton.getReader(responseClass).readValue(response);
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  <T> T deserializeResponse(TokenBuffer response, Class<T> responseClass) {
+    try (JsonParser parser = response.asParser()) {
+      return ObjectMapperSingleton.getReader(responseClass).readValue(parser);
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  <T> List<T> deserializeDataInResponseAsList(TokenBuffer response, Class<T> elementType) {
+    try (JsonParser parser = response.asParser()) {
+      seekDataArray(parser);
+      return ObjectMapperSingleton.getListReader(elementType).readValue(parser);
     } catch (IOException ex) {
       throw new UncheckedIOException(ex);
     }
   }
 
-  <T> List<T> deserializeDataInResponseAsList(byte[] response, Class<T> elementType) {
+  /**
+   * Same as {@link #deserializeDataInResponseAsList(TokenBuffer, Class)} but the elements are
+   * parsed lazily while the returned {@link Stream} is consumed. The stream should be closed in
+   * order to release the response.
+   */
+  <T> Stream<T> deserializeDataInResponseAsStream(InputStream response, Class<T> elementType) {
     try {
-      JsonNode responseNode = objectMapper.readTree(response);
-      return objectMapper.readValue(
-          responseNode.get("data").traverse(),
-          objectMapper.getTypeFactory().constructCollectionType(List.class, elementType));
+      JsonParser parser = objectMapper.createParser(response);
+      try {
+        seekDataArray(parser);
+      } catch (IOException ex) {
+        parser.close();
+        throw ex;
+      }
+      ObjectReader elementReader = ObjectMapperSingleton.getReader(elementType);
+      Iterator<T> elements =
+          new Iterator<>() {
+            private Boolean hasNext;
+
+            @Override
+            public boolean hasNext() {
+              if (hasNext == null) {
+                try {
+                  JsonToken token = parser.nextToken();
+                  hasNext = token != null && token != JsonToken.END_ARRAY;
+                } catch (IOException ex) {
+                  throw new UncheckedIOException(ex);
+                }
+              }
+              return hasNext;
+            }
+
+            @Override
+            public T next() {
+              if (!hasNext()) {
+                throw new NoSuchElementException();
+              }
+              hasNext = null;
+              try {
+                return elementReader.readValue(parser);
+              } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+              }
+            }
+          };
+      return StreamSupport.stream(
+              Spliterators.spliteratorUnknownSize(
+                  elements, Spliterator.ORDERED | Spliterator.NONNULL),
+              false)
+          .onClose(
+              () -> {
+                try {
+                  parser.close();
+                } catch (IOException ex) {
+                  throw new UncheckedIOException(ex);
+                }
+              });
     } catch (IOException ex) {
       throw new UncheckedIOException(ex);
     }
   }
 
+  /**
+   * Moves the parser to the value of a top-level field of a JSON object without materializing the
+   * fields which are skipped.
+   *
+   * @return true if the field was found
+   */
+  boolean seekField(JsonParser parser, String fieldName) throws IOException {
+    if (parser.nextToken() != JsonToken.START_OBJECT) {
+      return false;
+    }
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String currentName = parser.currentName();
+      parser.nextToken();
+      if (fieldName.equals(currentName)) {
+        return true;
+      }
+      parser.skipChildren();
+    }
+    return false;
+  }
+
+  private void seekDataArray(JsonParser parser) throws IOException {
+    if (!seekField(parser, "data") || !parser.isExpectedStartArrayToken()) {
+      throw new IOException("Expected a data array in the response");
+    }
+  }
+
   private String[] getAuthenticationHeaders(String apiKey, Optional<String> organization) {
     List<String> authHeaders = new ArrayList<>();
     authHeaders.add("Authorization");
@@ -145,13 +319,13 @@ abstract class OpenAIClient {
     return getErrorBodyFromHttpResponse(httpResponse)
         .flatMap(
             body -> {
-              try {
-                JsonNode errorNode = objectMapper.readTree(body).get("error");
-                if (errorNode == null) {
+              try (body) {
+                if (!seekField(body, "error") || !body.isExpectedStartObjectToken()) {
                   return Optional.empty();
                 }
-                return Optional.of(
-                    objectMapper.treeToValue(errorNode, OpenAIException.Error.class));
+                OpenAIException.Error error =
+                    ObjectMapperSingleton.getReader(OpenAIException.Error.class).readValue(body);
+                return Optional.of(error);
               } catch (JsonProcessingException ex) {
                 return Optional.empty();
               } catch (IOException ex) {
@@ -160,21 +334,37 @@ abstract class OpenAIClient {
             });
   }
 
-  private Optional<byte[]> getErrorBodyFromHttpResponse(HttpResponse<?> httpResponse) {
-    byte[] body;
-    if (httpResponse.body() instanceof byte[]) {
-      body = (byte[]) httpResponse.body();
-    } else if (httpResponse.body() instanceof Path path) {
+  private Optional<JsonParser> getErrorBodyFromHttpResponse(HttpResponse<?> httpResponse) {
+    if (httpResponse.body() instanceof TokenBuffer tokenBuffer) {
+      return Optional.of(tokenBuffer.asParser());
+    }
+    if (httpResponse.body() instanceof InputStream inputStream) {
+      try {
+        return Optional.of(objectMapper.createParser(inputStream));
+      } catch (IOException ex) {
+        throw new UncheckedIOException(ex);
+      }
+    }
+    if (httpResponse.body() instanceof Path path) {
       try {
-        body = Files.readAllBytes(path);
+        // parses the file incrementally instead of reading all of it
+        return Optional.of(objectMapper.createParser(path.toFile()));
       } catch (IOException ex) {
         throw new UncheckedIOException(ex);
       }
+    }
+    byte[] body;
+    if (httpResponse.body() instanceof byte[]) {
+      body = (byte[]) httpResponse.body();
     } else if (httpResponse.body() instanceof Stream<?> stream) {
       body = stream.map(String.class::cast).collect(Collectors.joining()).getBytes();
     } else {
       return Optional.empty();
     }
-    return Optional.of(body);
+    try {
+      return Optional.of(objectMapper.createParser(body));
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
   }
 }
@@ -0,0 +1,83 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+
+/**
+ * A {@link HttpResponse.BodySubscriber} which passes the body through to another subscriber, while
+ * keeping a copy of every chunk along with the time it arrived. The chunks are only handed over
+ * once the body has completed, so that failed or cancelled responses are discarded instead.
+ */
+class RecordingBodySubscriber<T> implements HttpResponse.BodySubscriber<T> {
+
+  private final HttpResponse.BodySubscriber<T> delegate;
+  private final long startNanos;
+  private final Consumer<List<Cassette.Chunk>> onRecorded;
+  private final Runnable onDiscarded;
+
+  private final List<Cassette.Chunk> chunks = new ArrayList<>();
+
+  RecordingBodySubscriber(
+      HttpResponse.BodySubscriber<T> delegate,
+      long startNanos,
+      Consumer<List<Cassette.Chunk>> onRecorded,
+      Runnable onDiscarded) {
+    this.delegate = delegate;
+    this.startNanos = startNanos;
+    this.onRecorded = onRecorded;
+    this.onDiscarded = onDiscarded;
+  }
+
+  @Override
+  public CompletionStage<T> getBody() {
+    return delegate.getBody();
+  }
+
+  @Override
+  public void onSubscribe(Flow.Subscription subscription) {
+    delegate.onSubscribe(
+        new Flow.Subscription() {
+          @Override
+          public void request(long n) {
+            subscription.request(n);
+          }
+
+          @Override
+          public void cancel() {
+            subscription.cancel();
+            onDiscarded.run();
+          }
+        });
+  }
+
+  @Override
+  public void onNext(List<ByteBuffer> items) {
+    int size = 0;
+    for (ByteBuffer item : items) {
+      size += item.remaining();
+    }
+    ByteBuffer data = ByteBuffer.allocate(size);
+    for (ByteBuffer item : items) {
+      data.put(item.duplicate());
+    }
+    chunks.add(new Cassette.Chunk(System.nanoTime() - startNanos, data.array()));
+    delegate.onNext(items);
+  }
+
+  @Override
+  public void onError(Throwable throwable) {
+    onDiscarded.run();
+    delegate.onError(throwable);
+  }
+
+  @Override
+  public void onComplete() {
+    onRecorded.accept(List.copyOf(chunks));
+    delegate.onComplete();
+  }
+}
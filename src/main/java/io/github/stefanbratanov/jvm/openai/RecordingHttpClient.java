@@ -0,0 +1,83 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Records the responses of the delegate, as the body handlers receive them, into a {@link
+ * Cassette}. The responses are passed on unchanged.
+ */
+class RecordingHttpClient extends DelegatingHttpClient {
+
+  private static final String SET_COOKIE_HEADER = "set-cookie";
+
+  private final Cassette cassette;
+
+  RecordingHttpClient(HttpClient delegate, Cassette cassette) {
+    super(delegate);
+    this.cassette = cassette;
+  }
+
+  @Override
+  public <T> HttpResponse<T> send(
+      HttpRequest request, HttpResponse.BodyHandler<T> responseBodyHandler)
+      throws IOException, InterruptedException {
+    long sequence = cassette.nextSequence();
+    try {
+      return super.send(request, recording(request, sequence, responseBodyHandler));
+    } catch (IOException | InterruptedException | RuntimeException ex) {
+      cassette.discard(sequence);
+      throw ex;
+    }
+  }
+
+  @Override
+  public <T> CompletableFuture<HttpResponse<T>> sendAsync(
+      HttpRequest request, HttpResponse.BodyHandler<T> responseBodyHandler) {
+    long sequence = cassette.nextSequence();
+    return super.sendAsync(request, recording(request, sequence, responseBodyHandler))
+        .whenComplete(
+            (response, ex) -> {
+              if (ex != null) {
+                cassette.discard(sequence);
+              }
+            });
+  }
+
+  private <T> HttpResponse.BodyHandler<T> recording(
+      HttpRequest request, long sequence, HttpResponse.BodyHandler<T> bodyHandler) {
+    long startNanos = System.nanoTime();
+    return responseInfo -> {
+      long headersNanos = System.nanoTime() - startNanos;
+      Map<String, List<String>> headers = new LinkedHashMap<>();
+      responseInfo
+          .headers()
+          .map()
+          .forEach(
+              (name, values) -> {
+                if (!name.equalsIgnoreCase(SET_COOKIE_HEADER)) {
+                  headers.put(name, List.copyOf(values));
+                }
+              });
+      return new RecordingBodySubscriber<>(
+          bodyHandler.apply(responseInfo),
+          startNanos,
+          chunks ->
+              cassette.add(
+                  sequence,
+                  new Cassette.Exchange(
+                      Cassette.key(request),
+                      responseInfo.statusCode(),
+                      headers,
+                      headersNanos,
+                      chunks)),
+          () -> cassette.discard(sequence));
+    };
+  }
+}
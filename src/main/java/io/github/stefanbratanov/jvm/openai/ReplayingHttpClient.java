@@ -0,0 +1,258 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import javax.net.ssl.SSLSession;
+
+/**
+ * Answers the requests with the exchanges of a {@link Cassette} instead of sending them. The
+ * headers and every chunk of the body are delivered at the recorded times, divided by the replay
+ * speed of the cassette, and the chunks are only delivered when the body handler requests them.
+ */
+class ReplayingHttpClient extends DelegatingHttpClient {
+
+  private final Cassette cassette;
+
+  ReplayingHttpClient(HttpClient delegate, Cassette cassette) {
+    super(delegate);
+    this.cassette = cassette;
+  }
+
+  @Override
+  public <T> HttpResponse<T> send(
+      HttpRequest request, HttpResponse.BodyHandler<T> responseBodyHandler)
+      throws IOException, InterruptedException {
+    CompletableFuture<HttpResponse<T>> responseFuture = sendAsync(request, responseBodyHandler);
+    try {
+      return responseFuture.get();
+    } catch (InterruptedException ex) {
+      responseFuture.cancel(true);
+      throw ex;
+    } catch (ExecutionException ex) {
+      if (ex.getCause() instanceof IOException ioEx) {
+        throw ioEx;
+      }
+      if (ex.getCause() instanceof RuntimeException runtimeEx) {
+        throw runtimeEx;
+      }
+      throw new IOException(ex.getCause());
+    }
+  }
+
+  @Override
+  public <T> CompletableFuture<HttpResponse<T>> sendAsync(
+      HttpRequest request, HttpResponse.BodyHandler<T> responseBodyHandler) {
+    Optional<Cassette.Exchange> exchange = cassette.next(request);
+    if (exchange.isEmpty()) {
+      return CompletableFuture.failedFuture(
+          new IOException(
+              "The cassette "
+                  + cassette.path()
+                  + " has no recorded exchange for "
+                  + Cassette.key(request)));
+    }
+    return new Replay<>(request, exchange.get(), responseBodyHandler).start();
+  }
+
+  @Override
+  public <T> CompletableFuture<HttpResponse<T>> sendAsync(
+      HttpRequest request,
+      HttpResponse.BodyHandler<T> responseBodyHandler,
+      HttpResponse.PushPromiseHandler<T> pushPromiseHandler) {
+    // nothing is pushed by a replayed exchange
+    return sendAsync(request, responseBodyHandler);
+  }
+
+  private class Replay<T> implements Flow.Subscription {
+
+    private final HttpRequest request;
+    private final Cassette.Exchange exchange;
+    private final HttpResponse.BodyHandler<T> bodyHandler;
+    private final HttpHeaders headers;
+    private final long startNanos = System.nanoTime();
+
+    private volatile HttpResponse.BodySubscriber<T> bodySubscriber;
+
+    // guarded by "this"
+    private int nextChunk = 0;
+    // guarded by "this"
+    private long demand = 0;
+    // guarded by "this"
+    private boolean delivering = false;
+    // guarded by "this"
+    private boolean done = false;
+
+    private Replay(
+        HttpRequest request, Cassette.Exchange exchange, HttpResponse.BodyHandler<T> bodyHandler) {
+      this.request = request;
+      this.exchange = exchange;
+      this.bodyHandler = bodyHandler;
+      this.headers = HttpHeaders.of(exchange.headers(), (name, value) -> true);
+    }
+
+    CompletableFuture<HttpResponse<T>> start() {
+      CompletableFuture<HttpResponse<T>> responseFuture = new CompletableFuture<>();
+      delayedExecutor(dueNanos(exchange.headersNanos()) - System.nanoTime())
+          .execute(
+              () -> {
+                try {
+                  bodySubscriber = bodyHandler.apply(responseInfo());
+                  bodySubscriber
+                      .getBody()
+                      .whenComplete(
+                          (body, ex) -> {
+                            if (ex != null) {
+                              responseFuture.completeExceptionally(ex);
+                            } else {
+                              responseFuture.complete(
+                                  new ReplayedResponse<>(
+                                      request, exchange.statusCode(), headers, body));
+                            }
+                          });
+                  bodySubscriber.onSubscribe(this);
+                  deliver();
+                } catch (RuntimeException ex) {
+                  responseFuture.completeExceptionally(ex);
+                }
+              });
+      // cancelling the response stops the replay, like it closes the connection of a real one
+      responseFuture.whenComplete((response, ex) -> cancelIfFailed(ex));
+      return responseFuture;
+    }
+
+    @Override
+    public void request(long n) {
+      if (n <= 0) {
+        cancel();
+        bodySubscriber.onError(new IllegalArgumentException("non-positive subscription request"));
+        return;
+      }
+      synchronized (this) {
+        demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+      }
+      deliver();
+    }
+
+    @Override
+    public synchronized void cancel() {
+      done = true;
+    }
+
+    private void cancelIfFailed(Throwable ex) {
+      if (ex != null) {
+        cancel();
+      }
+    }
+
+    /**
+     * Delivers the chunks which are due and requested, and schedules the delivery of the next chunk
+     * if it isn't due yet. Only one thread delivers at a time, so the body subscriber is never
+     * called concurrently.
+     */
+    private void deliver() {
+      synchronized (this) {
+        if (delivering || done) {
+          return;
+        }
+        delivering = true;
+      }
+      while (true) {
+        Cassette.Chunk chunk;
+        synchronized (this) {
+          if (done) {
+            delivering = false;
+            return;
+          }
+          if (nextChunk == exchange.chunks().size()) {
+            done = true;
+            delivering = false;
+            break;
+          }
+          chunk = exchange.chunks().get(nextChunk);
+          long delayNanos = dueNanos(chunk.offsetNanos()) - System.nanoTime();
+          if (demand == 0 || delayNanos > 0) {
+            delivering = false;
+            if (demand > 0) {
+              delayedExecutor(delayNanos).execute(this::deliver);
+            }
+            return;
+          }
+          nextChunk++;
+          demand--;
+        }
+        bodySubscriber.onNext(List.of(ByteBuffer.wrap(chunk.data()).asReadOnlyBuffer()));
+      }
+      bodySubscriber.onComplete();
+    }
+
+    private long dueNanos(long offsetNanos) {
+      double replaySpeed = cassette.replaySpeed();
+      return Double.isInfinite(replaySpeed)
+          ? startNanos
+          : startNanos + (long) (offsetNanos / replaySpeed);
+    }
+
+    private Executor delayedExecutor(long delayNanos) {
+      long delay = Math.max(0, delayNanos);
+      return executor()
+          .map(executor -> CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS, executor))
+          .orElseGet(() -> CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS));
+    }
+
+    private HttpResponse.ResponseInfo responseInfo() {
+      return new HttpResponse.ResponseInfo() {
+        @Override
+        public int statusCode() {
+          return exchange.statusCode();
+        }
+
+        @Override
+        public HttpHeaders headers() {
+          return headers;
+        }
+
+        @Override
+        public HttpClient.Version version() {
+          return HttpClient.Version.HTTP_1_1;
+        }
+      };
+    }
+  }
+
+  private record ReplayedResponse<T>(
+      HttpRequest request, int statusCode, HttpHeaders headers, T body)
+      implements HttpResponse<T> {
+
+    @Override
+    public Optional<HttpResponse<T>> previousResponse() {
+      return Optional.empty();
+    }
+
+    @Override
+    public Optional<SSLSession> sslSession() {
+      return Optional.empty();
+    }
+
+    @Override
+    public URI uri() {
+      return request.uri();
+    }
+
+    @Override
+    public HttpClient.Version version() {
+      return HttpClient.Version.HTTP_1_1;
+    }
+  }
+}
@@ -0,0 +1,254 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * A deadline and a cancellation signal shared by all the API calls made while the context is
+ * attached to the current thread, including the retries and polls which those calls make on other
+ * threads. For example:
+ *
+ * <pre>{@code
+ * RequestContext context = RequestContext.withTimeout(Duration.ofSeconds(2));
+ * Moderation moderation = context.call(() -> moderationsClient.createModeration(request));
+ * }</pre>
+ *
+ * <p>The timeout of every request is the remaining time until the deadline, or the request timeout
+ * of the {@link OpenAI} instance if that is shorter. Calls which are made after the deadline or
+ * after the context was cancelled fail without sending a request. Cancelling the context aborts
+ * all of its requests in flight and wakes up the polls which are waiting. A call which exceeds the
+ * deadline fails with a {@link HttpTimeoutException}, wrapped in an {@link
+ * java.io.UncheckedIOException} for synchronous calls, and a cancelled call fails with a {@link
+ * CancellationException}.
+ */
+public final class RequestContext {
+
+  private static final ThreadLocal<RequestContext> CURRENT = new ThreadLocal<>();
+
+  private static final Duration MIN_REQUEST_TIMEOUT = Duration.ofMillis(1);
+
+  private static final ScheduledThreadPoolExecutor SCHEDULER =
+      Schedulers.newDaemonScheduler("request-context-deadline");
+
+  private final Optional<Long> deadlineNanos;
+  private final CompletableFuture<Void> cancellation = new CompletableFuture<>();
+  private final Set<CompletableFuture<?>> inFlight = ConcurrentHashMap.newKeySet();
+
+  private RequestContext(Optional<Long> deadlineNanos) {
+    this.deadlineNanos = deadlineNanos;
+  }
+
+  /**
+   * @param timeout the time from now after which the calls made in this context fail
+   */
+  public static RequestContext withTimeout(Duration timeout) {
+    return new RequestContext(Optional.of(System.nanoTime() + timeout.toNanos()));
+  }
+
+  /**
+   * @param deadline the instant after which the calls made in this context fail
+   */
+  public static RequestContext withDeadline(Instant deadline) {
+    return withTimeout(Duration.between(Instant.now(), deadline));
+  }
+
+  /** Creates a context which can only be cancelled */
+  public static RequestContext withoutDeadline() {
+    return new RequestContext(Optional.empty());
+  }
+
+  /**
+   * @return the time left until the deadline, which is zero once the deadline has passed
+   */
+  public Optional<Duration> remainingTime() {
+    return deadlineNanos.map(
+        deadline -> Duration.ofNanos(Math.max(deadline - System.nanoTime(), 0)));
+  }
+
+  public boolean isExpired() {
+    return remainingTime().map(Duration::isZero).orElse(false);
+  }
+
+  /** Aborts all requests in flight and fails all calls made in this context from now on */
+  public void cancel() {
+    if (cancellation.complete(null)) {
+      inFlight.forEach(future -> future.cancel(true));
+    }
+  }
+
+  public boolean isCancelled() {
+    return cancellation.isDone();
+  }
+
+  /**
+   * Attaches this context to the current thread until the returned {@link Scope} is closed
+   *
+   * <pre>{@code
+   * try (RequestContext.Scope scope = context.attach()) {
+   *   ...
+   * }
+   * }</pre>
+   */
+  public Scope attach() {
+    Scope scope = new Scope(CURRENT.get());
+    CURRENT.set(this);
+    return scope;
+  }
+
+  /**
+   * Calls the supplier with this context attached to the current thread. Asynchronous calls made
+   * by the supplier keep honoring the context after it returns.
+   */
+  public <T> T call(Supplier<T> supplier) {
+    Scope scope = attach();
+    try {
+      return supplier.get();
+    } finally {
+      scope.close();
+    }
+  }
+
+  /** Same as {@link #call(Supplier)} for a {@link Runnable} */
+  public void run(Runnable runnable) {
+    Scope scope = attach();
+    try {
+      runnable.run();
+    } finally {
+      scope.close();
+    }
+  }
+
+  /** Restores the context which was attached to the thread before when closed */
+  public static final class Scope implements AutoCloseable {
+
+    private final RequestContext previous;
+
+    private Scope(RequestContext previous) {
+      this.previous = previous;
+    }
+
+    @Override
+    public void close() {
+      if (previous == null) {
+        CURRENT.remove();
+      } else {
+        CURRENT.set(previous);
+      }
+    }
+  }
+
+  static Optional<RequestContext> current() {
+    return Optional.ofNullable(CURRENT.get());
+  }
+
+  /**
+   * Waits for the given duration, but not past the deadline of the current context and not after
+   * it was cancelled
+   */
+  static void sleep(Duration duration) throws InterruptedException {
+    Optional<RequestContext> context = current();
+    if (context.isEmpty()) {
+      java.lang.Thread.sleep(duration.toMillis());
+      return;
+    }
+    Duration sleepDuration =
+        context
+            .get()
+            .remainingTime()
+            .filter(remainingTime -> remainingTime.compareTo(duration) < 0)
+            .orElse(duration);
+    try {
+      context.get().cancellation.get(sleepDuration.toNanos(), TimeUnit.NANOSECONDS);
+    } catch (TimeoutException | ExecutionException ex) {
+      // the time is up
+    }
+  }
+
+  /**
+   * @return the exception with which a call fails, if the context was cancelled or has expired
+   */
+  Optional<Exception> getFailure() {
+    if (isCancelled()) {
+      return Optional.of(new CancellationException("The request context was cancelled"));
+    }
+    if (isExpired()) {
+      return Optional.of(new DeadlineExceededException());
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * @return the timeout of a request, which is the shorter of the given timeout and the remaining
+   *     time until the deadline
+   */
+  Optional<Duration> getRequestTimeout(Optional<Duration> requestTimeout) {
+    Optional<Duration> remainingTime = remainingTime();
+    if (remainingTime.isEmpty()) {
+      return requestTimeout;
+    }
+    Duration timeout = remainingTime.get();
+    if (requestTimeout.isPresent() && requestTimeout.get().compareTo(timeout) < 0) {
+      timeout = requestTimeout.get();
+    }
+    // a request can't have a zero timeout
+    return Optional.of(timeout.compareTo(MIN_REQUEST_TIMEOUT) < 0 ? MIN_REQUEST_TIMEOUT : timeout);
+  }
+
+  /**
+   * Cancels the future when this context is cancelled and fails it with a {@link
+   * HttpTimeoutException} when the deadline passes. The future should be a {@link
+   * CancellableFuture}, so that the exchange is aborted in both cases. The deadline timer is
+   * removed as soon as the future completes, so that it doesn't keep the response reachable.
+   */
+  void track(CompletableFuture<?> future) {
+    inFlight.add(future);
+    future.whenComplete((result, ex) -> inFlight.remove(future));
+    if (isCancelled()) {
+      future.cancel(true);
+      return;
+    }
+    remainingTime()
+        .ifPresent(
+            remainingTime -> {
+              ScheduledFuture<?> deadlineTimer =
+                  SCHEDULER.schedule(
+                      () -> {
+                        if (future.completeExceptionally(new DeadlineExceededException())) {
+                          future.cancel(true);
+                        }
+                      },
+                      remainingTime.toNanos(),
+                      TimeUnit.NANOSECONDS);
+              future.whenComplete((result, ex) -> deadlineTimer.cancel(false));
+            });
+  }
+
+  /**
+   * @return true if the call failed because its context was cancelled or has expired, in which case
+   *     it should not be retried
+   */
+  static boolean isContextFailure(Throwable ex) {
+    return ex instanceof CancellationException || ex instanceof DeadlineExceededException;
+  }
+
+  static class DeadlineExceededException extends HttpTimeoutException {
+
+    private static final long serialVersionUID = 1L;
+
+    DeadlineExceededException() {
+      super("The deadline of the request context passed");
+    }
+  }
+}
@@ -0,0 +1,41 @@
+package io.github.stefanbratanov.jvm.openai;
+
+/**
+ * Thrown when a request is rejected by the client without being sent, so that a degraded endpoint
+ * or a backlog of requests can't tie up the resources used by the other requests.
+ */
+public final class RequestRejectedException extends RuntimeException {
+
+  private static final long serialVersionUID = 1L;
+
+  public enum Reason {
+    /** The circuit breaker of the endpoint is open because of recent failures or slow calls */
+    CIRCUIT_OPEN,
+    /** The maximum number of concurrent requests to the endpoint are in flight */
+    BULKHEAD_FULL,
+    /** The queue of the priority of the request in the {@link RequestScheduler} is full */
+    QUEUE_FULL,
+    /** The request waited in the {@link RequestScheduler} for longer than its maximum queue time */
+    QUEUE_TIMEOUT
+  }
+
+  private final Reason reason;
+  private final String endpoint;
+
+  RequestRejectedException(Reason reason, String endpoint, String message) {
+    super(message);
+    this.reason = reason;
+    this.endpoint = endpoint;
+  }
+
+  public Reason reason() {
+    return reason;
+  }
+
+  /**
+   * @return the path of the endpoint, for example "images/generations"
+   */
+  public String endpoint() {
+    return endpoint;
+  }
+}
@@ -0,0 +1,403 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A scheduler which admits the requests of an {@link OpenAI} instance, which can be set using
+ * {@link OpenAI.Builder#requestScheduler(RequestScheduler)}. Interactive traffic and bulk jobs can
+ * then share the same instance and quota without the bulk jobs crowding out the interactive calls.
+ *
+ * <p>At most a limited number of requests are in flight. The requests past that limit wait in a
+ * queue of their {@link Priority}, and the queues are served in the order of their priorities.
+ * Within a queue, the tenants take turns in proportion to their weights, where the tenant of a
+ * request is the {@code user} field of its body. The limit is halved when a response has status
+ * 429 and grows back by one request per round of successful responses, so that under a rate limit
+ * squeeze the requests of lower priority are delayed rather than the requests of higher priority
+ * being rejected.
+ *
+ * <p>A request fails with a {@link RequestRejectedException} without being sent when the queue of
+ * its priority is full, or when it waited in the queue for longer than the maximum queue time of
+ * its priority.
+ */
+public final class RequestScheduler {
+
+  public enum Priority {
+    /** Requests which a user is waiting for. By default, the chat completions. */
+    INTERACTIVE,
+    /** By default, the requests to all the endpoints which are not listed for the others */
+    STANDARD,
+    /**
+     * Requests which are part of background jobs. By default, the requests to create embeddings
+     * and the requests for files, uploads, batches and fine-tuning jobs.
+     */
+    BULK
+  }
+
+  private static final String DEFAULT_TENANT = "";
+
+  private static final ScheduledThreadPoolExecutor SCHEDULER =
+      Schedulers.newDaemonScheduler("request-scheduler");
+
+  private final int maxConcurrentRequests;
+  private final Map<Priority, Integer> maxQueueSizes;
+  private final Map<Priority, Duration> maxQueueTimes;
+  private final Map<String, Integer> tenantWeights;
+  private final Map<Endpoint, Priority> priorities;
+
+  // guarded by "this"
+  private final Map<Priority, Queue> queues = new EnumMap<>(Priority.class);
+  private double concurrencyLimit;
+  private int inFlight = 0;
+  private long limitDecreasedAtNanos = System.nanoTime();
+
+  private RequestScheduler(
+      int maxConcurrentRequests,
+      Map<Priority, Integer> maxQueueSizes,
+      Map<Priority, Duration> maxQueueTimes,
+      Map<String, Integer> tenantWeights,
+      Map<Endpoint, Priority> priorities) {
+    this.maxConcurrentRequests = maxConcurrentRequests;
+    this.maxQueueSizes = maxQueueSizes;
+    this.maxQueueTimes = maxQueueTimes;
+    this.tenantWeights = tenantWeights;
+    this.priorities = priorities;
+    this.concurrencyLimit = maxConcurrentRequests;
+    for (Priority priority : Priority.values()) {
+      queues.put(priority, new Queue());
+    }
+  }
+
+  public int maxConcurrentRequests() {
+    return maxConcurrentRequests;
+  }
+
+  /**
+   * @return the number of requests which can currently be in flight, which is lowered while the
+   *     responses are rate limited
+   */
+  public synchronized int concurrencyLimit() {
+    return (int) concurrencyLimit;
+  }
+
+  public synchronized int requestsInFlight() {
+    return inFlight;
+  }
+
+  public synchronized int queuedRequests(Priority priority) {
+    return queues.get(priority).size;
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  Priority getPriority(Optional<Endpoint> endpoint) {
+    return endpoint.map(priorities::get).orElse(Priority.STANDARD);
+  }
+
+  /**
+   * @param endpoint the path of the endpoint, which is reported when the request is rejected
+   * @return a future which is completed with a {@link Ticket} once the request can be sent, or
+   *     fails with a {@link RequestRejectedException}. Cancelling the future removes the request
+   *     from its queue.
+   */
+  CompletableFuture<Ticket> enqueue(Priority priority, Optional<String> tenant, String endpoint) {
+    Entry entry = new Entry(priority, tenant.orElse(DEFAULT_TENANT));
+    synchronized (this) {
+      Queue queue = queues.get(priority);
+      if (queue.size == 0 && inFlight < concurrencyLimit()) {
+        inFlight++;
+        entry.admission.complete(new Ticket());
+        return entry.admission;
+      }
+      if (queue.size >= maxQueueSizes.get(priority)) {
+        return CompletableFuture.failedFuture(
+            new RequestRejectedException(
+                RequestRejectedException.Reason.QUEUE_FULL,
+                endpoint,
+                "The queue of " + priority + " requests is full"));
+      }
+      queue.add(entry);
+    }
+    Duration maxQueueTime = maxQueueTimes.get(priority);
+    ScheduledFuture<?> queueTimer =
+        SCHEDULER.schedule(
+            () -> {
+              if (remove(entry)) {
+                entry.admission.completeExceptionally(
+                    new RequestRejectedException(
+                        RequestRejectedException.Reason.QUEUE_TIMEOUT,
+                        endpoint,
+                        "The request waited in the queue of "
+                            + priority
+                            + " requests for longer than "
+                            + maxQueueTime));
+              }
+            },
+            maxQueueTime.toNanos(),
+            TimeUnit.NANOSECONDS);
+    // the timer is removed once the request leaves the queue, so that it doesn't keep it reachable
+    entry.admission.whenComplete(
+        (ticket, ex) -> {
+          queueTimer.cancel(false);
+          if (ex instanceof CancellationException) {
+            remove(entry);
+          }
+        });
+    return entry.admission;
+  }
+
+  /**
+   * Frees the place of a request which was sent, and adjusts the concurrency limit based on its
+   * response
+   *
+   * @param statusCode the status code of the response, if there was one
+   */
+  void release(Ticket ticket, Optional<Integer> statusCode) {
+    List<Entry> admitted = new ArrayList<>();
+    synchronized (this) {
+      if (ticket.released) {
+        return;
+      }
+      ticket.released = true;
+      inFlight--;
+      if (statusCode.isPresent()) {
+        if (statusCode.get() == 429) {
+          // only the first rate limited response out of the requests sent before the decrease
+          if (ticket.admittedAtNanos - limitDecreasedAtNanos >= 0) {
+            concurrencyLimit = Math.max(1, concurrencyLimit / 2);
+            limitDecreasedAtNanos = System.nanoTime();
+          }
+        } else if (statusCode.get() < 500) {
+          // grows by one request once as many responses as the limit have succeeded
+          concurrencyLimit =
+              Math.min(maxConcurrentRequests, concurrencyLimit + 1 / concurrencyLimit);
+        }
+      }
+      while (inFlight < concurrencyLimit()) {
+        Optional<Entry> next = poll();
+        if (next.isEmpty()) {
+          break;
+        }
+        inFlight++;
+        admitted.add(next.get());
+      }
+    }
+    // completed outside the lock, because the requests are sent by the dependent stages
+    for (Entry entry : admitted) {
+      Ticket newTicket = new Ticket();
+      if (!entry.admission.complete(newTicket)) {
+        release(newTicket, Optional.empty());
+      }
+    }
+  }
+
+  // guarded by "this"
+  private Optional<Entry> poll() {
+    for (Priority priority : Priority.values()) {
+      Queue queue = queues.get(priority);
+      if (queue.size > 0) {
+        return Optional.of(queue.poll());
+      }
+    }
+    return Optional.empty();
+  }
+
+  private synchronized boolean remove(Entry entry) {
+    return queues.get(entry.priority).remove(entry);
+  }
+
+  private int getWeight(String tenant) {
+    return tenantWeights.getOrDefault(tenant, 1);
+  }
+
+  /** The place of a request which was admitted, which must be released exactly once */
+  static final class Ticket {
+
+    private final long admittedAtNanos = System.nanoTime();
+
+    // guarded by the scheduler
+    private boolean released = false;
+  }
+
+  private static final class Entry {
+
+    private final Priority priority;
+    private final String tenant;
+    private final CompletableFuture<Ticket> admission = new CompletableFuture<>();
+
+    private Entry(Priority priority, String tenant) {
+      this.priority = priority;
+      this.tenant = tenant;
+    }
+  }
+
+  /**
+   * The requests of one priority, which are served with deficit round robin across the tenants
+   * which have requests waiting. Every request costs one unit, so a tenant sends as many requests
+   * as its weight in a row before the next tenant takes its turn.
+   */
+  private final class Queue {
+
+    // tenants in the order of their turns
+    private final Map<String, Deque<Entry>> tenantQueues = new LinkedHashMap<>();
+    private final Map<String, Integer> deficits = new HashMap<>();
+    private int size = 0;
+
+    private void add(Entry entry) {
+      tenantQueues.computeIfAbsent(entry.tenant, tenant -> new ArrayDeque<>()).addLast(entry);
+      size++;
+    }
+
+    private Entry poll() {
+      Map.Entry<String, Deque<Entry>> head = tenantQueues.entrySet().iterator().next();
+      String tenant = head.getKey();
+      Deque<Entry> tenantQueue = head.getValue();
+      int deficit = deficits.getOrDefault(tenant, 0);
+      if (deficit <= 0) {
+        deficit += getWeight(tenant);
+      }
+      Entry entry = tenantQueue.pollFirst();
+      deficit--;
+      size--;
+      if (tenantQueue.isEmpty()) {
+        tenantQueues.remove(tenant);
+        deficits.remove(tenant);
+      } else if (deficit == 0) {
+        // the turn of the tenant is over, so it moves to the back
+        tenantQueues.remove(tenant);
+        tenantQueues.put(tenant, tenantQueue);
+        deficits.remove(tenant);
+      } else {
+        deficits.put(tenant, deficit);
+      }
+      return entry;
+    }
+
+    private boolean remove(Entry entry) {
+      Deque<Entry> tenantQueue = tenantQueues.get(entry.tenant);
+      if (tenantQueue == null || !tenantQueue.remove(entry)) {
+        return false;
+      }
+      size--;
+      if (tenantQueue.isEmpty()) {
+        tenantQueues.remove(entry.tenant);
+        deficits.remove(entry.tenant);
+      }
+      return true;
+    }
+  }
+
+  public static class Builder {
+
+    private static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 64;
+
+    private int maxConcurrentRequests = DEFAULT_MAX_CONCURRENT_REQUESTS;
+    private final Map<Priority, Integer> maxQueueSizes = new EnumMap<>(Priority.class);
+    private final Map<Priority, Duration> maxQueueTimes = new EnumMap<>(Priority.class);
+    private final Map<String, Integer> tenantWeights = new HashMap<>();
+    private final Map<Endpoint, Priority> priorities = new EnumMap<>(Endpoint.class);
+
+    public Builder() {
+      maxQueueSizes.put(Priority.INTERACTIVE, 100);
+      maxQueueSizes.put(Priority.STANDARD, 1_000);
+      maxQueueSizes.put(Priority.BULK, 10_000);
+      maxQueueTimes.put(Priority.INTERACTIVE, Duration.ofSeconds(10));
+      maxQueueTimes.put(Priority.STANDARD, Duration.ofMinutes(1));
+      maxQueueTimes.put(Priority.BULK, Duration.ofMinutes(10));
+      for (Endpoint endpoint : Endpoint.values()) {
+        priorities.put(endpoint, Priority.STANDARD);
+      }
+      priorities.put(Endpoint.CHAT, Priority.INTERACTIVE);
+      priorities.put(Endpoint.EMBEDDINCS, Priority.BULK);
+      priorities.put(Endpoint.FILES, Priority.BULK);
+      priorities.put(Endpoint.UPLOADS, Priority.BULK);
+      priorities.put(Endpoint.BATCHES, Priority.BULK);
+      priorities.put(Endpoint.FINE_TUNING, Priority.BULK);
+    }
+
+    /**
+     * @param maxConcurrentRequests the maximum number of requests in flight. Defaults to 64.
+     */
+    public Builder maxConcurrentRequests(int maxConcurrentRequests) {
+      if (maxConcurrentRequests < 1) {
+        throw new IllegalArgumentException("maxConcurrentRequests must be at least 1");
+      }
+      this.maxConcurrentRequests = maxConcurrentRequests;
+      return this;
+    }
+
+    /**
+     * @param maxQueueSize the maximum number of requests of the priority which wait to be sent,
+     *     past which the requests are rejected. Defaults to 100 for {@link Priority#INTERACTIVE},
+     *     1000 for {@link Priority#STANDARD} and 10000 for {@link Priority#BULK}.
+     */
+    public Builder maxQueueSize(Priority priority, int maxQueueSize) {
+      if (maxQueueSize < 0) {
+        throw new IllegalArgumentException("maxQueueSize must not be negative");
+      }
+      maxQueueSizes.put(priority, maxQueueSize);
+      return this;
+    }
+
+    /**
+     * @param maxQueueTime the maximum time for which a request of the priority waits to be sent,
+     *     after which the request is rejected. Defaults to 10 seconds for {@link
+     *     Priority#INTERACTIVE}, 1 minute for {@link Priority#STANDARD} and 10 minutes for {@link
+     *     Priority#BULK}.
+     */
+    public Builder maxQueueTime(Priority priority, Duration maxQueueTime) {
+      maxQueueTimes.put(priority, maxQueueTime);
+      return this;
+    }
+
+    /**
+     * @param user the value of the {@code user} field of the requests of the tenant
+     * @param weight the number of requests which the tenant sends in a row when it is their turn.
+     *     Defaults to 1.
+     */
+    public Builder tenantWeight(String user, int weight) {
+      if (weight < 1) {
+        throw new IllegalArgumentException("weight must be at least 1");
+      }
+      tenantWeights.put(user, weight);
+      return this;
+    }
+
+    /**
+     * @param endpoint the path of an endpoint, for example "embeddings" or "chat/completions"
+     * @param priority the priority of the requests to the endpoint
+     */
+    public Builder priority(String endpoint, Priority priority) {
+      Endpoint matchingEndpoint =
+          Endpoint.fromPath(endpoint)
+              .filter(e -> e.getPath().equals(endpoint))
+              .orElseThrow(() -> new IllegalArgumentException("Unknown endpoint: " + endpoint));
+      priorities.put(matchingEndpoint, priority);
+      return this;
+    }
+
+    public RequestScheduler build() {
+      return new RequestScheduler(
+          maxConcurrentRequests,
+          new EnumMap<>(maxQueueSizes),
+          new EnumMap<>(maxQueueTimes),
+          new HashMap<>(tenantWeights),
+          new EnumMap<>(priorities));
+    }
+  }
+}
@@ -1,5 +1,6 @@
 package io.github.stefanbratanov.jvm.openai;
 
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
@@ -41,7 +42,7 @@ public final class RunsClient extends OpenAIAssistantsClient {
             .uri(baseUrl.resolve(Endpoint.THREADS.getPath() + "/" + threadId + RUNS_SEGMENT))
             .POST(createBodyPublisher(request))
             .build();
-    HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
     return deserializeResponse(httpResponse.body(), ThreadRun.class);
   }
 
@@ -56,7 +57,7 @@ public final class RunsClient extends OpenAIAssistantsClient {
             .uri(baseUrl.resolve(Endpoint.THREADS.getPath() + RUNS_SEGMENT))
             .POST(createBodyPublisher(request))
             .build();
-    HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
     return deserializeResponse(httpResponse.body(), ThreadRun.class);
   }
 
@@ -77,7 +78,7 @@ public final class RunsClient extends OpenAIAssistantsClient {
                         + createQueryParameters(queryParameters)))
             .GET()
             .build();
-    HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
     return deserializeResponse(httpResponse.body(), PaginatedThreadRuns.class);
   }
 
@@ -105,7 +106,7 @@ public final class RunsClient extends OpenAIAssistantsClient {
                         + createQueryParameters(queryParameters)))
             .GET()
             .build();
-    HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
     return deserializeResponse(httpResponse.body(), PaginatedThreadRunSteps.class);
   }
 
@@ -125,7 +126,7 @@ public final class RunsClient extends OpenAIAssistantsClient {
                     Endpoint.THREADS.getPath() + "/" + threadId + RUNS_SEGMENT + "/" + runId))
             .GET()
             .build();
-    HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
     return deserializeResponse(httpResponse.body(), ThreadRun.class);
   }
 
@@ -150,7 +151,7 @@ public final class RunsClient extends OpenAIAssistantsClient {
                         + stepId))
             .GET()
             .build();
-    HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
     return deserializeResponse(httpResponse.body(), ThreadRunStep.class);
   }
 
@@ -167,7 +168,7 @@ public final class RunsClient extends OpenAIAssistantsClient {
                     Endpoint.THREADS.getPath() + "/" + threadId + RUNS_SEGMENT + "/" + runId))
             .POST(createBodyPublisher(request))
             .build();
-    HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
     return deserializeResponse(httpResponse.body(), ThreadRun.class);
   }
 
@@ -193,7 +194,7 @@ public final class RunsClient extends OpenAIAssistantsClient {
                         + "/submit_tool_outputs"))
             .POST(createBodyPublisher(request))
             .build();
-    HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
     return deserializeResponse(httpResponse.body(), ThreadRun.class);
   }
 
@@ -216,7 +217,7 @@ public final class RunsClient extends OpenAIAssistantsClient {
                         + "/cancel"))
             .POST(HttpRequest.BodyPublishers.noBody())
             .build();
-    HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
     return deserializeResponse(httpResponse.body(), ThreadRun.class);
   }
 }
@@ -0,0 +1,28 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+class Schedulers {
+
+  private Schedulers() {}
+
+  /**
+   * Creates a scheduler with a single daemon thread, so that it never keeps the JVM alive. Tasks
+   * which are cancelled are removed from its queue straight away, so that timers which are
+   * cancelled long before they are due don't pile up.
+   *
+   * @param name the name of the thread of the scheduler
+   */
+  static ScheduledThreadPoolExecutor newDaemonScheduler(String name) {
+    ScheduledThreadPoolExecutor scheduler =
+        new ScheduledThreadPoolExecutor(
+            1,
+            runnable -> {
+              java.lang.Thread thread = new java.lang.Thread(runnable, name);
+              thread.setDaemon(true);
+              return thread;
+            });
+    scheduler.setRemoveOnCancelPolicy(true);
+    return scheduler;
+  }
+}
@@ -0,0 +1,152 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Admits every request through a {@link RequestScheduler} before handing it to the delegate. The
+ * place of a request is held until its response is returned by the delegate, so the streaming of
+ * a response body after that is not counted.
+ */
+class SchedulingHttpClient extends DelegatingHttpClient {
+
+  private static final long MAX_SCANNED_BODY_SIZE = 1024 * 1024;
+
+  private final RequestScheduler scheduler;
+  private final String baseUrl;
+
+  SchedulingHttpClient(HttpClient delegate, RequestScheduler scheduler, URI baseUrl) {
+    super(delegate);
+    this.scheduler = scheduler;
+    this.baseUrl = baseUrl.toString();
+  }
+
+  @Override
+  public <T> HttpResponse<T> send(
+      HttpRequest request, HttpResponse.BodyHandler<T> responseBodyHandler)
+      throws IOException, InterruptedException {
+    CompletableFuture<RequestScheduler.Ticket> admission = enqueue(request);
+    RequestScheduler.Ticket ticket;
+    try {
+      ticket = admission.get();
+    } catch (InterruptedException ex) {
+      admission.cancel(true);
+      throw ex;
+    } catch (ExecutionException ex) {
+      if (ex.getCause() instanceof RuntimeException runtimeEx) {
+        throw runtimeEx;
+      }
+      throw new IOException(ex.getCause());
+    }
+    Optional<Integer> statusCode = Optional.empty();
+    try {
+      HttpResponse<T> httpResponse = super.send(request, responseBodyHandler);
+      statusCode = Optional.of(httpResponse.statusCode());
+      return httpResponse;
+    } finally {
+      scheduler.release(ticket, statusCode);
+    }
+  }
+
+  @Override
+  public <T> CompletableFuture<HttpResponse<T>> sendAsync(
+      HttpRequest request, HttpResponse.BodyHandler<T> responseBodyHandler) {
+    CompletableFuture<RequestScheduler.Ticket> admission = enqueue(request);
+    AtomicReference<CompletableFuture<HttpResponse<T>>> exchange = new AtomicReference<>();
+    // cancelling the returned future removes the request from its queue or aborts the exchange
+    CancellableFuture<HttpResponse<T>> result =
+        new CancellableFuture<>(
+            () -> {
+              admission.cancel(true);
+              CompletableFuture<HttpResponse<T>> sentExchange = exchange.get();
+              if (sentExchange != null) {
+                sentExchange.cancel(true);
+              }
+            });
+    admission.whenComplete(
+        (ticket, admissionEx) -> {
+          if (admissionEx != null) {
+            result.completeExceptionally(admissionEx);
+            return;
+          }
+          if (result.isDone()) {
+            scheduler.release(ticket, Optional.empty());
+            return;
+          }
+          CompletableFuture<HttpResponse<T>> sentExchange =
+              super.sendAsync(request, responseBodyHandler);
+          exchange.set(sentExchange);
+          if (result.isDone()) {
+            sentExchange.cancel(true);
+          }
+          sentExchange.whenComplete(
+              (httpResponse, ex) -> {
+                scheduler.release(
+                    ticket, Optional.ofNullable(httpResponse).map(HttpResponse::statusCode));
+                if (ex == null) {
+                  result.complete(httpResponse);
+                } else {
+                  result.completeExceptionally(ex);
+                }
+              });
+        });
+    return result;
+  }
+
+  private CompletableFuture<RequestScheduler.Ticket> enqueue(HttpRequest request) {
+    String uri = request.uri().toString();
+    String path = uri.startsWith(baseUrl) ? uri.substring(baseUrl.length()) : uri;
+    Optional<Endpoint> endpoint = Endpoint.fromPath(path);
+    return scheduler.enqueue(
+        scheduler.getPriority(endpoint),
+        getUser(request),
+        endpoint.map(Endpoint::getPath).orElse(path));
+  }
+
+  /**
+   * @return the top-level {@code user} field of a JSON body
+   */
+  private Optional<String> getUser(HttpRequest request) {
+    boolean isJson =
+        request
+            .headers()
+            .firstValue(Constants.CONTENT_TYPE_HEADER)
+            .filter(contentType -> contentType.startsWith(Constants.JSON_MEDIA_TYPE))
+            .isPresent();
+    if (!isJson) {
+      return Optional.empty();
+    }
+    Optional<byte[]> body =
+        request
+            .bodyPublisher()
+            .flatMap(bodyPublisher -> InMemoryBody.read(bodyPublisher, MAX_SCANNED_BODY_SIZE));
+    if (body.isEmpty()) {
+      return Optional.empty();
+    }
+    try (JsonParser parser = ObjectMapperSingleton.getInstance().createParser(body.get())) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        return Optional.empty();
+      }
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String fieldName = parser.currentName();
+        JsonToken value = parser.nextToken();
+        if ("user".equals(fieldName) && value == JsonToken.VALUE_STRING) {
+          return Optional.of(parser.getText());
+        }
+        parser.skipChildren();
+      }
+      return Optional.empty();
+    } catch (IOException ex) {
+      return Optional.empty();
+    }
+  }
+}
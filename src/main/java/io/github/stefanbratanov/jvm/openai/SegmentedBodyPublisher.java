@@ -0,0 +1,106 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.Flow;
+
+/**
+ * A {@link HttpRequest.BodyPublisher} which publishes a body made of several segments without
+ * copying them into a single array. Segments can be shared between requests, because every
+ * subscription publishes read-only views of them.
+ */
+class SegmentedBodyPublisher implements HttpRequest.BodyPublisher {
+
+  private final List<ByteBuffer> segments;
+  private final long contentLength;
+
+  SegmentedBodyPublisher(List<ByteBuffer> segments) {
+    this.segments = segments;
+    this.contentLength = segments.stream().mapToLong(ByteBuffer::remaining).sum();
+  }
+
+  @Override
+  public long contentLength() {
+    return contentLength;
+  }
+
+  @Override
+  public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+    subscriber.onSubscribe(new SegmentsSubscription(subscriber));
+  }
+
+  /**
+   * Keeps track of the demand and publishes the segments from a drain loop which only one caller
+   * runs at a time, so that {@link #request(long)} can be called again from within {@link
+   * Flow.Subscriber#onNext(Object)}, as the {@link java.net.http.HttpClient} does.
+   */
+  private class SegmentsSubscription implements Flow.Subscription {
+
+    private final Flow.Subscriber<? super ByteBuffer> subscriber;
+
+    // guarded by "this"
+    private long demand = 0;
+    // guarded by "this"
+    private int index = 0;
+    // guarded by "this"
+    private boolean draining = false;
+    // guarded by "this"
+    private boolean done = false;
+
+    private SegmentsSubscription(Flow.Subscriber<? super ByteBuffer> subscriber) {
+      this.subscriber = subscriber;
+    }
+
+    @Override
+    public void request(long n) {
+      synchronized (this) {
+        if (done) {
+          return;
+        }
+        if (n <= 0) {
+          done = true;
+        } else {
+          demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+        }
+      }
+      if (n <= 0) {
+        subscriber.onError(new IllegalArgumentException("non-positive subscription request"));
+        return;
+      }
+      drain();
+    }
+
+    @Override
+    public synchronized void cancel() {
+      done = true;
+    }
+
+    private void drain() {
+      synchronized (this) {
+        if (draining) {
+          return;
+        }
+        draining = true;
+      }
+      while (true) {
+        ByteBuffer segment;
+        synchronized (this) {
+          if (done || (demand == 0 && index < segments.size())) {
+            draining = false;
+            return;
+          }
+          if (index == segments.size()) {
+            done = true;
+            draining = false;
+            break;
+          }
+          segment = segments.get(index++);
+          demand--;
+        }
+        subscriber.onNext(segment.asReadOnlyBuffer());
+      }
+      subscriber.onComplete();
+    }
+  }
+}
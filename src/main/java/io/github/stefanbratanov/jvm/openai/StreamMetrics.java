@@ -0,0 +1,13 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.time.Duration;
+
+/**
+ * Metrics of a response body which was consumed as it was received
+ *
+ * @param timeToFirstByte the time from sending the request until the first bytes of the body were
+ *     received
+ * @param duration the time from sending the request until the whole body was received
+ * @param bytes the number of bytes received
+ */
+public record StreamMetrics(Duration timeToFirstByte, Duration duration, long bytes) {}
@@ -1,5 +1,6 @@
 package io.github.stefanbratanov.jvm.openai;
 
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
@@ -37,7 +38,7 @@ public final class ThreadsClient extends OpenAIAssistantsClient {
             .uri(baseUrl.resolve(Endpoint.THREADS.getPath()))
             .POST(createBodyPublisher(request))
             .build();
-    HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
     return deserializeResponse(httpResponse.body(), Thread.class);
   }
 
@@ -52,7 +53,7 @@ public final class ThreadsClient extends OpenAIAssistantsClient {
             .uri(baseUrl.resolve(Endpoint.THREADS.getPath() + "/" + threadId))
             .GET()
             .build();
-    HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
     return deserializeResponse(httpResponse.body(), Thread.class);
   }
 
@@ -67,7 +68,7 @@ public final class ThreadsClient extends OpenAIAssistantsClient {
             .uri(baseUrl.resolve(Endpoint.THREADS.getPath() + "/" + threadId))
             .POST(createBodyPublisher(request))
             .build();
-    HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
     return deserializeResponse(httpResponse.body(), Thread.class);
   }
 
@@ -82,7 +83,7 @@ public final class ThreadsClient extends OpenAIAssistantsClient {
             .uri(baseUrl.resolve(Endpoint.THREADS.getPath() + "/" + threadId))
             .DELETE()
             .build();
-    HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
     return deserializeResponse(httpResponse.body(), DeletionStatus.class);
   }
 }
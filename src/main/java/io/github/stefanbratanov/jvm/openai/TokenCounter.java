@@ -0,0 +1,67 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import io.github.stefanbratanov.jvm.openai.ChatMessage.AssistantMessage;
+import io.github.stefanbratanov.jvm.openai.ChatMessage.SystemMessage;
+import io.github.stefanbratanov.jvm.openai.ChatMessage.ToolMessage;
+import io.github.stefanbratanov.jvm.openai.ChatMessage.UserMessage.UserMessageWithContentParts;
+import io.github.stefanbratanov.jvm.openai.ChatMessage.UserMessage.UserMessageWithContentParts.ContentPart;
+import io.github.stefanbratanov.jvm.openai.ChatMessage.UserMessage.UserMessageWithTextContent;
+import java.util.List;
+
+/**
+ * Counts the tokens of a text. An exact count requires the tokenizer of the model which is used, so
+ * implementations can be backed by any tokenizer library. {@link #approximate()} can be used when
+ * an estimate is good enough.
+ */
+@FunctionalInterface
+public interface TokenCounter {
+
+  /** Every message in a chat conversation adds this many tokens on top of its content */
+  int TOKENS_PER_MESSAGE = 3;
+
+  /** Low detail images cost a fixed amount of tokens */
+  int TOKENS_PER_IMAGE = 85;
+
+  int countTokens(String text);
+
+  /** Counts the tokens of a message including the overhead added by the chat format */
+  default int countTokens(ChatMessage message) {
+    int tokens = TOKENS_PER_MESSAGE + countTokens(message.role());
+    if (message instanceof SystemMessage systemMessage) {
+      tokens += countNullableTokens(systemMessage.content());
+    } else if (message instanceof UserMessageWithTextContent userMessage) {
+      tokens += countNullableTokens(userMessage.content());
+    } else if (message instanceof UserMessageWithContentParts userMessage) {
+      for (ContentPart contentPart : userMessage.content()) {
+        if (contentPart instanceof ContentPart.TextContentPart textContentPart) {
+          tokens += countNullableTokens(textContentPart.text());
+        } else {
+          tokens += TOKENS_PER_IMAGE;
+        }
+      }
+    } else if (message instanceof AssistantMessage assistantMessage) {
+      tokens += countNullableTokens(assistantMessage.content());
+      for (ToolCall toolCall : assistantMessage.toolCalls().orElse(List.of())) {
+        if (toolCall instanceof ToolCall.FunctionToolCall functionToolCall) {
+          tokens += countNullableTokens(functionToolCall.function().name());
+          tokens += countNullableTokens(functionToolCall.function().arguments());
+        }
+      }
+    } else if (message instanceof ToolMessage toolMessage) {
+      tokens += countNullableTokens(toolMessage.content());
+    }
+    return tokens;
+  }
+
+  private int countNullableTokens(String text) {
+    return text == null ? 0 : countTokens(text);
+  }
+
+  /**
+   * @return a {@link TokenCounter} which estimates one token per 4 characters, which is a good
+   *     approximation for common English text
+   */
+  static TokenCounter approximate() {
+    return text -> (text.length() + 3) / 4;
+  }
+}
@@ -0,0 +1,223 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Stitches the transcripts of overlapping audio segments into a single transcript in the same
+ * response format.
+ *
+ * <p>For {@code verbose_json}, the timestamps are shifted by the offset of each segment and the
+ * overlap is resolved by keeping the timed segments and words of the earlier transcript before the
+ * middle of the overlap and the ones of the later transcript after it. For {@code text} and {@code
+ * json}, which have no timestamps, the longest run of words which ends one transcript and starts
+ * the next one is removed from the latter.
+ */
+class TranscriptStitcher {
+
+  static final Set<String> SUPPORTED_RESPONSE_FORMATS = Set.of("json", "text", "verbose_json");
+
+  // a single repeated word is more likely to be a coincidence than an overlap
+  private static final int MIN_OVERLAPPING_WORDS = 2;
+  private static final int MAX_OVERLAPPING_WORDS = 50;
+  // the unit of "seek" is 10 milliseconds
+  private static final int SEEKS_PER_SECOND = 100;
+  private static final Pattern WORD = Pattern.compile("\\S+");
+
+  private final ObjectMapper objectMapper = ObjectMapperSingleton.getInstance();
+
+  /**
+   * @param offsets the start of each segment in seconds
+   * @param boundaries the middle of the overlap between each segment and the next one in seconds,
+   *     so there is one boundary less than there are segments
+   * @param duration the duration of the whole audio in seconds
+   */
+  String stitch(
+      String responseFormat,
+      List<String> transcripts,
+      double[] offsets,
+      double[] boundaries,
+      double duration) {
+    try {
+      return switch (responseFormat) {
+        case "text" -> stitchText(transcripts);
+        case "json" -> stitchJson(transcripts);
+        case "verbose_json" -> stitchVerboseJson(transcripts, offsets, boundaries, duration);
+        default ->
+            throw new IllegalArgumentException(
+                "Response format " + responseFormat + " can't be stitched");
+      };
+    } catch (JsonProcessingException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  private String stitchText(List<String> transcripts) {
+    StringBuilder stitched = new StringBuilder();
+    for (String transcript : transcripts) {
+      appendText(stitched, transcript);
+    }
+    return stitched.toString();
+  }
+
+  private String stitchJson(List<String> transcripts) throws JsonProcessingException {
+    List<String> texts = new ArrayList<>();
+    for (String transcript : transcripts) {
+      texts.add(objectMapper.readTree(transcript).path("text").asText());
+    }
+    ObjectNode stitched = objectMapper.createObjectNode().put("text", stitchText(texts));
+    return objectMapper.writeValueAsString(stitched);
+  }
+
+  private String stitchVerboseJson(
+      List<String> transcripts, double[] offsets, double[] boundaries, double duration)
+      throws JsonProcessingException {
+    ObjectNode stitched = objectMapper.createObjectNode();
+    ArrayNode segments = objectMapper.createArrayNode();
+    ArrayNode words = objectMapper.createArrayNode();
+    StringBuilder segmentsText = new StringBuilder();
+    StringBuilder text = new StringBuilder();
+    boolean hasSegments = false;
+    boolean hasWords = false;
+    for (int i = 0; i < transcripts.size(); i++) {
+      JsonNode transcript = objectMapper.readTree(transcripts.get(i));
+      if (i == 0) {
+        stitched.set("task", transcript.get("task"));
+        stitched.set("language", transcript.get("language"));
+      }
+      double offset = offsets[i];
+      double from = i == 0 ? Double.NEGATIVE_INFINITY : boundaries[i - 1];
+      double to = i == transcripts.size() - 1 ? Double.POSITIVE_INFINITY : boundaries[i];
+      if (transcript.has("segments")) {
+        hasSegments = true;
+        for (JsonNode node : transcript.get("segments")) {
+          ObjectNode segment = node.deepCopy();
+          if (shiftTimestamps(segment, offset, from, to)) {
+            segment.put("id", segments.size());
+            long seek = segment.path("seek").asLong() + Math.round(offset * SEEKS_PER_SECOND);
+            segment.put("seek", seek);
+            segments.add(segment);
+            segmentsText.append(segment.path("text").asText());
+          }
+        }
+      }
+      if (transcript.has("words")) {
+        hasWords = true;
+        for (JsonNode node : transcript.get("words")) {
+          ObjectNode word = node.deepCopy();
+          if (shiftTimestamps(word, offset, from, to)) {
+            words.add(word);
+          }
+        }
+      }
+      appendText(text, transcript.path("text").asText());
+    }
+    stitched.put("duration", duration);
+    stitched.put("text", (hasSegments ? segmentsText : text).toString().strip());
+    if (hasSegments) {
+      stitched.set("segments", segments);
+    }
+    if (hasWords) {
+      stitched.set("words", words);
+    }
+    return objectMapper.writeValueAsString(stitched);
+  }
+
+  /**
+   * @return true if the node starts within the given range of the whole audio
+   */
+  private boolean shiftTimestamps(ObjectNode node, double offset, double from, double to) {
+    double start = node.path("start").asDouble() + offset;
+    if (start < from || start >= to) {
+      return false;
+    }
+    node.put("start", start);
+    node.put("end", node.path("end").asDouble() + offset);
+    return true;
+  }
+
+  /**
+   * Appends the next transcript without the words which overlap with the end of the stitched text.
+   * Only the last words of the stitched text are compared, and the whitespace of the transcripts
+   * is kept as it is.
+   */
+  private void appendText(StringBuilder stitched, String next) {
+    String nextText = next.strip();
+    if (nextText.isEmpty()) {
+      return;
+    }
+    if (stitched.isEmpty()) {
+      stitched.append(nextText);
+      return;
+    }
+    List<String> previousWords = lastWords(stitched, MAX_OVERLAPPING_WORDS);
+    List<String> nextWords = new ArrayList<>();
+    List<Integer> nextWordStarts = new ArrayList<>();
+    Matcher word = WORD.matcher(nextText);
+    while (nextWords.size() <= MAX_OVERLAPPING_WORDS && word.find()) {
+      nextWords.add(word.group());
+      nextWordStarts.add(word.start());
+    }
+    int maxOverlap = Math.min(previousWords.size(), nextWords.size());
+    int overlap = 0;
+    for (int length = maxOverlap; length >= MIN_OVERLAPPING_WORDS; length--) {
+      if (wordsMatch(previousWords, previousWords.size() - length, nextWords, length)) {
+        overlap = length;
+        break;
+      }
+    }
+    if (overlap == nextWords.size()) {
+      // the whole transcript overlaps
+      return;
+    }
+    stitched.append(' ').append(nextText, nextWordStarts.get(overlap), nextText.length());
+  }
+
+  /**
+   * @return up to the given number of words at the end of the text, in order
+   */
+  private List<String> lastWords(CharSequence text, int maxWords) {
+    List<String> words = new ArrayList<>(maxWords);
+    int end = text.length();
+    while (words.size() < maxWords) {
+      while (end > 0 && Character.isWhitespace(text.charAt(end - 1))) {
+        end--;
+      }
+      if (end == 0) {
+        break;
+      }
+      int start = end;
+      while (start > 0 && !Character.isWhitespace(text.charAt(start - 1))) {
+        start--;
+      }
+      words.add(text.subSequence(start, end).toString());
+      end = start;
+    }
+    Collections.reverse(words);
+    return words;
+  }
+
+  private boolean wordsMatch(
+      List<String> previousWords, int from, List<String> nextWords, int length) {
+    for (int i = 0; i < length; i++) {
+      if (!normalize(previousWords.get(from + i)).equals(normalize(nextWords.get(i)))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private String normalize(String word) {
+    return word.replaceAll("[^\\p{L}\\p{N}]", "").toLowerCase();
+  }
+}
@@ -0,0 +1,16 @@
+package io.github.stefanbratanov.jvm.openai;
+
+/**
+ * The Upload object can accept byte chunks in the form of Parts.
+ *
+ * @param file The ready File object after the Upload is completed.
+ */
+public record Upload(
+    String id,
+    long createdAt,
+    String filename,
+    long bytes,
+    String purpose,
+    String status,
+    long expiresAt,
+    File file) {}
@@ -0,0 +1,4 @@
+package io.github.stefanbratanov.jvm.openai;
+
+/** The upload Part represents a chunk of bytes we can add to an Upload object. */
+public record UploadPart(String id, long createdAt, String uploadId) {}
@@ -0,0 +1,317 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Allows you to upload large files in multiple parts.
+ *
+ * <p>Based on <a href="https://platform.openai.com/docs/api-reference/uploads">Uploads</a>
+ */
+public final class UploadsClient extends OpenAIClient {
+
+  /** The maximum size of a single Part */
+  public static final int MAX_PART_SIZE = 64 * 1024 * 1024;
+
+  private static final int DEFAULT_PART_SIZE = 16 * 1024 * 1024;
+  private static final int DEFAULT_PARALLELISM = 4;
+  private static final int MAX_PART_RETRIES = 3;
+  private static final long INITIAL_RETRY_BACKOFF_MILLIS = 500;
+
+  private static final String PART_MIME_TYPE = "application/octet-stream";
+  private static final String JSONL_MIME_TYPE = "text/jsonl";
+
+  private final URI baseUrl;
+
+  UploadsClient(
+      URI baseUrl,
+      String apiKey,
+      Optional<String> organization,
+      HttpClient httpClient,
+      Optional<Duration> requestTimeout) {
+    super(apiKey, organization, httpClient, requestTimeout);
+    this.baseUrl = baseUrl;
+  }
+
+  /**
+   * Creates an intermediate Upload object that you can add Parts to. Currently, an Upload can
+   * accept at most 8 GB in total and expires after an hour after you create it.
+   *
+   * @throws OpenAIException in case of API errors
+   */
+  public Upload createUpload(CreateUploadRequest request) {
+    HttpRequest httpRequest =
+        newHttpRequestBuilder(Constants.CONTENT_TYPE_HEADER, Constants.JSON_MEDIA_TYPE)
+            .uri(baseUrl.resolve(Endpoint.UPLOADS.getPath()))
+            .POST(createBodyPublisher(request))
+            .build();
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
+    return deserializeResponse(httpResponse.body(), Upload.class);
+  }
+
+  /**
+   * Adds a Part to an Upload object. A Part represents a chunk of bytes from the file you are
+   * trying to upload. Each Part can be at most 64 MB.
+   *
+   * @param uploadId The ID of the Upload.
+   * @param data The chunk of bytes for this Part.
+   * @throws OpenAIException in case of API errors
+   */
+  public UploadPart addUploadPart(String uploadId, byte[] data) {
+    HttpResponse<TokenBuffer> httpResponse =
+        sendHttpRequest(createAddUploadPartRequest(uploadId, data));
+    return deserializeResponse(httpResponse.body(), UploadPart.class);
+  }
+
+  /**
+   * Same as {@link #addUploadPart(String, byte[])} but returns a response in a {@link
+   * CompletableFuture}
+   */
+  public CompletableFuture<UploadPart> addUploadPartAsync(String uploadId, byte[] data) {
+    return sendHttpRequestAsync(createAddUploadPartRequest(uploadId, data))
+        .thenApply(httpResponse -> deserializeResponse(httpResponse.body(), UploadPart.class));
+  }
+
+  /**
+   * Completes the Upload. The returned Upload object contains a nested File object that is ready
+   * to use in the rest of the platform.
+   *
+   * @param uploadId The ID of the Upload.
+   * @throws OpenAIException in case of API errors
+   */
+  public Upload completeUpload(String uploadId, CompleteUploadRequest request) {
+    HttpRequest httpRequest =
+        newHttpRequestBuilder(Constants.CONTENT_TYPE_HEADER, Constants.JSON_MEDIA_TYPE)
+            .uri(baseUrl.resolve(Endpoint.UPLOADS.getPath() + "/" + uploadId + "/complete"))
+            .POST(createBodyPublisher(request))
+            .build();
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
+    return deserializeResponse(httpResponse.body(), Upload.class);
+  }
+
+  /**
+   * Cancels the Upload. No Parts may be added after an Upload is cancelled.
+   *
+   * @param uploadId The ID of the Upload.
+   * @throws OpenAIException in case of API errors
+   */
+  public Upload cancelUpload(String uploadId) {
+    HttpRequest httpRequest =
+        newHttpRequestBuilder()
+            .uri(baseUrl.resolve(Endpoint.UPLOADS.getPath() + "/" + uploadId + "/cancel"))
+            .POST(HttpRequest.BodyPublishers.noBody())
+            .build();
+    HttpResponse<TokenBuffer> httpResponse = sendHttpRequest(httpRequest);
+    return deserializeResponse(httpResponse.body(), Upload.class);
+  }
+
+  /**
+   * Same as {@link #uploadFileInParts(UploadFileRequest, int, int)} using parts of 16 MB and
+   * uploading up to 4 parts at a time.
+   */
+  public Upload uploadFileInParts(UploadFileRequest request) {
+    return uploadFileInParts(request, DEFAULT_PART_SIZE, DEFAULT_PARALLELISM);
+  }
+
+  /**
+   * Uploads a file using an Upload object, which is more resilient than {@link
+   * FilesClient#uploadFile(UploadFileRequest)} for large files. The file is split into parts which
+   * are uploaded concurrently, and a part which fails is retried on its own instead of restarting
+   * the whole upload. The Upload is completed with the parts in file order and with the MD5
+   * checksum of the file, so the API can verify the uploaded bytes. If a part can't be uploaded,
+   * the Upload is cancelled.
+   *
+   * <p>At most {@code parallelism} parts are held in memory at a time.
+   *
+   * @param partSize the size of each part in bytes, which can be at most {@link #MAX_PART_SIZE}
+   * @param parallelism the maximum number of parts which are uploaded at the same time
+   * @return the completed Upload, which contains the ready File object
+   * @throws OpenAIException in case of API errors
+   */
+  public Upload uploadFileInParts(UploadFileRequest request, int partSize, int parallelism) {
+    if (partSize <= 0 || partSize > MAX_PART_SIZE) {
+      throw new IllegalArgumentException("partSize must be between 1 and " + MAX_PART_SIZE);
+    }
+    if (parallelism <= 0) {
+      throw new IllegalArgumentException("parallelism must be positive");
+    }
+    Path file = request.file();
+    long size;
+    String mimeType;
+    try {
+      size = Files.size(file);
+      mimeType = getMimeType(file);
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+    Upload upload =
+        createUpload(
+            CreateUploadRequest.newBuilder()
+                .filename(file.getFileName().toString())
+                .purpose(request.purpose())
+                .bytes(size)
+                .mimeType(mimeType)
+                .build());
+    try {
+      List<CompletableFuture<UploadPart>> parts = new ArrayList<>();
+      String md5 = uploadParts(upload.id(), file, size, partSize, parallelism, parts);
+      List<String> partIds =
+          parts.stream().map(CompletableFuture::join).map(UploadPart::id).toList();
+      return completeUpload(
+          upload.id(), CompleteUploadRequest.newBuilder().partIds(partIds).md5(md5).build());
+    } catch (RuntimeException ex) {
+      cancelUploadQuietly(upload.id(), ex);
+      throw ex;
+    }
+  }
+
+  /**
+   * Reads the parts sequentially using positional reads, so the checksum can be computed in file
+   * order, while the uploads of the parts run concurrently.
+   *
+   * @return the hex encoded MD5 checksum of the file
+   */
+  private String uploadParts(
+      String uploadId,
+      Path file,
+      long size,
+      int partSize,
+      int parallelism,
+      List<CompletableFuture<UploadPart>> parts) {
+    MessageDigest md5 = createMd5Digest();
+    Semaphore inFlightParts = new Semaphore(parallelism);
+    try (FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.READ)) {
+      for (long position = 0; position < size; position += partSize) {
+        inFlightParts.acquire();
+        if (parts.stream().anyMatch(CompletableFuture::isCompletedExceptionally)) {
+          inFlightParts.release();
+          break;
+        }
+        byte[] data = readPart(fileChannel, position, (int) Math.min(partSize, size - position));
+        md5.update(data);
+        CompletableFuture<UploadPart> part = addUploadPartWithRetries(uploadId, data, 0);
+        part.whenComplete((uploadPart, ex) -> inFlightParts.release());
+        parts.add(part);
+      }
+      CompletableFuture.allOf(parts.toArray(CompletableFuture[]::new)).join();
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    } catch (InterruptedException ex) {
+      java.lang.Thread.currentThread().interrupt();
+      throw new RuntimeException("Operation was interrupted", ex);
+    } catch (CompletionException ex) {
+      if (ex.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw ex;
+    }
+    return HexFormat.of().formatHex(md5.digest());
+  }
+
+  private CompletableFuture<UploadPart> addUploadPartWithRetries(
+      String uploadId, byte[] data, int attempt) {
+    // the retries are sent from another thread
+    Optional<RequestContext> context = RequestContext.current();
+    return addUploadPartAsync(uploadId, data)
+        .handle(
+            (uploadPart, ex) -> {
+              if (ex == null) {
+                return CompletableFuture.completedFuture(uploadPart);
+              }
+              Throwable cause = ex instanceof CompletionException ? ex.getCause() : ex;
+              if (attempt >= MAX_PART_RETRIES || !isRetryable(cause)) {
+                return CompletableFuture.<UploadPart>failedFuture(
+                    cause instanceof IOException ioEx ? new UncheckedIOException(ioEx) : cause);
+              }
+              long backoff = INITIAL_RETRY_BACKOFF_MILLIS << attempt;
+              return CompletableFuture.runAsync(
+                      () -> {},
+                      CompletableFuture.delayedExecutor(backoff, TimeUnit.MILLISECONDS))
+                  .thenCompose(
+                      ignored ->
+                          withContext(
+                              context,
+                              () -> addUploadPartWithRetries(uploadId, data, attempt + 1)));
+            })
+        .thenCompose(Function.identity());
+  }
+
+  private boolean isRetryable(Throwable ex) {
+    if (RequestContext.isContextFailure(ex)) {
+      return false;
+    }
+    if (ex instanceof OpenAIException openAIException) {
+      int statusCode = openAIException.statusCode();
+      return statusCode == 429 || statusCode >= 500;
+    }
+    return ex instanceof IOException || ex instanceof UncheckedIOException;
+  }
+
+  private void cancelUploadQuietly(String uploadId, RuntimeException failure) {
+    try {
+      cancelUpload(uploadId);
+    } catch (RuntimeException ex) {
+      failure.addSuppressed(ex);
+    }
+  }
+
+  private HttpRequest createAddUploadPartRequest(String uploadId, byte[] data) {
+    MultipartBodyPublisher multipartBodyPublisher =
+        MultipartBodyPublisher.newBuilder().bytesPart("data", "blob", PART_MIME_TYPE, data).build();
+    return newHttpRequestBuilder(
+            Constants.CONTENT_TYPE_HEADER, multipartBodyPublisher.getContentTypeHeader())
+        .uri(baseUrl.resolve(Endpoint.UPLOADS.getPath() + "/" + uploadId + "/parts"))
+        .POST(multipartBodyPublisher)
+        .build();
+  }
+
+  private byte[] readPart(FileChannel fileChannel, long position, int length) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    while (buffer.hasRemaining()) {
+      int read = fileChannel.read(buffer, position + buffer.position());
+      if (read < 0) {
+        throw new EOFException("File was truncated while being uploaded");
+      }
+    }
+    return buffer.array();
+  }
+
+  private String getMimeType(Path file) throws IOException {
+    String mimeType = Files.probeContentType(file);
+    if (mimeType != null) {
+      return mimeType;
+    }
+    return file.getFileName().toString().endsWith(".jsonl") ? JSONL_MIME_TYPE : PART_MIME_TYPE;
+  }
+
+  private MessageDigest createMd5Digest() {
+    try {
+      return MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+}
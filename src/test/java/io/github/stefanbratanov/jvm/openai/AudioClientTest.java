@@ -0,0 +1,103 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+import org.junit.jupiter.api.Test;
+
+class AudioClientTest {
+
+  private final SpeechRequest speechRequest =
+      SpeechRequest.newBuilder().model("tts-1").input("Hello").voice("alloy").build();
+
+  @Test
+  void signalsApiErrorsToSpeechSubscriber() throws IOException {
+    HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext(
+        "/",
+        exchange -> {
+          byte[] body =
+              "{\"error\":{\"message\":\"Invalid voice\",\"type\":\"invalid_request_error\"}}"
+                  .getBytes(StandardCharsets.UTF_8);
+          exchange.getResponseHeaders().add("Content-Type", "application/json");
+          exchange.sendResponseHeaders(400, body.length);
+          exchange.getResponseBody().write(body);
+          exchange.close();
+        });
+    server.start();
+    try {
+      AudioClient audioClient =
+          OpenAI.newBuilder("sk-test")
+              .baseUrl("http://localhost:" + server.getAddress().getPort())
+              .build()
+              .audioClient();
+      RecordingSubscriber subscriber = new RecordingSubscriber();
+
+      CompletableFuture<StreamMetrics> metrics =
+          audioClient.createSpeechAsync(speechRequest, subscriber);
+
+      assertThat(metrics).failsWithin(Duration.ofSeconds(10));
+      assertThat(subscriber.signals).containsExactly("onSubscribe", "onError");
+      assertThat(subscriber.error).isInstanceOf(OpenAIException.class);
+    } finally {
+      server.stop(0);
+    }
+  }
+
+  @Test
+  void signalsConnectionFailuresToSpeechSubscriber() throws IOException {
+    // a port on which nothing listens
+    HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    int port = server.getAddress().getPort();
+    server.stop(0);
+
+    AudioClient audioClient =
+        OpenAI.newBuilder("sk-test").baseUrl("http://localhost:" + port).build().audioClient();
+    RecordingSubscriber subscriber = new RecordingSubscriber();
+
+    CompletableFuture<StreamMetrics> metrics =
+        audioClient.createSpeechAsync(speechRequest, subscriber);
+
+    assertThat(metrics).failsWithin(Duration.ofSeconds(10));
+    assertThat(subscriber.signals).containsExactly("onSubscribe", "onError");
+    assertThat(subscriber.error).isInstanceOf(ConnectException.class);
+  }
+
+  private static class RecordingSubscriber implements Flow.Subscriber<List<ByteBuffer>> {
+
+    private final List<String> signals = new CopyOnWriteArrayList<>();
+    private volatile Throwable error;
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+      signals.add("onSubscribe");
+      subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> item) {
+      signals.add("onNext");
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      error = throwable;
+      signals.add("onError");
+    }
+
+    @Override
+    public void onComplete() {
+      signals.add("onComplete");
+    }
+  }
+}
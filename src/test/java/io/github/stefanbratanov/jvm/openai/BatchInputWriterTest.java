@@ -0,0 +1,109 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BatchInputWriterTest {
+
+  private final ObjectMapper objectMapper = ObjectMapperSingleton.getInstance();
+
+  @TempDir Path tempDir;
+
+  @Test
+  void writesRequestsAsJsonLines() throws IOException {
+    BatchInputWriter<EmbeddingsRequest> writer = BatchInputWriter.forEmbeddings(tempDir);
+    try (writer) {
+      writer.write("request-1", embeddingsRequest("The food was delicious"));
+      writer.write("request-2", embeddingsRequest("The waiter was friendly"));
+    }
+
+    assertThat(writer.requestCount()).isEqualTo(2);
+    assertThat(writer.files()).containsExactly(tempDir.resolve("batch-input-0.jsonl"));
+
+    List<String> lines = Files.readAllLines(writer.files().get(0));
+    assertThat(lines).hasSize(2);
+    JsonNode line = objectMapper.readTree(lines.get(1));
+    assertThat(line.get("custom_id").asText()).isEqualTo("request-2");
+    assertThat(line.get("method").asText()).isEqualTo("POST");
+    assertThat(line.get("url").asText()).isEqualTo("/v1/embeddings");
+    assertThat(line.get("body").get("input").get(0).asText()).isEqualTo("The waiter was friendly");
+    assertThat(line.get("body").get("model").asText()).isEqualTo("text-embedding-3-small");
+  }
+
+  @Test
+  void shardsRequestsWhenLimitsAreExceeded() throws IOException {
+    EmbeddingsRequest request = embeddingsRequest("The food was delicious");
+
+    BatchInputWriter<EmbeddingsRequest> writer =
+        new BatchInputWriter<>(tempDir, "/v1/embeddings", 3, Long.MAX_VALUE);
+    try (writer) {
+      for (int i = 0; i < 7; i++) {
+        writer.write("request-" + i, request);
+      }
+      // the custom IDs are unique across the files, not only within the current one
+      assertThrows(IllegalArgumentException.class, () -> writer.write("request-0", request));
+    }
+
+    List<Integer> lineCounts = new ArrayList<>();
+    for (Path file : writer.files()) {
+      lineCounts.add(Files.readAllLines(file).size());
+    }
+    assertThat(lineCounts).containsExactly(3, 3, 1);
+
+    long lineSize = Files.size(writer.files().get(2));
+
+    // only two lines fit in a file
+    BatchInputWriter<EmbeddingsRequest> sizeLimitedWriter =
+        new BatchInputWriter<>(tempDir.resolve("size"), "/v1/embeddings", 10, lineSize * 2 + 1);
+    Files.createDirectory(tempDir.resolve("size"));
+    try (sizeLimitedWriter) {
+      for (int i = 0; i < 5; i++) {
+        sizeLimitedWriter.write("request-" + i, request);
+      }
+    }
+
+    List<Long> fileSizes = new ArrayList<>();
+    for (Path file : sizeLimitedWriter.files()) {
+      fileSizes.add(Files.size(file));
+    }
+    assertThat(fileSizes).containsExactly(lineSize * 2, lineSize * 2, lineSize);
+  }
+
+  @Test
+  void rejectsInvalidRequests() {
+    try (BatchInputWriter<EmbeddingsRequest> writer =
+        new BatchInputWriter<>(tempDir, "/v1/embeddings", 10, 1000)) {
+      writer.write("request-1", embeddingsRequest("The food was delicious"));
+
+      IllegalArgumentException duplicateException =
+          assertThrows(
+              IllegalArgumentException.class,
+              () -> writer.write("request-1", embeddingsRequest("The food was delicious")));
+      assertThat(duplicateException).hasMessage("Duplicate custom_id: request-1");
+
+      assertThrows(
+          IllegalArgumentException.class,
+          () -> writer.write("request-2", embeddingsRequest("a".repeat(1000))));
+
+      writer.close();
+
+      assertThrows(
+          IllegalStateException.class,
+          () -> writer.write("request-3", embeddingsRequest("The food was delicious")));
+    }
+  }
+
+  private EmbeddingsRequest embeddingsRequest(String input) {
+    return EmbeddingsRequest.newBuilder().model("text-embedding-3-small").input(input).build();
+  }
+}
@@ -0,0 +1,66 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CassetteTest {
+
+  @TempDir private Path tempDir;
+
+  private final CreateChatCompletionRequest.Builder requestBuilder =
+      CreateChatCompletionRequest.newBuilder()
+          .model("gpt-4o")
+          .message(ChatMessage.userMessage("Who are you?"))
+          .maxTokens(20);
+
+  @Test
+  void replaysTheRecordedExchangesWithoutSendingThem() {
+    Path path = tempDir.resolve("chat.cassette");
+
+    ChatCompletion recordedChatCompletion;
+    List<ChatCompletionChunk> recordedChunks;
+    try (FakeOpenAIServer server =
+            FakeOpenAIServer.newBuilder()
+                .latency(FakeOpenAIServer.Latency.fixed(Duration.ofMillis(50)))
+                .tokensPerSecond(100)
+                .start();
+        Cassette cassette = Cassette.record(path)) {
+      ChatClient chatClient =
+          OpenAI.newBuilder("sk-fake")
+              .baseUrl(server.baseUrl())
+              .cassette(cassette)
+              .build()
+              .chatClient();
+      recordedChatCompletion = chatClient.createChatCompletion(requestBuilder.build());
+      recordedChunks =
+          chatClient.streamChatCompletion(requestBuilder.stream(true).build()).toList();
+    }
+
+    Cassette cassette = Cassette.replay(path, Double.POSITIVE_INFINITY);
+    assertThat(cassette.size()).isEqualTo(2);
+
+    // the server is closed, so the responses can only come from the cassette
+    OpenAI openAI =
+        OpenAI.newBuilder("sk-fake").baseUrl("http://localhost:1/v1/").cassette(cassette).build();
+    ChatClient chatClient = openAI.chatClient();
+
+    assertThat(chatClient.createChatCompletion(requestBuilder.stream(false).build()))
+        .isEqualTo(recordedChatCompletion);
+    long start = System.nanoTime();
+    assertThat(chatClient.streamChatCompletion(requestBuilder.stream(true).build()).toList())
+        .isEqualTo(recordedChunks);
+    // 20 tokens at 100 tokens per second took at least 200 milliseconds when recorded
+    assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(200));
+
+    UncheckedIOException exception =
+        assertThrows(UncheckedIOException.class, () -> openAI.modelsClient().listModels());
+    assertThat(exception).hasMessageContaining("has no recorded exchange");
+  }
+}
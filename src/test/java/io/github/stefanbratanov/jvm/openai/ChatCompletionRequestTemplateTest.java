@@ -0,0 +1,104 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import java.io.ByteArrayOutputStream;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.stream.Stream;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+class ChatCompletionRequestTemplateTest {
+
+  @ParameterizedTest
+  @MethodSource("templateArguments")
+  void bodyIsTheSameAsTheSerializedRequest(
+      List<ChatMessage> staticMessages, List<ChatMessage> messages, boolean otherFields)
+      throws JsonProcessingException {
+    ChatCompletionRequestTemplate template =
+        ChatCompletionRequestTemplate.of(createRequest(staticMessages, otherFields));
+
+    List<ChatMessage> allMessages = new ArrayList<>(staticMessages);
+    allMessages.addAll(messages);
+    byte[] expected =
+        ObjectMapperSingleton.getInstance()
+            .writeValueAsBytes(createRequest(allMessages, otherFields));
+
+    HttpRequest.BodyPublisher bodyPublisher = template.createBodyPublisher(messages);
+
+    assertThat(readBody(bodyPublisher)).isEqualTo(expected);
+    assertThat(bodyPublisher.contentLength()).isEqualTo(expected.length);
+    // the segments are shared, so the body can be published again
+    assertThat(readBody(bodyPublisher)).isEqualTo(expected);
+  }
+
+  static Stream<Arguments> templateArguments() {
+    List<ChatMessage> staticMessages =
+        List.of(
+            ChatMessage.systemMessage("You are a helpful assistant. \u00dcn\u00efc\u00f6d\u00e9."),
+            ChatMessage.userMessage("Hi"),
+            ChatMessage.assistantMessage("Hello!"));
+    List<ChatMessage> messages = List.of(ChatMessage.userMessage("What is \"JSON\"?"));
+    return Stream.of(
+        Arguments.of(staticMessages, messages, true),
+        Arguments.of(staticMessages, messages, false),
+        Arguments.of(staticMessages, List.of(), true),
+        Arguments.of(List.of(), messages, true),
+        Arguments.of(List.of(), messages, false));
+  }
+
+  private CreateChatCompletionRequest createRequest(
+      List<ChatMessage> messages, boolean otherFields) {
+    CreateChatCompletionRequest.Builder requestBuilder =
+        CreateChatCompletionRequest.newBuilder().model("gpt-4o").messages(messages);
+    if (otherFields) {
+      requestBuilder.temperature(0.2).maxTokens(100).stream(true).user("user-1");
+    }
+    return requestBuilder.build();
+  }
+
+  /**
+   * Reads the body like the {@link java.net.http.HttpClient} does, by requesting the next item from
+   * within {@link Flow.Subscriber#onNext(Object)}
+   */
+  private byte[] readBody(HttpRequest.BodyPublisher bodyPublisher) {
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    int[] completions = {0};
+    bodyPublisher.subscribe(
+        new Flow.Subscriber<>() {
+          private Flow.Subscription subscription;
+
+          @Override
+          public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+          }
+
+          @Override
+          public void onNext(ByteBuffer item) {
+            byte[] bytes = new byte[item.remaining()];
+            item.get(bytes);
+            body.writeBytes(bytes);
+            subscription.request(1);
+          }
+
+          @Override
+          public void onError(Throwable throwable) {
+            throw new AssertionError(throwable);
+          }
+
+          @Override
+          public void onComplete() {
+            completions[0]++;
+          }
+        });
+    assertThat(completions[0]).isEqualTo(1);
+    return body.toByteArray();
+  }
+}
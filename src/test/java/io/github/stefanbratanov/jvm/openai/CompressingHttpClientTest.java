@@ -0,0 +1,223 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class CompressingHttpClientTest {
+
+  private static final String MODELS =
+      "{\"object\":\"list\",\"data\":[{\"id\":\"gpt-4o\",\"object\":\"model\",\"created\":1,"
+          + "\"owned_by\":\"system\"}]}";
+  private static final String EMBEDDINGS =
+      "{\"object\":\"list\",\"data\":[],\"model\":\"text-embedding-3-small\","
+          + "\"usage\":{\"prompt_tokens\":5,\"total_tokens\":5}}";
+
+  // stands in for brotli, which has no implementation in the JDK, by flipping every bit
+  private static final ContentCodec BR =
+      new ContentCodec() {
+        @Override
+        public String encoding() {
+          return "br";
+        }
+
+        @Override
+        public Decoder newDecoder() {
+          return new Decoder() {
+            @Override
+            public void decode(ByteBuffer input, List<ByteBuffer> output) {
+              ByteBuffer decoded = ByteBuffer.allocate(input.remaining());
+              while (input.hasRemaining()) {
+                decoded.put((byte) ~input.get());
+              }
+              output.add(decoded.flip());
+            }
+
+            @Override
+            public void finish() {}
+          };
+        }
+      };
+
+  private final List<ReceivedRequest> receivedRequests = new CopyOnWriteArrayList<>();
+
+  private HttpServer server;
+  private volatile String contentEncoding;
+  private volatile byte[] responseBody;
+
+  @BeforeEach
+  void startServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext(
+        "/",
+        exchange -> {
+          receivedRequests.add(
+              new ReceivedRequest(
+                  exchange.getRequestHeaders(), exchange.getRequestBody().readAllBytes()));
+          exchange.getResponseHeaders().add("Content-Type", "application/json");
+          if (contentEncoding != null) {
+            exchange.getResponseHeaders().add("Content-Encoding", contentEncoding);
+          }
+          exchange.sendResponseHeaders(200, responseBody.length);
+          exchange.getResponseBody().write(responseBody);
+          exchange.close();
+        });
+    server.start();
+  }
+
+  @AfterEach
+  void stopServer() {
+    server.stop(0);
+  }
+
+  @Test
+  void negotiatesEncodingAndDecodesResponses() {
+    // br was applied last, so it is decoded first
+    respond("gzip, br", br(gzip(MODELS.getBytes(StandardCharsets.UTF_8))));
+
+    ModelsClient modelsClient =
+        OpenAI.newBuilder("sk-test")
+            .baseUrl(baseUrl())
+            .compressionPolicy(
+                CompressionPolicy.newBuilder().codec(ContentCodec.gzip()).codec(BR).build())
+            .build()
+            .modelsClient();
+
+    List<Model> models = modelsClient.listModels();
+
+    assertThat(models).extracting(Model::id).containsExactly("gpt-4o");
+    assertThat(receivedRequests)
+        .singleElement()
+        .satisfies(
+            request ->
+                assertThat(request.headers().getFirst("Accept-Encoding")).isEqualTo("gzip, br"));
+  }
+
+  @Test
+  void stripsEncodingHeadersOfDecodedResponses() throws Exception {
+    respond("gzip, br", br(gzip(MODELS.getBytes(StandardCharsets.UTF_8))));
+
+    CompressingHttpClient httpClient =
+        new CompressingHttpClient(
+            HttpClient.newHttpClient(),
+            CompressionPolicy.newBuilder().codec(ContentCodec.gzip()).codec(BR).build());
+    HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl() + "/models")).build();
+
+    List<HttpResponse<String>> httpResponses =
+        List.of(
+            httpClient.send(request, HttpResponse.BodyHandlers.ofString()),
+            httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString()).join());
+
+    for (HttpResponse<String> httpResponse : httpResponses) {
+      assertThat(httpResponse.body()).isEqualTo(MODELS);
+      assertThat(httpResponse.headers().firstValue("Content-Encoding")).isEmpty();
+      assertThat(httpResponse.headers().firstValue("Content-Length")).isEmpty();
+      assertThat(httpResponse.headers().firstValue("Content-Type")).hasValue("application/json");
+    }
+  }
+
+  @Test
+  void passesThroughBodiesWithUnsupportedEncoding() throws Exception {
+    byte[] body = gzip(MODELS.getBytes(StandardCharsets.UTF_8));
+    // gzip is supported, but zstd isn't, so the body can't be decoded
+    respond("gzip, zstd", body);
+
+    CompressingHttpClient httpClient =
+        new CompressingHttpClient(
+            HttpClient.newHttpClient(), CompressionPolicy.newBuilder().build());
+    HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl() + "/models")).build();
+
+    HttpResponse<byte[]> httpResponse =
+        httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+
+    assertThat(httpResponse.body()).isEqualTo(body);
+    assertThat(httpResponse.headers().firstValue("Content-Encoding")).hasValue("gzip, zstd");
+    assertThat(httpResponse.headers().firstValueAsLong("Content-Length")).hasValue(body.length);
+  }
+
+  @Test
+  void compressesJsonRequestBodiesAboveThreshold() throws IOException {
+    respond(null, EMBEDDINGS.getBytes(StandardCharsets.UTF_8));
+
+    EmbeddingsClient embeddingsClient =
+        OpenAI.newBuilder("sk-test")
+            .baseUrl(baseUrl())
+            .compressionPolicy(
+                CompressionPolicy.newBuilder().requestCompressionThreshold(1024).build())
+            .build()
+            .embeddingsClient();
+
+    String largeInput = "The food was delicious and the waiter was friendly. ".repeat(100);
+    embeddingsClient.createEmbeddings(
+        EmbeddingsRequest.newBuilder().input(largeInput).model("text-embedding-3-small").build());
+    embeddingsClient.createEmbeddings(
+        EmbeddingsRequest.newBuilder().input("small").model("text-embedding-3-small").build());
+
+    assertThat(receivedRequests).hasSize(2);
+
+    ReceivedRequest largeRequest = receivedRequests.get(0);
+    assertThat(largeRequest.headers().getFirst("Content-Encoding")).isEqualTo("gzip");
+    assertThat(largeRequest.body().length).isLessThan(largeInput.length() / 10);
+    assertThat(new String(gunzip(largeRequest.body()), StandardCharsets.UTF_8))
+        .contains(largeInput);
+
+    ReceivedRequest smallRequest = receivedRequests.get(1);
+    assertThat(smallRequest.headers().containsKey("Content-Encoding")).isFalse();
+    assertThat(new String(smallRequest.body(), StandardCharsets.UTF_8)).contains("\"small\"");
+  }
+
+  private void respond(String contentEncoding, byte[] responseBody) {
+    this.contentEncoding = contentEncoding;
+    this.responseBody = responseBody;
+  }
+
+  private String baseUrl() {
+    return "http://localhost:" + server.getAddress().getPort();
+  }
+
+  private byte[] gzip(byte[] bytes) {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(compressed)) {
+      gzipOutputStream.write(bytes);
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+    return compressed.toByteArray();
+  }
+
+  private byte[] gunzip(byte[] bytes) throws IOException {
+    try (InputStream gzipInputStream = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+      return gzipInputStream.readAllBytes();
+    }
+  }
+
+  private byte[] br(byte[] bytes) {
+    byte[] encoded = new byte[bytes.length];
+    for (int i = 0; i < bytes.length; i++) {
+      encoded[i] = (byte) ~bytes[i];
+    }
+    return encoded;
+  }
+
+  private record ReceivedRequest(Headers headers, byte[] body) {}
+}
@@ -0,0 +1,152 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+import org.junit.jupiter.api.Test;
+
+class ContentCodecTest {
+
+  @Test
+  void decodesGzipBodyArrivingInSmallChunks() throws IOException {
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    body.write(gzip("hello "));
+    // a second member with the optional file name field
+    byte[] secondMember = gzip("world");
+    secondMember[3] = 8;
+    body.write(secondMember, 0, 10);
+    body.write("name.txt\0".getBytes(StandardCharsets.US_ASCII));
+    body.write(secondMember, 10, secondMember.length - 10);
+
+    ContentCodec.Decoder decoder = ContentCodec.gzip().newDecoder();
+    List<ByteBuffer> decoded = new ArrayList<>();
+    for (byte b : body.toByteArray()) {
+      decoder.decode(ByteBuffer.wrap(new byte[] {b}), decoded);
+    }
+    decoder.finish();
+
+    assertThat(toString(decoded)).isEqualTo("hello world");
+  }
+
+  @Test
+  void decodesDeflateBody() throws IOException {
+    String text = "The quick brown fox jumps over the lazy dog. ".repeat(100);
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    try (DeflaterOutputStream deflaterOutputStream = new DeflaterOutputStream(body)) {
+      deflaterOutputStream.write(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    ContentCodec.Decoder decoder = ContentCodec.deflate().newDecoder();
+    List<ByteBuffer> decoded = new ArrayList<>();
+    decoder.decode(ByteBuffer.wrap(body.toByteArray()), decoded);
+    decoder.finish();
+
+    assertThat(toString(decoded)).isEqualTo(text);
+  }
+
+  @Test
+  void failsOnTruncatedOrCorruptBody() throws IOException {
+    byte[] body = gzip("hello world");
+
+    ContentCodec.Decoder truncatedDecoder = ContentCodec.gzip().newDecoder();
+    truncatedDecoder.decode(ByteBuffer.wrap(Arrays.copyOf(body, 15)), new ArrayList<>());
+    assertThrows(EOFException.class, truncatedDecoder::finish);
+
+    // flip a bit of the checksum in the trailer
+    body[body.length - 8] ^= 1;
+    ContentCodec.Decoder corruptDecoder = ContentCodec.gzip().newDecoder();
+    assertThrows(
+        ZipException.class, () -> corruptDecoder.decode(ByteBuffer.wrap(body), new ArrayList<>()));
+  }
+
+  @Test
+  void releasesDecoderWhenBodyFailsOrIsCancelled() {
+    int[] releases = {0};
+    ContentCodec.Decoder decoder =
+        new ContentCodec.Decoder() {
+          @Override
+          public void decode(ByteBuffer input, List<ByteBuffer> output) {
+            output.add(input);
+          }
+
+          @Override
+          public void finish() {}
+
+          @Override
+          public void release() {
+            releases[0]++;
+          }
+        };
+    Flow.Subscription subscription =
+        new Flow.Subscription() {
+          @Override
+          public void request(long n) {}
+
+          @Override
+          public void cancel() {}
+        };
+
+    DecodingBodySubscriber<String> failedSubscriber =
+        new DecodingBodySubscriber<>(
+            decoder, HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8));
+    failedSubscriber.onSubscribe(subscription);
+    failedSubscriber.onError(new IOException("connection reset"));
+
+    assertThat(releases[0]).isEqualTo(1);
+
+    List<Flow.Subscription> delegateSubscriptions = new ArrayList<>();
+    DecodingBodySubscriber<Void> cancelledSubscriber =
+        new DecodingBodySubscriber<>(
+            decoder,
+            HttpResponse.BodySubscribers.fromSubscriber(
+                new Flow.Subscriber<List<ByteBuffer>>() {
+                  @Override
+                  public void onSubscribe(Flow.Subscription subscription) {
+                    delegateSubscriptions.add(subscription);
+                  }
+
+                  @Override
+                  public void onNext(List<ByteBuffer> item) {}
+
+                  @Override
+                  public void onError(Throwable throwable) {}
+
+                  @Override
+                  public void onComplete() {}
+                }));
+    cancelledSubscriber.onSubscribe(subscription);
+    delegateSubscriptions.get(0).cancel();
+    cancelledSubscriber.onComplete();
+
+    assertThat(releases[0]).isEqualTo(2);
+  }
+
+  private byte[] gzip(String text) throws IOException {
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(body)) {
+      gzipOutputStream.write(text.getBytes(StandardCharsets.UTF_8));
+    }
+    return body.toByteArray();
+  }
+
+  private String toString(List<ByteBuffer> decoded) {
+    StringBuilder text = new StringBuilder();
+    for (ByteBuffer buffer : decoded) {
+      text.append(StandardCharsets.UTF_8.decode(buffer));
+    }
+    return text.toString();
+  }
+}
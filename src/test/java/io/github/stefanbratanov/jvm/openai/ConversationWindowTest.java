@@ -0,0 +1,115 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+
+class ConversationWindowTest {
+
+  // every character is a token, so a message costs its content length + role length + 3
+  private final TokenCounter tokenCounter = String::length;
+
+  @Test
+  void keepsMessagesWithinBudget() {
+    ConversationWindow window =
+        ConversationWindow.newBuilder(45).tokenCounter(tokenCounter).build();
+
+    window.pin(ChatMessage.systemMessage("be nice"));
+    window.add(ChatMessage.userMessage("one"));
+    window.add(ChatMessage.assistantMessage("two"));
+
+    assertThat(window.tokenCount()).isEqualTo(41);
+    assertThat(window.messages()).hasSize(3);
+
+    window.add(ChatMessage.userMessage("three"));
+
+    assertThat(window.tokenCount()).isLessThanOrEqualTo(45);
+    assertThat(window.messages())
+        .containsExactly(
+            ChatMessage.systemMessage("be nice"),
+            ChatMessage.assistantMessage("two"),
+            ChatMessage.userMessage("three"));
+  }
+
+  @Test
+  void dropsOrphanedToolMessages() {
+    ConversationWindow window =
+        ConversationWindow.newBuilder(50).tokenCounter(tokenCounter).build();
+
+    ToolCall toolCall =
+        ToolCall.functionToolCall(
+            "call_1", new ToolCall.FunctionToolCall.Function("f", "{}", null));
+    window.add(ChatMessage.assistantMessage(null, List.of(toolCall)));
+    window.add(ChatMessage.toolMessage("42", "call_1"));
+    window.add(ChatMessage.userMessage("what was the result?"));
+
+    assertThat(window.messages()).containsExactly(ChatMessage.userMessage("what was the result?"));
+  }
+
+  @Test
+  void dropsOrphanedToolMessagesWhichAreTheLastMessages() {
+    ToolCall toolCall =
+        ToolCall.functionToolCall(
+            "call_1", new ToolCall.FunctionToolCall.Function("f", "{}", null));
+    ChatMessage toolCallMessage = ChatMessage.assistantMessage(null, List.of(toolCall));
+    ChatMessage toolMessage = ChatMessage.toolMessage("a long tool result", "call_1");
+
+    ConversationWindow droppingWindow =
+        ConversationWindow.newBuilder(30).tokenCounter(tokenCounter).build();
+
+    droppingWindow.add(ChatMessage.userMessage("hi"));
+    droppingWindow.add(toolCallMessage);
+    droppingWindow.add(toolMessage);
+
+    assertThat(droppingWindow.messages()).isEmpty();
+    assertThat(droppingWindow.tokenCount()).isZero();
+
+    List<List<ChatMessage>> summarizedMessages = new ArrayList<>();
+    ConversationWindow summarizingWindow =
+        ConversationWindow.newBuilder(30)
+            .tokenCounter(tokenCounter)
+            .summarizeOldest(
+                messages -> {
+                  summarizedMessages.add(messages);
+                  return ChatMessage.systemMessage("summary");
+                })
+            .build();
+
+    summarizingWindow.add(ChatMessage.userMessage("hi"));
+    summarizingWindow.add(toolCallMessage);
+    summarizingWindow.add(toolMessage);
+
+    assertThat(summarizedMessages)
+        .containsExactly(List.of(ChatMessage.userMessage("hi"), toolCallMessage, toolMessage));
+    assertThat(summarizingWindow.messages()).containsExactly(ChatMessage.systemMessage("summary"));
+  }
+
+  @Test
+  void summarizesOldestMessages() {
+    ConversationWindow window =
+        ConversationWindow.newBuilder(45)
+            .tokenCounter(tokenCounter)
+            .summarizeOldest(
+                messages ->
+                    new ChatMessage.SystemMessage(
+                        "summary of " + messages.size(), Optional.empty()))
+            .build();
+
+    window.add(ChatMessage.userMessage("first question"));
+    window.add(ChatMessage.assistantMessage("first answer"));
+
+    assertThat(window.messages()).hasSize(2);
+
+    window.add(ChatMessage.userMessage("second question"));
+
+    assertThat(window.tokenCount()).isLessThanOrEqualTo(45);
+    assertThat(window.messages().get(0))
+        .isInstanceOfSatisfying(
+            ChatMessage.SystemMessage.class,
+            summary -> assertThat(summary.content()).startsWith("summary of"));
+    assertThat(window.messages()).last().isEqualTo(ChatMessage.userMessage("second question"));
+  }
+}
@@ -5,6 +5,8 @@ import static org.assertj.core.api.Assertions.assertThat;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.util.List;
 import org.junit.jupiter.api.Test;
 
 public class DeserializationTest {
@@ -30,4 +32,29 @@ public class DeserializationTest {
               assertThat(choice.finishReason()).isNull();
             });
   }
+
+  @Test
+  public void deserializesCompactModerationResult() throws IOException {
+    String json = getStringResource("/moderation.json");
+
+    Moderation moderation = objectMapper.readValue(json, Moderation.class);
+    List<CompactModerationResult> results =
+        ObjectMapperSingleton.getListReader(CompactModerationResult.class)
+            .readValue(objectMapper.readTree(json).get("results"));
+
+    assertThat(results)
+        .singleElement()
+        .isEqualTo(CompactModerationResult.from(moderation.results().get(0)))
+        .satisfies(
+            result -> {
+              assertThat(result.flagged()).isTrue();
+              assertThat(result.flaggedCategories())
+                  .containsExactly(
+                      ModerationCategory.HARASSMENT,
+                      ModerationCategory.HARASSMENT_THREATENING,
+                      ModerationCategory.VIOLENCE);
+              assertThat(result.score(ModerationCategory.VIOLENCE)).isEqualTo(0.99011886);
+              assertThat(result.maxScoreCategory()).isEqualTo(ModerationCategory.VIOLENCE);
+            });
+  }
 }
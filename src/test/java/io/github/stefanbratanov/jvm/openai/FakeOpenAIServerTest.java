@@ -0,0 +1,115 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FakeOpenAIServerTest {
+
+  @TempDir private Path tempDir;
+
+  @Test
+  void servesDeterministicPayloadsAndPacesTheStream() {
+    try (FakeOpenAIServer server =
+        FakeOpenAIServer.newBuilder()
+            .latency(FakeOpenAIServer.Latency.fixed(Duration.ofMillis(20)))
+            .tokensPerSecond(200)
+            .start()) {
+      OpenAI openAI = OpenAI.newBuilder("sk-fake").baseUrl(server.baseUrl()).build();
+      ChatClient chatClient = openAI.chatClient();
+
+      CreateChatCompletionRequest.Builder requestBuilder =
+          CreateChatCompletionRequest.newBuilder()
+              .model("gpt-4o")
+              .message(ChatMessage.userMessage("Who are you?"))
+              .maxTokens(20);
+
+      ChatCompletion chatCompletion = chatClient.createChatCompletion(requestBuilder.build());
+      assertThat(chatCompletion.usage().completionTokens()).isEqualTo(20);
+      assertThat(chatClient.createChatCompletion(requestBuilder.build()).choices())
+          .isEqualTo(chatCompletion.choices());
+
+      long start = System.nanoTime();
+      List<ChatCompletionChunk> chunks =
+          chatClient.streamChatCompletion(requestBuilder.stream(true).build()).toList();
+      // 20 tokens at 200 tokens per second
+      assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThan(Duration.ofMillis(100));
+      assertThat(
+              chunks.stream()
+                  .flatMap(chunk -> chunk.choices().stream())
+                  .map(choice -> choice.delta().content())
+                  .filter(content -> content != null)
+                  .collect(Collectors.joining()))
+          .isNotBlank();
+
+      Embeddings embeddings =
+          openAI
+              .embeddingsClient()
+              .createEmbeddings(
+                  EmbeddingsRequest.newBuilder()
+                      .input("a", "b")
+                      .model("text-embedding-3-small")
+                      .dimensions(8)
+                      .build());
+      assertThat(embeddings.data())
+          .hasSize(2)
+          .allSatisfy(embedding -> assertThat(embedding.embedding()).hasSize(8));
+
+      assertThat(server.requestCount("chat/completions")).isEqualTo(3);
+      assertThat(server.requestCount("embeddings")).isEqualTo(1);
+    }
+  }
+
+  @Test
+  void keepsTheUploadedFilesAndCompletesTheBatches() throws IOException {
+    try (FakeOpenAIServer server = FakeOpenAIServer.newBuilder().start()) {
+      OpenAI openAI = OpenAI.newBuilder("sk-fake").baseUrl(server.baseUrl()).build();
+      FilesClient filesClient = openAI.filesClient();
+
+      Path input = Files.writeString(tempDir.resolve("batch.jsonl"), "{\"custom_id\":\"1\"}\n");
+      File file =
+          filesClient.uploadFile(
+              UploadFileRequest.newBuilder().file(input).purpose("batch").build());
+
+      assertThat(filesClient.listFiles()).containsExactly(file);
+      assertThat(filesClient.retrieveFileContent(file.id())).isEqualTo(Files.readAllBytes(input));
+
+      BatchClient batchClient = openAI.batchClient();
+      Batch batch =
+          batchClient.createBatch(
+              CreateBatchRequest.newBuilder()
+                  .inputFileId(file.id())
+                  .endpoint("/v1/chat/completions")
+                  .completionWindow("24h")
+                  .build());
+      assertThat(batchClient.retrieveBatch(batch.id()).status()).isEqualTo("completed");
+
+      assertThat(filesClient.deleteFile(file.id()).deleted()).isTrue();
+      assertThat(filesClient.listFiles()).isEmpty();
+    }
+  }
+
+  @Test
+  void rejectsTheRequestsOverTheRateLimits() {
+    try (FakeOpenAIServer server = FakeOpenAIServer.newBuilder().rateLimits(2, 100_000).start()) {
+      ModelsClient modelsClient =
+          OpenAI.newBuilder("sk-fake").baseUrl(server.baseUrl()).build().modelsClient();
+
+      modelsClient.listModels();
+      modelsClient.listModels();
+      OpenAIException exception = assertThrows(OpenAIException.class, modelsClient::listModels);
+
+      assertThat(exception.statusCode()).isEqualTo(429);
+      assertThat(exception.errorMessage()).contains("Rate limit reached for requests");
+      assertThat(server.rateLimitedRequestCount()).isEqualTo(1);
+    }
+  }
+}
@@ -0,0 +1,103 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FineTuningDatasetWriterTest {
+
+  // every character is a token, so a message costs its content length + role length + 3
+  private final TokenCounter tokenCounter = String::length;
+
+  private final ObjectMapper objectMapper = ObjectMapperSingleton.getInstance();
+
+  @TempDir Path tempDir;
+
+  @Test
+  void writesValidExamplesAndComputesStatistics() throws IOException {
+    Path dataset = tempDir.resolve("dataset.jsonl");
+
+    FineTuningDatasetWriter writer =
+        FineTuningDatasetWriter.newBuilder(dataset)
+            .tokenCounter(tokenCounter)
+            .maxTokensPerExample(50)
+            .parallelism(2)
+            .build();
+    try (writer) {
+      writer.write(
+          List.of(
+              ChatMessage.systemMessage("be nice"),
+              ChatMessage.userMessage("hi"),
+              ChatMessage.assistantMessage("hello")));
+      writer.write(
+          List.of(
+              ChatMessage.userMessage("what is the weather?"),
+              ChatMessage.assistantMessage(
+                  null,
+                  List.of(
+                      ToolCall.functionToolCall(
+                          "call_1",
+                          new ToolCall.FunctionToolCall.Function("get_weather", "{}", null)))),
+              ChatMessage.toolMessage("sunny", "call_1"),
+              ChatMessage.assistantMessage("It is sunny")));
+
+      IllegalArgumentException exception =
+          assertThrows(
+              IllegalArgumentException.class,
+              () -> writer.write(List.of(ChatMessage.userMessage("hi"))));
+      assertThat(exception)
+          .hasMessage("Example 2 is invalid: the last message is not an assistant message");
+    }
+
+    List<String> lines = Files.readAllLines(dataset);
+    assertThat(lines).hasSize(2);
+    JsonNode firstExample = objectMapper.readTree(lines.get(0));
+    assertThat(firstExample.get("messages")).hasSize(3);
+    assertThat(firstExample.get("messages").get(2).get("role").asText()).isEqualTo("assistant");
+
+    FineTuningDatasetWriter.Statistics statistics = writer.statistics();
+
+    // (7 + 6 + 3) + (2 + 4 + 3) + (5 + 9 + 3) = 42 and 87 for the example with a tool call
+    assertThat(statistics.examples()).isEqualTo(2);
+    assertThat(statistics.totalTokens()).isEqualTo(129);
+    assertThat(statistics.minTokens()).isEqualTo(42);
+    assertThat(statistics.maxTokens()).isEqualTo(87);
+    // the second example is truncated to 50 tokens
+    assertThat(statistics.billedTokens()).isEqualTo(92);
+    assertThat(statistics.examplesOverTokenLimit()).isEqualTo(1);
+    assertThat(statistics.tokenHistogram()[5]).isEqualTo(1);
+    assertThat(statistics.tokenHistogram()[6]).isEqualTo(1);
+    assertThat(statistics.estimateTrainingCost(10, 2)).isEqualTo(0.00184);
+  }
+
+  @Test
+  void rejectsToolMessagesWithoutToolCalls() {
+    try (FineTuningDatasetWriter writer =
+        FineTuningDatasetWriter.newBuilder(tempDir.resolve("dataset.jsonl")).build()) {
+      assertThrows(
+          IllegalArgumentException.class,
+          () ->
+              writer.write(
+                  List.of(
+                      ChatMessage.userMessage("hi"),
+                      ChatMessage.toolMessage("sunny", "call_1"),
+                      ChatMessage.assistantMessage("hello"))));
+      assertThrows(
+          IllegalArgumentException.class,
+          () ->
+              writer.write(
+                  List.of(
+                      ChatMessage.userMessage("hi"),
+                      ChatMessage.systemMessage("be nice"),
+                      ChatMessage.assistantMessage("hello"))));
+    }
+  }
+}
@@ -0,0 +1,191 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.github.stefanbratanov.jvm.openai.FineTuningClient.PaginatedFineTuningEvents;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import org.junit.jupiter.api.Test;
+
+class FineTuningJobWatcherTest {
+
+  private static final int PAGE_SIZE = 2;
+
+  private final List<FineTuningJobEvent> events = new CopyOnWriteArrayList<>();
+  private final AtomicInteger listEventsCalls = new AtomicInteger();
+
+  private volatile String status = "running";
+  private volatile OpenAIException listEventsFailure;
+
+  private final FineTuningJobWatcher watcher =
+      new FineTuningJobWatcher(
+          this::listEvents, this::retrieveJob, Duration.ofMillis(10), Duration.ofMillis(50));
+
+  @Test
+  void publishesEventsInOrderUntilJobHasFinished() throws Exception {
+    addEvents(3);
+
+    CollectingSubscriber subscriber = new CollectingSubscriber(Long.MAX_VALUE);
+    watcher.subscribe(subscriber);
+
+    awaitUntil(() -> subscriber.events.size() == 3);
+
+    addEvents(7);
+    status = "succeeded";
+
+    subscriber.completion.get(5, TimeUnit.SECONDS);
+
+    assertThat(subscriber.events)
+        .extracting(FineTuningJobEvent::id)
+        .containsExactly("ev-1", "ev-2", "ev-3", "ev-4", "ev-5", "ev-6", "ev-7");
+  }
+
+  @Test
+  void respectsDemandAndStopsPollingWhenCancelled() throws InterruptedException {
+    addEvents(5);
+
+    CollectingSubscriber subscriber = new CollectingSubscriber(1);
+    watcher.subscribe(subscriber);
+
+    awaitUntil(() -> subscriber.events.size() == 1);
+
+    // polling pauses while there are events which weren't requested
+    int calls = listEventsCalls.get();
+    java.lang.Thread.sleep(200);
+    assertThat(listEventsCalls).hasValue(calls);
+    assertThat(subscriber.events).extracting(FineTuningJobEvent::id).containsExactly("ev-1");
+
+    subscriber.subscription.request(4);
+
+    awaitUntil(() -> subscriber.events.size() == 5);
+
+    subscriber.subscription.cancel();
+
+    // a poll which was already in flight may still complete
+    int callsAfterCancel = listEventsCalls.get();
+    java.lang.Thread.sleep(200);
+    assertThat(listEventsCalls.get()).isLessThanOrEqualTo(callsAfterCancel + 1);
+    assertThat(subscriber.completion).isNotDone();
+  }
+
+  @Test
+  void retriesRateLimitedPollsAndFailsOnOtherErrors() throws InterruptedException {
+    addEvents(1);
+    listEventsFailure =
+        new OpenAIException(
+            429, new OpenAIException.Error("Rate limit reached", "requests", null, null));
+
+    CollectingSubscriber subscriber = new CollectingSubscriber(Long.MAX_VALUE);
+    watcher.subscribe(subscriber);
+
+    awaitUntil(() -> listEventsCalls.get() >= 2);
+    assertThat(subscriber.completion).isNotDone();
+
+    listEventsFailure =
+        new OpenAIException(
+            404, new OpenAIException.Error("Job not found", "invalid_request_error", null, null));
+
+    awaitUntil(subscriber.completion::isDone);
+    assertThat(subscriber.completion)
+        .isCompletedExceptionally()
+        .failsWithin(Duration.ZERO)
+        .withThrowableOfType(Exception.class)
+        .withCauseInstanceOf(OpenAIException.class);
+  }
+
+  private void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (!condition.getAsBoolean()) {
+      assertThat(System.nanoTime()).as("Condition was not met in time").isLessThan(deadline);
+      java.lang.Thread.sleep(10);
+    }
+  }
+
+  private void addEvents(int untilEventNumber) {
+    for (int i = events.size() + 1; i <= untilEventNumber; i++) {
+      events.add(new FineTuningJobEvent("ev-" + i, i, "info", "Step " + i));
+    }
+  }
+
+  private CompletableFuture<PaginatedFineTuningEvents> listEvents(Optional<String> after) {
+    listEventsCalls.incrementAndGet();
+    if (listEventsFailure != null) {
+      return CompletableFuture.failedFuture(listEventsFailure);
+    }
+    // events are listed newest first and "after" points to the last event of the previous page
+    List<FineTuningJobEvent> newestFirst = new ArrayList<>(events);
+    Collections.reverse(newestFirst);
+    int from =
+        after
+            .map(id -> newestFirst.stream().map(FineTuningJobEvent::id).toList().indexOf(id) + 1)
+            .orElse(0);
+    int to = Math.min(from + PAGE_SIZE, newestFirst.size());
+    return CompletableFuture.supplyAsync(
+        () ->
+            new PaginatedFineTuningEvents(
+                newestFirst.subList(from, to), to < newestFirst.size()));
+  }
+
+  private CompletableFuture<FineTuningJob> retrieveJob() {
+    return CompletableFuture.supplyAsync(
+        () ->
+            new FineTuningJob(
+                "ftjob-abc123",
+                0,
+                null,
+                null,
+                null,
+                null,
+                "gpt-3.5-turbo",
+                "org-123",
+                List.of(),
+                status,
+                null,
+                "file-abc123",
+                null));
+  }
+
+  private static class CollectingSubscriber implements Flow.Subscriber<FineTuningJobEvent> {
+
+    private final long initialRequest;
+
+    private final List<FineTuningJobEvent> events = new CopyOnWriteArrayList<>();
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+
+    private volatile Flow.Subscription subscription;
+
+    private CollectingSubscriber(long initialRequest) {
+      this.initialRequest = initialRequest;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+      this.subscription = subscription;
+      subscription.request(initialRequest);
+    }
+
+    @Override
+    public void onNext(FineTuningJobEvent item) {
+      events.add(item);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      completion.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+      completion.complete(null);
+    }
+  }
+}
@@ -0,0 +1,93 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.matchers.TimeToLive;
+import org.mockserver.matchers.Times;
+import org.mockserver.model.Delay;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.model.HttpResponse;
+import org.mockserver.verify.VerificationTimes;
+
+class HedgingHttpClientTest {
+
+  private static final String EMBEDDINGS =
+      "{\"object\":\"list\",\"data\":[],\"model\":\"text-embedding-3-small\",\"usage\":{\"prompt_tokens\":5,\"total_tokens\":5}}";
+
+  @Test
+  void hedgesSlowRequestsWithinBudget() {
+    try (ClientAndServer mockServer = ClientAndServer.startClientAndServer()) {
+      mockServer
+          .when(HttpRequest.request().withMethod("POST").withPath("/embeddings"))
+          .respond(HttpResponse.response().withStatusCode(200).withBody(EMBEDDINGS));
+
+      EmbeddingsClient embeddingsClient =
+          OpenAI.newBuilder("foobar")
+              .baseUrl("http://localhost:" + mockServer.getPort())
+              .hedgingPolicy(HedgingPolicy.newBuilder().build())
+              .build()
+              .embeddingsClient();
+
+      EmbeddingsRequest request =
+          EmbeddingsRequest.newBuilder()
+              .model("text-embedding-3-small")
+              .input("The food was delicious")
+              .build();
+
+      // tracks enough latencies and earns one duplicate request from the 5% budget
+      for (int i = 0; i < 20; i++) {
+        embeddingsClient.createEmbeddings(request);
+      }
+
+      mockServer
+          .when(
+              HttpRequest.request().withMethod("POST").withPath("/embeddings"),
+              Times.once(),
+              TimeToLive.unlimited(),
+              10)
+          .respond(
+              HttpResponse.response()
+                  .withStatusCode(200)
+                  .withBody(EMBEDDINGS)
+                  .withDelay(Delay.seconds(10)));
+
+      long startNanos = System.nanoTime();
+      Embeddings embeddings = embeddingsClient.createEmbeddings(request);
+
+      assertThat(embeddings.model()).isEqualTo("text-embedding-3-small");
+      assertThat(Duration.ofNanos(System.nanoTime() - startNanos))
+          .isLessThan(Duration.ofSeconds(5));
+      mockServer.verify(
+          HttpRequest.request().withPath("/embeddings"), VerificationTimes.exactly(22));
+    }
+  }
+
+  @Test
+  void doesNotHedgeOtherRequests() {
+    try (ClientAndServer mockServer = ClientAndServer.startClientAndServer()) {
+      mockServer
+          .when(HttpRequest.request().withPath("/models"))
+          .respond(
+              HttpResponse.response()
+                  .withStatusCode(200)
+                  .withBody("{\"object\":\"list\",\"data\":[]}")
+                  .withDelay(Delay.milliseconds(50)));
+
+      ModelsClient modelsClient =
+          OpenAI.newBuilder("foobar")
+              .baseUrl("http://localhost:" + mockServer.getPort())
+              .hedgingPolicy(HedgingPolicy.newBuilder().budget(1).build())
+              .build()
+              .modelsClient();
+
+      for (int i = 0; i < 30; i++) {
+        modelsClient.listModels();
+      }
+
+      mockServer.verify(HttpRequest.request().withPath("/models"), VerificationTimes.exactly(30));
+    }
+  }
+}
@@ -0,0 +1,73 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class ImageBatchTest {
+
+  private final List<CreateImageRequest> requests =
+      IntStream.range(0, 5)
+          .mapToObj(i -> CreateImageRequest.newBuilder().prompt(String.valueOf(i)).build())
+          .toList();
+
+  private final Map<String, CompletableFuture<Images>> inFlightRequests =
+      new ConcurrentHashMap<>();
+
+  @Test
+  void returnsResultsInCompletionOrderWithinConcurrency() {
+    ImageBatch batch = new ImageBatch(requests, this::createImage, 2, Integer.MAX_VALUE);
+
+    assertThat(inFlightRequests).containsOnlyKeys("0", "1");
+
+    inFlightRequests.remove("1").complete(new Images(1, List.of()));
+
+    assertThat(inFlightRequests).containsOnlyKeys("0", "2");
+
+    inFlightRequests.remove("2").completeExceptionally(new OpenAIException(500, null));
+    inFlightRequests.remove("0").complete(new Images(0, List.of()));
+    inFlightRequests.remove("3").complete(new Images(3, List.of()));
+    inFlightRequests.remove("4").complete(new Images(4, List.of()));
+
+    List<ImageBatch.Result> results = batch.results().toList();
+
+    assertThat(results).extracting(ImageBatch.Result::index).containsExactly(1, 2, 0, 3, 4);
+    assertThat(results.get(1).isSuccessful()).isFalse();
+    assertThat(results.get(1).error()).containsInstanceOf(OpenAIException.class);
+    assertThat(results.get(2).images()).contains(new Images(0, List.of()));
+  }
+
+  @Test
+  void cancelsRemainingRequests() {
+    ImageBatch batch = new ImageBatch(requests, this::createImage, 2, Integer.MAX_VALUE);
+
+    inFlightRequests.remove("0").complete(new Images(0, List.of()));
+
+    batch.cancel();
+
+    List<ImageBatch.Result> results = new ArrayList<>(batch.results().toList());
+
+    assertThat(results).hasSize(5);
+    assertThat(results.remove(0).isSuccessful()).isTrue();
+    assertThat(results)
+        .allSatisfy(
+            result -> assertThat(result.error()).containsInstanceOf(CancellationException.class));
+    // requests after the cancellation are never sent
+    assertThat(inFlightRequests).containsOnlyKeys("1", "2");
+    // and the exchanges of the requests in flight are aborted
+    assertThat(inFlightRequests.values()).allMatch(CompletableFuture::isCancelled);
+  }
+
+  private CompletableFuture<Images> createImage(CreateImageRequest request) {
+    CompletableFuture<Images> inFlightRequest = new CompletableFuture<>();
+    inFlightRequests.put(request.prompt(), inFlightRequest);
+    return inFlightRequest;
+  }
+}
@@ -0,0 +1,119 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import io.github.stefanbratanov.jvm.openai.IsolatingHttpClient.CircuitBreaker;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.model.HttpResponse;
+import org.mockserver.verify.VerificationTimes;
+
+class IsolatingHttpClientTest {
+
+  private final CircuitBreakerPolicy policy =
+      CircuitBreakerPolicy.newBuilder()
+          .slidingWindowSize(4)
+          .minimumNumberOfCalls(4)
+          .openDuration(Duration.ofSeconds(10))
+          .permittedCallsInHalfOpenState(2)
+          .build();
+
+  @Test
+  void circuitBreakerTransitionsBetweenStates() {
+    CircuitBreaker circuitBreaker = new CircuitBreaker(policy);
+
+    long now = 0;
+    circuitBreaker.onResult(false, 0, now);
+    circuitBreaker.onResult(true, 0, now);
+    circuitBreaker.onResult(false, 0, now);
+    assertThat(circuitBreaker.state(now)).isEqualTo(CircuitBreaker.State.CLOSED);
+
+    // two failures out of four calls reach the default failure rate threshold
+    circuitBreaker.onResult(true, 0, now);
+    assertThat(circuitBreaker.state(now)).isEqualTo(CircuitBreaker.State.OPEN);
+    assertThat(circuitBreaker.tryAcquirePermission(now)).isFalse();
+
+    now += Duration.ofSeconds(10).toNanos();
+    assertThat(circuitBreaker.state(now)).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+    assertThat(circuitBreaker.tryAcquirePermission(now)).isTrue();
+    assertThat(circuitBreaker.tryAcquirePermission(now)).isTrue();
+    assertThat(circuitBreaker.tryAcquirePermission(now)).isFalse();
+
+    // a failed trial call opens the circuit again
+    circuitBreaker.onResult(false, 0, now);
+    circuitBreaker.onResult(true, 0, now);
+    assertThat(circuitBreaker.state(now)).isEqualTo(CircuitBreaker.State.OPEN);
+
+    now += Duration.ofSeconds(10).toNanos();
+    circuitBreaker.tryAcquirePermission(now);
+    circuitBreaker.tryAcquirePermission(now);
+    circuitBreaker.onResult(false, 0, now);
+    circuitBreaker.onResult(false, 0, now);
+    assertThat(circuitBreaker.state(now)).isEqualTo(CircuitBreaker.State.CLOSED);
+  }
+
+  @Test
+  void circuitBreakerCountsSlowCalls() {
+    CircuitBreaker circuitBreaker =
+        new CircuitBreaker(
+            CircuitBreakerPolicy.newBuilder()
+                .slidingWindowSize(4)
+                .minimumNumberOfCalls(4)
+                .slowCallDuration(Duration.ofSeconds(1))
+                .slowCallRateThreshold(0.75)
+                .build());
+
+    long slow = Duration.ofSeconds(2).toNanos();
+    circuitBreaker.onResult(false, 0, 0);
+    circuitBreaker.onResult(false, slow, 0);
+    circuitBreaker.onResult(false, slow, 0);
+    circuitBreaker.onResult(false, 0, 0);
+    assertThat(circuitBreaker.state(0)).isEqualTo(CircuitBreaker.State.CLOSED);
+
+    // the oldest call leaves the window, so three out of four calls are slow
+    circuitBreaker.onResult(false, slow, 0);
+    assertThat(circuitBreaker.state(0)).isEqualTo(CircuitBreaker.State.OPEN);
+  }
+
+  @Test
+  void failingEndpointDoesNotAffectOtherEndpoints() {
+    try (ClientAndServer mockServer = ClientAndServer.startClientAndServer()) {
+      mockServer
+          .when(HttpRequest.request().withPath("/images/generations"))
+          .respond(HttpResponse.response().withStatusCode(503));
+      mockServer
+          .when(HttpRequest.request().withPath("/models"))
+          .respond(
+              HttpResponse.response()
+                  .withStatusCode(200)
+                  .withBody("{\"object\":\"list\",\"data\":[]}"));
+
+      OpenAI openAI =
+          OpenAI.newBuilder("foobar")
+              .baseUrl("http://localhost:" + mockServer.getPort())
+              .circuitBreakerPolicy(policy)
+              .build();
+
+      CreateImageRequest request =
+          CreateImageRequest.newBuilder().prompt("A cute baby sea otter").build();
+
+      for (int i = 0; i < 4; i++) {
+        assertThrows(OpenAIException.class, () -> openAI.imagesClient().createImage(request));
+      }
+
+      RequestRejectedException exception =
+          assertThrows(
+              RequestRejectedException.class, () -> openAI.imagesClient().createImage(request));
+      assertThat(exception.reason()).isEqualTo(RequestRejectedException.Reason.CIRCUIT_OPEN);
+      assertThat(exception.endpoint()).isEqualTo("images/generations");
+
+      mockServer.verify(
+          HttpRequest.request().withPath("/images/generations"), VerificationTimes.exactly(4));
+
+      assertThat(openAI.modelsClient().listModels()).isEmpty();
+    }
+  }
+}
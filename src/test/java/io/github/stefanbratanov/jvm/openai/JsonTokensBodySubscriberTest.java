@@ -0,0 +1,195 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class JsonTokensBodySubscriberTest {
+
+  // multi-byte characters of 2, 3 and 4 bytes
+  private static final String TEXT = "h\u00e9llo \u4e16\u754c \ud83d\ude00";
+
+  private static final String JSON =
+      "{\"text\":\"" + TEXT + "\",\"count\":1234567890123,"
+          + "\"ratio\":-1.5e-3,\"values\":[true,false,null,0.25],\"nested\":{\"empty\":\"\"}}";
+
+  private final ObjectMapper objectMapper = ObjectMapperSingleton.getInstance();
+
+  @ParameterizedTest
+  @ValueSource(ints = {1, 2, 3, 7, 64})
+  void parsesTokensSplitAcrossChunks(int chunkSize) throws Exception {
+    byte[] body = JSON.getBytes(StandardCharsets.UTF_8);
+    List<List<ByteBuffer>> chunks = new ArrayList<>();
+    for (int offset = 0; offset < body.length; offset += chunkSize) {
+      byte[] chunk = Arrays.copyOfRange(body, offset, Math.min(offset + chunkSize, body.length));
+      // the HttpClient may pass several buffers at once
+      chunks.add(
+          List.of(
+              ByteBuffer.wrap(chunk, 0, chunk.length / 2),
+              ByteBuffer.wrap(chunk, chunk.length / 2, chunk.length - chunk.length / 2)));
+    }
+
+    TokenBuffer tokenBuffer = receive(new JsonTokensBodySubscriber(objectMapper, true), chunks);
+
+    Map<String, Object> parsed = readMap(tokenBuffer);
+    assertThat(parsed).isEqualTo(objectMapper.readValue(JSON, Map.class));
+    assertThat(parsed)
+        .containsEntry("text", TEXT)
+        .containsEntry("count", 1234567890123L)
+        .containsEntry("ratio", -1.5e-3);
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"<html>Bad Gateway</html>", "{\"error\":", "{\"error\":}"})
+  void failsOnMalformedBodyOnlyWhenStrict(String malformedBody) {
+    List<List<ByteBuffer>> chunks =
+        List.of(List.of(ByteBuffer.wrap(malformedBody.getBytes(StandardCharsets.UTF_8))));
+
+    ExecutionException exception =
+        assertThrows(
+            ExecutionException.class,
+            () -> receive(new JsonTokensBodySubscriber(objectMapper, true), chunks));
+    assertThat(exception).hasCauseInstanceOf(JsonParseException.class);
+
+    assertThat(receiveOrNull(new JsonTokensBodySubscriber(objectMapper, false), chunks)).isNull();
+  }
+
+  @Test
+  void stopsReceivingBodyOverMaxSize() {
+    byte[] body = JSON.getBytes(StandardCharsets.UTF_8);
+    List<List<ByteBuffer>> chunks =
+        List.of(
+            List.of(ByteBuffer.wrap(body, 0, 40)),
+            List.of(ByteBuffer.wrap(body, 40, 40)),
+            List.of(ByteBuffer.wrap(body, 80, body.length - 80)));
+
+    TestSubscription strictSubscription = new TestSubscription();
+    ExecutionException exception =
+        assertThrows(
+            ExecutionException.class,
+            () ->
+                receive(
+                    new JsonTokensBodySubscriber(objectMapper, true, 60),
+                    chunks,
+                    strictSubscription));
+    assertThat(exception)
+        .hasCauseInstanceOf(IOException.class)
+        .hasMessageContaining("Body exceeds the maximum size of 60 bytes");
+    assertThat(strictSubscription.cancelled).isTrue();
+    // the last chunk is never requested
+    assertThat(strictSubscription.requested).isEqualTo(2);
+
+    TestSubscription lenientSubscription = new TestSubscription();
+    assertThat(
+            receiveOrNull(
+                new JsonTokensBodySubscriber(objectMapper, false, 60), chunks, lenientSubscription))
+        .isNull();
+    assertThat(lenientSubscription.cancelled).isTrue();
+
+    // a body of exactly the maximum size is accepted
+    assertThat(
+            receiveOrNull(
+                new JsonTokensBodySubscriber(objectMapper, true, body.length),
+                chunks,
+                new TestSubscription()))
+        .isNotNull();
+  }
+
+  @Test
+  void completesWithNoTokensOnEmptyBody() throws Exception {
+    TokenBuffer strictTokenBuffer =
+        receive(new JsonTokensBodySubscriber(objectMapper, true), List.of());
+    assertThat(strictTokenBuffer.asParser().nextToken()).isNull();
+
+    TokenBuffer emptyChunkTokenBuffer =
+        receive(
+            new JsonTokensBodySubscriber(objectMapper, false),
+            List.of(List.of(ByteBuffer.allocate(0))));
+    assertThat(emptyChunkTokenBuffer.asParser().nextToken()).isNull();
+  }
+
+  private Map<String, Object> readMap(TokenBuffer tokenBuffer) throws IOException {
+    return objectMapper.readValue(tokenBuffer.asParser(), new TypeReference<>() {});
+  }
+
+  private TokenBuffer receive(JsonTokensBodySubscriber subscriber, List<List<ByteBuffer>> chunks)
+      throws Exception {
+    return receive(subscriber, chunks, new TestSubscription());
+  }
+
+  private TokenBuffer receiveOrNull(
+      JsonTokensBodySubscriber subscriber, List<List<ByteBuffer>> chunks) {
+    return receiveOrNull(subscriber, chunks, new TestSubscription());
+  }
+
+  private TokenBuffer receiveOrNull(
+      JsonTokensBodySubscriber subscriber,
+      List<List<ByteBuffer>> chunks,
+      TestSubscription subscription) {
+    try {
+      return receive(subscriber, chunks, subscription);
+    } catch (Exception ex) {
+      throw new AssertionError(ex);
+    }
+  }
+
+  /**
+   * Delivers the chunks to the subscriber the way the HttpClient does, one chunk per request and
+   * nothing after the subscription was cancelled
+   */
+  private TokenBuffer receive(
+      JsonTokensBodySubscriber subscriber,
+      List<List<ByteBuffer>> chunks,
+      TestSubscription subscription)
+      throws Exception {
+    subscriber.onSubscribe(subscription);
+    for (List<ByteBuffer> chunk : chunks) {
+      if (subscription.cancelled) {
+        break;
+      }
+      assertThat(subscription.requested).isGreaterThan(subscription.delivered);
+      subscription.delivered++;
+      subscriber.onNext(chunk);
+    }
+    if (!subscription.cancelled) {
+      subscriber.onComplete();
+    }
+    CompletableFuture<TokenBuffer> body = subscriber.getBody().toCompletableFuture();
+    assertThat(body).isDone();
+    return body.get();
+  }
+
+  private static class TestSubscription implements Flow.Subscription {
+
+    private long requested = 0;
+    private long delivered = 0;
+    private boolean cancelled = false;
+
+    @Override
+    public void request(long n) {
+      requested += n;
+    }
+
+    @Override
+    public void cancel() {
+      cancelled = true;
+    }
+  }
+}
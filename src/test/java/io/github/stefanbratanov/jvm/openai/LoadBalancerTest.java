@@ -0,0 +1,190 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.model.HttpResponse;
+import org.mockserver.verify.VerificationTimes;
+
+class LoadBalancerTest {
+
+  private static final String MODELS = "{\"object\":\"list\",\"data\":[]}";
+  private static final String EMBEDDINGS =
+      "{\"object\":\"list\",\"data\":[],\"model\":\"text-embedding-3-small\","
+          + "\"usage\":{\"prompt_tokens\":5,\"total_tokens\":5}}";
+
+  @Test
+  void failsOverAndEjectsFailingBackend() {
+    try (ClientAndServer failingServer = ClientAndServer.startClientAndServer();
+        ClientAndServer healthyServer = ClientAndServer.startClientAndServer()) {
+      failingServer
+          .when(HttpRequest.request().withPath("/models"))
+          .respond(HttpResponse.response().withStatusCode(503));
+      healthyServer
+          .when(HttpRequest.request().withPath("/models"))
+          .respond(HttpResponse.response().withStatusCode(200).withBody(MODELS));
+
+      LoadBalancer loadBalancer =
+          LoadBalancer.newBuilder()
+              .backend("http://localhost:" + failingServer.getPort(), "key-1", "org-1")
+              .backend("http://localhost:" + healthyServer.getPort(), "key-2")
+              .failureThreshold(2)
+              .build();
+
+      ModelsClient modelsClient =
+          OpenAI.newBuilder(loadBalancer).organization("ignored").build().modelsClient();
+
+      for (int i = 0; i < 4; i++) {
+        assertThat(modelsClient.listModels()).isEmpty();
+      }
+
+      // the failing backend is ejected after two failures
+      failingServer.verify(
+          HttpRequest.request()
+              .withPath("/models")
+              .withHeader("Authorization", "Bearer key-1")
+              .withHeader("OpenAI-Organization", "org-1"),
+          VerificationTimes.exactly(2));
+      healthyServer.verify(
+          HttpRequest.request().withPath("/models").withHeader("Authorization", "Bearer key-2"),
+          VerificationTimes.exactly(4));
+
+      List<LoadBalancer.BackendStatus> backendStatuses = loadBalancer.backendStatuses();
+      assertThat(backendStatuses.get(0).ejected()).isTrue();
+      assertThat(backendStatuses.get(1).ejected()).isFalse();
+    }
+  }
+
+  @Test
+  void skipsRateLimitedBackend() {
+    try (ClientAndServer rateLimitedServer = ClientAndServer.startClientAndServer();
+        ClientAndServer server = ClientAndServer.startClientAndServer()) {
+      rateLimitedServer
+          .when(HttpRequest.request().withPath("/models"))
+          .respond(
+              HttpResponse.response()
+                  .withStatusCode(429)
+                  .withHeader("x-ratelimit-limit-requests", "100")
+                  .withHeader("x-ratelimit-remaining-requests", "0")
+                  .withHeader("x-ratelimit-reset-requests", "1m0s")
+                  .withBody(
+                      "{\"error\":{\"message\":\"Rate limit reached\",\"type\":\"requests\"}}"));
+      server
+          .when(HttpRequest.request().withPath("/models"))
+          .respond(HttpResponse.response().withStatusCode(200).withBody(MODELS));
+
+      LoadBalancer loadBalancer =
+          LoadBalancer.newBuilder()
+              .backend("http://localhost:" + rateLimitedServer.getPort(), "key-1")
+              .backend("http://localhost:" + server.getPort(), "key-2")
+              .maxAttempts(1)
+              .build();
+
+      ModelsClient modelsClient = OpenAI.newBuilder(loadBalancer).build().modelsClient();
+
+      // no failover, so the first request fails
+      OpenAIException exception = assertThrows(OpenAIException.class, modelsClient::listModels);
+      assertThat(exception.statusCode()).isEqualTo(429);
+
+      for (int i = 0; i < 3; i++) {
+        assertThat(modelsClient.listModels()).isEmpty();
+      }
+
+      rateLimitedServer.verify(HttpRequest.request(), VerificationTimes.once());
+      assertThat(loadBalancer.backendStatuses().get(0).rateLimited()).isTrue();
+    }
+  }
+
+  @Test
+  void failsOverNonIdempotentRequestsOnlyWhenNotProcessed() {
+    try (ClientAndServer failingServer = ClientAndServer.startClientAndServer();
+        ClientAndServer healthyServer = ClientAndServer.startClientAndServer()) {
+      failingServer
+          .when(HttpRequest.request().withPath("/embeddings"))
+          .respond(
+              HttpResponse.response()
+                  .withStatusCode(500)
+                  .withBody("{\"error\":{\"message\":\"Internal error\",\"type\":\"server\"}}"));
+      healthyServer
+          .when(HttpRequest.request().withPath("/embeddings"))
+          .respond(HttpResponse.response().withStatusCode(200).withBody(EMBEDDINGS));
+
+      LoadBalancer loadBalancer =
+          LoadBalancer.newBuilder()
+              .backend("http://localhost:" + failingServer.getPort(), "key-1")
+              .backend("http://localhost:" + healthyServer.getPort(), "key-2")
+              .build();
+
+      EmbeddingsClient embeddingsClient =
+          OpenAI.newBuilder(loadBalancer).build().embeddingsClient();
+      EmbeddingsRequest request =
+          EmbeddingsRequest.newBuilder().input("hello").model("text-embedding-3-small").build();
+
+      // the failing backend may have processed the request
+      OpenAIException exception =
+          assertThrows(OpenAIException.class, () -> embeddingsClient.createEmbeddings(request));
+      assertThat(exception.statusCode()).isEqualTo(500);
+      healthyServer.verify(HttpRequest.request(), VerificationTimes.never());
+
+      failingServer.reset();
+      failingServer
+          .when(HttpRequest.request().withPath("/embeddings"))
+          .respond(HttpResponse.response().withStatusCode(503));
+
+      // the failing backend rejected the request
+      assertThat(embeddingsClient.createEmbeddings(request).data()).isEmpty();
+      healthyServer.verify(HttpRequest.request(), VerificationTimes.once());
+    }
+  }
+
+  @Test
+  void doesNotFailOverOnceResponseBodyWasReceived() throws IOException {
+    // responds with a part of the body and then closes the connection
+    HttpServer failingServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    failingServer.createContext(
+        "/models",
+        exchange -> {
+          exchange.sendResponseHeaders(200, MODELS.length() * 2L);
+          exchange.getResponseBody().write(MODELS.getBytes(StandardCharsets.UTF_8));
+          exchange.getResponseBody().flush();
+          exchange.close();
+        });
+    failingServer.start();
+    try (ClientAndServer healthyServer = ClientAndServer.startClientAndServer()) {
+      healthyServer
+          .when(HttpRequest.request().withPath("/models"))
+          .respond(HttpResponse.response().withStatusCode(200).withBody(MODELS));
+
+      LoadBalancer loadBalancer =
+          LoadBalancer.newBuilder()
+              .backend("http://localhost:" + failingServer.getAddress().getPort(), "key-1")
+              .backend("http://localhost:" + healthyServer.getPort(), "key-2")
+              .build();
+
+      ModelsClient modelsClient = OpenAI.newBuilder(loadBalancer).build().modelsClient();
+
+      // a GET can be repeated, but the body handler already received a part of the response
+      assertThrows(UncheckedIOException.class, modelsClient::listModels);
+      healthyServer.verify(HttpRequest.request(), VerificationTimes.never());
+    } finally {
+      failingServer.stop(0);
+    }
+  }
+
+  @Test
+  void parsesRateLimitResetDurations() {
+    assertThat(LoadBalancer.parseDurationNanos("6m0s")).hasValue(360_000_000_000L);
+    assertThat(LoadBalancer.parseDurationNanos("1.5s")).hasValue(1_500_000_000L);
+    assertThat(LoadBalancer.parseDurationNanos("20ms")).hasValue(20_000_000L);
+    assertThat(LoadBalancer.parseDurationNanos("soon")).isEmpty();
+  }
+}
@@ -0,0 +1,232 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LongAudioTranscriberTest {
+
+  private static final int SAMPLE_RATE = 16_000;
+
+  private final ObjectMapper objectMapper = ObjectMapperSingleton.getInstance();
+
+  @TempDir Path tempDir;
+
+  @Test
+  void splitsAudioAtSilence() throws IOException {
+    // 95 seconds of tone with silence at 25-25.5s, 52-52.4s and 77-78s
+    Path audio = createWav(95, new double[][] {{25, 25.5}, {52, 52.4}, {77, 78}});
+
+    try (FileChannel channel = FileChannel.open(audio)) {
+      AudioSplitter audioSplitter = new AudioSplitter(channel);
+
+      List<AudioSplitter.Segment> segments =
+          audioSplitter.split(30 * SAMPLE_RATE, 2 * SAMPLE_RATE, 10 * SAMPLE_RATE);
+
+      assertThat(segments).hasSize(4);
+      assertThat(segments.get(0).startFrame()).isZero();
+      assertThat(toSeconds(segments.get(0).endFrame())).isBetween(25.0, 25.5);
+      assertThat(toSeconds(segments.get(1).endFrame())).isBetween(52.0, 52.4);
+      assertThat(toSeconds(segments.get(2).endFrame())).isBetween(77.0, 78.0);
+      assertThat(segments.get(3).endFrame()).isEqualTo(95 * SAMPLE_RATE);
+      for (int i = 1; i < segments.size(); i++) {
+        assertThat(segments.get(i).startFrame())
+            .isEqualTo(segments.get(i - 1).endFrame() - 2 * SAMPLE_RATE);
+      }
+
+      AudioSplitter.Segment segment = segments.get(1);
+      byte[] wav = audioSplitter.readSegment(segment);
+      long expectedDataSize = (segment.endFrame() - segment.startFrame()) * 2;
+
+      assertThat(wav).hasSize((int) (AudioSplitter.WAV_HEADER_SIZE + expectedDataSize));
+      assertThat(new String(wav, 0, 4, StandardCharsets.US_ASCII)).isEqualTo("RIFF");
+      assertThat(ByteBuffer.wrap(wav, 40, 4).order(ByteOrder.LITTLE_ENDIAN).getInt())
+          .isEqualTo(expectedDataSize);
+    }
+  }
+
+  @Test
+  void splitsAudioAtFixedBoundaries() throws IOException {
+    Path audio = createWav(95, new double[0][]);
+
+    try (FileChannel channel = FileChannel.open(audio)) {
+      List<AudioSplitter.Segment> segments =
+          new AudioSplitter(channel).split(30 * SAMPLE_RATE, 2 * SAMPLE_RATE, 0);
+
+      assertThat(segments)
+          .containsExactly(
+              new AudioSplitter.Segment(0, 0, 30 * SAMPLE_RATE),
+              new AudioSplitter.Segment(1, 28 * SAMPLE_RATE, 58 * SAMPLE_RATE),
+              new AudioSplitter.Segment(2, 56 * SAMPLE_RATE, 86 * SAMPLE_RATE),
+              new AudioSplitter.Segment(3, 84 * SAMPLE_RATE, 95 * SAMPLE_RATE));
+    }
+  }
+
+  @Test
+  void splitsOnlyExtensibleWavWithPcmSubFormat() throws IOException {
+    Path pcm = createExtensibleWav(UUID.fromString("00000001-0000-0010-8000-00aa00389b71"));
+
+    try (FileChannel channel = FileChannel.open(pcm)) {
+      AudioSplitter audioSplitter = new AudioSplitter(channel);
+
+      List<AudioSplitter.Segment> segments = audioSplitter.split(SAMPLE_RATE, 0, 0);
+
+      assertThat(segments).containsExactly(new AudioSplitter.Segment(0, 0, SAMPLE_RATE));
+    }
+
+    // IEEE float
+    Path ieeeFloat = createExtensibleWav(UUID.fromString("00000003-0000-0010-8000-00aa00389b71"));
+
+    try (FileChannel channel = FileChannel.open(ieeeFloat)) {
+      IllegalArgumentException exception =
+          assertThrows(IllegalArgumentException.class, () -> new AudioSplitter(channel));
+      assertThat(exception).hasMessage("Only WAV files containing PCM audio can be split");
+    }
+  }
+
+  @Test
+  void stitchesTextRemovingOverlappingWords() {
+    String stitched =
+        new TranscriptStitcher()
+            .stitch(
+                "text",
+                List.of("The quick brown fox jumps", "fox jumps over the lazy dog."),
+                new double[] {0, 28},
+                new double[] {29},
+                60);
+
+    assertThat(stitched).isEqualTo("The quick brown fox jumps over the lazy dog.");
+  }
+
+  @Test
+  void stitchesTextKeepingWhitespace() {
+    String stitched =
+        new TranscriptStitcher()
+            .stitch(
+                "text",
+                List.of("First line.\nThe quick  brown fox", "brown fox jumps.\n\nNew paragraph."),
+                new double[] {0, 28},
+                new double[] {29},
+                60);
+
+    assertThat(stitched).isEqualTo("First line.\nThe quick  brown fox jumps.\n\nNew paragraph.");
+  }
+
+  @Test
+  void stitchesVerboseJsonShiftingTimestamps() throws IOException {
+    String first =
+        """
+        {"task":"transcribe","language":"english","duration":30.0,"text":"Hello there.",
+        "segments":[{"id":0,"seek":0,"start":0.0,"end":2.0,"text":" Hello"},
+        {"id":1,"seek":0,"start":28.5,"end":30.0,"text":" there."}]}
+        """;
+    String second =
+        """
+        {"task":"transcribe","language":"english","duration":30.0,"text":"there. General Kenobi.",
+        "segments":[{"id":0,"seek":0,"start":0.5,"end":2.0,"text":" there."},
+        {"id":1,"seek":0,"start":3.0,"end":5.0,"text":" General Kenobi."}]}
+        """;
+
+    String stitched =
+        new TranscriptStitcher()
+            .stitch(
+                "verbose_json",
+                List.of(first, second),
+                new double[] {0, 28},
+                new double[] {29},
+                58);
+
+    JsonNode transcript = objectMapper.readTree(stitched);
+
+    assertThat(transcript.get("language").asText()).isEqualTo("english");
+    assertThat(transcript.get("duration").asDouble()).isEqualTo(58);
+    assertThat(transcript.get("text").asText()).isEqualTo("Hello there. General Kenobi.");
+    JsonNode segments = transcript.get("segments");
+    assertThat(segments).hasSize(3);
+    assertThat(segments.get(1).get("start").asDouble()).isEqualTo(28.5);
+    assertThat(segments.get(2).get("id").asInt()).isEqualTo(2);
+    assertThat(segments.get(2).get("start").asDouble()).isEqualTo(31);
+    assertThat(segments.get(2).get("end").asDouble()).isEqualTo(33);
+    assertThat(segments.get(2).get("seek").asLong()).isEqualTo(2800);
+  }
+
+  private Path createWav(int seconds, double[][] silences) throws IOException {
+    int dataSize = seconds * SAMPLE_RATE * 2;
+    ByteBuffer wav =
+        ByteBuffer.allocate(AudioSplitter.WAV_HEADER_SIZE + dataSize)
+            .order(ByteOrder.LITTLE_ENDIAN);
+    wav.put("RIFF".getBytes(StandardCharsets.US_ASCII))
+        .putInt(AudioSplitter.WAV_HEADER_SIZE - 8 + dataSize)
+        .put("WAVE".getBytes(StandardCharsets.US_ASCII))
+        .put("fmt ".getBytes(StandardCharsets.US_ASCII))
+        .putInt(16)
+        .putShort((short) 1)
+        .putShort((short) 1)
+        .putInt(SAMPLE_RATE)
+        .putInt(SAMPLE_RATE * 2)
+        .putShort((short) 2)
+        .putShort((short) 16)
+        .put("data".getBytes(StandardCharsets.US_ASCII))
+        .putInt(dataSize);
+    for (int frame = 0; frame < seconds * SAMPLE_RATE; frame++) {
+      double second = toSeconds(frame);
+      boolean silent = false;
+      for (double[] silence : silences) {
+        silent |= second >= silence[0] && second < silence[1];
+      }
+      wav.putShort(silent ? 0 : (short) (8000 * Math.sin(frame * 0.3)));
+    }
+    Path audio = tempDir.resolve("audio.wav");
+    Files.write(audio, wav.array());
+    return audio;
+  }
+
+  /** Creates one second of 32-bit stereo audio in the WAVE_FORMAT_EXTENSIBLE format */
+  private Path createExtensibleWav(UUID subFormat) throws IOException {
+    int dataSize = SAMPLE_RATE * 8;
+    ByteBuffer wav = ByteBuffer.allocate(68 + dataSize).order(ByteOrder.LITTLE_ENDIAN);
+    wav.put("RIFF".getBytes(StandardCharsets.US_ASCII))
+        .putInt(60 + dataSize)
+        .put("WAVE".getBytes(StandardCharsets.US_ASCII))
+        .put("fmt ".getBytes(StandardCharsets.US_ASCII))
+        .putInt(40)
+        .putShort((short) 0xFFFE)
+        .putShort((short) 2)
+        .putInt(SAMPLE_RATE)
+        .putInt(SAMPLE_RATE * 8)
+        .putShort((short) 8)
+        .putShort((short) 32)
+        .putShort((short) 22)
+        .putShort((short) 32)
+        // front left and front right
+        .putInt(3)
+        .putInt((int) (subFormat.getMostSignificantBits() >>> 32))
+        .putShort((short) (subFormat.getMostSignificantBits() >>> 16))
+        .putShort((short) subFormat.getMostSignificantBits())
+        .order(ByteOrder.BIG_ENDIAN)
+        .putLong(subFormat.getLeastSignificantBits())
+        .order(ByteOrder.LITTLE_ENDIAN)
+        .put("data".getBytes(StandardCharsets.US_ASCII))
+        .putInt(dataSize);
+    Path audio = tempDir.resolve("extensible.wav");
+    Files.write(audio, wav.array());
+    return audio;
+  }
+
+  private double toSeconds(long frame) {
+    return (double) frame / SAMPLE_RATE;
+  }
+}
@@ -0,0 +1,72 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ModerationColumnarFileTest {
+
+  private final Random random = new Random();
+
+  @TempDir Path tempDir;
+
+  @Test
+  void writesAndReadsResults() {
+    Path file = tempDir.resolve("moderations.bin");
+    // more than a single row group
+    List<CompactModerationResult> results = new ArrayList<>();
+    for (int i = 0; i < ModerationColumnarFile.ROW_GROUP_SIZE + 10; i++) {
+      results.add(randomResult());
+    }
+
+    try (ModerationColumnarFile.Writer writer = ModerationColumnarFile.newWriter(file)) {
+      results.forEach(writer::write);
+    }
+
+    List<ModerationColumnarFile.RowGroup> rowGroups;
+    try (ModerationColumnarFile.Reader reader = ModerationColumnarFile.newReader(file)) {
+      rowGroups = reader.rowGroups().toList();
+    }
+
+    assertThat(rowGroups)
+        .extracting(ModerationColumnarFile.RowGroup::size)
+        .containsExactly(ModerationColumnarFile.ROW_GROUP_SIZE, 10);
+    List<CompactModerationResult> readResults = new ArrayList<>();
+    for (ModerationColumnarFile.RowGroup rowGroup : rowGroups) {
+      for (int row = 0; row < rowGroup.size(); row++) {
+        readResults.add(rowGroup.get(row));
+      }
+    }
+    assertThat(readResults).isEqualTo(results);
+    assertThat(rowGroups.get(1).scores(ModerationCategory.VIOLENCE))
+        .containsExactly(
+            results.subList(ModerationColumnarFile.ROW_GROUP_SIZE, results.size()).stream()
+                .mapToDouble(result -> result.score(ModerationCategory.VIOLENCE))
+                .toArray());
+  }
+
+  @Test
+  void rejectsInvalidFile() throws IOException {
+    Path file = Files.writeString(tempDir.resolve("invalid.bin"), "not a columnar file");
+
+    assertThrows(UncheckedIOException.class, () -> ModerationColumnarFile.newReader(file));
+  }
+
+  private CompactModerationResult randomResult() {
+    double[] scores = new double[ModerationCategory.values().length];
+    for (int i = 0; i < scores.length; i++) {
+      scores[i] = random.nextDouble();
+    }
+    int categoryFlags = random.nextInt(1 << scores.length);
+    return new CompactModerationResult(categoryFlags != 0, categoryFlags, scores);
+  }
+}
@@ -0,0 +1,78 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.jupiter.api.Test;
+
+class ModerationGatewayTest {
+
+  private final List<ModerationRequest> requests = new CopyOnWriteArrayList<>();
+
+  @Test
+  void batchesAndCachesInputs() {
+    ModerationGateway gateway =
+        new ModerationGateway.Builder(this::createModeration)
+            .maxBatchSize(3)
+            .maxBatchDelay(Duration.ofMinutes(1))
+            .build();
+
+    CompletableFuture<Moderation.Result> first = gateway.moderate("hello");
+    CompletableFuture<Moderation.Result> second = gateway.moderate("something bad");
+    CompletableFuture<Moderation.Result> duplicate = gateway.moderate("hello");
+
+    // the duplicate doesn't count towards the batch
+    assertThat(requests).isEmpty();
+
+    CompletableFuture<Moderation.Result> third = gateway.moderate("bye");
+
+    assertThat(requests)
+        .singleElement()
+        .extracting(ModerationRequest::input)
+        .isEqualTo(List.of("hello", "something bad", "bye"));
+    assertThat(first.join().flagged()).isFalse();
+    assertThat(second.join().flagged()).isTrue();
+    assertThat(third.join().flagged()).isFalse();
+    assertThat(duplicate.join()).isEqualTo(first.join());
+
+    assertThat(gateway.moderate("something bad").join().flagged()).isTrue();
+    assertThat(requests).hasSize(1);
+  }
+
+  @Test
+  void sendsIncompleteBatchAfterDelay() {
+    ModerationGateway gateway =
+        new ModerationGateway.Builder(this::createModeration)
+            .maxBatchDelay(Duration.ofMillis(10))
+            .build();
+
+    assertThat(gateway.moderate("something bad"))
+        .succeedsWithin(Duration.ofSeconds(5))
+        .satisfies(result -> assertThat(result.flagged()).isTrue());
+    assertThat(requests).hasSize(1);
+  }
+
+  @Test
+  void doesNotCacheFailures() {
+    ModerationGateway gateway =
+        new ModerationGateway.Builder(
+                request -> CompletableFuture.failedFuture(new OpenAIException(500, null)))
+            .maxBatchSize(1)
+            .build();
+
+    assertThat(gateway.moderate("hello")).failsWithin(Duration.ofSeconds(5));
+    assertThat(gateway.cacheSize()).isZero();
+  }
+
+  private CompletableFuture<Moderation> createModeration(ModerationRequest request) {
+    requests.add(request);
+    List<Moderation.Result> results =
+        request.input().stream()
+            .map(input -> new Moderation.Result(input.contains("bad"), null, null))
+            .toList();
+    return CompletableFuture.completedFuture(new Moderation("modr-123", "model", results));
+  }
+}
@@ -5,20 +5,30 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import io.github.stefanbratanov.jvm.openai.ChatMessage.UserMessage.UserMessageWithContentParts.ContentPart.TextContentPart;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.UncheckedIOException;
 import java.net.http.HttpTimeoutException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
+import java.util.Base64;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import org.mockserver.integration.ClientAndServer;
 import org.mockserver.model.*;
+import org.mockserver.verify.VerificationTimes;
 
 class OpenAIIntegrationTest extends OpenAIIntegrationTestBase {
 
@@ -187,6 +197,14 @@ class OpenAIIntegrationTest extends OpenAIIntegrationTestBase {
 
     assertThat(speech).exists().isNotEmptyFile();
 
+    // test streaming
+    ByteArrayOutputStream streamedSpeech = new ByteArrayOutputStream();
+
+    StreamMetrics streamMetrics = audioClient.createSpeech(speechRequest, streamedSpeech);
+
+    assertThat(streamMetrics.bytes()).isPositive().isEqualTo(streamedSpeech.size());
+    assertThat(streamMetrics.timeToFirstByte()).isLessThanOrEqualTo(streamMetrics.duration());
+
     TranscriptionRequest transcriptionRequest =
         TranscriptionRequest.newBuilder()
             .file(speech)
@@ -253,6 +271,70 @@ class OpenAIIntegrationTest extends OpenAIIntegrationTestBase {
                 assertThat(imageVariations.data()).isNotEmpty().allMatch(Objects::nonNull));
   }
 
+  @Test // using mock server because image models are costly
+  void testDecodingImages(@TempDir Path tempDir) {
+    try (ClientAndServer mockServer = ClientAndServer.startClientAndServer()) {
+      byte[] firstImage = "first image".getBytes(StandardCharsets.UTF_8);
+      byte[] secondImage = "second image".getBytes(StandardCharsets.UTF_8);
+      mockServer
+          .when(HttpRequest.request().withPath("/images/generations"))
+          .respond(
+              HttpResponse.response()
+                  .withStatusCode(200)
+                  .withBody(
+                      JsonBody.json(
+                          String.format(
+                              "{\"created\":1589478378,\"data\":[{\"b64_json\":\"%s\",\"revised_prompt\":\"A duck\"},{\"b64_json\":\"%s\"}]}",
+                              Base64.getEncoder().encodeToString(firstImage),
+                              Base64.getEncoder().encodeToString(secondImage)))));
+
+      ImagesClient imagesClient =
+          OpenAI.newBuilder("foobar")
+              .baseUrl("http://localhost:" + mockServer.getPort())
+              .build()
+              .imagesClient();
+
+      CreateImageRequest request =
+          CreateImageRequest.newBuilder()
+              .prompt("Create a duck dressed up as superman")
+              .responseFormat("b64_json")
+              .n(2)
+              .build();
+
+      Images images = imagesClient.createImage(request, tempDir);
+
+      assertThat(images.created()).isEqualTo(1589478378);
+      assertThat(images.data())
+          .containsExactly(
+              new Images.Image(null, null, "A duck"), new Images.Image(null, null, null));
+      assertThat(tempDir.resolve("image-0.png")).hasBinaryContent(firstImage);
+      assertThat(tempDir.resolve("image-1.png")).hasBinaryContent(secondImage);
+
+      List<ByteArrayOutputStream> outputStreams =
+          List.of(new ByteArrayOutputStream(), new ByteArrayOutputStream());
+      imagesClient.createImage(request, index -> Channels.newChannel(outputStreams.get(index)));
+
+      assertThat(outputStreams.get(0).toByteArray()).isEqualTo(firstImage);
+      assertThat(outputStreams.get(1).toByteArray()).isEqualTo(secondImage);
+
+      CreateImageRequest urlRequest =
+          CreateImageRequest.newBuilder()
+              .prompt("Create a duck dressed up as superman")
+              .responseFormat("url")
+              .build();
+
+      assertThrows(
+          IllegalArgumentException.class, () -> imagesClient.createImage(urlRequest, tempDir));
+
+      CreateImageRequest defaultFormatRequest =
+          CreateImageRequest.newBuilder().prompt("Create a duck dressed up as superman").build();
+
+      assertThrows(
+          IllegalArgumentException.class,
+          () -> imagesClient.createImage(defaultFormatRequest, tempDir));
+    }
+  }
+
   @Test
   void testModerationsClient() {
     ModerationsClient moderationsClient = openAI.moderationsClient();
@@ -265,6 +347,18 @@ class OpenAIIntegrationTest extends OpenAIIntegrationTestBase {
     assertThat(moderation.results())
         .hasSize(1)
         .allSatisfy(result -> assertThat(result.flagged()).isTrue());
+
+    ModerationGateway moderationGateway = ModerationGateway.newBuilder(moderationsClient).build();
+
+    CompletableFuture<Moderation.Result> first = moderationGateway.moderate("I want to kill them.");
+    CompletableFuture<Moderation.Result> second = moderationGateway.moderate("I love puppies.");
+
+    assertThat(first)
+        .succeedsWithin(Duration.ofMinutes(1))
+        .satisfies(result -> assertThat(result.flagged()).isTrue());
+    assertThat(second)
+        .succeedsWithin(Duration.ofMinutes(1))
+        .satisfies(result -> assertThat(result.flagged()).isFalse());
   }
 
   @Test
@@ -299,11 +393,138 @@ class OpenAIIntegrationTest extends OpenAIIntegrationTestBase {
 
     assertThat(uploadedFiles).contains(uploadedFile);
 
+    try (Stream<File> streamedFiles = filesClient.streamFiles()) {
+      assertThat(streamedFiles).contains(uploadedFile);
+    }
+
     File retrievedFile = filesClient.retrieveFile(uploadedFile.id());
 
     assertThat(retrievedFile).isEqualTo(uploadedFile);
   }
 
+  @Test // using mock server because files with purpose "fine-tune" can't be downloaded
+  void testRetrievingFileContent(@TempDir Path tempDir) throws IOException {
+    try (ClientAndServer mockServer = ClientAndServer.startClientAndServer()) {
+      String content = "{\"a\":1}\n{\"a\":2}\n";
+      mockServer
+          .when(HttpRequest.request().withPath("/files/file-abc123"))
+          .respond(
+              HttpResponse.response()
+                  .withStatusCode(200)
+                  .withBody(
+                      "{\"id\":\"file-abc123\",\"bytes\":"
+                          + content.length()
+                          + ",\"filename\":\"mydata.jsonl\",\"purpose\":\"batch_output\"}"));
+      mockServer
+          .when(HttpRequest.request().withPath("/files/file-abc123/content").withHeader("Range"))
+          .respond(HttpResponse.response().withStatusCode(206).withBody(content.substring(4)));
+      mockServer
+          .when(HttpRequest.request().withPath("/files/file-abc123/content"))
+          .respond(HttpResponse.response().withStatusCode(200).withBody(content));
+      mockServer
+          .when(HttpRequest.request().withPath("/files/file-missing/content"))
+          .respond(
+              HttpResponse.response()
+                  .withStatusCode(404)
+                  .withBody(
+                      "{\"error\":{\"message\":\"No such File object: file-missing\",\"type\":\"invalid_request_error\"}}"));
+
+      FilesClient filesClient =
+          OpenAI.newBuilder("foobar")
+              .baseUrl("http://localhost:" + mockServer.getPort())
+              .build()
+              .filesClient();
+
+      Path output = filesClient.retrieveFileContent("file-abc123", tempDir.resolve("output.jsonl"));
+      assertThat(output).hasContent(content);
+
+      // resume a partial download
+      Files.writeString(output, content.substring(0, 4));
+      filesClient.resumeFileContentRetrieval("file-abc123", output);
+      assertThat(output).hasContent(content);
+
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      long bytesWritten =
+          filesClient.retrieveFileContent("file-abc123", Channels.newChannel(outputStream));
+      assertThat(bytesWritten).isEqualTo(content.length());
+      assertThat(outputStream.toString(StandardCharsets.UTF_8)).isEqualTo(content);
+
+      try (InputStream inputStream = filesClient.retrieveFileContentAsInputStream("file-abc123")) {
+        assertThat(inputStream).hasContent(content);
+      }
+
+      try (Stream<Map> lines =
+          filesClient.retrieveFileContentAsJsonLines("file-abc123", Map.class)) {
+        assertThat(lines).containsExactly(Map.of("a", 1), Map.of("a", 2));
+      }
+
+      // error response is not written to the file
+      OpenAIException exception =
+          assertThrows(
+              OpenAIException.class,
+              () -> filesClient.retrieveFileContent("file-missing", output));
+      assertThat(exception.statusCode()).isEqualTo(404);
+      assertThat(exception.errorMessage()).isEqualTo("No such File object: file-missing");
+      assertThat(output).hasContent(content);
+    }
+  }
+
+  @Test // using mock server to check how the file is split into parts
+  void testUploadsClient(@TempDir Path tempDir) throws IOException {
+    try (ClientAndServer mockServer = ClientAndServer.startClientAndServer()) {
+      String upload =
+          "{\"id\":\"upload_abc123\",\"object\":\"upload\",\"bytes\":25,\"created_at\":1719184911,\"filename\":\"mydata.jsonl\",\"purpose\":\"fine-tune\",\"status\":\"%s\",\"expires_at\":1719127296%s}";
+      mockServer
+          .when(HttpRequest.request().withMethod("POST").withPath("/uploads"))
+          .respond(
+              HttpResponse.response()
+                  .withStatusCode(200)
+                  .withBody(upload.formatted("pending", "")));
+      mockServer
+          .when(HttpRequest.request().withPath("/uploads/upload_abc123/parts"))
+          .respond(
+              HttpResponse.response()
+                  .withStatusCode(200)
+                  .withBody(
+                      "{\"id\":\"part_def456\",\"object\":\"upload.part\",\"created_at\":1719185911,\"upload_id\":\"upload_abc123\"}"));
+      mockServer
+          .when(HttpRequest.request().withPath("/uploads/upload_abc123/complete"))
+          .respond(
+              HttpResponse.response()
+                  .withStatusCode(200)
+                  .withBody(
+                      upload.formatted(
+                          "completed",
+                          ",\"file\":{\"id\":\"file-xyz321\",\"bytes\":25,\"filename\":\"mydata.jsonl\",\"purpose\":\"fine-tune\"}")));
+
+      UploadsClient uploadsClient =
+          OpenAI.newBuilder("foobar")
+              .baseUrl("http://localhost:" + mockServer.getPort())
+              .build()
+              .uploadsClient();
+
+      Path file = Files.writeString(tempDir.resolve("mydata.jsonl"), "a".repeat(25));
+
+      UploadFileRequest request =
+          UploadFileRequest.newBuilder().file(file).purpose("fine-tune").build();
+
+      Upload completedUpload = uploadsClient.uploadFileInParts(request, 10, 2);
+
+      assertThat(completedUpload.status()).isEqualTo("completed");
+      assertThat(completedUpload.file().id()).isEqualTo("file-xyz321");
+
+      mockServer.verify(
+          HttpRequest.request().withPath("/uploads/upload_abc123/parts"),
+          VerificationTimes.exactly(3));
+      mockServer.verify(
+          HttpRequest.request()
+              .withPath("/uploads/upload_abc123/complete")
+              .withBody(
+                  JsonBody.json(
+                      "{\"part_ids\":[\"part_def456\",\"part_def456\",\"part_def456\"],\"md5\":\"a5a8bfa3962f49330227955e24a2e67c\"}")));
+    }
+  }
+
   @Test // using mock server because fine-tuning models are costly
   void testFineTuningClient() {
     FineTuningClient fineTuningClient = openAIWithMockServer.fineTuningClient();
@@ -344,4 +565,111 @@ class OpenAIIntegrationTest extends OpenAIIntegrationTestBase {
 
     assertThat(cancelledFineTuningJob).isNotNull();
   }
+
+  @Test // using mock server because batches can take up to 24 hours to complete
+  void testBatchClient(@TempDir Path tempDir) {
+    try (ClientAndServer mockServer = ClientAndServer.startClientAndServer()) {
+      String batch =
+          "{\"id\":\"batch_abc123\",\"object\":\"batch\",\"endpoint\":\"/v1/chat/completions\",\"input_file_id\":\"file-abc123\",\"completion_window\":\"24h\",\"status\":\"%s\",\"created_at\":1711471533%s}";
+      mockServer
+          .when(HttpRequest.request().withMethod("POST").withPath("/files"))
+          .respond(
+              HttpResponse.response()
+                  .withStatusCode(200)
+                  .withBody(
+                      "{\"id\":\"file-abc123\",\"object\":\"file\",\"bytes\":120000,\"created_at\":1677610602,\"filename\":\"batch-input-0.jsonl\",\"purpose\":\"batch\"}"));
+      mockServer
+          .when(HttpRequest.request().withMethod("POST").withPath("/batches"))
+          .respond(
+              HttpResponse.response()
+                  .withStatusCode(200)
+                  .withBody(batch.formatted("validating", "")));
+      mockServer
+          .when(HttpRequest.request().withMethod("GET").withPath("/batches/batch_abc123"))
+          .respond(
+              HttpResponse.response()
+                  .withStatusCode(200)
+                  .withBody(
+                      batch.formatted(
+                          "completed",
+                          ",\"output_file_id\":\"file-cvaTdG\",\"error_file_id\":\"file-HOWS94\",\"request_counts\":{\"total\":2,\"completed\":1,\"failed\":1}")));
+      mockServer
+          .when(HttpRequest.request().withPath("/files/file-cvaTdG/content"))
+          .respond(
+              HttpResponse.response()
+                  .withStatusCode(200)
+                  .withBody(
+                      "{\"id\":\"batch_req_1\",\"custom_id\":\"request-2\",\"response\":{\"status_code\":200,\"request_id\":\"req_1\",\"body\":{\"id\":\"chatcmpl-123\",\"object\":\"chat.completion\",\"created\":1711475054,\"model\":\"gpt-3.5-turbo\",\"choices\":[{\"index\":0,\"message\":{\"role\":\"assistant\",\"content\":\"Hello.\"},\"finish_reason\":\"stop\"}]}},\"error\":null}\n"));
+      mockServer
+          .when(HttpRequest.request().withPath("/files/file-HOWS94/content"))
+          .respond(
+              HttpResponse.response()
+                  .withStatusCode(200)
+                  .withBody(
+                      "{\"id\":\"batch_req_2\",\"custom_id\":\"request-1\",\"response\":{\"status_code\":400,\"request_id\":\"req_2\",\"body\":{\"error\":{\"message\":\"The model does not exist\",\"type\":\"invalid_request_error\",\"code\":\"model_not_found\"}}},\"error\":null}\n"));
+
+      BatchClient batchClient =
+          OpenAI.newBuilder("foobar")
+              .baseUrl("http://localhost:" + mockServer.getPort())
+              .build()
+              .batchClient();
+
+      BatchInputWriter<CreateChatCompletionRequest> input =
+          BatchInputWriter.forChatCompletions(tempDir);
+      try (input) {
+        input.write(
+            "request-1",
+            CreateChatCompletionRequest.newBuilder()
+                .model("gpt-foo")
+                .message(ChatMessage.userMessage("Hello world!"))
+                .build());
+        input.write(
+            "request-2",
+            CreateChatCompletionRequest.newBuilder()
+                .model("gpt-3.5-turbo")
+                .message(ChatMessage.userMessage("Hello world!"))
+                .build());
+      }
+
+      List<Batch> batches = batchClient.submitBatches(input, Map.of("job", "nightly"));
+
+      assertThat(batches).singleElement().extracting(Batch::status).isEqualTo("validating");
+
+      mockServer.verify(
+          HttpRequest.request()
+              .withPath("/batches")
+              .withBody(
+                  JsonBody.json(
+                      "{\"input_file_id\":\"file-abc123\",\"endpoint\":\"/v1/chat/completions\",\"completion_window\":\"24h\",\"metadata\":{\"job\":\"nightly\"}}")));
+
+      List<Batch> completedBatches = batchClient.awaitBatches(batches, Duration.ofMillis(10));
+
+      assertThat(completedBatches)
+          .singleElement()
+          .satisfies(
+              completedBatch -> {
+                assertThat(completedBatch.status()).isEqualTo("completed");
+                assertThat(completedBatch.requestCounts())
+                    .isEqualTo(new Batch.RequestCounts(2, 1, 1));
+              });
+
+      Map<String, BatchResult<ChatCompletion>> results;
+      try (Stream<BatchResult<ChatCompletion>> resultsStream =
+          batchClient.streamBatchResults(completedBatches, ChatCompletion.class)) {
+        results =
+            resultsStream.collect(Collectors.toMap(BatchResult::customId, result -> result));
+      }
+
+      assertThat(results).containsOnlyKeys("request-1", "request-2");
+      assertThat(results.get("request-2").isSuccessful()).isTrue();
+      assertThat(results.get("request-2").response())
+          .hasValueSatisfying(
+              response ->
+                  assertThat(response.body().choices().get(0).message().content())
+                      .isEqualTo("Hello."));
+      assertThat(results.get("request-1").isSuccessful()).isFalse();
+      assertThat(results.get("request-1").error())
+          .hasValue(new BatchResult.Error("model_not_found", "The model does not exist"));
+    }
+  }
 }
@@ -127,6 +127,53 @@ class OpenApiSpecificationValidationTest {
     validate("/" + Endpoint.FILES.getPath() + "/{file_id}", Method.GET, response);
   }
 
+  @RepeatedTest(50)
+  void validateUploads() {
+    CreateUploadRequest createUploadRequest = testDataUtil.randomCreateUploadRequest();
+
+    Request request =
+        createRequestWithBody(
+            Method.POST, "/" + Endpoint.UPLOADS.getPath(), serializeObject(createUploadRequest));
+
+    Upload upload = testDataUtil.randomUpload();
+
+    Response response = createResponseWithBody(serializeObject(upload));
+
+    validate(request, response);
+
+    CompleteUploadRequest completeUploadRequest = testDataUtil.randomCompleteUploadRequest();
+
+    request =
+        createRequestWithBody(
+            Method.POST,
+            "/" + Endpoint.UPLOADS.getPath() + "/{upload_id}/complete",
+            serializeObject(completeUploadRequest));
+
+    validate(request, response);
+    // can't validate multipart/form-data so won't validate adding parts
+  }
+
+  @RepeatedTest(50)
+  void validateBatch() {
+    CreateBatchRequest createBatchRequest = testDataUtil.randomCreateBatchRequest();
+
+    Request request =
+        createRequestWithBody(
+            Method.POST, "/" + Endpoint.BATCHES.getPath(), serializeObject(createBatchRequest));
+
+    Batch batch = testDataUtil.randomBatch();
+
+    Response response = createResponseWithBody(serializeObject(batch));
+
+    validate(request, response);
+
+    BatchClient.PaginatedBatches paginatedBatches = testDataUtil.randomPaginatedBatches();
+
+    Response listBatchesResponse = createResponseWithBody(serializeObject(paginatedBatches));
+
+    validate("/" + Endpoint.BATCHES.getPath(), Method.GET, listBatchesResponse);
+  }
+
   @RepeatedTest(50)
   void validateImages() {
     CreateImageRequest createImageRequest = testDataUtil.randomCreateImageRequest();
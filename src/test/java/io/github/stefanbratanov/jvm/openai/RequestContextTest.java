@@ -0,0 +1,99 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.UncheckedIOException;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.model.Delay;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.model.HttpResponse;
+import org.mockserver.verify.VerificationTimes;
+
+class RequestContextTest {
+
+  private ClientAndServer mockServer;
+  private ModerationsClient moderationsClient;
+
+  private final ModerationRequest request =
+      ModerationRequest.newBuilder().input("I want to kill them.").build();
+
+  @BeforeEach
+  void setUp() {
+    mockServer = ClientAndServer.startClientAndServer();
+    mockServer
+        .when(HttpRequest.request().withPath("/moderations"))
+        .respond(
+            HttpResponse.response()
+                .withStatusCode(200)
+                .withBody(
+                    "{\"id\":\"modr-XXXXX\",\"model\":\"text-moderation-007\",\"results\":[]}")
+                .withDelay(Delay.seconds(5)));
+    moderationsClient =
+        OpenAI.newBuilder("foobar")
+            .baseUrl("http://localhost:" + mockServer.getPort())
+            .build()
+            .moderationsClient();
+  }
+
+  @AfterEach
+  void tearDown() {
+    mockServer.close();
+  }
+
+  @Test
+  void callsFailOnceTheDeadlinePasses() {
+    RequestContext context = RequestContext.withTimeout(Duration.ofMillis(200));
+
+    long startNanos = System.nanoTime();
+    UncheckedIOException exception =
+        assertThrows(
+            UncheckedIOException.class,
+            () -> context.call(() -> moderationsClient.createModeration(request)));
+    assertThat(exception).hasCauseInstanceOf(HttpTimeoutException.class);
+    assertThat(Duration.ofNanos(System.nanoTime() - startNanos)).isLessThan(Duration.ofSeconds(2));
+    assertThat(context.isExpired()).isTrue();
+
+    // no request is sent after the deadline
+    CompletableFuture<Moderation> moderation =
+        context.call(() -> moderationsClient.createModerationAsync(request));
+    CompletionException completionException =
+        assertThrows(CompletionException.class, moderation::join);
+    assertThat(completionException).hasCauseInstanceOf(HttpTimeoutException.class);
+
+    mockServer.verify(HttpRequest.request().withPath("/moderations"), VerificationTimes.once());
+  }
+
+  @Test
+  void cancellingTheContextAbortsTheCallsInFlight() {
+    RequestContext context = RequestContext.withoutDeadline();
+    CompletableFuture.delayedExecutor(200, TimeUnit.MILLISECONDS).execute(context::cancel);
+
+    long startNanos = System.nanoTime();
+    assertThrows(
+        CancellationException.class,
+        () -> context.call(() -> moderationsClient.createModeration(request)));
+    assertThat(Duration.ofNanos(System.nanoTime() - startNanos)).isLessThan(Duration.ofSeconds(2));
+    assertThat(context.isCancelled()).isTrue();
+  }
+
+  @Test
+  void cancellingDependentStagesCancelsTheExchange() {
+    CompletableFuture<String> exchange = new CompletableFuture<>();
+
+    CompletableFuture<Integer> dependent =
+        CancellableFuture.of(exchange).thenApply(String::length).thenApply(length -> length * 2);
+
+    assertThat(dependent.cancel(true)).isTrue();
+    assertThat(exchange).isCancelled();
+  }
+}
@@ -0,0 +1,98 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import io.github.stefanbratanov.jvm.openai.RequestScheduler.Priority;
+import io.github.stefanbratanov.jvm.openai.RequestScheduler.Ticket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import org.junit.jupiter.api.Test;
+
+class RequestSchedulerTest {
+
+  @Test
+  void higherPrioritiesGoFirstAndTenantsTakeTurns() {
+    RequestScheduler scheduler =
+        RequestScheduler.newBuilder().maxConcurrentRequests(1).tenantWeight("a", 2).build();
+
+    CompletableFuture<Ticket> first = scheduler.enqueue(Priority.BULK, Optional.empty(), "");
+    assertThat(first).isCompleted();
+
+    List<String> admitted = new ArrayList<>();
+    for (String user : List.of("a", "a", "a", "b", "b")) {
+      enqueue(scheduler, Priority.BULK, user, admitted);
+    }
+    enqueue(scheduler, Priority.INTERACTIVE, "c", admitted);
+    assertThat(scheduler.queuedRequests(Priority.BULK)).isEqualTo(5);
+    assertThat(scheduler.queuedRequests(Priority.INTERACTIVE)).isEqualTo(1);
+
+    scheduler.release(first.join(), Optional.of(200));
+
+    assertThat(admitted).containsExactly("c", "a", "a", "b", "a", "b");
+    assertThat(scheduler.requestsInFlight()).isZero();
+  }
+
+  @Test
+  void requestsAreShedWhenTheQueueIsFullOrTheyWaitTooLong() {
+    RequestScheduler scheduler =
+        RequestScheduler.newBuilder()
+            .maxConcurrentRequests(1)
+            .maxQueueSize(Priority.INTERACTIVE, 1)
+            .maxQueueTime(Priority.INTERACTIVE, Duration.ofMillis(100))
+            .build();
+
+    String endpoint = "chat/completions";
+    scheduler.enqueue(Priority.INTERACTIVE, Optional.empty(), endpoint).join();
+    CompletableFuture<Ticket> queued =
+        scheduler.enqueue(Priority.INTERACTIVE, Optional.empty(), endpoint);
+
+    CompletionException queueFull =
+        assertThrows(
+            CompletionException.class,
+            () -> scheduler.enqueue(Priority.INTERACTIVE, Optional.empty(), endpoint).join());
+    assertThat(((RequestRejectedException) queueFull.getCause()).reason())
+        .isEqualTo(RequestRejectedException.Reason.QUEUE_FULL);
+
+    CompletionException queueTimeout = assertThrows(CompletionException.class, queued::join);
+    RequestRejectedException exception = (RequestRejectedException) queueTimeout.getCause();
+    assertThat(exception.reason()).isEqualTo(RequestRejectedException.Reason.QUEUE_TIMEOUT);
+    assertThat(exception.endpoint()).isEqualTo(endpoint);
+    assertThat(scheduler.queuedRequests(Priority.INTERACTIVE)).isZero();
+  }
+
+  @Test
+  void concurrencyLimitIsHalvedWhenRateLimitedAndGrowsBack() {
+    RequestScheduler scheduler = RequestScheduler.newBuilder().maxConcurrentRequests(8).build();
+
+    List<Ticket> tickets = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      tickets.add(scheduler.enqueue(Priority.STANDARD, Optional.empty(), "").join());
+    }
+    // the requests which were in flight together only halve the limit once
+    tickets.forEach(ticket -> scheduler.release(ticket, Optional.of(429)));
+    assertThat(scheduler.concurrencyLimit()).isEqualTo(4);
+
+    // one more request is let through after a round of successful responses
+    for (int i = 0; i < 5; i++) {
+      scheduler.release(
+          scheduler.enqueue(Priority.STANDARD, Optional.empty(), "").join(), Optional.of(200));
+    }
+    assertThat(scheduler.concurrencyLimit()).isEqualTo(5);
+  }
+
+  private void enqueue(
+      RequestScheduler scheduler, Priority priority, String user, List<String> admitted) {
+    scheduler
+        .enqueue(priority, Optional.of(user), "")
+        .thenAccept(
+            ticket -> {
+              admitted.add(user);
+              scheduler.release(ticket, Optional.of(200));
+            });
+  }
+}
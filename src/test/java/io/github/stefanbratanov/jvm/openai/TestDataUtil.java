@@ -151,6 +151,89 @@ public class TestDataUtil {
         oneOf("fine-tune", "fine-tune-results", "assistants", "assistants_output"));
   }
 
+  public CreateUploadRequest randomCreateUploadRequest() {
+    return CreateUploadRequest.newBuilder()
+        .filename(randomString(7))
+        .purpose(oneOf("assistants", "batch", "fine-tune", "vision"))
+        .bytes(randomLong(1, 8_000_000_000L))
+        .mimeType(oneOf("text/jsonl", "application/pdf", "image/png"))
+        .build();
+  }
+
+  public CompleteUploadRequest randomCompleteUploadRequest() {
+    CompleteUploadRequest.Builder builder =
+        CompleteUploadRequest.newBuilder().partIds(listOf(randomInt(1, 10), () -> randomString(8)));
+    if (randomBoolean()) {
+      builder.md5(randomString(32));
+    }
+    return builder.build();
+  }
+
+  public Upload randomUpload() {
+    return new Upload(
+        randomString(15),
+        randomLong(1, 42_000),
+        randomString(7),
+        randomLong(1, 8_000_000_000L),
+        oneOf("assistants", "batch", "fine-tune", "vision"),
+        oneOf("pending", "completed", "cancelled", "expired"),
+        randomLong(1, 42_000),
+        null);
+  }
+
+  public CreateBatchRequest randomCreateBatchRequest() {
+    CreateBatchRequest.Builder builder =
+        CreateBatchRequest.newBuilder()
+            .inputFileId(randomString(10))
+            .endpoint(oneOf("/v1/chat/completions", "/v1/embeddings", "/v1/completions"))
+            .completionWindow("24h");
+    if (randomBoolean()) {
+      builder.metadata(Map.of(randomString(5), randomString(10)));
+    }
+    return builder.build();
+  }
+
+  public Batch randomBatch() {
+    return new Batch(
+        randomString(15),
+        oneOf("/v1/chat/completions", "/v1/embeddings", "/v1/completions"),
+        new Batch.Errors(
+            listOf(
+                randomInt(0, 3),
+                () ->
+                    new Batch.Errors.Error(
+                        randomString(5), randomString(15), randomString(6), randomInt(1, 100)))),
+        randomString(10),
+        "24h",
+        oneOf(
+            "validating",
+            "failed",
+            "in_progress",
+            "finalizing",
+            "completed",
+            "expired",
+            "cancelling",
+            "cancelled"),
+        randomString(10),
+        randomString(10),
+        randomLong(1, 42_000),
+        randomLong(1, 42_000),
+        randomLong(1, 42_000),
+        randomLong(1, 42_000),
+        randomLong(1, 42_000),
+        null,
+        null,
+        null,
+        null,
+        new Batch.RequestCounts(randomInt(0, 100), randomInt(0, 100), randomInt(0, 100)),
+        Map.of(randomString(5), randomString(10)));
+  }
+
+  public BatchClient.PaginatedBatches randomPaginatedBatches() {
+    return new BatchClient.PaginatedBatches(
+        listOf(randomInt(1, 10), this::randomBatch), randomBoolean());
+  }
+
   public CreateImageRequest randomCreateImageRequest() {
     return CreateImageRequest.newBuilder()
         .prompt(randomString(10, 1000))
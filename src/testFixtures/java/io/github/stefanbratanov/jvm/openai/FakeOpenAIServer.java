@@ -0,0 +1,956 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A local stand-in for the OpenAI API, which serves the endpoints in {@link Endpoint} from memory,
+ * so that load tests and benchmarks can run offline. For example:
+ *
+ * <pre>{@code
+ * try (FakeOpenAIServer server =
+ *     FakeOpenAIServer.newBuilder()
+ *         .latency(Latency.logNormal(Duration.ofMillis(300), Duration.ofSeconds(2)))
+ *         .rateLimits(500, 200_000)
+ *         .start()) {
+ *   OpenAI openAI = OpenAI.newBuilder("sk-fake").baseUrl(server.baseUrl()).build();
+ *   ...
+ * }
+ * }</pre>
+ *
+ * <p>Every response is delayed by a sample of the latency distribution. Chat completions are
+ * generated at a pace of tokens per second on top of that, and streamed as server-sent events one
+ * token at a time when requested. The payloads are derived from the seed and the request, so the
+ * same request always gets the same payload. Files, uploads, batches, fine-tuning jobs, assistants
+ * and threads are kept in memory, and the jobs are completed as soon as they are created, so that
+ * the clients which poll them finish quickly.
+ *
+ * <p>When rate limits are set, every response has the {@code x-ratelimit-*} headers of the API,
+ * and the requests past the limits get a response with status 429.
+ */
+public final class FakeOpenAIServer implements AutoCloseable {
+
+  private static final int BACKLOG = 1024;
+  private static final int SCHEDULER_THREADS = 4;
+  private static final int MIN_TOKENS = 16;
+  private static final int MAX_TOKENS = 64;
+  private static final String JSON_CONTENT_TYPE = "application/json";
+  private static final Set<String> ACTIONS =
+      Set.of("cancel", "complete", "content", "submit_tool_outputs");
+  private static final Pattern MULTIPART_FIELD_PATTERN =
+      Pattern.compile("name=\"([^\"]+)\"(?:; filename=\"([^\"]*)\")?");
+
+  /** The id prefix and the object type of the objects of every collection */
+  private static final Map<String, String[]> COLLECTIONS =
+      Map.ofEntries(
+          Map.entry("files", new String[] {"file-", "file"}),
+          Map.entry("uploads", new String[] {"upload_", "upload"}),
+          Map.entry("parts", new String[] {"part_", "upload.part"}),
+          Map.entry("jobs", new String[] {"ftjob-", "fine_tuning.job"}),
+          Map.entry("events", new String[] {"ftevent-", "fine_tuning.job.event"}),
+          Map.entry("checkpoints", new String[] {"ftckpt_", "fine_tuning.job.checkpoint"}),
+          Map.entry("batches", new String[] {"batch_", "batch"}),
+          Map.entry("assistants", new String[] {"asst_", "assistant"}),
+          Map.entry("threads", new String[] {"thread_", "thread"}),
+          Map.entry("messages", new String[] {"msg_", "thread.message"}),
+          Map.entry("runs", new String[] {"run_", "thread.run"}),
+          Map.entry("steps", new String[] {"step_", "thread.run.step"}));
+
+  private static final List<String> MODELS =
+      List.of("gpt-4o", "gpt-4o-mini", "text-embedding-3-small", "text-moderation-latest");
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final FakePayloads payloads = new FakePayloads(objectMapper);
+
+  private final HttpServer server;
+  private final ExecutorService handlerExecutor;
+  private final ScheduledThreadPoolExecutor scheduler;
+  private final Latency latency;
+  private final double tokensPerSecond;
+  private final double rateLimitErrorRate;
+  private final long seed;
+  private final Optional<RateLimiter> rateLimiter;
+
+  private final Map<Endpoint, AtomicLong> requestCounts = new EnumMap<>(Endpoint.class);
+  private final AtomicLong rateLimitedRequestCount = new AtomicLong();
+  private final AtomicLong ids = new AtomicLong();
+  // objects by their path, for example "threads/thread_1/messages/msg_2", in the order of creation
+  private final Map<String, ObjectNode> objects =
+      Collections.synchronizedMap(new LinkedHashMap<>());
+  private final Map<String, byte[]> fileContents = new ConcurrentHashMap<>();
+
+  // guarded by "this"
+  private final Random random;
+
+  private FakeOpenAIServer(
+      int port,
+      Latency latency,
+      double tokensPerSecond,
+      double rateLimitErrorRate,
+      long seed,
+      Optional<RateLimiter> rateLimiter) {
+    this.latency = latency;
+    this.tokensPerSecond = tokensPerSecond;
+    this.rateLimitErrorRate = rateLimitErrorRate;
+    this.seed = seed;
+    this.rateLimiter = rateLimiter;
+    this.random = new Random(seed);
+    for (Endpoint endpoint : Endpoint.values()) {
+      requestCounts.put(endpoint, new AtomicLong());
+    }
+    try {
+      server =
+          HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), BACKLOG);
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+    handlerExecutor =
+        Executors.newCachedThreadPool(
+            runnable -> {
+              java.lang.Thread thread = new java.lang.Thread(runnable, "fake-openai-server");
+              thread.setDaemon(true);
+              return thread;
+            });
+    scheduler =
+        new ScheduledThreadPoolExecutor(
+            SCHEDULER_THREADS,
+            runnable -> {
+              java.lang.Thread thread = new java.lang.Thread(runnable, "fake-openai-responses");
+              thread.setDaemon(true);
+              return thread;
+            });
+    server.setExecutor(handlerExecutor);
+    server.createContext("/", this::handle);
+    server.start();
+  }
+
+  /**
+   * @return the url to use as the base url of an {@link OpenAI} instance
+   */
+  public String baseUrl() {
+    InetSocketAddress address = server.getAddress();
+    return "http://" + address.getHostString() + ":" + address.getPort() + "/v1/";
+  }
+
+  /**
+   * @param endpoint the path of an endpoint, for example "chat/completions"
+   * @return the number of requests which were received for the endpoint
+   */
+  public long requestCount(String endpoint) {
+    return Endpoint.fromPath(endpoint).map(requestCounts::get).map(AtomicLong::get).orElse(0L);
+  }
+
+  /**
+   * @return the number of requests which got a response with status 429
+   */
+  public long rateLimitedRequestCount() {
+    return rateLimitedRequestCount.get();
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    scheduler.shutdownNow();
+    handlerExecutor.shutdownNow();
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  private void handle(HttpExchange exchange) {
+    try {
+      byte[] body = exchange.getRequestBody().readAllBytes();
+      String path = exchange.getRequestURI().getPath().replaceFirst("^/(v1/)?", "");
+      String method = exchange.getRequestMethod();
+      Random requestRandom =
+          new Random(seed * 31 + (method + path).hashCode() * 31L + Arrays.hashCode(body));
+      Optional<Endpoint> endpoint = Endpoint.fromPath(path);
+      if (endpoint.isEmpty()) {
+        respond(
+            exchange,
+            Duration.ZERO,
+            404,
+            payloads.error("Unknown request URL: " + path, "invalid_request_error", null));
+        return;
+      }
+      requestCounts.get(endpoint.get()).incrementAndGet();
+      Request request = new Request(exchange, path, body, requestRandom);
+      if (!admit(request)) {
+        return;
+      }
+      switch (endpoint.get()) {
+        case CHAT -> handleChatCompletion(request);
+        case EMBEDDINCS -> handleEmbeddings(request);
+        case MODERATIONS -> handleModerations(request);
+        case MODELS -> handleModels(request);
+        case SPEECH -> handleSpeech(request);
+        case TRANSCRIPTION, TRANSLATION -> handleTranscription(request);
+        case IMAGE_GENERATION, IMAGE_EDIT, IMAGE_VARIATION -> handleImages(request);
+        default -> handleObjects(request);
+      }
+    } catch (IOException | RuntimeException ex) {
+      exchange.close();
+    }
+  }
+
+  /**
+   * @return true if the request is within the rate limits, otherwise a response with status 429
+   *     is sent
+   */
+  private boolean admit(Request request) throws IOException {
+    int tokens = request.body.length / 4 + 1;
+    Optional<RateLimiter.Decision> decision =
+        rateLimiter.map(limiter -> limiter.tryAcquire(tokens, System.nanoTime()));
+    decision.ifPresent(
+        rateLimitDecision ->
+            rateLimitDecision.headers.forEach(
+                (name, value) -> request.exchange.getResponseHeaders().set(name, value)));
+    boolean injected = rateLimitErrorRate > 0 && nextDouble() < rateLimitErrorRate;
+    if (decision.map(rateLimitDecision -> rateLimitDecision.admitted).orElse(true) && !injected) {
+      return true;
+    }
+    rateLimitedRequestCount.incrementAndGet();
+    Duration retryAfter =
+        decision.map(rateLimitDecision -> rateLimitDecision.retryAfter).orElse(Duration.ZERO);
+    request
+        .exchange
+        .getResponseHeaders()
+        .set("retry-after", String.valueOf(Math.max(1, (retryAfter.toMillis() + 999) / 1000)));
+    respond(
+        request.exchange,
+        Duration.ZERO,
+        429,
+        payloads.error(
+            "Rate limit reached for requests. Please try again in "
+                + RateLimiter.format(retryAfter)
+                + ".",
+            "requests",
+            "rate_limit_exceeded"));
+    return false;
+  }
+
+  private void handleChatCompletion(Request request) throws IOException {
+    JsonNode chatRequest = request.json();
+    String model = chatRequest.path("model").asText("gpt-4o");
+    int maxTokens =
+        chatRequest.path("max_completion_tokens").asInt(chatRequest.path("max_tokens").asInt(0));
+    int completionTokens = MIN_TOKENS + request.random.nextInt(MAX_TOKENS - MIN_TOKENS + 1);
+    if (maxTokens > 0) {
+      completionTokens = Math.min(completionTokens, maxTokens);
+    }
+    String finishReason = maxTokens > 0 && completionTokens == maxTokens ? "length" : "stop";
+    List<String> tokens = payloads.completionTokens(request.random, completionTokens);
+    String id = "chatcmpl-" + ids.incrementAndGet();
+    long created = System.currentTimeMillis() / 1000;
+    ObjectNode usage = objectMapper.createObjectNode();
+    usage.put("prompt_tokens", request.body.length / 4 + 1);
+    usage.put("completion_tokens", completionTokens);
+    usage.put("total_tokens", request.body.length / 4 + 1 + completionTokens);
+
+    if (!chatRequest.path("stream").asBoolean(false)) {
+      ObjectNode completion = objectMapper.createObjectNode();
+      completion.put("id", id);
+      completion.put("object", "chat.completion");
+      completion.put("created", created);
+      completion.put("model", model);
+      completion.put("system_fingerprint", "fp_fake");
+      ObjectNode choice = completion.putArray("choices").addObject();
+      choice.put("index", 0);
+      ObjectNode message = choice.putObject("message");
+      message.put("role", "assistant");
+      message.put("content", String.join("", tokens));
+      choice.putNull("logprobs");
+      choice.put("finish_reason", finishReason);
+      completion.set("usage", usage);
+      // the whole completion is generated before the response is sent
+      Duration generationTime =
+          Duration.ofNanos((long) (completionTokens * 1e9 / tokensPerSecond));
+      respond(request.exchange, sampleLatency().plus(generationTime), 200, completion);
+      return;
+    }
+
+    List<String> events = new ArrayList<>();
+    events.add(chunk(id, created, model, "assistant", "", null));
+    for (String token : tokens) {
+      events.add(chunk(id, created, model, null, token, null));
+    }
+    events.add(chunk(id, created, model, null, null, finishReason));
+    if (chatRequest.path("stream_options").path("include_usage").asBoolean(false)) {
+      ObjectNode usageChunk = objectMapper.createObjectNode();
+      usageChunk.put("id", id);
+      usageChunk.put("object", "chat.completion.chunk");
+      usageChunk.put("created", created);
+      usageChunk.put("model", model);
+      usageChunk.putArray("choices");
+      usageChunk.set("usage", usage);
+      events.add(objectMapper.writeValueAsString(usageChunk));
+    }
+    events.add("[DONE]");
+    request.exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+    request.exchange.sendResponseHeaders(200, 0);
+    streamEvents(request.exchange, events, 0, sampleLatency());
+  }
+
+  private String chunk(
+      String id, long created, String model, String role, String content, String finishReason)
+      throws IOException {
+    ObjectNode chunk = objectMapper.createObjectNode();
+    chunk.put("id", id);
+    chunk.put("object", "chat.completion.chunk");
+    chunk.put("created", created);
+    chunk.put("model", model);
+    chunk.put("system_fingerprint", "fp_fake");
+    ObjectNode choice = chunk.putArray("choices").addObject();
+    choice.put("index", 0);
+    ObjectNode delta = choice.putObject("delta");
+    if (role != null) {
+      delta.put("role", role);
+    }
+    if (content != null) {
+      delta.put("content", content);
+    }
+    choice.putNull("logprobs");
+    choice.put("finish_reason", finishReason);
+    return objectMapper.writeValueAsString(chunk);
+  }
+
+  /** Sends one event after the delay and schedules the next one at the pace of the tokens */
+  private void streamEvents(HttpExchange exchange, List<String> events, int index, Duration delay) {
+    scheduler.schedule(
+        () -> {
+          try {
+            OutputStream responseBody = exchange.getResponseBody();
+            responseBody.write(
+                ("data: " + events.get(index) + "\n\n").getBytes(StandardCharsets.UTF_8));
+            responseBody.flush();
+            if (index + 1 == events.size()) {
+              exchange.close();
+            } else {
+              streamEvents(
+                  exchange,
+                  events,
+                  index + 1,
+                  Duration.ofNanos((long) (1e9 / tokensPerSecond)));
+            }
+          } catch (IOException ex) {
+            // the client went away
+            exchange.close();
+          }
+        },
+        delay.toNanos(),
+        TimeUnit.NANOSECONDS);
+  }
+
+  private void handleEmbeddings(Request request) throws IOException {
+    JsonNode embeddingsRequest = request.json();
+    JsonNode input = embeddingsRequest.path("input");
+    List<String> inputs = new ArrayList<>();
+    if (input.isArray() && input.size() > 0 && !input.get(0).isNumber()) {
+      input.forEach(item -> inputs.add(item.toString()));
+    } else {
+      inputs.add(input.toString());
+    }
+    int dimensions =
+        embeddingsRequest.path("dimensions").asInt(FakePayloads.DEFAULT_EMBEDDING_DIMENSIONS);
+    boolean base64 = "base64".equals(embeddingsRequest.path("encoding_format").asText());
+    ObjectNode embeddings = objectMapper.createObjectNode();
+    embeddings.put("object", "list");
+    ArrayNode data = embeddings.putArray("data");
+    int promptTokens = 0;
+    for (int i = 0; i < inputs.size(); i++) {
+      ObjectNode embedding = data.addObject();
+      embedding.put("object", "embedding");
+      embedding.put("index", i);
+      embedding.set(
+          "embedding",
+          payloads.embeddingValue(payloads.embedding(seed, inputs.get(i), dimensions), base64));
+      promptTokens += inputs.get(i).length() / 4 + 1;
+    }
+    embeddings.put("model", embeddingsRequest.path("model").asText("text-embedding-3-small"));
+    ObjectNode usage = embeddings.putObject("usage");
+    usage.put("prompt_tokens", promptTokens);
+    usage.put("total_tokens", promptTokens);
+    respond(request.exchange, sampleLatency(), 200, embeddings);
+  }
+
+  private void handleModerations(Request request) throws IOException {
+    JsonNode input = request.json().path("input");
+    ObjectNode moderation = objectMapper.createObjectNode();
+    moderation.put("id", "modr-" + ids.incrementAndGet());
+    moderation.put("model", "text-moderation-007");
+    ArrayNode results = moderation.putArray("results");
+    for (int i = 0; i < (input.isArray() ? input.size() : 1); i++) {
+      results.add(payloads.moderationResult(request.random));
+    }
+    respond(request.exchange, sampleLatency(), 200, moderation);
+  }
+
+  private void handleModels(Request request) throws IOException {
+    if (request.path.equals(Endpoint.MODELS.getPath())) {
+      ObjectNode list = listOf(new ArrayList<>());
+      for (String model : MODELS) {
+        ((ArrayNode) list.get("data")).add(model(model));
+      }
+      respond(request.exchange, sampleLatency(), 200, list);
+      return;
+    }
+    String modelId = request.path.substring(Endpoint.MODELS.getPath().length() + 1);
+    if (request.method().equals("DELETE")) {
+      respond(request.exchange, sampleLatency(), 200, deleted(modelId, "model"));
+    } else {
+      respond(request.exchange, sampleLatency(), 200, model(modelId));
+    }
+  }
+
+  private ObjectNode model(String id) {
+    ObjectNode model = objectMapper.createObjectNode();
+    model.put("id", id);
+    model.put("object", "model");
+    model.put("created", 1_700_000_000L);
+    model.put("owned_by", "system");
+    return model;
+  }
+
+  private void handleSpeech(Request request) {
+    byte[] audio = payloads.audio(request.random, request.json().path("input").asText(""));
+    request.exchange.getResponseHeaders().set("Content-Type", "audio/mpeg");
+    respond(request.exchange, sampleLatency(), 200, audio);
+  }
+
+  private void handleTranscription(Request request) throws IOException {
+    ObjectNode transcription = objectMapper.createObjectNode();
+    transcription.put("text", payloads.text(request.random, 24));
+    respond(request.exchange, sampleLatency(), 200, transcription);
+  }
+
+  private void handleImages(Request request) throws IOException {
+    int n = 1;
+    if (isJson(request)) {
+      n = request.json().path("n").asInt(1);
+    }
+    ObjectNode images = objectMapper.createObjectNode();
+    images.put("created", System.currentTimeMillis() / 1000);
+    ArrayNode data = images.putArray("data");
+    for (int i = 0; i < n; i++) {
+      ObjectNode image = data.addObject();
+      image.put("url", "https://fake.openai.local/images/img-" + ids.incrementAndGet() + ".png");
+      image.put("revised_prompt", payloads.text(request.random, 12));
+    }
+    respond(request.exchange, sampleLatency(), 200, images);
+  }
+
+  /**
+   * Serves the endpoints of the objects which are kept in memory. The segments after the path of
+   * the endpoint alternate between ids and collections, for example "threads/thread_1/messages",
+   * and can end with an action, such as "batches/batch_1/cancel".
+   */
+  private void handleObjects(Request request) throws IOException {
+    String[] segments = request.path.split("/");
+    String method = request.method();
+    String last = segments[segments.length - 1];
+    String parentPath = request.path.substring(0, Math.max(request.path.lastIndexOf('/'), 0));
+
+    if (ACTIONS.contains(last) && objects.containsKey(parentPath)) {
+      handleAction(request, parentPath, last);
+      return;
+    }
+    if (COLLECTIONS.containsKey(last)) {
+      if (method.equals("GET")) {
+        List<ObjectNode> children = new ArrayList<>();
+        synchronized (objects) {
+          objects.forEach(
+              (objectPath, object) -> {
+                if (objectPath.startsWith(request.path + "/")
+                    && objectPath.indexOf('/', request.path.length() + 1) < 0) {
+                  children.add(object);
+                }
+              });
+        }
+        // the newest objects come first
+        Collections.reverse(children);
+        respond(request.exchange, sampleLatency(), 200, listOf(children));
+      } else {
+        respond(request.exchange, sampleLatency(), 200, create(request, request.path, last));
+      }
+      return;
+    }
+    ObjectNode object = objects.get(request.path);
+    if (object == null) {
+      respond(
+          request.exchange,
+          sampleLatency(),
+          404,
+          payloads.error("No such object: '" + last + "'", "invalid_request_error", null));
+      return;
+    }
+    switch (method) {
+      case "DELETE" -> {
+        synchronized (objects) {
+          objects
+              .keySet()
+              .removeIf(path -> path.equals(request.path) || path.startsWith(request.path + "/"));
+        }
+        fileContents.remove(last);
+        respond(
+            request.exchange, sampleLatency(), 200, deleted(last, object.get("object").asText()));
+      }
+      case "POST" -> {
+        JsonNode modifications = request.json();
+        synchronized (object) {
+          modifications
+              .fields()
+              .forEachRemaining(field -> object.set(field.getKey(), field.getValue()));
+        }
+        respond(request.exchange, sampleLatency(), 200, object);
+      }
+      default -> respond(request.exchange, sampleLatency(), 200, object);
+    }
+  }
+
+  private ObjectNode create(Request request, String collectionPath, String collection)
+      throws IOException {
+    String[] idPrefixAndType = COLLECTIONS.get(collection);
+    String id = idPrefixAndType[0] + ids.incrementAndGet();
+    ObjectNode object = objectMapper.createObjectNode();
+    object.put("id", id);
+    object.put("object", idPrefixAndType[1]);
+    object.put("created_at", System.currentTimeMillis() / 1000);
+    if (isJson(request)) {
+      request
+          .json()
+          .fields()
+          .forEachRemaining(field -> object.set(field.getKey(), field.getValue()));
+    } else {
+      parseMultipart(request)
+          .forEach(
+              (name, field) -> {
+                if (field.filename == null) {
+                  object.put(name, new String(field.content, StandardCharsets.UTF_8));
+                  return;
+                }
+                if (name.equals("file")) {
+                  object.put("filename", field.filename);
+                }
+                object.put("bytes", field.content.length);
+                fileContents.put(id, field.content);
+              });
+    }
+    // jobs are done right away, so that pollers finish
+    switch (collection) {
+      case "batches" -> {
+        object.put("status", "completed");
+        object.put("completed_at", System.currentTimeMillis() / 1000);
+        ObjectNode requestCounts = object.putObject("request_counts");
+        requestCounts.put("total", 0);
+        requestCounts.put("completed", 0);
+        requestCounts.put("failed", 0);
+      }
+      case "jobs" -> {
+        object.put("status", "succeeded");
+        object.put("fine_tuned_model", "ft:" + object.path("model").asText() + ":fake");
+      }
+      case "runs" -> object.put("status", "completed");
+      case "uploads" -> object.put("status", "pending");
+      default -> {
+        // no status
+      }
+    }
+    objects.put(collectionPath + "/" + id, object);
+    return object;
+  }
+
+  private void handleAction(Request request, String objectPath, String action)
+      throws IOException {
+    ObjectNode object = objects.get(objectPath);
+    String id = object.get("id").asText();
+    switch (action) {
+      case "content" -> {
+        request.exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+        respond(request.exchange, sampleLatency(), 200, fileContents.getOrDefault(id, new byte[0]));
+        return;
+      }
+      case "cancel" -> object.put("status", "cancelled");
+      case "complete" -> {
+        // the parts become a file
+        ObjectNode file = create(new Request(request, "{}"), Endpoint.FILES.getPath(), "files");
+        file.put("filename", object.path("filename").asText());
+        file.put("purpose", object.path("purpose").asText());
+        file.put("bytes", object.path("bytes").asLong());
+        object.put("status", "completed");
+        object.set("file", file);
+      }
+      default -> object.put("status", "completed");
+    }
+    respond(request.exchange, sampleLatency(), 200, object);
+  }
+
+  private ObjectNode listOf(List<ObjectNode> data) {
+    ObjectNode list = objectMapper.createObjectNode();
+    list.put("object", "list");
+    ArrayNode array = list.putArray("data");
+    data.forEach(array::add);
+    if (!data.isEmpty()) {
+      list.put("first_id", data.get(0).path("id").asText());
+      list.put("last_id", data.get(data.size() - 1).path("id").asText());
+    }
+    list.put("has_more", false);
+    return list;
+  }
+
+  private ObjectNode deleted(String id, String objectType) {
+    ObjectNode deleted = objectMapper.createObjectNode();
+    deleted.put("id", id);
+    deleted.put("object", objectType + ".deleted");
+    deleted.put("deleted", true);
+    return deleted;
+  }
+
+  private boolean isJson(Request request) {
+    String contentType = request.exchange.getRequestHeaders().getFirst("Content-Type");
+    return contentType == null || contentType.startsWith(JSON_CONTENT_TYPE);
+  }
+
+  /** Parses the fields of a multipart body, which is enough for the bodies sent by this library */
+  private Map<String, MultipartField> parseMultipart(Request request) {
+    Map<String, MultipartField> fields = new LinkedHashMap<>();
+    String contentType = request.exchange.getRequestHeaders().getFirst("Content-Type");
+    if (contentType == null || !contentType.contains("boundary=")) {
+      return fields;
+    }
+    String boundary = "--" + contentType.substring(contentType.indexOf("boundary=") + 9);
+    // ISO-8859-1 maps every byte to one char, so the indices are the same as in the body
+    String body = new String(request.body, StandardCharsets.ISO_8859_1);
+    int partStart = body.indexOf(boundary);
+    while (partStart >= 0) {
+      int headersStart = partStart + boundary.length() + 2;
+      int headersEnd = body.indexOf("\r\n\r\n", headersStart);
+      int nextBoundary = body.indexOf("\r\n" + boundary, headersStart);
+      if (headersEnd < 0 || nextBoundary < 0) {
+        break;
+      }
+      Matcher matcher = MULTIPART_FIELD_PATTERN.matcher(body.substring(headersStart, headersEnd));
+      if (matcher.find()) {
+        fields.put(
+            matcher.group(1),
+            new MultipartField(
+                matcher.group(2),
+                Arrays.copyOfRange(request.body, headersEnd + 4, nextBoundary)));
+      }
+      partStart = nextBoundary + 2;
+    }
+    return fields;
+  }
+
+  private void respond(HttpExchange exchange, Duration delay, int statusCode, JsonNode body) {
+    exchange.getResponseHeaders().set("Content-Type", JSON_CONTENT_TYPE);
+    try {
+      respond(exchange, delay, statusCode, objectMapper.writeValueAsBytes(body));
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  private void respond(HttpExchange exchange, Duration delay, int statusCode, byte[] body) {
+    scheduler.schedule(
+        () -> {
+          try (exchange) {
+            exchange.sendResponseHeaders(statusCode, body.length == 0 ? -1 : body.length);
+            exchange.getResponseBody().write(body);
+          } catch (IOException ex) {
+            // the client went away
+          }
+        },
+        delay.toNanos(),
+        TimeUnit.NANOSECONDS);
+  }
+
+  private synchronized Duration sampleLatency() {
+    return latency.sample(random);
+  }
+
+  private synchronized double nextDouble() {
+    return random.nextDouble();
+  }
+
+  private class Request {
+
+    private final HttpExchange exchange;
+    private final String path;
+    private final byte[] body;
+    private final Random random;
+
+    private Request(HttpExchange exchange, String path, byte[] body, Random random) {
+      this.exchange = exchange;
+      this.path = path;
+      this.body = body;
+      this.random = random;
+    }
+
+    /** A copy of the request with another body */
+    private Request(Request request, String body) {
+      this(request.exchange, request.path, body.getBytes(StandardCharsets.UTF_8), request.random);
+    }
+
+    private String method() {
+      return exchange.getRequestMethod();
+    }
+
+    private JsonNode json() {
+      if (body.length == 0) {
+        return objectMapper.createObjectNode();
+      }
+      try {
+        return objectMapper.readTree(body);
+      } catch (IOException ex) {
+        throw new UncheckedIOException(ex);
+      }
+    }
+  }
+
+  private static class MultipartField {
+
+    private final String filename;
+    private final byte[] content;
+
+    private MultipartField(String filename, byte[] content) {
+      this.filename = filename;
+      this.content = content;
+    }
+  }
+
+  /** A distribution of the latencies of the responses */
+  @FunctionalInterface
+  public interface Latency {
+
+    Duration sample(Random random);
+
+    static Latency none() {
+      return random -> Duration.ZERO;
+    }
+
+    static Latency fixed(Duration latency) {
+      return random -> latency;
+    }
+
+    static Latency uniform(Duration min, Duration max) {
+      long minNanos = min.toNanos();
+      long rangeNanos = max.toNanos() - minNanos;
+      return random -> Duration.ofNanos(minNanos + (long) (random.nextDouble() * rangeNanos));
+    }
+
+    /**
+     * A log-normal distribution, which has the long tail of the latencies of real services
+     *
+     * @param median the median latency
+     * @param p99 the 99th percentile of the latencies
+     */
+    static Latency logNormal(Duration median, Duration p99) {
+      double mu = Math.log(median.toNanos());
+      // the 99th percentile of the standard normal distribution
+      double sigma = (Math.log(p99.toNanos()) - mu) / 2.326;
+      return random -> Duration.ofNanos((long) Math.exp(mu + sigma * random.nextGaussian()));
+    }
+  }
+
+  /**
+   * Token buckets for the requests and the tokens per minute, which are refilled continuously like
+   * the rate limits of the API
+   */
+  static final class RateLimiter {
+
+    private final long requestsPerMinute;
+    private final long tokensPerMinute;
+
+    // guarded by "this"
+    private double requests;
+    private double tokens;
+    private long refilledAtNanos;
+
+    RateLimiter(long requestsPerMinute, long tokensPerMinute, long now) {
+      this.requestsPerMinute = requestsPerMinute;
+      this.tokensPerMinute = tokensPerMinute;
+      this.requests = requestsPerMinute;
+      this.tokens = tokensPerMinute;
+      this.refilledAtNanos = now;
+    }
+
+    synchronized Decision tryAcquire(int requestTokens, long now) {
+      double elapsedMinutes = (now - refilledAtNanos) / 60e9;
+      requests = Math.min(requestsPerMinute, requests + elapsedMinutes * requestsPerMinute);
+      tokens = Math.min(tokensPerMinute, tokens + elapsedMinutes * tokensPerMinute);
+      refilledAtNanos = now;
+      boolean admitted = requests >= 1 && tokens >= requestTokens;
+      if (admitted) {
+        requests -= 1;
+        tokens -= requestTokens;
+      }
+      Duration retryAfter =
+          admitted
+              ? Duration.ZERO
+              : max(
+                  timeUntil(1 - requests, requestsPerMinute),
+                  timeUntil(requestTokens - tokens, tokensPerMinute));
+      Map<String, String> headers = new LinkedHashMap<>();
+      headers.put("x-ratelimit-limit-requests", String.valueOf(requestsPerMinute));
+      headers.put("x-ratelimit-limit-tokens", String.valueOf(tokensPerMinute));
+      headers.put("x-ratelimit-remaining-requests", String.valueOf((long) requests));
+      headers.put("x-ratelimit-remaining-tokens", String.valueOf((long) tokens));
+      headers.put(
+          "x-ratelimit-reset-requests",
+          format(timeUntil(requestsPerMinute - requests, requestsPerMinute)));
+      headers.put(
+          "x-ratelimit-reset-tokens", format(timeUntil(tokensPerMinute - tokens, tokensPerMinute)));
+      return new Decision(admitted, retryAfter, headers);
+    }
+
+    private static Duration timeUntil(double missing, long perMinute) {
+      return Duration.ofNanos((long) (Math.max(missing, 0) / perMinute * 60e9));
+    }
+
+    private static Duration max(Duration first, Duration second) {
+      return first.compareTo(second) >= 0 ? first : second;
+    }
+
+    /**
+     * @return the duration in the format of the API, for example "20ms", "1s" or "6m0s"
+     */
+    static String format(Duration duration) {
+      long millis = duration.toMillis();
+      if (millis < 1000) {
+        return millis + "ms";
+      }
+      long seconds = (millis + 999) / 1000;
+      if (seconds < 60) {
+        return seconds + "s";
+      }
+      return seconds / 60 + "m" + seconds % 60 + "s";
+    }
+
+    static final class Decision {
+
+      private final boolean admitted;
+      private final Duration retryAfter;
+      private final Map<String, String> headers;
+
+      private Decision(boolean admitted, Duration retryAfter, Map<String, String> headers) {
+        this.admitted = admitted;
+        this.retryAfter = retryAfter;
+        this.headers = headers;
+      }
+    }
+  }
+
+  public static class Builder {
+
+    private static final double DEFAULT_TOKENS_PER_SECOND = 50;
+
+    private int port = 0;
+    private Latency latency = Latency.none();
+    private double tokensPerSecond = DEFAULT_TOKENS_PER_SECOND;
+    private double rateLimitErrorRate = 0;
+    private long seed = 0;
+    private Optional<long[]> rateLimits = Optional.empty();
+
+    /**
+     * @param port the port to listen on. Defaults to a free port.
+     */
+    public Builder port(int port) {
+      this.port = port;
+      return this;
+    }
+
+    /**
+     * @param latency the distribution of the time until a response is sent, or the first event of
+     *     a stream. Defaults to no latency.
+     */
+    public Builder latency(Latency latency) {
+      this.latency = latency;
+      return this;
+    }
+
+    /**
+     * @param tokensPerSecond the pace at which chat completions are generated. Defaults to 50.
+     */
+    public Builder tokensPerSecond(double tokensPerSecond) {
+      if (tokensPerSecond <= 0) {
+        throw new IllegalArgumentException("tokensPerSecond must be greater than 0");
+      }
+      this.tokensPerSecond = tokensPerSecond;
+      return this;
+    }
+
+    /**
+     * @param requestsPerMinute the requests per minute past which requests are rate limited
+     * @param tokensPerMinute the tokens per minute past which requests are rate limited, where the
+     *     tokens of a request are estimated from the size of its body
+     */
+    public Builder rateLimits(long requestsPerMinute, long tokensPerMinute) {
+      if (requestsPerMinute < 1 || tokensPerMinute < 1) {
+        throw new IllegalArgumentException("The rate limits must be at least 1");
+      }
+      this.rateLimits = Optional.of(new long[] {requestsPerMinute, tokensPerMinute});
+      return this;
+    }
+
+    /**
+     * @param rateLimitErrorRate the fraction of the requests which get a response with status 429
+     *     regardless of the rate limits. Defaults to 0.
+     */
+    public Builder rateLimitErrorRate(double rateLimitErrorRate) {
+      if (rateLimitErrorRate < 0 || rateLimitErrorRate > 1) {
+        throw new IllegalArgumentException("rateLimitErrorRate must be between 0 and 1");
+      }
+      this.rateLimitErrorRate = rateLimitErrorRate;
+      return this;
+    }
+
+    /**
+     * @param seed the seed from which the payloads and the latencies are derived. Defaults to 0.
+     */
+    public Builder seed(long seed) {
+      this.seed = seed;
+      return this;
+    }
+
+    /** Starts the server, which should be closed when no longer needed */
+    public FakeOpenAIServer start() {
+      return new FakeOpenAIServer(
+          port,
+          latency,
+          tokensPerSecond,
+          rateLimitErrorRate,
+          seed,
+          rateLimits.map(limits -> new RateLimiter(limits[0], limits[1], System.nanoTime())));
+    }
+  }
+}
@@ -0,0 +1,130 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates the payloads of the {@link FakeOpenAIServer}. Every payload is derived from a {@link
+ * Random} which is seeded by the request, so the same request always gets the same payload.
+ */
+class FakePayloads {
+
+  private static final String[] WORDS = {
+    "the", "model", "of", "a", "response", "is", "to", "and", "in", "that", "for", "with",
+    "request", "on", "as", "token", "stream", "it", "can", "be", "by", "this", "data", "an",
+    "which", "from", "time", "are", "api", "or", "latency", "each", "more", "load", "test",
+    "server", "value", "first"
+  };
+
+  private static final String[] MODERATION_CATEGORIES = {
+    "hate",
+    "hate/threatening",
+    "harassment",
+    "harassment/threatening",
+    "self-harm",
+    "self-harm/intent",
+    "self-harm/instructions",
+    "sexual",
+    "sexual/minors",
+    "violence",
+    "violence/graphic"
+  };
+
+  static final int DEFAULT_EMBEDDING_DIMENSIONS = 1536;
+
+  private final ObjectMapper objectMapper;
+
+  FakePayloads(ObjectMapper objectMapper) {
+    this.objectMapper = objectMapper;
+  }
+
+  /**
+   * @return the tokens of a completion, which are words with a leading space except for the first
+   */
+  List<String> completionTokens(Random random, int count) {
+    List<String> tokens = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      String word = WORDS[random.nextInt(WORDS.length)];
+      tokens.add(i == 0 ? Character.toUpperCase(word.charAt(0)) + word.substring(1) : " " + word);
+    }
+    return tokens;
+  }
+
+  String text(Random random, int words) {
+    return String.join("", completionTokens(random, words)) + ".";
+  }
+
+  /**
+   * @return an embedding of unit length which only depends on the seed and the input
+   */
+  float[] embedding(long seed, String input, int dimensions) {
+    Random random = new Random(seed * 31 + input.hashCode());
+    float[] embedding = new float[dimensions];
+    double norm = 0;
+    for (int i = 0; i < dimensions; i++) {
+      embedding[i] = (float) random.nextGaussian();
+      norm += embedding[i] * embedding[i];
+    }
+    float scale = (float) (1 / Math.sqrt(norm));
+    for (int i = 0; i < dimensions; i++) {
+      embedding[i] *= scale;
+    }
+    return embedding;
+  }
+
+  JsonNode embeddingValue(float[] embedding, boolean base64) {
+    if (base64) {
+      Base64.Encoder encoder = Base64.getEncoder();
+      ByteBuffer buffer =
+          ByteBuffer.allocate(embedding.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+      for (float value : embedding) {
+        buffer.putFloat(value);
+      }
+      return objectMapper.getNodeFactory().textNode(encoder.encodeToString(buffer.array()));
+    }
+    ArrayNode values = objectMapper.createArrayNode();
+    for (float value : embedding) {
+      values.add(value);
+    }
+    return values;
+  }
+
+  ObjectNode moderationResult(Random random) {
+    ObjectNode result = objectMapper.createObjectNode();
+    ObjectNode categories = result.putObject("categories");
+    ObjectNode categoryScores = result.putObject("category_scores");
+    result.put("flagged", false);
+    for (String category : MODERATION_CATEGORIES) {
+      categories.put(category, false);
+      categoryScores.put(category, random.nextDouble() * 1e-3);
+    }
+    return result;
+  }
+
+  /**
+   * @return audio-like bytes whose length grows with the length of the input
+   */
+  byte[] audio(Random random, String input) {
+    byte[] audio = new byte[1024 + input.length() * 256];
+    random.nextBytes(audio);
+    return audio;
+  }
+
+  ObjectNode error(String message, String type, String code) {
+    ObjectNode body = objectMapper.createObjectNode();
+    ObjectNode error = body.putObject("error");
+    error.put("message", message);
+    error.put("type", type);
+    error.putNull("param");
+    error.put("code", code);
+    return body;
+  }
+}